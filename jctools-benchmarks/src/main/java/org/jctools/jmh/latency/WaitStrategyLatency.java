@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.jmh.latency;
+
+import org.jctools.queues.BackoffWaitStrategy;
+import org.jctools.queues.BusySpinWaitStrategy;
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscArrayQueue;
+import org.jctools.queues.ParkingWaitStrategy;
+import org.jctools.queues.PhasedWaitStrategy;
+import org.jctools.queues.RunFlag;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The latency/CPU trade-off of the wait strategies: the time from an offer to its handling by a consumer which
+ * idles on the strategy while the queue is empty, and the CPU time that consumer burns. With a <i>gapNanos</i>
+ * pause before each offer the consumer goes idle between messages, as it would with a bursty producer, so the
+ * strategy's wake-up cost is measured rather than its hot loop. The CPU time is reported per iteration as the
+ * <i>consumerCpuNanos</i> secondary result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class WaitStrategyLatency
+{
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Benchmark
+    public void offerToHandled(Pipe pipe, Event e, ConsumerCpu cpu)
+    {
+        final MessagePassingQueue<Event> q = pipe.q;
+        e.lazySet(false);
+        while (!q.offer(e))
+        {
+            ;
+        }
+        if (pipe.phased != null)
+        {
+            pipe.phased.signal();
+        }
+        while (!e.get())
+        {
+            ;
+        }
+    }
+
+    static MessagePassingQueue.WaitStrategy createWaitStrategy(String name)
+    {
+        if ("BusySpin".equals(name))
+        {
+            return BusySpinWaitStrategy.INSTANCE;
+        }
+        if ("Backoff".equals(name))
+        {
+            return new BackoffWaitStrategy();
+        }
+        if ("Parking".equals(name))
+        {
+            return new ParkingWaitStrategy();
+        }
+        if ("Phased".equals(name))
+        {
+            return new PhasedWaitStrategy();
+        }
+        throw new IllegalArgumentException("Unknown wait strategy: " + name);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pipe
+    {
+        @Param( {"BusySpin", "Backoff", "Parking", "Phased"})
+        String waitStrategy;
+        @Param( {"0", "20000"})
+        long gapNanos;
+
+        MessagePassingQueue<Event> q;
+        PhasedWaitStrategy phased;
+        RunFlag running;
+        Thread consumerThread;
+
+        @Setup(Level.Trial)
+        public void startConsumer()
+        {
+            q = new MpscArrayQueue<Event>(1024);
+            final MessagePassingQueue.WaitStrategy wait = createWaitStrategy(waitStrategy);
+            phased = wait instanceof PhasedWaitStrategy ? (PhasedWaitStrategy) wait : null;
+            running = new RunFlag();
+            consumerThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    q.drain(new MessagePassingQueue.Consumer<Event>()
+                    {
+                        @Override
+                        public void accept(Event e)
+                        {
+                            e.lazySet(true);
+                        }
+                    }, wait, running);
+                }
+            });
+            consumerThread.start();
+        }
+
+        @Setup(Level.Invocation)
+        public void pause()
+        {
+            // Invocation level setup is not timed, it lets the consumer go idle
+            if (gapNanos > 0)
+            {
+                LockSupport.parkNanos(gapNanos);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stopConsumer() throws InterruptedException
+        {
+            running.stop();
+            if (phased != null)
+            {
+                phased.signal();
+            }
+            consumerThread.join();
+        }
+    }
+
+    @State(Scope.Thread)
+    @SuppressWarnings("serial")
+    public static class Event extends AtomicBoolean
+    {
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ConsumerCpu
+    {
+        public long consumerCpuNanos;
+        private long consumerId;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void start(Pipe pipe)
+        {
+            consumerCpuNanos = 0;
+            consumerId = pipe.consumerThread.getId();
+            start = THREADS.getThreadCpuTime(consumerId);
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop()
+        {
+            consumerCpuNanos = THREADS.getThreadCpuTime(consumerId) - start;
+        }
+    }
+}
@@ -490,6 +490,7 @@ public final class JavaParsingAtomicArrayQueueGenerator extends VoidVisitorAdapt
         cu.addImport(importDeclaration("java.util.concurrent.atomic.AtomicLongFieldUpdater"));
         cu.addImport(importDeclaration("java.util.concurrent.atomic.AtomicReferenceArray"));
         cu.addImport(importDeclaration("java.util.concurrent.atomic.AtomicLongArray"));
+        cu.addImport(importDeclaration("org.jctools.queues.MessagePassingQueueUtil"));
     }
 
     private static void processSpecialNodeTypes(Parameter node) {
@@ -556,6 +556,7 @@ public final class JavaParsingAtomicLinkedQueueGenerator extends VoidVisitorAdap
         cu.addImport(importDeclaration("org.jctools.queues.MessagePassingQueue.Supplier"));
         cu.addImport(importDeclaration("org.jctools.queues.MessagePassingQueueUtil"));
         cu.addImport(importDeclaration("org.jctools.queues.QueueProgressIndicators"));
+        cu.addImport(importDeclaration("org.jctools.queues.QueueStatsRecorder"));
         cu.addImport(importDeclaration("org.jctools.queues.IndexedQueueSizeUtil"));
         cu.addImport(staticImportDeclaration("org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.*"));
         cu.addImport(importDeclaration("java.util.concurrent.atomic.AtomicReferenceArray"));
@@ -605,11 +606,18 @@ public final class JavaParsingAtomicLinkedQueueGenerator extends VoidVisitorAdap
             }
         } else if (isRefType(type, "LinkedQueueNode")) {
             node.setType(simpleParametricType("LinkedQueueAtomicNode", "E"));
-        } else if (isRefArray(type, "E")) {
+        } else if (isRefArray(type, "E") && !isBatchArray(name)) {
             node.setType(atomicRefArrayType((ArrayType) type));
         }
     }
 
+    /**
+     * The batch offer/poll methods take user supplied arrays, these are not queue buffers and must not be converted.
+     */
+    private static boolean isBatchArray(String name) {
+        return "src".equals(name) || "dst".equals(name);
+    }
+
     public static void main(String[] args) throws Exception {
 
         if (args.length < 2) {
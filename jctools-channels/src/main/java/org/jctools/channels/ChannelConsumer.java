@@ -26,4 +26,13 @@ public interface ChannelConsumer {
      */
     boolean read();
 
+    /**
+     * Read up to <i>limit</i> messages from the channel, handing each to the receiver in turn. The consumer
+     * position is published once for the whole batch rather than once per message.
+     *
+     * @param limit the maximum number of messages to read, capped at the channel capacity
+     * @return the number of messages read
+     */
+    int read(int limit);
+
 }
@@ -28,6 +28,24 @@ public interface ChannelProducer<E> {
      */
     boolean claim();
 
+    /**
+     * Attempt to claim up to <i>limit</i> consecutive elements in the channel. The producer position is published
+     * once for the whole batch rather than once per element. The current element is the first claimed element,
+     * move on to the following ones with {@link #next()}.
+     *
+     * @see this#commit()
+     * @param limit the maximum number of elements to claim, capped at the channel capacity
+     * @return the number of claimed elements, 0 if there is insufficient space in the channel.
+     */
+    int claim(int limit);
+
+    /**
+     * Move the current element to the next element claimed by {@link #claim(int)}.
+     *
+     * @return true if moved, false if the current element is the last claimed element.
+     */
+    boolean next();
+
     /**
      * Gets the flyweight to write via.
      *
@@ -36,9 +54,10 @@ public interface ChannelProducer<E> {
     E currentElement();
 
     /**
+     * Commit the claimed element, or all the elements claimed by {@link #claim(int)}.
      *
      * @see this#claim()
-     * @return true if
+     * @return true if committed, false if there was no claimed element
      */
     boolean commit();
 
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implemented by end users in order to receive messages from a {@link VariableMessageSizeRingBuffer} without
+ * copying them.
+ */
+public interface MessageHandler {
+
+    /**
+     * New messages are passed into this method.
+     *
+     * NB: the message is only readable for the lifecycle of this callback, the buffer must not be retained or
+     * modified.
+     *
+     * @param buffer the buffer holding the message, use absolute gets only
+     * @param index the index of the first message byte in the buffer
+     * @param length the message length in bytes
+     */
+    void onMessage(ByteBuffer buffer, int index, int length);
+}
@@ -0,0 +1,378 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import org.jctools.util.Pow2;
+import org.jctools.util.UnsafeDirectByteBuffer;
+
+/**
+ * Channel protocol:
+ * - Variable message size, messages are written as length prefixed records
+ * - Records are 8b aligned and start with recordLength(4b), recordType(4b), the length includes the header
+ * - Records never wrap, the buffer tail is filled with a padding record instead
+ * <p>
+ * The ring lives in a heap or direct (possibly memory mapped) {@link ByteBuffer}, starting at index 0. As all
+ * header lines are 128b the layout is the same on any JVM, so a ring in a mapped file can be shared between
+ * processes:
+ * <pre>
+ * producerIndex(8b), pad |
+ * producerLimit(8b), pad |
+ * consumerIndex(8b), pad |
+ * pad |
+ * buffer (capacity bytes)
+ * </pre>
+ * A zero filled buffer is an empty ring.
+ */
+public abstract class VariableMessageSizeRingBuffer {
+
+    public static final int HEADER_LINE_SIZE = 128;
+    public static final int HEADER_SIZE = 4 * HEADER_LINE_SIZE;
+    public static final int RECORD_HEADER_SIZE = 8;
+    public static final int RECORD_ALIGNMENT = 8;
+    public static final int MIN_CAPACITY = 16 * RECORD_ALIGNMENT;
+    public static final long EOF = 0;
+
+    protected static final int MESSAGE_RECORD = 1;
+    protected static final int PADDING_RECORD = -1;
+
+    private static final int PRODUCER_INDEX_OFFSET = 0;
+    private static final int PRODUCER_LIMIT_OFFSET = HEADER_LINE_SIZE;
+    private static final int CONSUMER_INDEX_OFFSET = 2 * HEADER_LINE_SIZE;
+    private static final int RECORD_TYPE_OFFSET = 4;
+    private static final long BYTE_ARRAY_BASE = UNSAFE.arrayBaseOffset(byte[].class);
+
+    private final ByteBuffer view;
+    // the byte[] of a heap buffer, null for a direct buffer
+    protected final Object base;
+    protected final long baseOffset;
+    protected final long bufferOffset;
+    protected final long producerIndexOffset;
+    protected final long producerLimitOffset;
+    protected final long consumerIndexOffset;
+    protected final int capacity;
+    protected final int mask;
+    protected final int maxMessageLength;
+
+    public static int getRequiredBufferSize(final int capacity) {
+        return HEADER_SIZE + Pow2.roundToPowerOfTwo(Math.max(MIN_CAPACITY, capacity));
+    }
+
+    /**
+     * @param buff a heap or direct buffer of at least {@link #getRequiredBufferSize(int)} bytes, the ring
+     *            starts at index 0. The ring state is kept in the buffer, so the buffer content is either all
+     *            zeros or a ring of the same capacity
+     * @param capacity in bytes, rounded up to the next power of 2
+     */
+    protected VariableMessageSizeRingBuffer(final ByteBuffer buff, final int capacity) {
+        final int actualCapacity = Pow2.roundToPowerOfTwo(Math.max(MIN_CAPACITY, capacity));
+        if (buff.capacity() < HEADER_SIZE + actualCapacity) {
+            throw new IllegalArgumentException("buffer of capacity " + buff.capacity()
+                    + " is insufficient for a ring of capacity " + actualCapacity);
+        }
+        if (buff.isDirect()) {
+            this.base = null;
+            this.baseOffset = UnsafeDirectByteBuffer.getAddress(buff);
+        } else if (buff.hasArray()) {
+            this.base = buff.array();
+            this.baseOffset = BYTE_ARRAY_BASE + buff.arrayOffset();
+        } else {
+            throw new IllegalArgumentException("buffer must be direct or have an accessible array");
+        }
+        // the indices are updated atomically, which requires 8b alignment
+        if ((baseOffset & (RECORD_ALIGNMENT - 1)) != 0) {
+            throw new IllegalArgumentException("buffer must be 8b aligned");
+        }
+        this.view = buff.duplicate();
+        this.capacity = actualCapacity;
+        this.mask = actualCapacity - 1;
+        this.maxMessageLength = actualCapacity / 8 - RECORD_HEADER_SIZE;
+        this.producerIndexOffset = baseOffset + PRODUCER_INDEX_OFFSET;
+        this.producerLimitOffset = baseOffset + PRODUCER_LIMIT_OFFSET;
+        this.consumerIndexOffset = baseOffset + CONSUMER_INDEX_OFFSET;
+        this.bufferOffset = baseOffset + HEADER_SIZE;
+    }
+
+    /**
+     * @return the buffer capacity in bytes
+     */
+    public final int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the largest message length which may be offered
+     */
+    public final int maxMessageLength() {
+        return maxMessageLength;
+    }
+
+    /**
+     * @return the number of bytes (including record headers and padding) claimed in the buffer
+     */
+    public final int size() {
+        return (int) (lvProducerIndex() - lvConsumerIndex());
+    }
+
+    public final boolean isEmpty() {
+        return lvProducerIndex() == lvConsumerIndex();
+    }
+
+    /**
+     * Called from a producer. Offers the <i>len</i> bytes starting at <i>off</i> as a single message.
+     *
+     * @return true if the message was offered, false if there is not enough space in the buffer
+     * @throws IllegalArgumentException if the message is longer than {@link #maxMessageLength()}
+     */
+    public final boolean offer(byte[] src, int off, int len) {
+        if (off < 0 || len < 0 || len > src.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        final long offset = writeAcquire(recordLength(len));
+        if (offset == EOF) {
+            return false;
+        }
+        copyMemory(src, BYTE_ARRAY_BASE + off, base, offset + RECORD_HEADER_SIZE, len);
+        writeRelease(offset, RECORD_HEADER_SIZE + len);
+        return true;
+    }
+
+    /**
+     * Called from a producer. Offers the remaining bytes of <i>src</i> as a single message, the <i>src</i>
+     * position is moved to its limit if offered.
+     *
+     * @return true if the message was offered, false if there is not enough space in the buffer
+     * @throws IllegalArgumentException if the message is longer than {@link #maxMessageLength()}
+     */
+    public final boolean offer(ByteBuffer src) {
+        final int len = src.remaining();
+        final long offset = writeAcquire(recordLength(len));
+        if (offset == EOF) {
+            return false;
+        }
+        if (src.hasArray()) {
+            copyMemory(src.array(), BYTE_ARRAY_BASE + src.arrayOffset() + src.position(), base,
+                    offset + RECORD_HEADER_SIZE, len);
+            src.position(src.limit());
+        } else if (src.isDirect()) {
+            copyMemory(null, UnsafeDirectByteBuffer.getAddress(src) + src.position(), base,
+                    offset + RECORD_HEADER_SIZE, len);
+            src.position(src.limit());
+        } else {
+            // no array nor address to copy from, e.g. a read-only heap buffer
+            recordView(offset, len).put(src);
+        }
+        writeRelease(offset, RECORD_HEADER_SIZE + len);
+        return true;
+    }
+
+    /**
+     * Called from the consumer. Copies the next message into <i>dst</i>, starting at its position which is moved
+     * past the message.
+     *
+     * @return the message length, or -1 if the ring is empty
+     * @throws BufferOverflowException if the message does not fit into <i>dst</i>, the message is not consumed
+     * @throws ReadOnlyBufferException if <i>dst</i> is read-only, no message is consumed
+     */
+    public final int poll(ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        final long offset = readAcquire();
+        if (offset == EOF) {
+            return -1;
+        }
+        final int len = lpRecordLength(offset) - RECORD_HEADER_SIZE;
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            copyMemory(base, offset + RECORD_HEADER_SIZE, dst.array(),
+                    BYTE_ARRAY_BASE + dst.arrayOffset() + dst.position(), len);
+            dst.position(dst.position() + len);
+        } else if (dst.isDirect()) {
+            copyMemory(base, offset + RECORD_HEADER_SIZE, null,
+                    UnsafeDirectByteBuffer.getAddress(dst) + dst.position(), len);
+            dst.position(dst.position() + len);
+        } else {
+            dst.put(recordView(offset, len));
+        }
+        readRelease(offset);
+        return len;
+    }
+
+    /**
+     * Called from the consumer. Hands up to <i>limit</i> messages to the handler, in place. A message is consumed
+     * even if the handler throws.
+     *
+     * @return the number of messages handled
+     */
+    public final int read(MessageHandler handler, int limit) {
+        int i = 0;
+        for (; i < limit; i++) {
+            final long offset = readAcquire();
+            if (offset == EOF) {
+                break;
+            }
+            try {
+                handler.onMessage(view, (int) (offset - baseOffset) + RECORD_HEADER_SIZE,
+                        lpRecordLength(offset) - RECORD_HEADER_SIZE);
+            } finally {
+                readRelease(offset);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return a buffer over the message of the record at <i>offset</i>, for buffers Unsafe can't copy to or from
+     */
+    private ByteBuffer recordView(long offset, int messageLength) {
+        final ByteBuffer record = view.duplicate();
+        final int index = (int) (offset - baseOffset) + RECORD_HEADER_SIZE;
+        record.limit(index + messageLength).position(index);
+        return record;
+    }
+
+    private int recordLength(int messageLength) {
+        if (messageLength > maxMessageLength) {
+            throw new IllegalArgumentException("message length " + messageLength + " exceeds the max of "
+                    + maxMessageLength);
+        }
+        return RECORD_HEADER_SIZE + messageLength;
+    }
+
+    /**
+     * @param recordLength including the record header
+     * @return the offset (relative to {@link #base}) of the claimed record, or {@link #EOF} if there's no space
+     */
+    protected abstract long writeAcquire(int recordLength);
+
+    /**
+     * Publish the record claimed by {@link #writeAcquire(int)} once the message is written.
+     */
+    protected abstract void writeRelease(long offset, int recordLength);
+
+    /**
+     * @return the offset (relative to {@link #base}) of the next message record, or {@link #EOF} if there's none
+     */
+    protected abstract long readAcquire();
+
+    /**
+     * Release the record returned by {@link #readAcquire()} once the message is read.
+     */
+    protected abstract void readRelease(long offset);
+
+    protected final long offsetForIndex(long index) {
+        return bufferOffset + (index & mask);
+    }
+
+    protected static int alignedLength(int recordLength) {
+        return (int) Pow2.align(recordLength, RECORD_ALIGNMENT);
+    }
+
+    protected final int lpRecordLength(long offset) {
+        return UNSAFE.getInt(base, offset);
+    }
+
+    protected final int lvRecordLength(long offset) {
+        return UNSAFE.getIntVolatile(base, offset);
+    }
+
+    protected final void soRecordLength(long offset, int recordLength) {
+        UNSAFE.putOrderedInt(base, offset, recordLength);
+    }
+
+    protected final int lpRecordType(long offset) {
+        return UNSAFE.getInt(base, offset + RECORD_TYPE_OFFSET);
+    }
+
+    protected final void spRecordType(long offset, int recordType) {
+        UNSAFE.putInt(base, offset + RECORD_TYPE_OFFSET, recordType);
+    }
+
+    /**
+     * Write a padding record, the record length is written last.
+     */
+    protected final void writePadding(long offset, int length) {
+        spRecordType(offset, PADDING_RECORD);
+        soRecordLength(offset, length);
+    }
+
+    /**
+     * @param length a multiple of 8
+     */
+    protected final void zeroMemory(long offset, int length) {
+        for (int i = 0; i < length; i += 8) {
+            UNSAFE.putLong(base, offset + i, 0L);
+        }
+    }
+
+    protected final long lpProducerIndex() {
+        return UNSAFE.getLong(base, producerIndexOffset);
+    }
+
+    protected final long lvProducerIndex() {
+        return UNSAFE.getLongVolatile(base, producerIndexOffset);
+    }
+
+    protected final void soProducerIndex(long value) {
+        UNSAFE.putOrderedLong(base, producerIndexOffset, value);
+    }
+
+    protected final long lvProducerLimit() {
+        return UNSAFE.getLongVolatile(base, producerLimitOffset);
+    }
+
+    protected final void soProducerLimit(long value) {
+        UNSAFE.putOrderedLong(base, producerLimitOffset, value);
+    }
+
+    protected final long lpConsumerIndex() {
+        return UNSAFE.getLong(base, consumerIndexOffset);
+    }
+
+    protected final long lvConsumerIndex() {
+        return UNSAFE.getLongVolatile(base, consumerIndexOffset);
+    }
+
+    protected final void soConsumerIndex(long value) {
+        UNSAFE.putOrderedLong(base, consumerIndexOffset, value);
+    }
+
+    /**
+     * Copy between any mix of heap and native memory, using the JDK6 compatible subset of Unsafe. Longs are only
+     * accessed at 8 byte aligned offsets (heap objects start 8 byte aligned), so the copy does not rely on the
+     * platform supporting unaligned access; sides aligned differently are copied a byte at a time.
+     */
+    private static void copyMemory(Object srcBase, long srcOffset, Object dstBase, long dstOffset, int len) {
+        int i = 0;
+        if (((srcOffset ^ dstOffset) & 7) == 0) {
+            for (; i < len && ((dstOffset + i) & 7) != 0; i++) {
+                UNSAFE.putByte(dstBase, dstOffset + i, UNSAFE.getByte(srcBase, srcOffset + i));
+            }
+            for (; i <= len - 8; i += 8) {
+                UNSAFE.putLong(dstBase, dstOffset + i, UNSAFE.getLong(srcBase, srcOffset + i));
+            }
+        }
+        for (; i < len; i++) {
+            UNSAFE.putByte(dstBase, dstOffset + i, UNSAFE.getByte(srcBase, srcOffset + i));
+        }
+    }
+}
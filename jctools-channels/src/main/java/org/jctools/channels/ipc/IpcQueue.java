@@ -0,0 +1,387 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels.ipc;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Random;
+
+import org.jctools.channels.MessageHandler;
+import org.jctools.channels.VariableMessageSizeRingBuffer;
+import org.jctools.channels.mpsc.MpscVariableSizeRingBuffer;
+import org.jctools.channels.spsc.SpscVariableSizeRingBuffer;
+import org.jctools.util.Pow2;
+import org.jctools.util.UnsafeDirectByteBuffer;
+
+/**
+ * A queue of variable length byte messages in a memory mapped file, for passing messages between processes.
+ * <p>
+ * The first process to {@link #open} a file creates the queue, later processes attach to it. The file layout
+ * (assuming nothing about the cache line size, all header lines are 128b):
+ * <pre>
+ * magic(8b), version(4b), type(4b), capacity(4b), pad(4b), livenessTimeout(8b), pad |
+ * producer stamp: owner(8b), pid(8b), heartbeat(8b), pad |
+ * consumer stamp: owner(8b), pid(8b), heartbeat(8b), pad |
+ * pad |
+ * ring (see {@link VariableMessageSizeRingBuffer}, an {@link SpscVariableSizeRingBuffer} or an
+ * {@link MpscVariableSizeRingBuffer} depending on the queue type)
+ * </pre>
+ * <p>
+ * Roles: the consumer (and the producer of an SPSC queue) role is exclusive. It is claimed on open and released
+ * on {@link #close()}. The role owner is expected to call {@link #heartbeat()} more often than the liveness
+ * timeout, a role held by an owner who has not done so is considered abandoned and can be taken over by a new
+ * process. As the queue indices are kept in the file a restarted process resumes where its predecessor stopped.
+ * <p>
+ * The mapping is released when the queue is garbage collected.
+ */
+public final class IpcQueue implements Closeable {
+
+    public enum Type {
+        SPSC(1), MPSC(2);
+
+        final int id;
+
+        Type(int id) {
+            this.id = id;
+        }
+    }
+
+    public enum Role {
+        PRODUCER, CONSUMER
+    }
+
+    /**
+     * "JCToolsQ"
+     */
+    public static final long MAGIC = 0x4A43546F6F6C7351L;
+    public static final int VERSION = 1;
+    public static final long DEFAULT_LIVENESS_TIMEOUT_MILLIS = 10000;
+
+    public static final int HEADER_LINE_SIZE = VariableMessageSizeRingBuffer.HEADER_LINE_SIZE;
+    public static final int HEADER_SIZE = 4 * HEADER_LINE_SIZE;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int TYPE_OFFSET = 12;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int LIVENESS_TIMEOUT_OFFSET = 24;
+    private static final int PRODUCER_STAMP_OFFSET = HEADER_LINE_SIZE;
+    private static final int CONSUMER_STAMP_OFFSET = 2 * HEADER_LINE_SIZE;
+
+    private static final int STAMP_OWNER_OFFSET = 0;
+    private static final int STAMP_PID_OFFSET = 8;
+    private static final int STAMP_HEARTBEAT_OFFSET = 16;
+
+    private static final long PID = currentPid();
+    private static final Random TOKENS = new Random();
+    // file locks are held on behalf of the whole JVM, so opening is also serialized within the process
+    private static final Object OPEN_LOCK = new Object();
+
+    private final File file;
+    // keeps the mapping alive
+    private final MappedByteBuffer mapped;
+    private final VariableMessageSizeRingBuffer ring;
+    private final Type type;
+    private final Role role;
+    private final long ownerToken;
+    private final long livenessTimeoutMillis;
+    private final long mappedAddress;
+    private final long stampAddress;
+
+    /**
+     * Create or attach to the queue in the given file with the {@link #DEFAULT_LIVENESS_TIMEOUT_MILLIS}.
+     *
+     * @see #open(File, Type, int, Role, long)
+     */
+    public static IpcQueue open(File file, Type type, int capacity, Role role) throws IOException {
+        return open(file, type, capacity, role, DEFAULT_LIVENESS_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Create the queue if the file is missing or empty, attach to the existing queue otherwise, then claim the
+     * requested role.
+     *
+     * @param file the queue file
+     * @param type the expected queue type
+     * @param capacity in bytes, rounded up to the next power of 2. When attaching a capacity of 0 accepts the
+     *            existing queue capacity
+     * @param role the role claimed by the returned instance
+     * @param livenessTimeoutMillis the heartbeat period after which a role is considered abandoned, only used
+     *            when creating the queue
+     * @return a queue instance to be used for the given role only
+     * @throws IllegalStateException if the file is not a compatible queue, or the role is held by a live owner
+     */
+    public static IpcQueue open(File file, Type type, int capacity, Role role, long livenessTimeoutMillis)
+            throws IOException {
+        if (capacity < 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity " + capacity + " out of range");
+        }
+        if (livenessTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("livenessTimeoutMillis must be positive");
+        }
+        final int actualCapacity = capacity == 0 ? 0
+                : Pow2.roundToPowerOfTwo(Math.max(VariableMessageSizeRingBuffer.MIN_CAPACITY, capacity));
+        final MappedByteBuffer mapped;
+        synchronized (OPEN_LOCK) {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                final FileChannel channel = raf.getChannel();
+                final FileLock lock = channel.lock();
+                try {
+                    if (channel.size() == 0) {
+                        if (actualCapacity == 0) {
+                            throw new IllegalArgumentException("capacity is required to create a queue");
+                        }
+                        final int size = HEADER_SIZE
+                                + VariableMessageSizeRingBuffer.getRequiredBufferSize(actualCapacity);
+                        raf.setLength(size);
+                        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                        initialize(UnsafeDirectByteBuffer.getAddress(mapped), type, actualCapacity,
+                                livenessTimeoutMillis);
+                    } else {
+                        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                        validate(file, UnsafeDirectByteBuffer.getAddress(mapped), mapped.capacity(), type,
+                                actualCapacity);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                raf.close();
+            }
+        }
+        return new IpcQueue(file, mapped, type, role);
+    }
+
+    private static void initialize(long address, Type type, int capacity, long livenessTimeoutMillis) {
+        // a newly extended file is zero filled, so all indices and stamps start at 0
+        UNSAFE.putInt(address + VERSION_OFFSET, VERSION);
+        UNSAFE.putInt(address + TYPE_OFFSET, type.id);
+        UNSAFE.putInt(address + CAPACITY_OFFSET, capacity);
+        UNSAFE.putLong(address + LIVENESS_TIMEOUT_OFFSET, livenessTimeoutMillis);
+        // magic goes last, marking the header as complete
+        UNSAFE.putOrderedLong(null, address + MAGIC_OFFSET, MAGIC);
+    }
+
+    private static void validate(File file, long address, int mappedSize, Type type, int capacity) {
+        if (mappedSize < HEADER_SIZE || UNSAFE.getLongVolatile(null, address + MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalStateException(file + " is not an initialized queue file");
+        }
+        final int version = UNSAFE.getInt(address + VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new IllegalStateException(file + " has version " + version + ", expected " + VERSION);
+        }
+        final int typeId = UNSAFE.getInt(address + TYPE_OFFSET);
+        if (typeId != type.id) {
+            throw new IllegalStateException(file + " has type id " + typeId + ", expected " + type);
+        }
+        final int existingCapacity = UNSAFE.getInt(address + CAPACITY_OFFSET);
+        if (capacity != 0 && existingCapacity != capacity) {
+            throw new IllegalStateException(file + " has capacity " + existingCapacity + ", expected " + capacity);
+        }
+        if (mappedSize < HEADER_SIZE + VariableMessageSizeRingBuffer.getRequiredBufferSize(existingCapacity)) {
+            throw new IllegalStateException(file + " is truncated");
+        }
+    }
+
+    private IpcQueue(File file, MappedByteBuffer mapped, Type type, Role role) {
+        this.file = file;
+        this.mapped = mapped;
+        this.type = type;
+        this.role = role;
+        this.mappedAddress = UnsafeDirectByteBuffer.getAddress(mapped);
+        this.livenessTimeoutMillis = UNSAFE.getLong(mappedAddress + LIVENESS_TIMEOUT_OFFSET);
+        final int capacity = UNSAFE.getInt(mappedAddress + CAPACITY_OFFSET);
+        final ByteBuffer ringBuffer = ((ByteBuffer) mapped.duplicate().position(HEADER_SIZE)).slice();
+        this.ring = type == Type.SPSC ? new SpscVariableSizeRingBuffer(ringBuffer, capacity)
+                : new MpscVariableSizeRingBuffer(ringBuffer, capacity);
+        this.stampAddress = mappedAddress + (role == Role.PRODUCER ? PRODUCER_STAMP_OFFSET : CONSUMER_STAMP_OFFSET);
+        this.ownerToken = isExclusive() ? claimRole() : 0;
+        UNSAFE.putLongVolatile(null, stampAddress + STAMP_PID_OFFSET, PID);
+        heartbeat();
+    }
+
+    private long claimRole() {
+        long token;
+        do {
+            token = TOKENS.nextLong();
+        } while (token == 0);
+        final long owner = UNSAFE.getLongVolatile(null, stampAddress + STAMP_OWNER_OFFSET);
+        if (owner != 0 && isAlive(stampAddress)) {
+            throw new IllegalStateException(role + " of " + file + " is held by pid "
+                    + UNSAFE.getLongVolatile(null, stampAddress + STAMP_PID_OFFSET));
+        }
+        // a single attempt, failing means another process has just claimed (or taken over) the role
+        if (!UNSAFE.compareAndSwapLong(null, stampAddress + STAMP_OWNER_OFFSET, owner, token)) {
+            throw new IllegalStateException(role + " of " + file + " was concurrently claimed");
+        }
+        return token;
+    }
+
+    private boolean isExclusive() {
+        return role == Role.CONSUMER || type == Type.SPSC;
+    }
+
+    private boolean isAlive(long stampAddress) {
+        final long heartbeat = UNSAFE.getLongVolatile(null, stampAddress + STAMP_HEARTBEAT_OFFSET);
+        return heartbeat != 0 && System.currentTimeMillis() - heartbeat <= livenessTimeoutMillis;
+    }
+
+    /**
+     * Stamp the role of this instance as alive. To be called by the role owner more often than the liveness
+     * timeout.
+     *
+     * @return false if an exclusive role is no longer held by this instance, i.e. it was taken over by another
+     *         process after this instance stopped calling heartbeat for longer than the timeout
+     */
+    public boolean heartbeat() {
+        if (isExclusive() && UNSAFE.getLongVolatile(null, stampAddress + STAMP_OWNER_OFFSET) != ownerToken) {
+            return false;
+        }
+        UNSAFE.putOrderedLong(null, stampAddress + STAMP_HEARTBEAT_OFFSET, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * @return true if a producer has called heartbeat within the liveness timeout
+     */
+    public boolean isProducerAlive() {
+        return isAlive(mappedAddress + PRODUCER_STAMP_OFFSET);
+    }
+
+    /**
+     * @return true if the consumer has called heartbeat within the liveness timeout
+     */
+    public boolean isConsumerAlive() {
+        return isAlive(mappedAddress + CONSUMER_STAMP_OFFSET);
+    }
+
+    /**
+     * @return the pid of the last producer to open the queue, 0 if unknown
+     */
+    public long producerPid() {
+        return UNSAFE.getLongVolatile(null, mappedAddress + PRODUCER_STAMP_OFFSET + STAMP_PID_OFFSET);
+    }
+
+    /**
+     * @return the pid of the last consumer to open the queue, 0 if unknown
+     */
+    public long consumerPid() {
+        return UNSAFE.getLongVolatile(null, mappedAddress + CONSUMER_STAMP_OFFSET + STAMP_PID_OFFSET);
+    }
+
+    /**
+     * Release the role of this instance, allowing another instance to claim it straight away.
+     */
+    @Override
+    public void close() {
+        if (isExclusive()
+                && UNSAFE.compareAndSwapLong(null, stampAddress + STAMP_OWNER_OFFSET, ownerToken, 0)) {
+            UNSAFE.putOrderedLong(null, stampAddress + STAMP_HEARTBEAT_OFFSET, 0);
+        }
+    }
+
+    public File file() {
+        return file;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public Role role() {
+        return role;
+    }
+
+    /**
+     * @return the buffer capacity in bytes
+     */
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return the largest message length which may be offered
+     */
+    public int maxMessageLength() {
+        return ring.maxMessageLength();
+    }
+
+    /**
+     * @return the number of bytes (including record headers and padding) in the buffer
+     */
+    public int size() {
+        return ring.size();
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Called from a producer.
+     *
+     * @see VariableMessageSizeRingBuffer#offer(byte[], int, int)
+     */
+    public boolean offer(byte[] src, int off, int len) {
+        return ring.offer(src, off, len);
+    }
+
+    /**
+     * Called from a producer.
+     *
+     * @see VariableMessageSizeRingBuffer#offer(ByteBuffer)
+     */
+    public boolean offer(ByteBuffer src) {
+        return ring.offer(src);
+    }
+
+    /**
+     * Called from the consumer.
+     *
+     * @see VariableMessageSizeRingBuffer#poll(ByteBuffer)
+     */
+    public int poll(ByteBuffer dst) {
+        return ring.poll(dst);
+    }
+
+    /**
+     * Called from the consumer.
+     *
+     * @see VariableMessageSizeRingBuffer#read(MessageHandler, int)
+     */
+    public int read(MessageHandler handler, int limit) {
+        return ring.read(handler, limit);
+    }
+
+    private static long currentPid() {
+        // "pid@hostname" on the common JVMs, there's no portable way to get the pid before JDK9
+        final String name = ManagementFactory.getRuntimeMXBean().getName();
+        final int at = name.indexOf('@');
+        try {
+            return at > 0 ? Long.parseLong(name.substring(0, at)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
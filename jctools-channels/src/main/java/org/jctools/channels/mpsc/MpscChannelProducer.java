@@ -25,6 +25,10 @@ import org.jctools.channels.ChannelProducer;
 public abstract class MpscChannelProducer<E> extends MpscOffHeapFixedSizeRingBuffer implements ChannelProducer<E> {
 
     protected long pointer;
+    // the batch claimed by claim(int), if any
+    private long batchIndex;
+    private int batchSize;
+    private int batchPosition;
 
     public MpscChannelProducer(
         final ByteBuffer buffer,
@@ -36,15 +40,58 @@ public abstract class MpscChannelProducer<E> extends MpscOffHeapFixedSizeRingBuf
     }
 
     public final boolean claim() {
+        batchSize = 0;
         pointer = writeAcquire();
         return pointer != EOF;
     }
 
+    public final int claim(int limit) {
+        limit = Math.min(limit, capacity());
+        long producerIndex;
+        int claimed;
+        do {
+            producerIndex = lvProducerIndex(); // LoadLoad
+            claimed = 0;
+            while (claimed < limit && isReadReleased(offsetForIndex(producerIndex + claimed))) {
+                claimed++;
+            }
+            if (claimed == 0) {
+                // as in writeAcquire, another producer passing us may make the channel look full
+                if (producerIndex != lvProducerIndex()) {
+                    continue;
+                }
+                break;
+            }
+        } while (!casProducerIndex(producerIndex, producerIndex + claimed));
+        batchIndex = producerIndex;
+        batchSize = claimed;
+        batchPosition = 0;
+        pointer = claimed == 0 ? EOF : offsetForIndex(batchIndex);
+        return claimed;
+    }
+
+    public final boolean next() {
+        if (batchPosition + 1 >= batchSize)
+            return false;
+
+        pointer = offsetForIndex(batchIndex + ++batchPosition);
+        return true;
+    }
+
     public final boolean commit() {
         if (pointer == EOF)
             return false;
 
-        writeRelease(pointer);
+        if (batchSize == 0) {
+            writeRelease(pointer);
+        } else {
+            for (int i = 0; i < batchSize; i++) {
+                writeRelease(offsetForIndex(batchIndex + i));
+            }
+            batchSize = 0;
+        }
+        // a second commit must not release the slots again, they may have been consumed already
+        pointer = EOF;
         return true;
     }
 
@@ -108,7 +108,7 @@ public class MpscOffHeapFixedSizeRingBuffer extends OffHeapFixedMessageSizeRingB
         readReleaseState(offset);
     }
 
-    private boolean casProducerIndex(final long expected, long update) {
+    protected final boolean casProducerIndex(final long expected, long update) {
         return UNSAFE.compareAndSwapLong(null, producerIndexAddress, expected, update);
     }
 }
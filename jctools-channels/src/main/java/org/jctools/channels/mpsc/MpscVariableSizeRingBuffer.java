@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels.mpsc;
+
+import static org.jctools.util.PortableJvmInfo.CACHE_LINE_SIZE;
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeDirectByteBuffer.allocateAlignedByteBuffer;
+
+import java.nio.ByteBuffer;
+
+import org.jctools.channels.VariableMessageSizeRingBuffer;
+import org.jctools.util.UnsafeAccess;
+
+/**
+ * Channel protocol:
+ * - Variable message size, see {@link VariableMessageSizeRingBuffer}
+ * - Producers claim space by a single fetch-add on the producer index, after checking the cached producer limit
+ * - A record expected to cross the buffer end is claimed along with the tail padding by CAS instead
+ * - A fetch-add claim crossing the buffer end (when racing other producers) is turned into padding and retried
+ * - Records are published by an ordered write of their length, which is 0 until then
+ * - The consumer clears consumed records before moving the consumer index
+ * <p>
+ * As a claim can't be backed out, a producer losing the race for the last free bytes waits for the consumer to
+ * free its claimed space. A producer dying between claiming and publishing a record stalls the consumer.
+ */
+public class MpscVariableSizeRingBuffer extends VariableMessageSizeRingBuffer {
+
+    public MpscVariableSizeRingBuffer(final int capacity) {
+        this(allocateAlignedByteBuffer(getRequiredBufferSize(capacity), CACHE_LINE_SIZE), capacity);
+    }
+
+    /**
+     * @param buff a heap, direct or memory mapped buffer, see
+     *            {@link VariableMessageSizeRingBuffer#VariableMessageSizeRingBuffer(ByteBuffer, int)}
+     * @param capacity in bytes
+     */
+    public MpscVariableSizeRingBuffer(final ByteBuffer buff, final int capacity) {
+        super(buff, capacity);
+    }
+
+    @Override
+    protected final long writeAcquire(int recordLength) {
+        final int alignedLength = alignedLength(recordLength);
+        while (true) {
+            final long producerIndex = lvProducerIndex();
+            final int tail = capacity - (int) (producerIndex & mask);
+            final boolean wrap = alignedLength > tail;
+            final int required = wrap ? tail + alignedLength : alignedLength;
+            if (producerIndex + required > lvProducerLimit()) {
+                final long producerLimit = lvConsumerIndex() + capacity;
+                if (producerIndex + required > producerLimit) {
+                    return EOF;
+                }
+                soProducerLimit(producerLimit);
+            }
+            if (wrap) {
+                // the claim has to start exactly at the tail, which takes a CAS
+                if (casProducerIndex(producerIndex, producerIndex + required)) {
+                    writePadding(offsetForIndex(producerIndex), tail);
+                    return bufferOffset;
+                }
+                continue;
+            }
+            final long claimIndex = getAndAddProducerIndex(alignedLength);
+            if (claimIndex != producerIndex) {
+                // other producers claimed ahead of us, the space we checked may be gone
+                final long claimLimit = claimIndex + alignedLength - capacity;
+                while (claimLimit > lvConsumerIndex()) {
+                    // a claim can't be backed out, wait for the consumer to free it
+                }
+            }
+            final long offset = offsetForIndex(claimIndex);
+            final int claimTail = capacity - (int) (claimIndex & mask);
+            if (alignedLength <= claimTail) {
+                return offset;
+            }
+            writePadding(offset, claimTail);
+            writePadding(bufferOffset, alignedLength - claimTail);
+        }
+    }
+
+    @Override
+    protected final void writeRelease(long offset, int recordLength) {
+        spRecordType(offset, MESSAGE_RECORD);
+        soRecordLength(offset, recordLength);
+    }
+
+    @Override
+    protected final long readAcquire() {
+        long consumerIndex = lpConsumerIndex();
+        while (true) {
+            final long offset = offsetForIndex(consumerIndex);
+            final int recordLength = lvRecordLength(offset);
+            if (recordLength == 0) {
+                return EOF;
+            }
+            if (lpRecordType(offset) != PADDING_RECORD) {
+                return offset;
+            }
+            zeroMemory(offset, recordLength);
+            consumerIndex += recordLength;
+            soConsumerIndex(consumerIndex);
+        }
+    }
+
+    @Override
+    protected final void readRelease(long offset) {
+        final int alignedLength = alignedLength(lpRecordLength(offset));
+        zeroMemory(offset, alignedLength);
+        soConsumerIndex(lpConsumerIndex() + alignedLength);
+    }
+
+    private boolean casProducerIndex(long expected, long update) {
+        return UNSAFE.compareAndSwapLong(base, producerIndexOffset, expected, update);
+    }
+
+    private long getAndAddProducerIndex(long delta) {
+        if (UnsafeAccess.SUPPORTS_GET_AND_SET) {
+            return UNSAFE.getAndAddLong(base, producerIndexOffset, delta);
+        }
+        long producerIndex;
+        do {
+            producerIndex = lvProducerIndex();
+        } while (!casProducerIndex(producerIndex, producerIndex + delta));
+        return producerIndex;
+    }
+}
@@ -25,6 +25,10 @@ import java.nio.ByteBuffer;
 public abstract class SpscChannelProducer<E> extends SpscOffHeapFixedSizeRingBuffer implements ChannelProducer<E> {
 
     protected long pointer;
+    // the batch claimed by claim(int), if any
+    private long batchIndex;
+    private int batchSize;
+    private int batchPosition;
 
     public SpscChannelProducer(
         final ByteBuffer buffer,
@@ -36,15 +40,50 @@ public abstract class SpscChannelProducer<E> extends SpscOffHeapFixedSizeRingBuf
     }
 
     public final boolean claim() {
+        batchSize = 0;
         pointer = writeAcquire();
         return pointer != EOF;
     }
 
+    public final int claim(int limit) {
+        limit = Math.min(limit, capacity());
+        final long producerIndex = lpProducerIndex();
+        int claimed = 0;
+        while (claimed < limit && isReadReleased(offsetForIndex(producerIndex + claimed))) {
+            claimed++;
+        }
+        if (claimed != 0) {
+            soProducerIndex(producerIndex + claimed); // StoreStore
+        }
+        batchIndex = producerIndex;
+        batchSize = claimed;
+        batchPosition = 0;
+        pointer = claimed == 0 ? EOF : offsetForIndex(batchIndex);
+        return claimed;
+    }
+
+    public final boolean next() {
+        if (batchPosition + 1 >= batchSize)
+            return false;
+
+        pointer = offsetForIndex(batchIndex + ++batchPosition);
+        return true;
+    }
+
     public final boolean commit() {
         if (pointer == EOF)
             return false;
 
-        writeRelease(pointer);
+        if (batchSize == 0) {
+            writeRelease(pointer);
+        } else {
+            for (int i = 0; i < batchSize; i++) {
+                writeRelease(offsetForIndex(batchIndex + i));
+            }
+            batchSize = 0;
+        }
+        // a second commit must not release the slots again, they may have been consumed already
+        pointer = EOF;
         return true;
     }
 
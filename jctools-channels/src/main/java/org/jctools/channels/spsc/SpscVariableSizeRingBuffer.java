@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels.spsc;
+
+import static org.jctools.util.PortableJvmInfo.CACHE_LINE_SIZE;
+import static org.jctools.util.UnsafeDirectByteBuffer.allocateAlignedByteBuffer;
+
+import java.nio.ByteBuffer;
+
+import org.jctools.channels.VariableMessageSizeRingBuffer;
+
+/**
+ * Channel protocol:
+ * - Variable message size, see {@link VariableMessageSizeRingBuffer}
+ * - Records are published by the producer index, written after the record (and the padding preceding it)
+ * - The consumer never clears the buffer, so either side can stop at any point and resume later
+ * - Both sides keep a local cache of the other side's index
+ */
+public class SpscVariableSizeRingBuffer extends VariableMessageSizeRingBuffer {
+
+    private long producerLimit;
+    private long nextProducerIndex;
+    private long producerIndexCache;
+
+    public SpscVariableSizeRingBuffer(final int capacity) {
+        this(allocateAlignedByteBuffer(getRequiredBufferSize(capacity), CACHE_LINE_SIZE), capacity);
+    }
+
+    /**
+     * @param buff a heap, direct or memory mapped buffer, see
+     *            {@link VariableMessageSizeRingBuffer#VariableMessageSizeRingBuffer(ByteBuffer, int)}
+     * @param capacity in bytes
+     */
+    public SpscVariableSizeRingBuffer(final ByteBuffer buff, final int capacity) {
+        super(buff, capacity);
+    }
+
+    @Override
+    protected final long writeAcquire(int recordLength) {
+        final int alignedLength = alignedLength(recordLength);
+        final long producerIndex = lpProducerIndex();
+        final long offset = offsetForIndex(producerIndex);
+        final int tail = capacity - (int) (producerIndex & mask);
+        final int required = alignedLength > tail ? tail + alignedLength : alignedLength;
+        if (producerIndex + required > producerLimit) {
+            producerLimit = lvConsumerIndex() + capacity;
+            if (producerIndex + required > producerLimit) {
+                return EOF;
+            }
+        }
+        nextProducerIndex = producerIndex + required;
+        if (required != alignedLength) {
+            // published along with the record
+            writePadding(offset, tail);
+            return bufferOffset;
+        }
+        return offset;
+    }
+
+    @Override
+    protected final void writeRelease(long offset, int recordLength) {
+        spRecordType(offset, MESSAGE_RECORD);
+        soRecordLength(offset, recordLength);
+        soProducerIndex(nextProducerIndex);
+    }
+
+    @Override
+    protected final long readAcquire() {
+        long consumerIndex = lpConsumerIndex();
+        if (consumerIndex >= producerIndexCache) {
+            producerIndexCache = lvProducerIndex();
+            if (consumerIndex >= producerIndexCache) {
+                return EOF;
+            }
+        }
+        long offset = offsetForIndex(consumerIndex);
+        if (lpRecordType(offset) == PADDING_RECORD) {
+            // a padding record is always followed by a message record
+            consumerIndex += lpRecordLength(offset);
+            soConsumerIndex(consumerIndex);
+            offset = bufferOffset;
+        }
+        return offset;
+    }
+
+    @Override
+    protected final void readRelease(long offset) {
+        soConsumerIndex(lpConsumerIndex() + alignedLength(lpRecordLength(offset)));
+    }
+}
@@ -28,6 +28,28 @@ public class {{className}}
         return true;
     }
 
+    public int read(int limit) {
+        limit = Math.min(limit, capacity());
+        final long consumerIndex = lpConsumerIndex();
+        int i = 0;
+        for (; i < limit; i++) {
+            final long pointer = offsetForIndex(consumerIndex + i);
+            if (isReadReleased(pointer)) {
+                break;
+            }
+            this.pointer = pointer;
+            receiver.accept(this);
+        }
+        if (i != 0) {
+            // publish the consumer index once, then hand the slots back to the producer
+            soConsumerIndex(consumerIndex + i);
+            for (int j = 0; j < i; j++) {
+                readRelease(offsetForIndex(consumerIndex + j));
+            }
+        }
+        return i;
+    }
+
     {{#fields}}
         public {{type}} get{{name}}() {
             return UNSAFE.get{{unsafeMethodSuffix}}(pointer + {{fieldOffset}}L);
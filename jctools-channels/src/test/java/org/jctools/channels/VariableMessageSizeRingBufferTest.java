@@ -0,0 +1,281 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.jctools.channels.mpsc.MpscVariableSizeRingBuffer;
+import org.jctools.channels.spsc.SpscVariableSizeRingBuffer;
+import org.jctools.util.UnsafeDirectByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class VariableMessageSizeRingBufferTest {
+
+    private static final int CAPACITY = 1024;
+
+    private final VariableMessageSizeRingBuffer rb;
+    private final boolean multiProducer;
+
+    public VariableMessageSizeRingBufferTest(String name, Supplier<VariableMessageSizeRingBuffer> factory,
+            boolean multiProducer) {
+        this.rb = factory.get();
+        this.multiProducer = multiProducer;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() {
+        final int size = VariableMessageSizeRingBuffer.getRequiredBufferSize(CAPACITY);
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(make("spsc-heap", () -> new SpscVariableSizeRingBuffer(ByteBuffer.allocate(size), CAPACITY), false));
+        list.add(make("spsc-direct", () -> new SpscVariableSizeRingBuffer(CAPACITY), false));
+        list.add(make("mpsc-heap", () -> new MpscVariableSizeRingBuffer(ByteBuffer.allocate(size), CAPACITY), true));
+        list.add(make("mpsc-direct", () -> new MpscVariableSizeRingBuffer(CAPACITY), true));
+        return list;
+    }
+
+    private static Object[] make(String name, Supplier<VariableMessageSizeRingBuffer> factory,
+            boolean multiProducer) {
+        return new Object[] { name, factory, multiProducer };
+    }
+
+    private static byte[] message(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void sizes() {
+        assertEquals(CAPACITY, rb.capacity());
+        assertEquals(CAPACITY / 8 - VariableMessageSizeRingBuffer.RECORD_HEADER_SIZE, rb.maxMessageLength());
+        assertTrue(rb.isEmpty());
+        assertTrue(rb.offer(new byte[5], 0, 5));
+        // header + message, aligned
+        assertEquals(16, rb.size());
+        assertTrue(rb.offer(new byte[0], 0, 0));
+        assertEquals(24, rb.size());
+    }
+
+    @Test
+    public void messagesOfAllLengthsWrapAround() {
+        final int maxLength = rb.maxMessageLength();
+        ByteBuffer dst = ByteBuffer.allocateDirect(maxLength);
+        byte[] copy = new byte[maxLength];
+        assertEquals(-1, rb.poll(dst));
+        int read = 0;
+        for (int i = 0; i < 5000; i++) {
+            byte[] msg = message(i % (maxLength + 1), i);
+            while (!rb.offer(msg, 0, msg.length)) {
+                dst.clear();
+                int length = rb.poll(dst);
+                dst.flip();
+                dst.get(copy, 0, length);
+                assertArrayEquals(message(read % (maxLength + 1), read), Arrays.copyOf(copy, length));
+                read++;
+            }
+        }
+        dst.clear();
+        while (rb.poll(dst) != -1) {
+            read++;
+            dst.clear();
+        }
+        assertEquals(5000, read);
+        assertTrue(rb.isEmpty());
+    }
+
+    @Test
+    public void offerUntilFullThenReadInPlace() {
+        ByteBuffer src = ByteBuffer.allocate(100);
+        int count = 0;
+        while (true) {
+            src.clear();
+            src.putInt(0, count);
+            if (!rb.offer(src)) {
+                assertEquals(100, src.remaining());
+                break;
+            }
+            assertEquals(0, src.remaining());
+            count++;
+        }
+        // 112b records
+        assertEquals(CAPACITY / 112, count);
+
+        final int[] expected = { 0 };
+        MessageHandler handler = new MessageHandler() {
+            @Override
+            public void onMessage(ByteBuffer buffer, int index, int length) {
+                assertEquals(100, length);
+                assertEquals(expected[0]++, buffer.getInt(index));
+            }
+        };
+        assertEquals(1, rb.read(handler, 1));
+        assertEquals(count - 1, rb.read(handler, Integer.MAX_VALUE));
+        assertTrue(rb.isEmpty());
+
+        // the next lap wraps, leaving padding at the buffer end
+        for (int i = 0; i < count; i++) {
+            src.clear();
+            src.putInt(0, i);
+            assertTrue(rb.offer(src));
+        }
+        expected[0] = 0;
+        assertEquals(count, rb.read(handler, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void pollIntoSmallBuffer() {
+        assertTrue(rb.offer(message(10, 1), 0, 10));
+        ByteBuffer dst = ByteBuffer.allocate(9);
+        try {
+            rb.poll(dst);
+            fail();
+        } catch (BufferOverflowException expected) {
+        }
+        // not consumed
+        dst = ByteBuffer.allocate(10);
+        assertEquals(10, rb.poll(dst));
+        assertArrayEquals(message(10, 1), dst.array());
+    }
+
+    @Test
+    public void readOnlyBuffers() {
+        ByteBuffer heap = ByteBuffer.wrap(message(10, 1)).asReadOnlyBuffer();
+        ByteBuffer direct = ByteBuffer.allocateDirect(10);
+        direct.put(message(10, 2)).flip();
+        assertTrue(rb.offer(heap));
+        assertEquals(0, heap.remaining());
+        assertTrue(rb.offer(direct.asReadOnlyBuffer()));
+        try {
+            rb.poll(ByteBuffer.allocate(10).asReadOnlyBuffer());
+            fail();
+        } catch (ReadOnlyBufferException expected) {
+        }
+        // not consumed
+        ByteBuffer dst = ByteBuffer.allocate(10);
+        assertEquals(10, rb.poll(dst));
+        assertArrayEquals(message(10, 1), dst.array());
+        dst.clear();
+        assertEquals(10, rb.poll(dst));
+        assertArrayEquals(message(10, 2), dst.array());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void offsetOverflow() {
+        rb.offer(new byte[16], Integer.MAX_VALUE, 8);
+    }
+
+    @Test
+    public void unalignedCopies() {
+        for (int off = 0; off < 8; off++) {
+            for (int len = 0; len < 20; len++) {
+                byte[] src = new byte[off + len];
+                System.arraycopy(message(len, off), 0, src, off, len);
+                assertTrue(rb.offer(src, off, len));
+                ByteBuffer dst = ByteBuffer.allocate(len + 8);
+                dst.position((off * 3) & 7);
+                assertEquals(len, rb.poll(dst));
+                assertArrayEquals(message(len, off),
+                        Arrays.copyOfRange(dst.array(), (off * 3) & 7, ((off * 3) & 7) + len));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void messageTooLong() {
+        rb.offer(new byte[rb.maxMessageLength() + 1], 0, rb.maxMessageLength() + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void misalignedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(VariableMessageSizeRingBuffer.getRequiredBufferSize(CAPACITY) + 1);
+        buffer.position(1);
+        new SpscVariableSizeRingBuffer(buffer.slice(), CAPACITY);
+    }
+
+    @Test
+    public void directBufferIsAligned() {
+        ByteBuffer buffer = UnsafeDirectByteBuffer.allocateAlignedByteBuffer(
+                VariableMessageSizeRingBuffer.getRequiredBufferSize(CAPACITY), 8);
+        new MpscVariableSizeRingBuffer(buffer, CAPACITY);
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentProducers() throws Exception {
+        final int producers = multiProducer ? 3 : 1;
+        final int messages = 20000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    ByteBuffer src = ByteBuffer.allocate(64);
+                    for (int i = 0; i < messages; i++) {
+                        src.clear();
+                        src.putInt(id).putInt(i);
+                        src.position(0).limit(8 + (i % 57));
+                        while (!rb.offer(src)) {
+                            Thread.yield();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            threads[p].start();
+        }
+        final int[] next = new int[producers];
+        MessageHandler handler = new MessageHandler() {
+            @Override
+            public void onMessage(ByteBuffer buffer, int index, int length) {
+                int id = buffer.getInt(index);
+                int i = buffer.getInt(index + 4);
+                assertEquals(next[id]++, i);
+                assertEquals(8 + (i % 57), length);
+            }
+        };
+        int total = 0;
+        while (total < producers * messages) {
+            int read = rb.read(handler, 100);
+            if (read == 0) {
+                assertNull(failure.get());
+                Thread.yield();
+            }
+            total += read;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertTrue(rb.isEmpty());
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels.ipc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jctools.channels.MessageHandler;
+import org.jctools.channels.ipc.IpcQueue.Role;
+import org.jctools.channels.ipc.IpcQueue.Type;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class IpcQueueTest {
+
+    private static final int CAPACITY = 4096;
+
+    private final Type type;
+    private final List<IpcQueue> opened = new ArrayList<IpcQueue>();
+    private File file;
+
+    public IpcQueueTest(Type type) {
+        this.type = type;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][] { { Type.SPSC }, { Type.MPSC } });
+    }
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("jctools-ipc", ".q");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void deleteFile() {
+        for (IpcQueue q : opened) {
+            q.close();
+        }
+        file.delete();
+    }
+
+    private IpcQueue open(Role role) throws IOException {
+        return open(role, IpcQueue.DEFAULT_LIVENESS_TIMEOUT_MILLIS);
+    }
+
+    private IpcQueue open(Role role, long livenessTimeoutMillis) throws IOException {
+        IpcQueue q = IpcQueue.open(file, type, CAPACITY, role, livenessTimeoutMillis);
+        opened.add(q);
+        return q;
+    }
+
+    private static byte[] message(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void headerIsValidatedOnAttach() throws IOException {
+        IpcQueue producer = open(Role.PRODUCER);
+        assertEquals(CAPACITY, producer.capacity());
+        assertEquals(type, producer.type());
+        Type otherType = type == Type.SPSC ? Type.MPSC : Type.SPSC;
+        try {
+            IpcQueue.open(file, otherType, CAPACITY, Role.CONSUMER);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            IpcQueue.open(file, type, 2 * CAPACITY, Role.CONSUMER);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // 0 accepts the existing capacity
+        IpcQueue consumer = IpcQueue.open(file, type, 0, Role.CONSUMER);
+        opened.add(consumer);
+        assertEquals(CAPACITY, consumer.capacity());
+    }
+
+    @Test
+    public void notAQueueFile() throws IOException {
+        ByteBuffer junk = ByteBuffer.allocate(IpcQueue.HEADER_SIZE + CAPACITY);
+        java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw");
+        try {
+            raf.getChannel().write(junk);
+        } finally {
+            raf.close();
+        }
+        try {
+            IpcQueue.open(file, type, CAPACITY, Role.CONSUMER);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void variableLengthMessagesWrapAround() throws IOException {
+        IpcQueue producer = open(Role.PRODUCER);
+        IpcQueue consumer = open(Role.CONSUMER);
+        ByteBuffer dst = ByteBuffer.allocate(producer.maxMessageLength());
+        assertEquals(-1, consumer.poll(dst));
+
+        int written = 0;
+        int read = 0;
+        // several laps, lengths chosen to never line up with the buffer end
+        for (int i = 0; i < 2000; i++) {
+            byte[] msg = message(i % (producer.maxMessageLength() + 1), i);
+            while (!producer.offer(msg, 0, msg.length)) {
+                dst.clear();
+                int length = consumer.poll(dst);
+                assertArrayEquals(message(read % (producer.maxMessageLength() + 1), read),
+                        Arrays.copyOf(dst.array(), length));
+                read++;
+            }
+            written++;
+        }
+        for (;;) {
+            dst.clear();
+            int length = consumer.poll(dst);
+            if (length == -1) {
+                break;
+            }
+            assertArrayEquals(message(read % (producer.maxMessageLength() + 1), read),
+                    Arrays.copyOf(dst.array(), length));
+            read++;
+        }
+        assertEquals(written, read);
+        assertTrue(consumer.isEmpty());
+    }
+
+    @Test
+    public void offerUntilFullThenReadInPlace() throws IOException {
+        IpcQueue producer = open(Role.PRODUCER);
+        IpcQueue consumer = open(Role.CONSUMER);
+        ByteBuffer src = ByteBuffer.allocateDirect(100);
+        int count = 0;
+        while (true) {
+            src.clear();
+            src.putInt(0, count);
+            if (!producer.offer(src)) {
+                break;
+            }
+            assertEquals(0, src.remaining());
+            count++;
+        }
+        // 112b records
+        assertEquals(CAPACITY / 112, count);
+        assertEquals(count * 112, producer.size());
+
+        final int[] expected = { 0 };
+        int handled = consumer.read(new MessageHandler() {
+            @Override
+            public void onMessage(ByteBuffer buffer, int index, int length) {
+                assertEquals(100, length);
+                assertEquals(expected[0]++, buffer.getInt(index));
+            }
+        }, Integer.MAX_VALUE);
+        assertEquals(count, handled);
+        assertTrue(producer.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void messageTooLong() throws IOException {
+        IpcQueue producer = open(Role.PRODUCER);
+        producer.offer(new byte[producer.maxMessageLength() + 1], 0, producer.maxMessageLength() + 1);
+    }
+
+    @Test
+    public void consumerRoleIsExclusive() throws IOException {
+        IpcQueue consumer = open(Role.CONSUMER);
+        assertTrue(consumer.isConsumerAlive());
+        try {
+            open(Role.CONSUMER);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        consumer.close();
+        assertFalse(consumer.isConsumerAlive());
+        open(Role.CONSUMER);
+    }
+
+    @Test
+    public void producerRoleIsExclusiveForSpscOnly() throws IOException {
+        open(Role.PRODUCER);
+        try {
+            open(Role.PRODUCER);
+            assertEquals(Type.MPSC, type);
+        } catch (IllegalStateException expected) {
+            assertEquals(Type.SPSC, type);
+        }
+    }
+
+    @Test
+    public void abandonedRoleIsTakenOverAndResumes() throws Exception {
+        IpcQueue producer = open(Role.PRODUCER, 50);
+        IpcQueue consumer = open(Role.CONSUMER);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(producer.offer(message(10, i), 0, 10));
+        }
+        ByteBuffer dst = ByteBuffer.allocate(10);
+        assertEquals(10, consumer.poll(dst));
+        assertArrayEquals(message(10, 0), dst.array());
+
+        // the consumer stops heart beating, i.e. its process is gone
+        Thread.sleep(100);
+        assertFalse(consumer.isConsumerAlive());
+        IpcQueue restarted = open(Role.CONSUMER);
+        assertTrue(restarted.heartbeat());
+        assertFalse(consumer.heartbeat());
+        assertEquals(consumer.consumerPid(), restarted.consumerPid());
+
+        for (int i = 1; i < 10; i++) {
+            dst.clear();
+            assertEquals(10, restarted.poll(dst));
+            assertArrayEquals(message(10, i), dst.array());
+        }
+        assertEquals(-1, restarted.poll(dst));
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentProducers() throws Exception {
+        final int producers = type == Type.SPSC ? 1 : 3;
+        final int messages = 20000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final IpcQueue producer = open(Role.PRODUCER);
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    ByteBuffer src = ByteBuffer.allocate(64);
+                    for (int i = 0; i < messages; i++) {
+                        src.clear();
+                        src.putInt(id).putInt(i);
+                        // vary the length, the rest is left as is
+                        src.position(0).limit(8 + (i % 57));
+                        while (!producer.offer(src)) {
+                            Thread.yield();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            threads[p].start();
+        }
+        IpcQueue consumer = open(Role.CONSUMER);
+        final int[] next = new int[producers];
+        int total = 0;
+        while (total < producers * messages) {
+            int read = consumer.read(new MessageHandler() {
+                @Override
+                public void onMessage(ByteBuffer buffer, int index, int length) {
+                    int id = buffer.getInt(index);
+                    int i = buffer.getInt(index + 4);
+                    assertEquals(next[id]++, i);
+                    assertEquals(8 + (i % 57), length);
+                }
+            }, 100);
+            if (read == 0) {
+                assertNull(failure.get());
+                Thread.yield();
+            }
+            total += read;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertTrue(consumer.isEmpty());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.channels.mpsc;
+
+import org.jctools.channels.ChannelConsumer;
+import org.jctools.channels.ChannelProducer;
+import org.jctools.channels.ChannelReceiver;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class MpscChannelTest {
+
+    private static final int CAPACITY = 8;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(128 * 1024);
+    private final MpscChannel<Example> channel = new MpscChannel<Example>(buffer, CAPACITY, Example.class);
+    private final ChannelProducer<Example> producer = channel.producer();
+
+    @Test
+    public void shouldWriteAndReadBatches() {
+        final long[] expected = { 0 };
+        ChannelConsumer consumer = channel.consumer(new ChannelReceiver<Example>() {
+            public void accept(Example element) {
+                assertEquals(expected[0]++, element.getBar());
+            }
+        });
+
+        long written = 0;
+        for (int round = 0; round < 10; round++) {
+            int claimed = producer.claim(5);
+            assertTrue(claimed > 0);
+            do {
+                producer.currentElement().setBar(written++);
+            } while (producer.next());
+            assertTrue(producer.commit());
+            assertFalse(producer.commit());
+            assertEquals(claimed, consumer.read(Integer.MAX_VALUE));
+            assertTrue(channel.isEmpty());
+        }
+        assertEquals(written, expected[0]);
+    }
+
+    @Test
+    public void shouldNotClaimABatchBeyondCapacity() {
+        assertEquals(CAPACITY, producer.claim(CAPACITY + 1));
+        assertTrue(producer.commit());
+        assertEquals(0, producer.claim(1));
+        assertEquals(CAPACITY, channel.size());
+    }
+
+    public interface Example {
+
+        long getBar();
+
+        void setBar(long value);
+
+    }
+}
@@ -102,6 +102,53 @@ public class SpscChannelTest {
         assertTrue(channel.size() <= MAXIMUM_CAPACITY);
     }
 
+    @Test
+    public void shouldWriteAndReadABatch() {
+        ChannelConsumer consumer = newConsumer();
+
+        assertEquals(3, producer.claim(3));
+        for (int i = 0; i < 3; i++) {
+            Example writer = producer.currentElement();
+            writer.setFoo(5);
+            writer.setBar(10L);
+            assertEquals(i < 2, producer.next());
+        }
+        // nothing is visible before the commit
+        assertFalse(consumer.read());
+        assertTrue(producer.commit());
+        assertFalse(producer.commit());
+        assertSize(3);
+
+        assertEquals(2, consumer.read(2));
+        assertSize(1);
+        assertEquals(1, consumer.read(10));
+        assertEmpty();
+        assertEquals(0, consumer.read(10));
+    }
+
+    @Test
+    public void shouldNotClaimABatchBeyondCapacity() {
+        assertEquals(MAXIMUM_CAPACITY, producer.claim(Integer.MAX_VALUE));
+        assertTrue(producer.commit());
+        assertEquals(0, producer.claim(1));
+        assertFalse(producer.claim());
+        assertFalse(producer.commit());
+
+        final int[] read = { 0 };
+        ChannelConsumer consumer = channel.consumer(new ChannelReceiver<Example>() {
+            public void accept(Example element) {
+                read[0]++;
+            }
+        });
+        assertEquals(MAXIMUM_CAPACITY, consumer.read(Integer.MAX_VALUE));
+        assertEquals(MAXIMUM_CAPACITY, read[0]);
+        assertEmpty();
+        // and around again
+        assertEquals(5, producer.claim(5));
+        assertTrue(producer.commit());
+        assertEquals(5, consumer.read(Integer.MAX_VALUE));
+    }
+
     private void assertSize(int expectedSize) {
         assertEquals(expectedSize, channel.size());
     }
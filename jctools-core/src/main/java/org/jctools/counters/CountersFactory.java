@@ -27,4 +27,8 @@ public final class CountersFactory {
     public static FixedSizeStripedLongCounter createFixedSizeStripedCounterV8(int stripesCount) {
         return new FixedSizeStripedLongCounterV8(stripesCount);
     }
+
+    public static DynamicStripedLongCounter createDynamicStripedCounter(int maxStripes) {
+        return new DynamicStripedLongCounter(maxStripes);
+    }
 }
@@ -0,0 +1,250 @@
+package org.jctools.counters;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+import org.jctools.util.PortableJvmInfo;
+import org.jctools.util.Pow2;
+
+abstract class DynamicStripedLongCellPrePad {
+    long l01, l02, l03, l04, l05, l06, l07, l08;
+    long l9, l10, l11, l12, l13, l14, l15;
+}
+
+abstract class DynamicStripedLongCellValue extends DynamicStripedLongCellPrePad {
+    private static final long VALUE_OFFSET = fieldOffset(DynamicStripedLongCellValue.class, "value");
+
+    volatile long value;
+
+    DynamicStripedLongCellValue(long value) {
+        this.value = value;
+    }
+
+    final boolean cas(long expect, long newValue) {
+        return UNSAFE.compareAndSwapLong(this, VALUE_OFFSET, expect, newValue);
+    }
+}
+
+/**
+ * A stripe, padded so that stripes updated by different threads do not
+ * share a cache line.
+ */
+final class DynamicStripedLongCell extends DynamicStripedLongCellValue {
+    long l02, l03, l04, l05, l06, l07, l08;
+    long l9, l10, l11, l12, l13, l14, l15, l16;
+
+    DynamicStripedLongCell(long value) {
+        super(value);
+    }
+}
+
+abstract class DynamicStripedLongPrePad {
+    long l01, l02, l03, l04, l05, l06, l07, l08;
+    long l9, l10, l11, l12, l13, l14, l15;
+}
+
+abstract class DynamicStripedLongFields extends DynamicStripedLongPrePad {
+    private static final long BASE_OFFSET = fieldOffset(DynamicStripedLongFields.class, "base");
+    private static final long CELLS_BUSY_OFFSET = fieldOffset(DynamicStripedLongFields.class, "cellsBusy");
+
+    protected final long identity;
+    protected final int maxStripes;
+    // updated while uncontended, the only value until the first CAS failure
+    protected volatile long base;
+    // null until the first CAS failure, then a power of 2 length up to maxStripes
+    protected volatile DynamicStripedLongCell[] cells;
+    // spin lock guarding the creation of cells and the growth of the array
+    protected volatile int cellsBusy;
+
+    protected DynamicStripedLongFields(long identity, int maxStripes) {
+        if (maxStripes <= 0) {
+            throw new IllegalArgumentException("Expecting a maxStripes that is larger than 0");
+        }
+        this.identity = identity;
+        this.maxStripes = Pow2.roundToPowerOfTwo(maxStripes);
+        base = identity;
+    }
+
+    protected final boolean casBase(long expect, long newValue) {
+        return UNSAFE.compareAndSwapLong(this, BASE_OFFSET, expect, newValue);
+    }
+
+    protected final boolean casCellsBusy() {
+        return UNSAFE.compareAndSwapInt(this, CELLS_BUSY_OFFSET, 0, 1);
+    }
+}
+
+/**
+ * Common mechanics of the dynamically striped values: updates go to a single
+ * base value until two threads collide on it, then to an array of padded
+ * cells indexed by a per-thread probe. A thread failing a CAS on its cell
+ * moves to another cell, and a thread failing on cells twice in a row
+ * doubles the array, up to the maximum number of stripes. An idle value costs
+ * a single field, a contended one grows about a cell per contending thread.
+ * <p>
+ * The updates fold the new value into the cell with {@link #combine}, which
+ * must be associative and commutative, and for which {@link #identity} is the
+ * neutral element. Reads fold the base and all cells, so they are not atomic
+ * with regard to concurrent updates.
+ */
+abstract class DynamicStripedLong extends DynamicStripedLongFields {
+    long l02, l03, l04, l05, l06, l07, l08;
+    long l9, l10, l11, l12, l13, l14, l15, l16;
+
+    protected DynamicStripedLong(long identity, int maxStripes) {
+        super(identity, maxStripes);
+    }
+
+    protected DynamicStripedLong(long identity) {
+        this(identity, PortableJvmInfo.CPUs);
+    }
+
+    protected abstract long combine(long current, long x);
+
+    /**
+     * @return the number of stripes currently used, 1 until contention is met
+     */
+    public int stripes() {
+        DynamicStripedLongCell[] cs = cells;
+        return cs == null ? 1 : cs.length;
+    }
+
+    protected final void accumulate(long x) {
+        DynamicStripedLongCell[] cs = cells;
+        if (cs == null) {
+            long b = base;
+            long u = combine(b, x);
+            if (u == b || casBase(b, u)) {
+                return;
+            }
+        } else {
+            DynamicStripedLongCell c = cs[ThreadProbe.get() & (cs.length - 1)];
+            if (c != null) {
+                long v = c.value;
+                long u = combine(v, x);
+                if (u == v || c.cas(v, u)) {
+                    return;
+                }
+            }
+        }
+        contendedUpdate(x);
+    }
+
+    private void contendedUpdate(long x) {
+        int probe = ThreadProbe.get();
+        boolean collided = false;
+        for (;;) {
+            DynamicStripedLongCell[] cs = cells;
+            if (cs != null) {
+                int n = cs.length;
+                int index = probe & (n - 1);
+                DynamicStripedLongCell c = cs[index];
+                if (c == null) {
+                    if (cellsBusy == 0 && casCellsBusy()) {
+                        boolean created = false;
+                        try {
+                            // the cells may have grown since we read them
+                            if (cells == cs && cs[index] == null) {
+                                cs[index] = new DynamicStripedLongCell(combine(identity, x));
+                                created = true;
+                            }
+                        } finally {
+                            cellsBusy = 0;
+                        }
+                        if (created) {
+                            return;
+                        }
+                        continue;
+                    }
+                    collided = false;
+                } else {
+                    long v = c.value;
+                    long u = combine(v, x);
+                    if (u == v || c.cas(v, u)) {
+                        return;
+                    }
+                    if (n >= maxStripes || cells != cs) {
+                        // can't grow, or someone else did
+                        collided = false;
+                    } else if (!collided) {
+                        // retry on another cell before growing
+                        collided = true;
+                    } else if (cellsBusy == 0 && casCellsBusy()) {
+                        try {
+                            if (cells == cs) {
+                                DynamicStripedLongCell[] grown = new DynamicStripedLongCell[n << 1];
+                                System.arraycopy(cs, 0, grown, 0, n);
+                                cells = grown;
+                            }
+                        } finally {
+                            cellsBusy = 0;
+                        }
+                        collided = false;
+                        continue;
+                    }
+                }
+                probe = ThreadProbe.advance(probe);
+            } else if (cellsBusy == 0 && cells == null && casCellsBusy()) {
+                boolean created = false;
+                try {
+                    if (cells == null) {
+                        DynamicStripedLongCell[] initial = new DynamicStripedLongCell[Math.min(2, maxStripes)];
+                        initial[probe & (initial.length - 1)] = new DynamicStripedLongCell(combine(identity, x));
+                        cells = initial;
+                        created = true;
+                    }
+                } finally {
+                    cellsBusy = 0;
+                }
+                if (created) {
+                    return;
+                }
+            } else {
+                // someone else is creating the cells, fall back to the base
+                long b = base;
+                long u = combine(b, x);
+                if (u == b || casBase(b, u)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    protected final long fold() {
+        long result = base;
+        DynamicStripedLongCell[] cs = cells;
+        if (cs != null) {
+            for (DynamicStripedLongCell c : cs) {
+                if (c != null) {
+                    result = combine(result, c.value);
+                }
+            }
+        }
+        return result;
+    }
+
+    protected final long foldThenReset() {
+        long result = getAndResetBase();
+        DynamicStripedLongCell[] cs = cells;
+        if (cs != null) {
+            for (DynamicStripedLongCell c : cs) {
+                if (c != null) {
+                    long v;
+                    do {
+                        v = c.value;
+                    } while (!c.cas(v, identity));
+                    result = combine(result, v);
+                }
+            }
+        }
+        return result;
+    }
+
+    private long getAndResetBase() {
+        long b;
+        do {
+            b = base;
+        } while (!casBase(b, identity));
+        return b;
+    }
+}
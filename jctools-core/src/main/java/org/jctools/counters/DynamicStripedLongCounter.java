@@ -0,0 +1,55 @@
+package org.jctools.counters;
+
+/**
+ * Striped counter which starts with a single value and adds stripes only as
+ * contention shows up, in the manner of {@link java.util.concurrent.atomic.LongAdder}.
+ * Threads colliding on a stripe move to another one, and the number of
+ * stripes doubles while collisions go on, up to the maximum given. An idle
+ * counter is as cheap as an {@link java.util.concurrent.atomic.AtomicLong},
+ * while a saturated one spreads its threads like a
+ * {@link FixedSizeStripedLongCounter} of the maximum size.
+ * <p>
+ * {@link #getAndReset()} sums the stripes then resets them, an increment
+ * racing with it is either part of the returned sum or left in the counter.
+ */
+public class DynamicStripedLongCounter extends DynamicStripedLong implements Counter {
+
+    /**
+     * @param maxStripes the most stripes the counter grows to, rounded up to the next power of 2
+     */
+    public DynamicStripedLongCounter(int maxStripes) {
+        super(0L, maxStripes);
+    }
+
+    /**
+     * A counter growing to as many stripes as there are CPUs.
+     */
+    public DynamicStripedLongCounter() {
+        super(0L);
+    }
+
+    @Override
+    protected long combine(long current, long x) {
+        return current + x;
+    }
+
+    @Override
+    public void inc() {
+        accumulate(1L);
+    }
+
+    @Override
+    public void inc(long delta) {
+        accumulate(delta);
+    }
+
+    @Override
+    public long get() {
+        return fold();
+    }
+
+    @Override
+    public long getAndReset() {
+        return foldThenReset();
+    }
+}
@@ -0,0 +1,53 @@
+package org.jctools.counters;
+
+/**
+ * Tracks the largest value it is given, striped like a {@link DynamicStripedLongCounter}
+ * so that concurrent updates do not contend, in the manner of
+ * {@link java.util.concurrent.atomic.LongAccumulator} with {@code Math::max}.
+ * An update which does not change its stripe does not write to it, so once
+ * the largest value is in place updates are read-only.
+ * <p>
+ * An empty instance, or one just reset, reports {@link Long#MIN_VALUE}.
+ */
+public class DynamicStripedLongMax extends DynamicStripedLong {
+
+    /**
+     * @param maxStripes the most stripes the value grows to, rounded up to the next power of 2
+     */
+    public DynamicStripedLongMax(int maxStripes) {
+        super(Long.MIN_VALUE, maxStripes);
+    }
+
+    /**
+     * A value growing to as many stripes as there are CPUs.
+     */
+    public DynamicStripedLongMax() {
+        super(Long.MIN_VALUE);
+    }
+
+    @Override
+    protected long combine(long current, long x) {
+        return Math.max(current, x);
+    }
+
+    /**
+     * Records a value, the result of {@link #get()} is then at least this value.
+     */
+    public void update(long x) {
+        accumulate(x);
+    }
+
+    /**
+     * @return the largest value recorded
+     */
+    public long get() {
+        return fold();
+    }
+
+    /**
+     * @return the largest value recorded before the reset
+     */
+    public long getAndReset() {
+        return foldThenReset();
+    }
+}
@@ -0,0 +1,53 @@
+package org.jctools.counters;
+
+/**
+ * Tracks the smallest value it is given, striped like a {@link DynamicStripedLongCounter}
+ * so that concurrent updates do not contend, in the manner of
+ * {@link java.util.concurrent.atomic.LongAccumulator} with {@code Math::min}.
+ * An update which does not change its stripe does not write to it, so once
+ * the smallest value is in place updates are read-only.
+ * <p>
+ * An empty instance, or one just reset, reports {@link Long#MAX_VALUE}.
+ */
+public class DynamicStripedLongMin extends DynamicStripedLong {
+
+    /**
+     * @param maxStripes the most stripes the value grows to, rounded up to the next power of 2
+     */
+    public DynamicStripedLongMin(int maxStripes) {
+        super(Long.MAX_VALUE, maxStripes);
+    }
+
+    /**
+     * A value growing to as many stripes as there are CPUs.
+     */
+    public DynamicStripedLongMin() {
+        super(Long.MAX_VALUE);
+    }
+
+    @Override
+    protected long combine(long current, long x) {
+        return Math.min(current, x);
+    }
+
+    /**
+     * Records a value, the result of {@link #get()} is then at most this value.
+     */
+    public void update(long x) {
+        accumulate(x);
+    }
+
+    /**
+     * @return the smallest value recorded
+     */
+    public long get() {
+        return fold();
+    }
+
+    /**
+     * @return the smallest value recorded before the reset
+     */
+    public long getAndReset() {
+        return foldThenReset();
+    }
+}
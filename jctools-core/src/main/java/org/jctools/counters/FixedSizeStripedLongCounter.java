@@ -2,8 +2,6 @@ package org.jctools.counters;
 
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 import org.jctools.util.PortableJvmInfo;
 import org.jctools.util.Pow2;
 
@@ -41,17 +39,6 @@ public abstract class FixedSizeStripedLongCounter extends FixedSizeStripedLongCo
     long l02, l03, l04, l05, l06, l07, l08;
     long l9, l10, l11, l12, l13, l14, l15, l16;
 
-    private static final long PROBE = getProbeOffset();
-
-    private static long getProbeOffset() {
-        try {
-            return UNSAFE.objectFieldOffset(Thread.class.getDeclaredField("threadLocalRandomProbe"));
-
-        } catch (NoSuchFieldException e) {
-            return -1L;
-        }
-    }
-
     public FixedSizeStripedLongCounter(int stripesCount) {
         super(stripesCount);
     }
@@ -97,38 +84,7 @@ public abstract class FixedSizeStripedLongCounter extends FixedSizeStripedLongCo
     protected abstract long getAndReset(long[] cells, long offset);
 
     private int index() {
-        return probe() & mask;
-    }
-
-
-    /**
-     * Returns the probe value for the current thread.
-     * If target JDK version is 7 or higher, than ThreadLocalRandom-specific
-     * value will be used, xorshift with thread id otherwise.
-     */
-    private int probe() {
-        // Fast path for reliable well-distributed probe, available from JDK 7+.
-        // As long as PROBE is final this branch will be inlined.
-        if (PROBE != -1) {
-            int probe;
-            if ((probe = UNSAFE.getInt(Thread.currentThread(), PROBE)) == 0) {
-                ThreadLocalRandom.current(); // force initialization
-                probe = UNSAFE.getInt(Thread.currentThread(), PROBE);
-            }
-            return probe;
-        }
-
-        /*
-         * Else use much worse (for values distribution) method:
-         * Mix thread id with golden ratio and then xorshift it
-         * to spread consecutive ids (see Knuth multiplicative method as reference).
-         */
-        int probe = (int) ((Thread.currentThread().getId() * 0x9e3779b9) & Integer.MAX_VALUE);
-        // xorshift
-        probe ^= probe << 13;
-        probe ^= probe >>> 17;
-        probe ^= probe << 5;
-        return probe;
+        return ThreadProbe.get() & mask;
     }
 }
 
@@ -0,0 +1,296 @@
+package org.jctools.counters;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+
+import org.jctools.util.PortableJvmInfo;
+import org.jctools.util.Pow2;
+import org.jctools.util.RangeUtil;
+import org.jctools.util.UnsafeAccess;
+
+abstract class StripedLongHistogramPrePad {
+    long l01, l02, l03, l04, l05, l06, l07, l08;
+    long l9, l10, l11, l12, l13, l14, l15;
+}
+
+abstract class StripedLongHistogramFields extends StripedLongHistogramPrePad {
+    protected static final int CACHE_LINE_IN_LONGS = PortableJvmInfo.CACHE_LINE_SIZE / 8;
+    protected static final long COUNTS_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+
+    protected final long maxValue;
+    protected final int precisionBits;
+    protected final int bucketCount;
+    // each stripe is a row of buckets, rows start on their own cache line and are a cache line apart
+    protected final int rowLength;
+    protected final long[] counts;
+    protected final int mask;
+
+    protected StripedLongHistogramFields(long maxValue, int precisionBits, int stripesCount) {
+        RangeUtil.checkPositive(maxValue, "maxValue");
+        RangeUtil.checkGreaterThanOrEqual(precisionBits, 1, "precisionBits");
+        RangeUtil.checkLessThanOrEqual(precisionBits, StripedLongHistogram.MAX_PRECISION_BITS, "precisionBits");
+        RangeUtil.checkGreaterThanOrEqual(stripesCount, 1, "stripesCount");
+        this.maxValue = maxValue;
+        this.precisionBits = precisionBits;
+        bucketCount = StripedLongHistogram.bucketIndex(maxValue, precisionBits) + 1;
+        int stripes = Pow2.roundToPowerOfTwo(stripesCount);
+        rowLength = (bucketCount + CACHE_LINE_IN_LONGS - 1) / CACHE_LINE_IN_LONGS * CACHE_LINE_IN_LONGS
+            + CACHE_LINE_IN_LONGS;
+        counts = new long[CACHE_LINE_IN_LONGS + stripes * rowLength];
+        mask = stripes - 1;
+    }
+}
+
+/**
+ * Concurrent histogram of {@code long} values, such as latencies, with log-linear buckets: each power of 2 range
+ * of values is split into 2<sup>precisionBits</sup> linear buckets, so a bucket is at most
+ * 1/2<sup>precisionBits</sup> of the values it holds wide (values below 2<sup>precisionBits</sup> have a bucket
+ * each). With 3 precision bits the full {@code long} range takes 488 buckets, for a relative error below 12.5%.
+ * <p>
+ * The buckets are striped like a {@link FixedSizeStripedLongCounter}, each stripe a padded row of buckets picked
+ * by the recording thread, so {@link #record(long)} is a single add to a cache line other threads rarely write
+ * to. Recording does not allocate.
+ * <p>
+ * Readers take a {@link Snapshot} of the whole histogram, {@link #snapshotAndReset()} resets the buckets as it
+ * reads them for interval measurements: a value recorded concurrently is either in the snapshot or left for the
+ * next one. Snapshots are not atomic with regard to concurrent recording.
+ */
+public class StripedLongHistogram extends StripedLongHistogramFields {
+    long l02, l03, l04, l05, l06, l07, l08;
+    long l9, l10, l11, l12, l13, l14, l15, l16;
+
+    public static final int MAX_PRECISION_BITS = 16;
+
+    /**
+     * @param maxValue the largest value told apart, larger values are recorded as this value
+     * @param precisionBits the number of linear buckets per power of 2 is 2 to this power, 1 to {@link #MAX_PRECISION_BITS}
+     * @param stripesCount the number of stripes, rounded up to the next power of 2
+     */
+    public StripedLongHistogram(long maxValue, int precisionBits, int stripesCount) {
+        super(maxValue, precisionBits, stripesCount);
+    }
+
+    /**
+     * A histogram striped by the number of CPUs.
+     */
+    public StripedLongHistogram(long maxValue, int precisionBits) {
+        this(maxValue, precisionBits, PortableJvmInfo.CPUs);
+    }
+
+    /**
+     * Record one occurrence of the value.
+     *
+     * @param value positive or zero, values above the max value are recorded as the max value
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value) {
+        record(value, 1L);
+    }
+
+    /**
+     * Record a number of occurrences of the value.
+     *
+     * @param value positive or zero, values above the max value are recorded as the max value
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value, long count) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value: " + value + " (expected: >= 0)");
+        }
+        final int bucket = bucketIndex(Math.min(value, maxValue), precisionBits);
+        final long offset = offset(ThreadProbe.get() & mask, bucket);
+        if (UnsafeAccess.SUPPORTS_GET_AND_SET) {
+            UNSAFE.getAndAddLong(counts, offset, count);
+        } else {
+            long v;
+            do {
+                v = UNSAFE.getLongVolatile(counts, offset);
+            } while (!UNSAFE.compareAndSwapLong(counts, offset, v, v + count));
+        }
+    }
+
+    /**
+     * @return the counts of all buckets, summed over the stripes
+     */
+    public Snapshot snapshot() {
+        final long[] result = new long[bucketCount];
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                result[bucket] += UNSAFE.getLongVolatile(counts, offset(stripe, bucket));
+            }
+        }
+        return new Snapshot(result, precisionBits, maxValue);
+    }
+
+    /**
+     * @return the counts of all buckets, summed over the stripes, the buckets are reset as they are read
+     */
+    public Snapshot snapshotAndReset() {
+        final long[] result = new long[bucketCount];
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                result[bucket] += getAndReset(offset(stripe, bucket));
+            }
+        }
+        return new Snapshot(result, precisionBits, maxValue);
+    }
+
+    private long getAndReset(long offset) {
+        if (UnsafeAccess.SUPPORTS_GET_AND_SET) {
+            return UNSAFE.getAndSetLong(counts, offset, 0L);
+        }
+        long v;
+        do {
+            v = UNSAFE.getLongVolatile(counts, offset);
+        } while (!UNSAFE.compareAndSwapLong(counts, offset, v, 0L));
+        return v;
+    }
+
+    private long offset(int stripe, int bucket) {
+        return COUNTS_ARRAY_BASE + ((long) (CACHE_LINE_IN_LONGS + stripe * rowLength + bucket) << 3);
+    }
+
+    static int bucketIndex(long value, int precisionBits) {
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent < precisionBits) {
+            return (int) value;
+        }
+        final int shift = exponent - precisionBits;
+        // the precision bits which follow the leading 1 pick the linear bucket
+        return ((shift + 1) << precisionBits) + (int) ((value >>> shift) & ((1 << precisionBits) - 1));
+    }
+
+    static long bucketLowestValue(int bucket, int precisionBits) {
+        final int group = bucket >>> precisionBits;
+        if (group == 0) {
+            return bucket;
+        }
+        final long subBucket = bucket & ((1 << precisionBits) - 1);
+        return ((1L << precisionBits) + subBucket) << (group - 1);
+    }
+
+    static long bucketHighestValue(int bucket, int precisionBits) {
+        final int group = bucket >>> precisionBits;
+        if (group == 0) {
+            return bucket;
+        }
+        return bucketLowestValue(bucket, precisionBits) + (1L << (group - 1)) - 1;
+    }
+
+    /**
+     * The bucket counts of a {@link StripedLongHistogram} at a point in time, with the percentiles and other
+     * aggregates computed from them. Values are reported as the highest value of their bucket, except for the
+     * minimum which is reported as the lowest.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final int precisionBits;
+        private final long maxValue;
+        private final long totalCount;
+
+        Snapshot(long[] counts, int precisionBits, long maxValue) {
+            this.counts = counts;
+            this.precisionBits = precisionBits;
+            this.maxValue = maxValue;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            totalCount = total;
+        }
+
+        /**
+         * @return the number of values recorded
+         */
+        public long totalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return the number of buckets
+         */
+        public int bucketCount() {
+            return counts.length;
+        }
+
+        /**
+         * @return the number of values recorded in the bucket
+         */
+        public long count(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * @return the lowest value of the bucket
+         */
+        public long bucketLowestValue(int bucket) {
+            return StripedLongHistogram.bucketLowestValue(bucket, precisionBits);
+        }
+
+        /**
+         * @return the highest value of the bucket, at most the max value of the histogram
+         */
+        public long bucketHighestValue(int bucket) {
+            return Math.min(StripedLongHistogram.bucketHighestValue(bucket, precisionBits), maxValue);
+        }
+
+        /**
+         * @param percentile from 0 to 100
+         * @return the highest value of the bucket holding the percentile, 0 if the snapshot is empty
+         */
+        public long valueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0 to 100)");
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(percentile / 100 * totalCount));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return bucketHighestValue(bucket);
+                }
+            }
+            return 0L;
+        }
+
+        /**
+         * @return the lowest value of the lowest bucket recorded to, 0 if the snapshot is empty
+         */
+        public long minValue() {
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] != 0) {
+                    return bucketLowestValue(bucket);
+                }
+            }
+            return 0L;
+        }
+
+        /**
+         * @return the highest value of the highest bucket recorded to, 0 if the snapshot is empty
+         */
+        public long maxValue() {
+            for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+                if (counts[bucket] != 0) {
+                    return bucketHighestValue(bucket);
+                }
+            }
+            return 0L;
+        }
+
+        /**
+         * @return the mean of the recorded values, taking the middle of each bucket, 0 if the snapshot is empty
+         */
+        public double mean() {
+            if (totalCount == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] != 0) {
+                    final double middle = (bucketLowestValue(bucket) / 2.0) + (bucketHighestValue(bucket) / 2.0);
+                    sum += middle * counts[bucket];
+                }
+            }
+            return sum / totalCount;
+        }
+    }
+}
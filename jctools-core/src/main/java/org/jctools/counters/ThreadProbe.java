@@ -0,0 +1,70 @@
+package org.jctools.counters;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The per-thread hash the striped counters use to pick a stripe.
+ */
+final class ThreadProbe {
+    private static final long PROBE = getProbeOffset();
+
+    private ThreadProbe() {
+    }
+
+    private static long getProbeOffset() {
+        try {
+            return UNSAFE.objectFieldOffset(Thread.class.getDeclaredField("threadLocalRandomProbe"));
+
+        } catch (NoSuchFieldException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Returns the probe value for the current thread.
+     * If target JDK version is 7 or higher, than ThreadLocalRandom-specific
+     * value will be used, xorshift with thread id otherwise.
+     */
+    static int get() {
+        // Fast path for reliable well-distributed probe, available from JDK 7+.
+        // As long as PROBE is final this branch will be inlined.
+        if (PROBE != -1) {
+            int probe;
+            if ((probe = UNSAFE.getInt(Thread.currentThread(), PROBE)) == 0) {
+                ThreadLocalRandom.current(); // force initialization
+                probe = UNSAFE.getInt(Thread.currentThread(), PROBE);
+            }
+            return probe;
+        }
+
+        /*
+         * Else use much worse (for values distribution) method:
+         * Mix thread id with golden ratio and then xorshift it
+         * to spread consecutive ids (see Knuth multiplicative method as reference).
+         */
+        int probe = (int) ((Thread.currentThread().getId() * 0x9e3779b9) & Integer.MAX_VALUE);
+        return xorshift(probe);
+    }
+
+    /**
+     * Moves the current thread to a new probe value, after it collided with
+     * another thread on the stripe picked by the old one. Without the JDK 7+
+     * probe field the new value only lasts for the current call.
+     */
+    static int advance(int probe) {
+        probe = xorshift(probe);
+        if (PROBE != -1) {
+            UNSAFE.putInt(Thread.currentThread(), PROBE, probe);
+        }
+        return probe;
+    }
+
+    private static int xorshift(int probe) {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        return probe;
+    }
+}
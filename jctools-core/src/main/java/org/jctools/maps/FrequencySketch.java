@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import org.jctools.util.Pow2;
+
+/**
+ * A Count-Min sketch of 4-bit counters estimating how often an element was seen recently, used as the
+ * TinyLFU admission filter of {@link NonBlockingBoundedCache}.
+ * <p>
+ * Each element maps to 4 counters, one per hash function, all held in the same 64 bit word (16 counters).
+ * The estimate is the minimum of the 4. Once the number of increments reaches 10 times the table size all
+ * counters are halved, which ages out the history and keeps the counters from saturating.
+ * <p>
+ * Not thread safe, all access is expected to happen under the owner's eviction lock.
+ * <p>
+ * Adapted from the {@code FrequencySketch} of <a href="https://github.com/ben-manes/caffeine">Caffeine</a>
+ * by Ben Manes, licensed under the Apache License, Version 2.0.
+ */
+final class FrequencySketch {
+  private static final long[] SEED = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK   = 0x1111111111111111L;
+  private static final int MAX_COUNT = 15;
+
+  private final long[] _table;
+  private final int _tableMask;
+  private final int _sampleSize;
+  private int _size;
+
+  /** @param maximumSize the expected number of distinct elements being tracked */
+  FrequencySketch( long maximumSize ) {
+    final int max = (int) Math.min(Math.max(maximumSize, 1), Pow2.MAX_POW2);
+    _table = new long[Pow2.roundToPowerOfTwo(max)];
+    _tableMask = _table.length - 1;
+    _sampleSize = (int) Math.min(10L * max, Integer.MAX_VALUE);
+  }
+
+  /** @return the estimated number of occurrences of {@code e}, up to 15 */
+  int frequency( Object e ) {
+    final int hash = spread(e.hashCode());
+    final int start = (hash & 3) << 2;
+    int frequency = MAX_COUNT;
+    for( int i = 0; i < 4; i++ ) {
+      final int index = indexOf(hash, i);
+      final int count = (int) ((_table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Increments the counters of {@code e}, aging all counters when the sample size is reached. */
+  void increment( Object e ) {
+    final int hash = spread(e.hashCode());
+    final int start = (hash & 3) << 2;
+    boolean added = false;
+    for( int i = 0; i < 4; i++ )
+      added |= incrementAt(indexOf(hash, i), start + i);
+    if( added && ++_size == _sampleSize )
+      reset();
+  }
+
+  private boolean incrementAt( int i, int j ) {
+    final int offset = j << 2;
+    final long mask = 0xfL << offset;
+    if( (_table[i] & mask) != mask ) {
+      _table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves all counters, the truncated odd counts are subtracted from the sample size. */
+  private void reset() {
+    int odd = 0;
+    for( int i = 0; i < _table.length; i++ ) {
+      odd += Long.bitCount(_table[i] & ONE_MASK);
+      _table[i] = (_table[i] >>> 1) & RESET_MASK;
+    }
+    _size = (_size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf( int hash, int i ) {
+    long h = (hash + SEED[i]) * SEED[i];
+    h += h >>> 32;
+    return ((int) h) & _tableMask;
+  }
+
+  /** Applies a supplemental hash to guard against poor quality {@link Object#hashCode()}s. */
+  private static int spread( int x ) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
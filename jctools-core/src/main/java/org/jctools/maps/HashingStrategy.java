@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import java.io.Serializable;
+
+/**
+ * How a {@link NonBlockingHashMap} places its keys: the spreading of key
+ * hashCodes into full hashes, the sequence of slots probed for a key, and
+ * how many probes are allowed before a lookup gives up on a table (and a put
+ * forces a resize).  The strategy is fixed when the map is created.
+ *
+ * <p>A strategy must be a pure function of its arguments: every operation
+ * on a map has to agree on where a key may be.  Any probe sequence must
+ * visit distinct slots for at least {@link #reprobeLimit} probes.  Strategies
+ * are {@link Serializable} so that the maps using them stay serializable.
+ *
+ * <p>The {@link #DEFAULT} strategy is the one {@link NonBlockingHashMap} has
+ * always used.  Low entropy keys, such as small composite keys whose fields
+ * hash alike, may cluster with it; a {@link #seeded} strategy mixes all bits
+ * of the hashCode with a per-map seed, and its triangular probe sequence
+ * breaks up runs of neighbouring slots.  {@link
+ * NonBlockingHashMap#probeHistogram()} shows how well a strategy spreads
+ * the actual keys.
+ */
+public abstract class HashingStrategy implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** Too many reprobes then force a table-resize */
+  static final int REPROBE_LIMIT=10;
+
+  /** Returns the full hash of a key, the low bits of which pick its first slot.
+   *  @throws NullPointerException if the key is null */
+  public abstract int hash( Object key );
+
+  /** Returns the slot to probe after a miss at slot {@code idx}.
+   *  @param idx the slot probed last
+   *  @param reprobes the number of probes done so far, 1 or more
+   *  @param mask the table length minus 1 (table lengths are powers of 2)
+   *  @return the next slot, between 0 and {@code mask} */
+  public abstract int probe( int idx, int reprobes, int mask );
+
+  /** Returns the number of probes after which a key is known to be absent
+   *  from a table of the given length (a put resizes the table instead).
+   *  @param len the table length, a power of 2
+   *  @return the reprobe limit, at least 1 */
+  public abstract int reprobeLimit( int len );
+
+  /** The original NonBlockingHashMap strategy: a fixed bit-mixer of the
+   *  hashCode, linear probing, and a limit of {@code 10 + len/16} probes. */
+  public static final HashingStrategy DEFAULT = new Default();
+
+  /** Returns a strategy mixing every hashCode bit with the given seed
+   *  (using the MurmurHash3 finalizer), with triangular probing (slots
+   *  idx+1, idx+3, idx+6, ...) and the default reprobe limit.  Using a
+   *  different seed per map keeps keys clustering in one map from clustering
+   *  in others alike.
+   *  @param seed the seed, e.g. from a {@link java.util.Random} */
+  public static HashingStrategy seeded( int seed ) { return new Seeded(seed); }
+
+  private static final class Default extends HashingStrategy {
+    private static final long serialVersionUID = 1L;
+    // Helper function to spread lousy hashCodes.  Throws NPE for null Key, on
+    // purpose - as the first place to conveniently toss the required NPE for a
+    // null Key.
+    @Override public int hash( Object key ) {
+      int h = key.hashCode();     // The real hashCode call
+      h ^= (h>>>20) ^ (h>>>12);
+      h ^= (h>>> 7) ^ (h>>> 4);
+      h += h<<7; // smear low bits up high, for hashcodes that only differ by 1
+      return h;
+    }
+    @Override public int probe( int idx, int reprobes, int mask ) { return (idx+1)&mask; }
+    @Override public int reprobeLimit( int len ) { return REPROBE_LIMIT + (len>>4); }
+    // Keep the singleton on deserialization
+    private Object readResolve() { return DEFAULT; }
+  }
+
+  private static final class Seeded extends HashingStrategy {
+    private static final long serialVersionUID = 1L;
+    private final int _seed;
+    Seeded( int seed ) { _seed = seed; }
+    @Override public int hash( Object key ) {
+      int h = key.hashCode() ^ _seed;
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      return h;
+    }
+    // The triangular numbers visit every slot of a power of 2 table
+    @Override public int probe( int idx, int reprobes, int mask ) { return (idx+reprobes)&mask; }
+    @Override public int reprobeLimit( int len ) { return REPROBE_LIMIT + (len>>4); }
+  }
+}
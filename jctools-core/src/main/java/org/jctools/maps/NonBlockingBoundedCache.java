@@ -0,0 +1,429 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscArrayQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+import org.jctools.util.Pow2;
+
+/**
+ * A bounded {@link ConcurrentMap} evicting entries once it holds more than {@code maximumSize} of them, using
+ * a {@link NonBlockingHashMap} for storage and the W-TinyLFU policy to pick the entries to evict.
+ * <p>
+ * All map operations are done against the {@link NonBlockingHashMap}, which holds immutable nodes, and are as
+ * scalable as it is. The policy bookkeeping is kept off the read and write paths:
+ * <ul>
+ * <li>Reads record the node read in one of a number of striped {@link MpscArrayQueue} read buffers, picked by
+ * the reading thread's id. A read finding its buffer full drops the access record and drains the buffers.
+ * <li>Writes record the nodes added and removed in an {@link MpscUnboundedArrayQueue} write buffer, and drain
+ * the buffers.
+ * <li>The buffers are drained by whichever thread wins a {@code tryLock} of the eviction lock, so no thread
+ * ever waits for another. The drain replays the buffered events onto the policy's access order queues and
+ * evicts entries beyond the maximum size.
+ * </ul>
+ * The policy keeps new entries in a small LRU admission window (1% of the cache), followed by a segmented LRU
+ * main space split into a probation and a protected segment. Entries overflowing the window are admitted into
+ * the main space only if a {@link FrequencySketch} estimates they are used more often than the main space's
+ * eviction victim.
+ * <p>
+ * As the buffers are drained asynchronously the cache may transiently hold more than {@code maximumSize}
+ * entries. Neither keys nor values can be null.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+public class NonBlockingBoundedCache<K,V> extends AbstractMap<K,V> implements ConcurrentMap<K,V> {
+  private static final int READ_BUFFER_SIZE = 16;
+  private static final int WRITE_BUFFER_CHUNK_SIZE = 64;
+  private static final int READ_BUFFER_STRIPES =
+    Pow2.roundToPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+  private final NonBlockingHashMap<K,Node<K,V>> _map;
+  private final MpscArrayQueue<Node<K,V>>[] _readBuffers;
+  private final MpscUnboundedArrayQueue<Node<K,V>> _writeBuffer;
+  private final ReentrantLock _evictionLock;
+  private final MessagePassingQueue.Consumer<Node<K,V>> _onAccess;
+
+  // Policy state, guarded by the eviction lock
+  private final long _maximumSize;
+  private final long _maximumWindowSize;
+  private final long _maximumProtectedSize;
+  private final FrequencySketch _sketch;
+  private final AccessOrderDeque<K,V> _window = new AccessOrderDeque<K,V>();
+  private final AccessOrderDeque<K,V> _probation = new AccessOrderDeque<K,V>();
+  private final AccessOrderDeque<K,V> _protected = new AccessOrderDeque<K,V>();
+  private long _evictionCount;
+
+  /**
+   * @param maximumSize the number of entries the cache holds before evicting
+   * @throws IllegalArgumentException if maximumSize is less than 1
+   */
+  @SuppressWarnings("unchecked")
+  public NonBlockingBoundedCache( long maximumSize ) {
+    if( maximumSize < 1 ) throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+    _maximumSize = maximumSize;
+    _maximumWindowSize = Math.max(1, maximumSize / 100);
+    _maximumProtectedSize = (long) ((maximumSize - _maximumWindowSize) * 0.8d);
+    _sketch = new FrequencySketch(maximumSize);
+    _map = new NonBlockingHashMap<K,Node<K,V>>((int) Math.min(maximumSize, 1 << 16));
+    _readBuffers = new MpscArrayQueue[READ_BUFFER_STRIPES];
+    for( int i = 0; i < _readBuffers.length; i++ )
+      _readBuffers[i] = new MpscArrayQueue<Node<K,V>>(READ_BUFFER_SIZE);
+    _writeBuffer = new MpscUnboundedArrayQueue<Node<K,V>>(WRITE_BUFFER_CHUNK_SIZE);
+    _evictionLock = new ReentrantLock();
+    _onAccess = new MessagePassingQueue.Consumer<Node<K,V>>() {
+      @Override
+      public void accept( Node<K,V> node ) { onAccess(node); }
+    };
+  }
+
+  /** @return the number of entries the cache holds before evicting */
+  public long maximumSize( ) { return _maximumSize; }
+
+  /** @return the number of entries evicted so far, as of the last drain of the buffers */
+  public long evictionCount( ) {
+    _evictionLock.lock();
+    try { return _evictionCount; } finally { _evictionLock.unlock(); }
+  }
+
+  /** Approximate count of entries, which may transiently exceed the maximum size. */
+  @Override
+  public int size( ) { return _map.size(); }
+  @Override
+  public boolean isEmpty( ) { return _map.isEmpty(); }
+  @Override
+  public boolean containsKey( Object key ) { return _map.containsKey(key); }
+
+  /** Returns the value mapped to {@code key}, recording the access for the eviction policy. */
+  @Override
+  public V get( Object key ) {
+    final Node<K,V> node = _map.get(key);
+    if( node == null ) return null;
+    afterRead(node);
+    return node._val;
+  }
+
+  @Override
+  public V put( K key, V val ) {
+    final Node<K,V> node = newNode(key, val);
+    final Node<K,V> prior = _map.put(key, node);
+    if( prior != null ) _writeBuffer.offer(prior);
+    afterWrite(node);
+    return prior == null ? null : prior._val;
+  }
+
+  @Override
+  public V putIfAbsent( K key, V val ) {
+    final Node<K,V> node = newNode(key, val);
+    final Node<K,V> prior = _map.putIfAbsent(key, node);
+    if( prior == null ) {
+      afterWrite(node);
+      return null;
+    }
+    afterRead(prior);
+    return prior._val;
+  }
+
+  @Override
+  public V remove( Object key ) {
+    final Node<K,V> prior = _map.remove(key);
+    if( prior == null ) return null;
+    afterWrite(prior);
+    return prior._val;
+  }
+
+  @Override
+  public boolean remove( Object key, Object val ) {
+    if( val == null ) throw new NullPointerException();
+    while( true ) {
+      final Node<K,V> prior = _map.get(key);
+      if( prior == null || !prior._val.equals(val) ) return false;
+      if( _map.remove(key, prior) ) {
+        afterWrite(prior);
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public V replace( K key, V val ) {
+    final Node<K,V> node = newNode(key, val);
+    while( true ) {
+      final Node<K,V> prior = _map.get(key);
+      if( prior == null ) return null;
+      if( _map.replace(key, prior, node) ) {
+        _writeBuffer.offer(prior);
+        afterWrite(node);
+        return prior._val;
+      }
+    }
+  }
+
+  @Override
+  public boolean replace( K key, V oldValue, V newValue ) {
+    if( oldValue == null ) throw new NullPointerException();
+    final Node<K,V> node = newNode(key, newValue);
+    while( true ) {
+      final Node<K,V> prior = _map.get(key);
+      if( prior == null || !prior._val.equals(oldValue) ) return false;
+      if( _map.replace(key, prior, node) ) {
+        _writeBuffer.offer(prior);
+        afterWrite(node);
+        return true;
+      }
+    }
+  }
+
+  /** Removes all entries, entries added concurrently may be retained. */
+  @Override
+  public void clear( ) {
+    for( K key : _map.keySet() )
+      remove(key);
+  }
+
+  /**
+   * Drains the read and write buffers and evicts the entries beyond the maximum size, waiting for the
+   * eviction lock if another thread holds it. This happens as a side effect of the map operations, calling
+   * it is only needed to bring the policy up to date on demand, e.g. after a burst of writes.
+   */
+  public void cleanUp( ) {
+    _evictionLock.lock();
+    try { maintenance(); } finally { _evictionLock.unlock(); }
+  }
+
+  @Override
+  public Set<Map.Entry<K,V>> entrySet( ) {
+    return new AbstractSet<Map.Entry<K,V>>() {
+      @Override
+      public int size( ) { return NonBlockingBoundedCache.this.size(); }
+      @Override
+      public void clear( ) { NonBlockingBoundedCache.this.clear(); }
+      @Override
+      public boolean contains( Object o ) {
+        if( !(o instanceof Map.Entry) ) return false;
+        final Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+        final Node<K,V> node = _map.get(e.getKey());
+        return node != null && node._val.equals(e.getValue());
+      }
+      @Override
+      public boolean remove( Object o ) {
+        if( !(o instanceof Map.Entry) ) return false;
+        final Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+        return NonBlockingBoundedCache.this.remove(e.getKey(), e.getValue());
+      }
+      @Override
+      public Iterator<Map.Entry<K,V>> iterator( ) { return new EntryIterator(); }
+    };
+  }
+
+  private class EntryIterator implements Iterator<Map.Entry<K,V>> {
+    private final Iterator<Node<K,V>> _nodes = _map.values().iterator();
+    private Node<K,V> _last;
+
+    @Override
+    public boolean hasNext( ) { return _nodes.hasNext(); }
+    @Override
+    public Map.Entry<K,V> next( ) {
+      _last = _nodes.next();
+      return new AbstractEntry<K,V>(_last._key, _last._val) {
+        @Override
+        public V setValue( V val ) {
+          if( val == null ) throw new NullPointerException();
+          _val = val;
+          return put(_key, val);
+        }
+      };
+    }
+    @Override
+    public void remove( ) {
+      if( _last == null ) throw new IllegalStateException();
+      if( _map.remove(_last._key, _last) ) afterWrite(_last);
+      _last = null;
+    }
+  }
+
+  // --- buffers -------------------------------------------------------------
+
+  private static <K,V> Node<K,V> newNode( K key, V val ) {
+    if( key == null || val == null ) throw new NullPointerException();
+    return new Node<K,V>(key, val);
+  }
+
+  private void afterRead( Node<K,V> node ) {
+    final int stripe = mix((int) Thread.currentThread().getId()) & (_readBuffers.length - 1);
+    if( !_readBuffers[stripe].relaxedOffer(node) )
+      tryToDrainBuffers();   // the access is dropped, it is only a hint
+  }
+
+  private void afterWrite( Node<K,V> node ) {
+    _writeBuffer.offer(node);
+    tryToDrainBuffers();
+  }
+
+  // A thread failing the tryLock leaves its writes to the lock holder, which
+  // re-checks the write buffer after releasing the lock.
+  private void tryToDrainBuffers( ) {
+    do {
+      if( !_evictionLock.tryLock() ) return;
+      try { maintenance(); } finally { _evictionLock.unlock(); }
+    } while( !_writeBuffer.isEmpty() );
+  }
+
+  private static int mix( int x ) {
+    final int h = x * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // --- policy, guarded by the eviction lock --------------------------------
+
+  private void maintenance( ) {
+    drainWriteBuffer();
+    for( int i = 0; i < _readBuffers.length; i++ )
+      _readBuffers[i].drain(_onAccess, READ_BUFFER_SIZE);
+    evictEntries();
+  }
+
+  // Nodes are never re-inserted into the map once removed, so a node in the
+  // write buffer is added if the map still holds it, and removed otherwise.
+  private void drainWriteBuffer( ) {
+    Node<K,V> node;
+    while( (node = _writeBuffer.relaxedPoll()) != null ) {
+      if( node._dead ) continue;
+      if( _map.get(node._key) == node ) {
+        if( node._queue == null ) {
+          _sketch.increment(node._key);
+          _window.addLast(node);
+        }
+      } else {
+        unlinkDead(node);
+      }
+    }
+  }
+
+  private void onAccess( Node<K,V> node ) {
+    final AccessOrderDeque<K,V> queue = node._queue;
+    if( queue == null ) return; // dead, or its addition is not drained yet
+    _sketch.increment(node._key);
+    if( queue == _probation ) {
+      _probation.remove(node);
+      _protected.addLast(node);
+      while( _protected._size > _maximumProtectedSize ) {
+        final Node<K,V> demoted = _protected._first;
+        _protected.remove(demoted);
+        _probation.addLast(demoted);
+      }
+    } else {
+      queue.moveToBack(node);
+    }
+  }
+
+  // Entries overflowing the window become candidates at the back of the
+  // probation segment, competing with the victims at its front.
+  private void evictEntries( ) {
+    long candidates = 0;
+    while( _window._size > _maximumWindowSize ) {
+      final Node<K,V> node = _window._first;
+      _window.remove(node);
+      _probation.addLast(node);
+      candidates++;
+    }
+    while( _window._size + _probation._size + _protected._size > _maximumSize ) {
+      Node<K,V> victim = _probation._first;
+      if( victim == null ) {
+        victim = _protected._first != null ? _protected._first : _window._first;
+        evict(victim);
+        continue;
+      }
+      final boolean victimIsCandidate = _probation._size <= candidates;
+      final Node<K,V> candidate = candidates > 0 ? _probation._last : null;
+      if( candidate == null || candidate == victim ) {
+        evict(victim);
+        if( victimIsCandidate ) candidates--;
+      } else if( _sketch.frequency(candidate._key) > _sketch.frequency(victim._key) ) {
+        evict(victim);
+        if( victimIsCandidate ) candidates--;
+      } else {
+        evict(candidate);
+        candidates--;
+      }
+    }
+  }
+
+  private void evict( Node<K,V> node ) {
+    // a failed removal means the node was replaced or removed concurrently, and is dead either way
+    _map.remove(node._key, node);
+    unlinkDead(node);
+    _evictionCount++;
+  }
+
+  private void unlinkDead( Node<K,V> node ) {
+    if( node._queue != null ) node._queue.remove(node);
+    node._dead = true;
+  }
+
+  // --- nodes ---------------------------------------------------------------
+
+  // The key and value are immutable, updates replace the node. The links are
+  // guarded by the eviction lock.
+  private static final class Node<K,V> {
+    final K _key;
+    final V _val;
+    Node<K,V> _prev, _next;
+    AccessOrderDeque<K,V> _queue;
+    boolean _dead;
+
+    Node( K key, V val ) { _key = key; _val = val; }
+  }
+
+  private static final class AccessOrderDeque<K,V> {
+    Node<K,V> _first, _last;
+    long _size;
+
+    void addLast( Node<K,V> node ) {
+      node._queue = this;
+      node._prev = _last;
+      node._next = null;
+      if( _last == null ) _first = node;
+      else _last._next = node;
+      _last = node;
+      _size++;
+    }
+
+    void remove( Node<K,V> node ) {
+      if( node._prev == null ) _first = node._next;
+      else node._prev._next = node._next;
+      if( node._next == null ) _last = node._prev;
+      else node._next._prev = node._prev;
+      node._prev = node._next = null;
+      node._queue = null;
+      _size--;
+    }
+
+    void moveToBack( Node<K,V> node ) {
+      if( node != _last ) {
+        remove(node);
+        addLast(node);
+      }
+    }
+  }
+}
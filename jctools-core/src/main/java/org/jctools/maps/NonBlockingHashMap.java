@@ -86,7 +86,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
 
   private static final long serialVersionUID = 1234123412341234123L;
 
-  private static final int REPROBE_LIMIT=10; // Too many reprobes then force a table-resize
+  private static final int REPROBE_LIMIT=HashingStrategy.REPROBE_LIMIT; // Too many reprobes then force a table-resize
 
   // --- Bits to allow Unsafe access to arrays
   private static final int _Obase  = UNSAFE.arrayBaseOffset(Object[].class);
@@ -113,20 +113,6 @@ public class NonBlockingHashMap<TypeK, TypeV>
     static Object unbox( Object V ) { return V instanceof Prime ? ((Prime)V)._V : V; }
   }
 
-  // --- hash ----------------------------------------------------------------
-  // Helper function to spread lousy hashCodes.  Throws NPE for null Key, on
-  // purpose - as the first place to conveniently toss the required NPE for a
-  // null Key.
-  private static final int hash(final Object key) {
-    int h = key.hashCode();     // The real hashCode call
-    h ^= (h>>>20) ^ (h>>>12);
-    h ^= (h>>> 7) ^ (h>>> 4);
-	h += h<<7; // smear low bits up high, for hashcodes that only differ by 1
-    return h;
-  }
-
- 
-
   // --- The Hash Table --------------------
   // Slot 0 is always used for a 'CHM' entry below to hold the interesting
   // bits of the hash table.  Slot 1 holds full hashes as an array of ints.
@@ -152,6 +138,8 @@ public class NonBlockingHashMap<TypeK, TypeV>
   // standard 32-bit HotSpot, and (8*2+2)*8+12 = 156 bytes on 64-bit Azul.
   private static final int MIN_SIZE_LOG=3;             //
   private static final int MIN_SIZE=(1<<MIN_SIZE_LOG); // Must be power of 2
+  // Tables at least this large shrink automatically after mass removals
+  private static final int SHRINK_MIN_LEN=1<<10;
 
   // --- Sentinels -------------------------
   // No-Match-Old - putIfMatch does updates only if it matches the old value,
@@ -245,11 +233,48 @@ public class NonBlockingHashMap<TypeK, TypeV>
   // Heuristic to decide if we have reprobed toooo many times.  Running over
   // the reprobe limit on a 'get' call acts as a 'miss'; on a 'put' call it
   // can trigger a table resize.  Several places must have exact agreement on
-  // what the reprobe_limit is, so we share it here.
-  private static int reprobe_limit( int len ) {
-    return REPROBE_LIMIT + (len>>4);
+  // what the reprobe_limit is, so it comes from the one HashingStrategy, as
+  // do the key hashes and the probe sequence.
+  private HashingStrategy _hashing = HashingStrategy.DEFAULT;
+
+  // --- probe lengths -----------------------------------------------------
+  // Optional histogram of probe lengths, in power-of-2 buckets.  Only
+  // allocated (and the lengths recorded) on request, so the hot paths pay a
+  // single null check otherwise.
+  private static final int PROBE_BUCKETS = 32;
+  private transient ConcurrentAutoTable[] _probes;
+
+  private static ConcurrentAutoTable[] new_probes() {
+    final ConcurrentAutoTable[] probes = new ConcurrentAutoTable[PROBE_BUCKETS];
+    for( int i=0; i<PROBE_BUCKETS; i++ ) probes[i] = new ConcurrentAutoTable();
+    return probes;
+  }
+
+  private void record_probes( final int reprobe_cnt ) {
+    final ConcurrentAutoTable[] probes = _probes;
+    if( probes == null ) return;
+    probes[32-Integer.numberOfLeadingZeros(reprobe_cnt)].add(1);
+    if( reprobe_cnt > 0 ) _reprobes.add(reprobe_cnt);
+  }
+
+  /** Returns a histogram of the reprobes taken to find a key, or its absence,
+   *  in a table: bucket 0 counts the lookups done at the first slot probed,
+   *  and bucket {@code i > 0} the ones taking from {@code 2^(i-1)} to {@code
+   *  2^i - 1} reprobes.  Gets and the key lookups of all updates are counted,
+   *  once for every table they look in.  Probe lengths are only recorded when
+   *  requested on construction, and then also feed {@link #reprobes}.
+   *  @return the counts per bucket, or an empty array if not recorded */
+  public long[] probeHistogram() {
+    final ConcurrentAutoTable[] probes = _probes;
+    if( probes == null ) return new long[0];
+    final long[] counts = new long[PROBE_BUCKETS];
+    for( int i=0; i<PROBE_BUCKETS; i++ ) counts[i] = probes[i].get();
+    return counts;
   }
 
+  /** @return the strategy placing the keys of this map */
+  public HashingStrategy hashingStrategy() { return _hashing; }
+
   // --- NonBlockingHashMap --------------------------------------------------
   // Constructors
 
@@ -263,6 +288,26 @@ public class NonBlockingHashMap<TypeK, TypeV>
    *  elements will sacrifice space for a small amount of time gained.  The
    *  initial size will be rounded up internally to the next larger power of 2. */
   public NonBlockingHashMap( final int initial_sz ) { initialize(initial_sz); }
+
+  /** Create a new NonBlockingHashMap with initial room for the given number of
+   *  elements, placing the keys with the given {@link HashingStrategy}.
+   *  @param hashing the hashing and probing strategy for the keys */
+  public NonBlockingHashMap( final int initial_sz, final HashingStrategy hashing ) {
+    this(initial_sz, hashing, false);
+  }
+
+  /** Create a new NonBlockingHashMap with initial room for the given number of
+   *  elements, placing the keys with the given {@link HashingStrategy}, and
+   *  optionally recording the {@link #probeHistogram()}, which costs an
+   *  update of a shared counter on every access.
+   *  @param hashing the hashing and probing strategy for the keys
+   *  @param recordProbes true to record the lengths of all probe sequences */
+  public NonBlockingHashMap( final int initial_sz, final HashingStrategy hashing, final boolean recordProbes ) {
+    if( hashing == null ) throw new NullPointerException();
+    _hashing = hashing;
+    if( recordProbes ) _probes = new_probes();
+    initialize(initial_sz);
+  }
   private final void initialize( int initial_sz ) {
     RangeUtil.checkPositiveOrZero(initial_sz, "initial_sz");
     int i;                      // Convert to next largest power-of-2
@@ -384,6 +429,59 @@ public class NonBlockingHashMap<TypeK, TypeV>
   }
 
 
+  // --- compute -------------------------------------------------------------
+  // Native versions of the ConcurrentMap default methods.  The defaults loop
+  // over get/putIfAbsent/replace, re-probing the table on every attempt;
+  // these locate the key slot once and only retry the value CAS (moving to
+  // the new table during a resize).  As with the defaults the remapping
+  // functions may be called more than once under contention, and should be
+  // free of side effects.  The mapping function of computeIfAbsent is called
+  // at most once per call, but unlike ConcurrentHashMap racing calls for the
+  // same absent key may each call it (only one of the values is kept).
+
+  /** If the key is not mapped, attempts to map it to the value computed by
+   *  {@code mappingFunction}, unless that is null.
+   *  @return the current (existing or computed) value associated with the
+   *         key, or <tt>null</tt> if the computed value is null
+   *  @throws NullPointerException if the key or function is null */
+  public TypeV computeIfAbsent( TypeK key, java.util.function.Function<? super TypeK, ? extends TypeV> mappingFunction ) {
+    if( mappingFunction == null ) throw new NullPointerException();
+    // Fast path for the hit, mirroring ConcurrentHashMap
+    final TypeV V = get(key);
+    if( V != null ) return V;
+    return (TypeV)compute_impl(this, _kvs, key, COMPUTE_IF_ABSENT, mappingFunction, null);
+  }
+
+  /** If the key is mapped, attempts to compute a new mapping from the key and
+   *  its current value, removing the key if the new value is null.
+   *  @return the new value associated with the key, or <tt>null</tt> if none
+   *  @throws NullPointerException if the key or function is null */
+  public TypeV computeIfPresent( TypeK key, java.util.function.BiFunction<? super TypeK, ? super TypeV, ? extends TypeV> remappingFunction ) {
+    if( remappingFunction == null ) throw new NullPointerException();
+    return (TypeV)compute_impl(this, _kvs, key, COMPUTE_IF_PRESENT, remappingFunction, null);
+  }
+
+  /** Attempts to compute a mapping from the key and its current value (or
+   *  null if there is none), removing the key if the new value is null.
+   *  @return the new value associated with the key, or <tt>null</tt> if none
+   *  @throws NullPointerException if the key or function is null */
+  public TypeV compute( TypeK key, java.util.function.BiFunction<? super TypeK, ? super TypeV, ? extends TypeV> remappingFunction ) {
+    if( remappingFunction == null ) throw new NullPointerException();
+    return (TypeV)compute_impl(this, _kvs, key, COMPUTE, remappingFunction, null);
+  }
+
+  /** If the key is not mapped, maps it to {@code val}.  Otherwise replaces
+   *  the value with the result of {@code remappingFunction} applied to the
+   *  current value and {@code val}, or removes the key if the result is null.
+   *  No objects are allocated by the map itself, which makes this a good fit
+   *  for counters (e.g. {@code merge(key, 1L, Long::sum)}).
+   *  @return the new value associated with the key, or <tt>null</tt> if none
+   *  @throws NullPointerException if the key, value or function is null */
+  public TypeV merge( TypeK key, TypeV val, java.util.function.BiFunction<? super TypeV, ? super TypeV, ? extends TypeV> remappingFunction ) {
+    if( val == null || remappingFunction == null ) throw new NullPointerException();
+    return (TypeV)compute_impl(this, _kvs, key, MERGE, remappingFunction, val);
+  }
+
   /** Copies all of the mappings from the specified map to this one, replacing
    *  any existing mappings.
    *  @param m mappings to be stored in this map */
@@ -401,6 +499,23 @@ public class NonBlockingHashMap<TypeK, TypeV>
       ;
   }
 
+  /** Copies the live mappings into a fresh table sized for them, dropping
+   *  the keys of removed mappings and shrinking a table left mostly empty by
+   *  removals.  Large tables also shrink on their own once removals leave
+   *  them less than 1/32 full; this forces the copy at any time.  The copy
+   *  is the one used to resize the table, so other threads keep reading and
+   *  updating the map throughout (and help with the copy).  Returns once
+   *  the copy is complete. */
+  public void compact() {
+    final Object[] kvs = snapshot_kvs();
+    final CHM chm = chm(kvs);
+    chm.resize(this,kvs,true);
+    chm.help_copy_impl(this,kvs,true);
+  }
+
+  // Number of K,V pairs the current table has room for
+  final int capacity() { return len(_kvs); }
+
   /** Returns <tt>true</tt> if this Map maps one or more keys to the specified
    *  value.  <em>Note</em>: This method requires a full internal traversal of the
    *  hash table and is much slower than {@link #containsKey}.
@@ -435,6 +550,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // Must clone, to get the class right; NBHM might have been
       // extended so it would be wrong to just make a new NBHM.
       NonBlockingHashMap<TypeK,TypeV> t = (NonBlockingHashMap<TypeK,TypeV>) super.clone();
+      if( _probes != null ) t._probes = new_probes(); // Do not share the probe counts
       // But I don't have an atomic clone operation - the underlying _kvs
       // structure is undergoing rapid change.  If I just clone the _kvs
       // field, the CHM in _kvs[0] won't be in sync.
@@ -526,7 +642,8 @@ public class NonBlockingHashMap<TypeK, TypeV>
   }
 
   private static final Object get_impl( final NonBlockingHashMap topmap, final Object[] kvs, final Object key ) {
-    final int fullhash= hash (key); // throws NullPointerException if key is null
+    final HashingStrategy hashing = topmap._hashing;
+    final int fullhash= hashing.hash(key); // throws NullPointerException if key is null
     final int len     = len  (kvs); // Count of key/value pairs, reads kvs.length
     final CHM chm     = chm  (kvs); // The CHM, for a volatile read below; reads slot 0 of kvs
     final int[] hashes=hashes(kvs); // The memoized hashes; reads slot 1 of kvs
@@ -540,7 +657,10 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // table; hopefully the read of 'key' then hits in cache.
       final Object K = key(kvs,idx); // Get key   before volatile read, could be null
       final Object V = val(kvs,idx); // Get value before volatile read, could be null or Tombstone or Prime
-      if( K == null ) return null;   // A clear miss
+      if( K == null ) {              // A clear miss
+        topmap.record_probes(reprobe_cnt);
+        return null;
+      }
 
       // We need a volatile-read here to preserve happens-before semantics on
       // newly inserted Keys.  If the Key body was written just before inserting
@@ -556,8 +676,10 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // Key-compare
       if( keyeq(K,key,hashes,idx,fullhash) ) {
         // Key hit!  Check for no table-copy-in-progress
-        if( !(V instanceof Prime) ) // No copy?
+        if( !(V instanceof Prime) ) { // No copy?
+          topmap.record_probes(reprobe_cnt);
           return (V == TOMBSTONE) ? null : V; // Return the value
+        }
         // Key hit - but slot is (possibly partially) copied to the new table.
         // Finish the copy & retry in the new table.
         return get_impl(topmap,chm.copy_slot_and_check(topmap,kvs,idx,key),key); // Retry in the new table
@@ -565,11 +687,13 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // get and put must have the same key lookup logic!  But only 'put'
       // needs to force a table-resize for a too-long key-reprobe sequence.
       // Check for too-many-reprobes on get - and flip to the new table.
-      if( ++reprobe_cnt >= reprobe_limit(len) || // too many probes
-          K == TOMBSTONE ) // found a TOMBSTONE key, means no more keys in this table
+      if( ++reprobe_cnt >= hashing.reprobeLimit(len) || // too many probes
+          K == TOMBSTONE ) { // found a TOMBSTONE key, means no more keys in this table
+        topmap.record_probes(reprobe_cnt);
         return newkvs == null ? null : get_impl(topmap,topmap.help_copy(newkvs),key); // Retry in the new table
+      }
 
-      idx = (idx+1)&(len-1);    // Reprobe by 1!  (could now prefetch)
+      idx = hashing.probe(idx,reprobe_cnt,len-1); // Reprobe!  (could now prefetch)
     }
   }
 
@@ -583,7 +707,8 @@ public class NonBlockingHashMap<TypeK, TypeV>
   }
 
   private static final Object getk_impl( final NonBlockingHashMap topmap, final Object[] kvs, final Object key ) {
-    final int fullhash= hash (key); // throws NullPointerException if key is null
+    final HashingStrategy hashing = topmap._hashing;
+    final int fullhash= hashing.hash(key); // throws NullPointerException if key is null
     final int len     = len  (kvs); // Count of key/value pairs, reads kvs.length
     final CHM chm     = chm  (kvs); // The CHM, for a volatile read below; reads slot 0 of kvs
     final int[] hashes=hashes(kvs); // The memoized hashes; reads slot 1 of kvs
@@ -615,12 +740,12 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // get and put must have the same key lookup logic!  But only 'put'
       // needs to force a table-resize for a too-long key-reprobe sequence.
       // Check for too-many-reprobes on get - and flip to the new table.
-      if( ++reprobe_cnt >= reprobe_limit(len) || // too many probes
+      if( ++reprobe_cnt >= hashing.reprobeLimit(len) || // too many probes
           K == TOMBSTONE ) { // found a TOMBSTONE key, means no more keys in this table
         return newkvs == null ? null : getk_impl(topmap,topmap.help_copy(newkvs),key); // Retry in the new table
       }
 
-      idx = (idx+1)&(len-1);    // Reprobe by 1!  (could now prefetch)
+      idx = hashing.probe(idx,reprobe_cnt,len-1); // Reprobe!  (could now prefetch)
     }
   }
 
@@ -635,7 +760,8 @@ public class NonBlockingHashMap<TypeK, TypeV>
     assert putval != null;
     assert !(putval instanceof Prime);
     assert !(expVal instanceof Prime);
-    final int fullhash = hash  (key); // throws NullPointerException if key null
+    final HashingStrategy hashing = topmap._hashing;
+    final int fullhash = hashing.hash(key); // throws NullPointerException if key null
     final int len      = len   (kvs); // Count of key/value pairs, reads kvs.length
     final CHM chm      = chm   (kvs); // Reads kvs[0]
     final int[] hashes = hashes(kvs); // Reads kvs[1], read before kvs[0]
@@ -658,6 +784,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
         if( CAS_key(kvs,idx, null, key ) ) { // Claim slot for Key
           chm._slots.add(1);      // Raise key-slots-used count
           hashes[idx] = fullhash; // Memoize fullhash
+          topmap.record_probes(reprobe_cnt);
           break;                  // Got it!
         }
         // CAS to claim the key-slot failed.
@@ -688,14 +815,16 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // Annoyingly this means we have to volatile-read before EACH key compare.
       newkvs = chm._newkvs;     // VOLATILE READ before key compare
 
-      if( keyeq(K,key,hashes,idx,fullhash) )
+      if( keyeq(K,key,hashes,idx,fullhash) ) {
+        topmap.record_probes(reprobe_cnt);
         break;                  // Got it!
+      }
 
       // get and put must have the same key lookup logic!  Lest 'get' give
       // up looking too soon.
-      //topmap._reprobes.add(1);
-      if( ++reprobe_cnt >= reprobe_limit(len) || // too many probes or
+      if( ++reprobe_cnt >= hashing.reprobeLimit(len) || // too many probes or
           K == TOMBSTONE ) { // found a TOMBSTONE key, means no more keys
+        topmap.record_probes(reprobe_cnt);
         // We simply must have a new table to do a 'put'.  At this point a
         // 'get' will also go to the new table (if any).  We do not need
         // to claim a key slot (indeed, we cannot find a free one to claim!).
@@ -704,7 +833,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
         return putIfMatch(topmap,newkvs,key,putval,expVal);
       }
 
-      idx = (idx+1)&(len-1); // Reprobe!
+      idx = hashing.probe(idx,reprobe_cnt,len-1); // Reprobe!
     } // End of spinning till we get a Key slot
 
     while ( true ) {              // Spin till we insert a value
@@ -722,7 +851,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
       // time we get here).
       if( newkvs == null &&       // New table-copy already spotted?
           // Once per fresh key-insert check the hard way
-          ((V == null && chm.tableFull(reprobe_cnt,len)) ||
+          ((V == null && chm.tableFull(reprobe_cnt,len,hashing)) ||
            // Or we found a Prime, but the JMM allowed reordering such that we
            // did not spot the new table (very rare race here: the writing
            // thread did a CAS of _newkvs then a store of a Prime.  This thread
@@ -784,13 +913,126 @@ public class NonBlockingHashMap<TypeK, TypeV>
     if( expVal != null ) {
       // Adjust sizes - a striped counter
       if(  (V == null || V == TOMBSTONE) && putval != TOMBSTONE ) chm._size.add( 1);
-      if( !(V == null || V == TOMBSTONE) && putval == TOMBSTONE ) chm._size.add(-1);
+      if( !(V == null || V == TOMBSTONE) && putval == TOMBSTONE ) {
+        chm._size.add(-1);
+        chm.shrink_check(topmap,kvs); // Mass removals?  Copy to a smaller table
+      }
     }
 
     // We won; we know the update happened as expected.
     return (V==null && expVal!=null) ? TOMBSTONE : V;
   }
 
+  // --- compute_impl -------------------------------------------------------
+  // Compute, ComputeIfAbsent, ComputeIfPresent and Merge.  The Key-Claim
+  // stanza is the one of putIfMatch, except a missing key is only claimed
+  // once there is a value to insert.  Then the new value is computed from the
+  // current one and CAS'd in, recomputing only if the value changed.  Returns
+  // the new value, or the existing one for ComputeIfAbsent.
+  private static final int COMPUTE_IF_ABSENT  = 0;
+  private static final int COMPUTE_IF_PRESENT = 1;
+  private static final int COMPUTE            = 2;
+  private static final int MERGE              = 3;
+  private static final Object compute_impl( final NonBlockingHashMap topmap, Object[] kvs, final Object key, final int mode, final Object fun, final Object arg ) {
+    final HashingStrategy hashing = topmap._hashing;
+    final int fullhash = hashing.hash(key); // throws NullPointerException if key null
+    // The last computed value, and the current value it was computed from
+    Object computed = null;
+    Object computedFrom = NO_MATCH_OLD;
+
+    while( true ) {             // Spin over nested tables, during resizes
+      final int len      = len   (kvs); // Count of key/value pairs, reads kvs.length
+      final CHM chm      = chm   (kvs); // Reads kvs[0]
+      final int[] hashes = hashes(kvs); // Reads kvs[1], read before kvs[0]
+      int idx = fullhash & (len-1);
+
+      // ---
+      // Key-Claim stanza: spin till we can claim a Key (or force a resizing).
+      int reprobe_cnt=0;
+      Object K, V;
+      Object[] newkvs=null;
+      boolean retry = false;
+      while( true ) {           // Spin till we get a Key slot
+        V = val(kvs,idx);       // Get old value (before volatile read below!)
+        K = key(kvs,idx);       // Get current key
+        if( K == null ) {       // Slot is free?  The Key is not in this table
+          if( mode == COMPUTE_IF_PRESENT ) return null;
+          if( computedFrom != null ) {
+            computed = apply(mode, fun, key, null, arg);
+            computedFrom = null;
+          }
+          if( computed == null ) return null; // Nothing to insert
+          if( CAS_key(kvs,idx, null, key ) ) { // Claim slot for Key
+            chm._slots.add(1);    // Raise key-slots-used count
+            hashes[idx] = fullhash; // Memoize fullhash
+            break;                // Got it!
+          }
+          int dummy = DUMMY_VOLATILE; // CAS failed; force a re-read of K
+          continue;
+        }
+        newkvs = chm._newkvs;   // VOLATILE READ before key compare
+        if( keyeq(K,key,hashes,idx,fullhash) )
+          break;                // Got it!
+        if( ++reprobe_cnt >= hashing.reprobeLimit(len) || // too many probes or
+            K == TOMBSTONE ) {  // found a TOMBSTONE key, means no more keys
+          newkvs = chm.resize(topmap,kvs);
+          topmap.help_copy(newkvs); // help along an existing copy
+          kvs = newkvs;
+          retry = true;
+          break;
+        }
+        idx = hashing.probe(idx,reprobe_cnt,len-1);  // Reprobe!
+      } // End of spinning till we get a Key slot
+      if( retry ) continue;
+
+      while( true ) {           // Spin till we update the value
+        // Resize checks, as in putIfMatch
+        if( newkvs == null &&
+            ((V == null && chm.tableFull(reprobe_cnt,len,hashing)) || V instanceof Prime) )
+          newkvs = chm.resize(topmap,kvs); // Force the new table copy to start
+        if( newkvs != null ) {  // Copy our slot and retry in the new table
+          kvs = chm.copy_slot_and_check(topmap,kvs,idx,key);
+          break;
+        }
+        assert !(V instanceof Prime);
+
+        final Object oldval = (V == null || V == TOMBSTONE) ? null : V;
+        if( mode == COMPUTE_IF_ABSENT && oldval != null ) return oldval;
+        if( mode == COMPUTE_IF_PRESENT && oldval == null ) return null;
+        if( computedFrom != oldval ) { // Only recompute for a changed value
+          computed = apply(mode, fun, key, oldval, arg);
+          computedFrom = oldval;
+        }
+        if( computed == null && oldval == null ) return null; // Nothing to remove
+        final Object putval = computed == null ? TOMBSTONE : computed;
+
+        // Actually change the Value in the Key,Value pair
+        if( putval == V || CAS_val(kvs, idx, V, putval ) ) {
+          // Adjust sizes - a striped counter
+          if( oldval == null && putval != TOMBSTONE ) chm._size.add( 1);
+          if( oldval != null && putval == TOMBSTONE ) {
+            chm._size.add(-1);
+            chm.shrink_check(topmap,kvs); // Mass removals?  Copy to a smaller table
+          }
+          return computed;
+        }
+        V = val(kvs,idx);       // CAS failed, get new value and retry
+        int dummy = DUMMY_VOLATILE;
+      }
+    }
+  }
+
+  private static Object apply( final int mode, final Object fun, final Object key, final Object oldval, final Object arg ) {
+    switch( mode ) {
+    case COMPUTE_IF_ABSENT:
+      return ((java.util.function.Function)fun).apply(key);
+    case MERGE:
+      return oldval == null ? arg : ((java.util.function.BiFunction)fun).apply(oldval, arg);
+    default:
+      return ((java.util.function.BiFunction)fun).apply(key, oldval);
+    }
+  }
+
   // --- help_copy ---------------------------------------------------------
   // Help along an existing resize operation.  This is just a fast cut-out
   // wrapper, to encourage inlining for the fast no-copy-in-progress case.  We
@@ -878,15 +1120,30 @@ public class NonBlockingHashMap<TypeK, TypeV>
     // current table, while a 'get' has decided the same key cannot be in this
     // table because of too many reprobes.  The invariant is:
     //   slots.estimate_sum >= max_reprobe_cnt >= reprobe_limit(len)
-    private final boolean tableFull( int reprobe_cnt, int len ) {
+    private final boolean tableFull( int reprobe_cnt, int len, HashingStrategy hashing ) {
       return
         // Do the cheap check first: we allow some number of reprobes always
         reprobe_cnt >= REPROBE_LIMIT &&
-        (reprobe_cnt >= reprobe_limit(len) ||
+        (reprobe_cnt >= hashing.reprobeLimit(len) ||
          // More expensive check: see if the table is > 1/2 full.
          _slots.estimate_get() >= (len>>1));
     }
 
+    // --- shrink_check ------------------------------------------------------
+    // Heuristic to decide if mass removals left a large table mostly empty,
+    // and we should copy the live keys into a smaller one.  Removed keys stay
+    // in a table as TOMBSTONEs, lengthening the probe chains of misses; the
+    // copy drops them too.  The removing thread starts the copy and helps it
+    // along; later updates help finish it.
+    private final void shrink_check( NonBlockingHashMap topmap, Object[] kvs ) {
+      final int len = len(kvs);
+      if( len < SHRINK_MIN_LEN ||  // Small tables are not worth the copy
+          _newkvs != null ||       // Copy already in progress
+          (_size.estimate_get()<<5) >= len ) // More than 1/32 live keys
+        return;
+      topmap.help_copy(resize(topmap,kvs,true));
+    }
+
     // --- resize ------------------------------------------------------------
     // Resizing after too many probes.  "How Big???" heuristics are here.
     // Callers will (not this routine) will 'help_copy' any in-progress copy.
@@ -894,6 +1151,12 @@ public class NonBlockingHashMap<TypeK, TypeV>
     // MUST 'help_copy' lest we have a path which forever runs through
     // 'resize' only to discover a copy-in-progress which never progresses.
     private final Object[] resize( NonBlockingHashMap topmap, Object[] kvs) {
+      return resize(topmap,kvs,false);
+    }
+
+    // Resizing, or with 'shrink' set compacting into a table sized for the
+    // live keys only (never larger than this one).
+    private final Object[] resize( NonBlockingHashMap topmap, Object[] kvs, boolean shrink ) {
       assert chm(kvs) == this;
 
       // Check for resize already in progress, probably triggered by another thread
@@ -906,34 +1169,42 @@ public class NonBlockingHashMap<TypeK, TypeV>
       int sz = size();          // Get current table count of active K,V pairs
       int newsz = sz;           // First size estimate
 
-      // Heuristic to determine new size.  We expect plenty of dead-slots-with-keys
-      // and we need some decent padding to avoid endless reprobing.
-      if( sz >= (oldlen>>2) ) { // If we are >25% full of keys then...
-        newsz = oldlen<<1;      // Double size, so new table will be between 12.5% and 25% full
-        // For tables less than 1M entries, if >50% full of keys then...
-        // For tables more than 1M entries, if >75% full of keys then...
-        if( 4L*sz >= ((oldlen>>20)!=0?3L:2L)*oldlen )
-          newsz = oldlen<<2;    // Double double size, so new table will be between %12.5 (18.75%) and 25% (25%)
+      if( shrink ) {
+        // Leave the live keys filling 1/8 to 1/4 of the new table, as a
+        // growing resize does.  It grows again once reprobes fill it, and
+        // shrinks again once down to 1/32 (see shrink_check).
+        newsz = Math.min(Math.max(sz<<2, MIN_SIZE), oldlen);
+      } else {
+        // Heuristic to determine new size.  We expect plenty of dead-slots-with-keys
+        // and we need some decent padding to avoid endless reprobing.
+        if( sz >= (oldlen>>2) ) { // If we are >25% full of keys then...
+          newsz = oldlen<<1;      // Double size, so new table will be between 12.5% and 25% full
+          // For tables less than 1M entries, if >50% full of keys then...
+          // For tables more than 1M entries, if >75% full of keys then...
+          if( 4L*sz >= ((oldlen>>20)!=0?3L:2L)*oldlen )
+            newsz = oldlen<<2;    // Double double size, so new table will be between %12.5 (18.75%) and 25% (25%)
+        }
+        // This heuristic in the next 2 lines leads to a much denser table
+        // with a higher reprobe rate
+        //if( sz >= (oldlen>>1) ) // If we are >50% full of keys then...
+        //  newsz = oldlen<<1;    // Double size
+
+        // Last (re)size operation was very recent?  Then double again
+        // despite having few live keys; slows down resize operations
+        // for tables subject to a high key churn rate - but do not
+        // forever grow the table.  If there is a high key churn rate
+        // the table needs a steady state of rare same-size resize
+        // operations to clean out the dead keys.
+        long tm = System.currentTimeMillis();
+        if( newsz <= oldlen && // New table would shrink or hold steady?
+            tm <= topmap._last_resize_milli+10000)  // Recent resize (less than 10 sec ago)
+          newsz = oldlen<<1;      // Double the existing size
+
+        // Do not shrink, ever.  If we hit this size once, assume we
+        // will again.  Only mass removals (see shrink_check) or an explicit
+        // compact() shrink the table.
+        if( newsz < oldlen ) newsz = oldlen;
       }
-      // This heuristic in the next 2 lines leads to a much denser table
-      // with a higher reprobe rate
-      //if( sz >= (oldlen>>1) ) // If we are >50% full of keys then...
-      //  newsz = oldlen<<1;    // Double size
-
-      // Last (re)size operation was very recent?  Then double again
-      // despite having few live keys; slows down resize operations
-      // for tables subject to a high key churn rate - but do not
-      // forever grow the table.  If there is a high key churn rate
-      // the table needs a steady state of rare same-size resize
-      // operations to clean out the dead keys.
-      long tm = System.currentTimeMillis();
-      if( newsz <= oldlen && // New table would shrink or hold steady?
-          tm <= topmap._last_resize_milli+10000)  // Recent resize (less than 10 sec ago)
-        newsz = oldlen<<1;      // Double the existing size
-
-      // Do not shrink, ever.  If we hit this size once, assume we
-      // will again.
-      if( newsz < oldlen ) newsz = oldlen;
 
       // Convert to power-of-2
       int log2;
@@ -1185,25 +1456,28 @@ public class NonBlockingHashMap<TypeK, TypeV>
 
 
   // --- Snapshot ------------------------------------------------------------
+  // Returns a table with no copy in progress, helping any copy along.
+  private Object[] snapshot_kvs() {
+    while( true ) {             // Verify no table-copy-in-progress
+      Object[] topkvs = _kvs;
+      CHM topchm = chm(topkvs);
+      if( topchm._newkvs == null ) // No table-copy-in-progress
+        // The "linearization point" for the iteration.  Every key in this
+        // table will be visited, but keys added later might be skipped or
+        // even be added to a following table (also not iterated over).
+        return topkvs;
+      // Table copy in-progress - so we cannot get a clean iteration.  We
+      // must help finish the table copy before we can start iterating.
+      topchm.help_copy_impl(this,topkvs,true);
+    }
+  }
+
   // The main class for iterating over the NBHM.  It "snapshots" a clean
   // view of the K/V array.
   private class SnapshotV implements Iterator<TypeV>, Enumeration<TypeV> {
     final Object[] _sskvs;
     public SnapshotV() {
-      while( true ) {           // Verify no table-copy-in-progress
-        Object[] topkvs = _kvs;
-        CHM topchm = chm(topkvs);
-        if( topchm._newkvs == null ) { // No table-copy-in-progress
-          // The "linearization point" for the iteration.  Every key in this
-          // table will be visited, but keys added later might be skipped or
-          // even be added to a following table (also not iterated over).
-          _sskvs = topkvs;
-          break;
-        }
-        // Table copy in-progress - so we cannot get a clean iteration.  We
-        // must help finish the table copy before we can start iterating.
-        topchm.help_copy_impl(NonBlockingHashMap.this,topkvs,true);
-      }
+      _sskvs = snapshot_kvs();
       // Warm-up the iterator
       next();
     }
@@ -1271,6 +1545,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
       @Override public int     size    (          ) { return NonBlockingHashMap.this.size         ( ); }
       @Override public boolean contains( Object v ) { return NonBlockingHashMap.this.containsValue(v); }
       @Override public Iterator<TypeV> iterator()   { return new SnapshotV(); }
+      public java.util.Spliterator<TypeV> spliterator() { return new SnapshotSpliterator<TypeV>(VALUES); }
     };
   }
 
@@ -1311,6 +1586,7 @@ public class NonBlockingHashMap<TypeK, TypeV>
       @Override public boolean contains( Object k ) { return NonBlockingHashMap.this.containsKey(k); }
       @Override public boolean remove  ( Object k ) { return NonBlockingHashMap.this.remove  (k) != null; }
       @Override public Iterator<TypeK> iterator()   { return new SnapshotK(); }
+      public java.util.Spliterator<TypeK> spliterator() { return new SnapshotSpliterator<TypeK>(KEYS); }
       // This is an efficient implementation of toArray instead of the standard
       // one.  In particular it uses a smart iteration over the NBHM.
       @Override public <T> T[] toArray(T[] a) {
@@ -1401,13 +1677,124 @@ public class NonBlockingHashMap<TypeK, TypeV>
         return v != null && v.equals(e.getValue());
       }
       @Override public Iterator<Map.Entry<TypeK,TypeV>> iterator() { return new SnapshotE(); }
+      public java.util.Spliterator<Map.Entry<TypeK,TypeV>> spliterator() {
+        return new SnapshotSpliterator<Map.Entry<TypeK,TypeV>>(ENTRIES);
+      }
     };
   }
 
+  // --- Spliterators --------------------------------------------------------
+  // Splittable traversal of the views.  The spliterator covers the slots of a
+  // snapshot table taken (after helping any copy in progress to finish) when
+  // it is created, and splits by halving its slot range.  Like SnapshotV each
+  // key found in the range is looked up with 'get', which follows any later
+  // table copy, so a resize after the start does not lose or repeat keys;
+  // keys added after the start may or may not be seen.  The top-level size
+  // estimate is the map size when created, and a split-off spliterator
+  // estimates with the count of live keys in its slot range, taken when
+  // first asked for.  Removals and additions during the traversal are seen,
+  // so neither is SIZED: the counts are only estimates.
+  private static final int KEYS = 0, VALUES = 1, ENTRIES = 2;
+  private static final int MIN_SPLIT_SLOTS = 16;
+
+  private final class SnapshotSpliterator<T> implements java.util.Spliterator<T> {
+    private final Object[] _sskvs;
+    private final int _kind;
+    private int _idx;           // Next slot
+    private final int _fence;   // One past the last slot
+    private long _est;          // Size estimate, -1 until counted
+    private boolean _counted;   // Split off, the size estimate is counted
+
+    SnapshotSpliterator( int kind ) {
+      this(snapshot_kvs(), kind, 0, -1, false);
+    }
+    private SnapshotSpliterator( Object[] kvs, int kind, int idx, int fence, boolean counted ) {
+      _sskvs = kvs;
+      _kind = kind;
+      _idx = idx;
+      _fence = fence < 0 ? len(kvs) : fence;
+      _counted = counted;
+      _est = counted ? -1 : size();
+    }
+
+    public boolean tryAdvance( java.util.function.Consumer<? super T> action ) {
+      if( action == null ) throw new NullPointerException();
+      while( _idx < _fence ) {
+        final Object K = key(_sskvs,_idx++);
+        if( K == null || K == TOMBSTONE ) continue;
+        final TypeV V = get(K);
+        if( V != null ) {
+          if( _counted && _est > 0 ) _est--;
+          action.accept(element(K,V));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public void forEachRemaining( java.util.function.Consumer<? super T> action ) {
+      if( action == null ) throw new NullPointerException();
+      final int fence = _fence;
+      for( int i = _idx; i < fence; i++ ) {
+        final Object K = key(_sskvs,i);
+        if( K == null || K == TOMBSTONE ) continue;
+        final TypeV V = get(K);
+        if( V != null ) action.accept(element(K,V));
+      }
+      _idx = fence;
+    }
+
+    private T element( Object K, TypeV V ) {
+      switch( _kind ) {
+      case KEYS:   return (T)K;
+      case VALUES: return (T)V;
+      default:     return (T)new NBHMEntry((TypeK)K,V);
+      }
+    }
+
+    public java.util.Spliterator<T> trySplit() {
+      final int lo = _idx, mid = (lo + _fence) >>> 1;
+      if( mid - lo < MIN_SPLIT_SLOTS ) return null;
+      _idx = mid;
+      _counted = true;          // Both halves are counted from now on
+      _est = -1;
+      return new SnapshotSpliterator<T>(_sskvs, _kind, lo, mid, true);
+    }
+
+    // Live keys in the remaining slots.  A value moved on by a later copy
+    // is looked up.
+    private long count() {
+      long cnt = 0;
+      for( int i = _idx; i < _fence; i++ ) {
+        final Object K = key(_sskvs,i);
+        if( K == null || K == TOMBSTONE ) continue;
+        final Object V = val(_sskvs,i);
+        if( V instanceof Prime ? get(K) != null : V != null && V != TOMBSTONE ) cnt++;
+      }
+      return cnt;
+    }
+
+    public long estimateSize() {
+      if( _idx >= _fence ) return 0;
+      if( _est < 0 ) _est = count();
+      return _est;
+    }
+
+    public int characteristics() {
+      return CONCURRENT | NONNULL | (_kind == VALUES ? 0 : DISTINCT);
+    }
+
+    public long getExactSizeIfKnown() { return -1; }
+    public boolean hasCharacteristics( int characteristics ) {
+      return (characteristics() & characteristics) == characteristics;
+    }
+    public java.util.Comparator<? super T> getComparator() { throw new IllegalStateException(); }
+  }
+
   // --- writeObject -------------------------------------------------------
   // Write a NBHM to a stream
   private void writeObject(java.io.ObjectOutputStream s) throws IOException  {
-    s.defaultWriteObject();     // Nothing to write
+    s.defaultWriteObject();     // Write the hashing strategy
     for( Object K : keySet() ) {
       final Object V = get(K);  // Do an official 'get'
       s.writeObject(K);         // Write the <TypeK,TypeV> pair
@@ -1420,7 +1807,8 @@ public class NonBlockingHashMap<TypeK, TypeV>
   // --- readObject --------------------------------------------------------
   // Read a CHM from a stream
   private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
-    s.defaultReadObject();      // Read nothing
+    s.defaultReadObject();      // Read the hashing strategy
+    if( _hashing == null ) _hashing = HashingStrategy.DEFAULT; // Older streams
     initialize(MIN_SIZE);
     for(;;) {
       final TypeK K = (TypeK) s.readObject();
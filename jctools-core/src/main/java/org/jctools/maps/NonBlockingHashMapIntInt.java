@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+/**
+ * A lock-free hash map with <strong>primitive int keys and values</strong>.
+ * A simple wrapper around {@link NonBlockingHashMapLongLong}, which holds
+ * any int value inline, with the same non-blocking properties.
+ *
+ * <p>As every int is a valid value, operations returning a value return the
+ * {@code missingValue} given on construction for a missing key.  Use {@link
+ * #containsKey} or {@link #getOrDefault} where the missing value may also be
+ * mapped.
+ *
+ * @see NonBlockingHashMapLongLong
+ */
+public class NonBlockingHashMapIntInt {
+  private final NonBlockingHashMapLongLong _map;
+  private final int _missingValue;
+
+  /** Create a new NonBlockingHashMapIntInt with default minimum size.
+   *  @param missingValue returned by the operations returning a value for a missing key */
+  public NonBlockingHashMapIntInt( final int missingValue ) {
+    _map = new NonBlockingHashMapLongLong();
+    _missingValue = missingValue;
+  }
+
+  /** Create a new NonBlockingHashMapIntInt with initial room for the given
+   *  number of elements.
+   *  @param missingValue returned by the operations returning a value for a missing key */
+  public NonBlockingHashMapIntInt( final int initial_sz, final int missingValue ) {
+    _map = new NonBlockingHashMapLongLong(initial_sz);
+    _missingValue = missingValue;
+  }
+
+  /** @return the value returned by the operations returning a value for a missing key */
+  public int missingValue( ) { return _missingValue; }
+
+  private int v( long val ) { return val == NonBlockingHashMapLongLong.NO_VALUE ? _missingValue : (int)val; }
+
+  /** @return the number of key-value mappings in this map */
+  public int     size       ( )                 { return _map.size(); }
+  /** @return <tt>size() == 0</tt> */
+  public boolean isEmpty    ( )                 { return _map.isEmpty(); }
+  /** @return <tt>true</tt> if the key is in the table */
+  public boolean containsKey( int key )         { return _map.containsKey(key); }
+  /** @return the value mapped to the key, or the missing value */
+  public int     get        ( int key )         { return v(_map.get(key)); }
+  /** @return the value mapped to the key, or {@code defaultValue} */
+  public int     getOrDefault( int key, int defaultValue ) { return (int)_map.getOrDefault(key, defaultValue); }
+  /** @return the previous value associated with <tt>key</tt>, or the missing value */
+  public int     put        ( int key, int val ){ return v(_map.put(key, val)); }
+  /** Atomically, do a {@link #put} if-and-only-if the key is not mapped.
+   *  @return the previous value associated with <tt>key</tt>, or the missing value */
+  public int     putIfAbsent( int key, int val ){ return v(_map.putIfAbsent(key, val)); }
+  /** @return the previous value associated with <tt>key</tt>, or the missing value */
+  public int     remove     ( int key )         { return v(_map.remove(key)); }
+  /** Atomically remove the key if-and-only-if it is mapped to the given value.
+   *  @return <tt>true</tt> if the value was removed */
+  public boolean remove     ( int key, int val ){ return _map.remove(key, val); }
+  /** Atomically do a <code>put(key,val)</code> if-and-only-if the key is mapped.
+   *  @return the previous value associated with <tt>key</tt>, or the missing value */
+  public int     replace    ( int key, int val ){ return v(_map.replace(key, val)); }
+  /** Atomically do a <code>put(key,update)</code> if-and-only-if the key is
+   *  mapped to <code>expect</code>.
+   *  @return <tt>true</tt> if successful */
+  public boolean compareAndSet( int key, int expect, int update ) {
+    return _map.compareAndSet(key, expect, update);
+  }
+
+  /** Atomically adds {@code delta} to the value mapped to the key, mapping
+   *  the key to {@code delta} if it was not mapped.  The value wraps around
+   *  on int overflow.
+   *  @return the updated value */
+  public int addAndGet( int key, int delta ) { return _map.addAndGetInt(key, delta); }
+
+  /** Removes all of the mappings from this map. */
+  public void clear( ) { _map.clear(); }
+
+  /** Keys as an int array.  Array may be zero-padded if keys are concurrently deleted. */
+  public int[] keys( ) {
+    final long[] keys = _map.keys();
+    final int[] dom = new int[keys.length];
+    for( int i=0; i<keys.length; i++ )
+      dom[i] = (int)keys[i];
+    return dom;
+  }
+
+  /** Returns a string of the form <tt>{k1=v1, k2=v2}</tt>. */
+  @Override
+  public String toString( ) { return _map.toString(); }
+}
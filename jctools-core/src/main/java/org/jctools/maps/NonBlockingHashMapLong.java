@@ -968,24 +968,27 @@ public class NonBlockingHashMapLong<TypeV>
 
 
   // --- Snapshot ------------------------------------------------------------
+  // Returns a table with no copy in progress, helping any copy along.
+  private CHM snapshot_chm() {
+    while( true ) {             // Verify no table-copy-in-progress
+      final CHM topchm = _chm;
+      if( topchm._newchm == null ) // No table-copy-in-progress
+        return topchm;
+      // Table copy in-progress - so we cannot get a clean iteration.  We
+      // must help finish the table copy before we can start iterating.
+      topchm.help_copy_impl(true);
+    }
+  }
+
   // The main class for iterating over the NBHM.  It "snapshots" a clean
   // view of the K/V array.
   private class SnapshotV implements Iterator<TypeV>, Enumeration<TypeV> {
     final CHM _sschm;
     public SnapshotV() {
-      CHM topchm;
-      while( true ) {           // Verify no table-copy-in-progress
-        topchm = _chm;
-        if( topchm._newchm == null ) // No table-copy-in-progress
-          break;
-        // Table copy in-progress - so we cannot get a clean iteration.  We
-        // must help finish the table copy before we can start iterating.
-        topchm.help_copy_impl(true);
-      }
       // The "linearization point" for the iteration.  Every key in this table
       // will be visited, but keys added later might be skipped or even be
       // added to a following table (also not iterated over).
-      _sschm = topchm;
+      _sschm = snapshot_chm();
       // Warm-up the iterator
       _idx = -1;
       next();
@@ -1055,6 +1058,7 @@ public class NonBlockingHashMapLong<TypeV>
       public int     size    (          ) { return NonBlockingHashMapLong.this.size    ( ); }
       public boolean contains( Object v ) { return NonBlockingHashMapLong.this.containsValue(v); }
       public Iterator<TypeV> iterator()   { return new SnapshotV(); }
+      public java.util.Spliterator<TypeV> spliterator() { return new SnapshotSpliterator<TypeV>(VALUES); }
     };
   }
 
@@ -1106,6 +1110,7 @@ public class NonBlockingHashMapLong<TypeV>
       public boolean contains( Object k ) { return NonBlockingHashMapLong.this.containsKey(k); }
       public boolean remove  ( Object k ) { return NonBlockingHashMapLong.this.remove  (k) != null; }
       public IteratorLong iterator()    { return new IteratorLong(); }
+      public java.util.Spliterator<Long> spliterator() { return new SnapshotSpliterator<Long>(KEYS); }
     };
   }
 
@@ -1176,9 +1181,113 @@ public class NonBlockingHashMapLong<TypeV>
         return v != null && v.equals(e.getValue());
       }
       public Iterator<Map.Entry<Long,TypeV>> iterator() { return new SnapshotE(); }
+      public java.util.Spliterator<Map.Entry<Long,TypeV>> spliterator() {
+        return new SnapshotSpliterator<Map.Entry<Long,TypeV>>(ENTRIES);
+      }
     };
   }
 
+  // --- Spliterators --------------------------------------------------------
+  // Splittable traversal of the views, over the slots of a snapshot table as
+  // for NonBlockingHashMap, split-off spliterators estimating their size by
+  // counting their slot range.  Slot -1 stands for NO_KEY, whose value is held outside
+  // the table.  Each key found is looked up with 'get', which follows any
+  // later table copy.
+  private static final int KEYS = 0, VALUES = 1, ENTRIES = 2;
+  private static final int MIN_SPLIT_SLOTS = 16;
+
+  private final class SnapshotSpliterator<T> implements java.util.Spliterator<T> {
+    private final CHM _sschm;
+    private final int _kind;
+    private int _idx;           // Next slot, -1 for NO_KEY
+    private final int _fence;   // One past the last slot
+    private long _est;          // Size estimate, -1 until counted
+    private boolean _counted;   // Split off, the size estimate is counted
+
+    SnapshotSpliterator( int kind ) {
+      this(snapshot_chm(), kind, -1, -1, false);
+    }
+    private SnapshotSpliterator( CHM chm, int kind, int idx, int fence, boolean counted ) {
+      _sschm = chm;
+      _kind = kind;
+      _idx = idx;
+      _fence = fence < 0 ? chm._keys.length : fence;
+      _counted = counted;
+      _est = counted ? -1 : size();
+    }
+
+    public boolean tryAdvance( java.util.function.Consumer<? super T> action ) {
+      if( action == null ) throw new NullPointerException();
+      while( _idx < _fence ) {
+        final int idx = _idx++;
+        final long K = idx < 0 ? NO_KEY : _sschm._keys[idx];
+        if( K == NO_KEY && idx >= 0 ) continue;
+        final TypeV V = get(K);
+        if( V != null ) {
+          if( _counted && _est > 0 ) _est--;
+          action.accept(element(K,V));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public void forEachRemaining( java.util.function.Consumer<? super T> action ) {
+      if( action == null ) throw new NullPointerException();
+      while( tryAdvance(action) ) ;
+    }
+
+    private T element( long K, TypeV V ) {
+      switch( _kind ) {
+      case KEYS:   return (T)Long.valueOf(K);
+      case VALUES: return (T)V;
+      default:     return (T)new NBHMLEntry(K,V);
+      }
+    }
+
+    public java.util.Spliterator<T> trySplit() {
+      final int lo = _idx, mid = (lo + _fence) >>> 1;
+      if( mid - lo < MIN_SPLIT_SLOTS ) return null;
+      _idx = mid;
+      _counted = true;          // Both halves are counted from now on
+      _est = -1;
+      return new SnapshotSpliterator<T>(_sschm, _kind, lo, mid, true);
+    }
+
+    // Live keys in the remaining slots.  A value moved on by a later copy
+    // is looked up.
+    private long count() {
+      long cnt = 0;
+      for( int i = _idx; i < _fence; i++ ) {
+        if( i < 0 ) {
+          if( get(NO_KEY) != null ) cnt++;
+          continue;
+        }
+        final long K = _sschm._keys[i];
+        if( K == NO_KEY ) continue;
+        final Object V = _sschm._vals[i];
+        if( V instanceof Prime ? get(K) != null : V != null && V != TOMBSTONE ) cnt++;
+      }
+      return cnt;
+    }
+
+    public long estimateSize() {
+      if( _idx >= _fence ) return 0;
+      if( _est < 0 ) _est = count();
+      return _est;
+    }
+
+    public int characteristics() {
+      return CONCURRENT | NONNULL | (_kind == VALUES ? 0 : DISTINCT);
+    }
+
+    public long getExactSizeIfKnown() { return -1; }
+    public boolean hasCharacteristics( int characteristics ) {
+      return (characteristics() & characteristics) == characteristics;
+    }
+    public java.util.Comparator<? super T> getComparator() { throw new IllegalStateException(); }
+  }
+
   // --- writeObject -------------------------------------------------------
   // Write a NBHML to a stream
   private void writeObject(java.io.ObjectOutputStream s) throws IOException  {
@@ -0,0 +1,746 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import org.jctools.util.RangeUtil;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+
+/**
+ * A lock-free hash map with <strong>primitive long keys and values</strong>,
+ * following the design of {@link NonBlockingHashMapLong}.  Keys and values
+ * are stored inline, as pairs in a single {@code long[]}, so there is no
+ * per-entry allocation at all.  The table is resized with the same
+ * non-blocking copy protocol as {@link NonBlockingHashMapLong}: all threads
+ * visiting a table being resized help the copy along, and no operation ever
+ * blocks on another.
+ *
+ * <p>The copy protocol marks ("primes") the values being copied, which takes
+ * a bit the value itself cannot use.  The two low bits of each value word
+ * hold the slot state, so <strong>values are limited to 62 bits</strong>:
+ * from {@link #MIN_VALUE} to {@link #MAX_VALUE}.  Operations returning a
+ * value return {@link #NO_VALUE}, which is outside that range, for a missing
+ * key.
+ *
+ * <p>Besides the usual map operations it supports the atomic primitive
+ * updates {@link #addAndGet} and {@link #compareAndSet}, making it a
+ * natural fit for sparse counters and id to index maps.
+ *
+ * @see NonBlockingHashMapLong
+ */
+public class NonBlockingHashMapLongLong {
+
+  /** Returned by the operations returning a value when the key is not mapped. */
+  public static final long NO_VALUE  = Long.MIN_VALUE;
+  /** The largest value which can be mapped to a key. */
+  public static final long MAX_VALUE = Long.MAX_VALUE >> 2;
+  /** The smallest value which can be mapped to a key. */
+  public static final long MIN_VALUE = Long.MIN_VALUE >> 2;
+
+  private static final int REPROBE_LIMIT=10; // Too many reprobes then force a table-resize
+
+  // --- Bits to allow Unsafe access to arrays
+  private static final int _Lbase  = UNSAFE.arrayBaseOffset(long[].class);
+  private static final int _Lscale = UNSAFE.arrayIndexScale(long[].class);
+  private static long rawIndex(final long[] ary, final int idx) {
+    assert idx >= 0 && idx < ary.length;
+    return _Lbase + ((long)idx * _Lscale);
+  }
+
+  // --- Bits to allow Unsafe CAS'ing of the CHM field
+  private static final long _chm_offset = fieldOffset(NonBlockingHashMapLongLong.class, "_chm");
+  private static final long _val_1_offset = fieldOffset(NonBlockingHashMapLongLong.class, "_val_1");
+
+  private final boolean CAS_chm( final CHM old, final CHM nnn ) {
+    return UNSAFE.compareAndSwapObject(this, _chm_offset, old, nnn );
+  }
+  private final boolean CAS_val_1( final long old, final long nnn ) {
+    return UNSAFE.compareAndSwapLong(this, _val_1_offset, old, nnn );
+  }
+
+  // --- Value words -----------------------
+  // A value word holds the value shifted up by 2, and a state tag in the low
+  // 2 bits: bit 0 is set for a live value and bit 1 for a Prime'd (boxed)
+  // one.  The all-zero word is the initial array value, and means: no value
+  // inserted yet (the 'null' of NonBlockingHashMapLong).
+  private static final long NULL_WORD = 0L;
+  private static final long PRIME_BIT = 2L;
+  // This K/V pair has been deleted (but the Key slot is forever claimed).
+  private static final long TOMBSTONE = 4L;
+  // Prime'd version of TOMBSTONE.
+  private static final long TOMBPRIME = TOMBSTONE | PRIME_BIT;
+  // Sentinels for putIfMatch, never stored.  No-Match-Old counts as a
+  // wildcard match, Match-Any matches any live value.
+  private static final long NO_MATCH_OLD = 8L;
+  private static final long MATCH_ANY = 12L;
+
+  private static boolean isPrime( long w ) { return (w & PRIME_BIT) != 0; }
+  private static boolean isLive ( long w ) { return (w & 1L) != 0; }
+  private static long    prime  ( long w ) { return w | PRIME_BIT; }
+  private static long    unbox  ( long w ) { return w & ~PRIME_BIT; }
+  private static long    decode ( long w ) { return isLive(w) ? w >> 2 : NO_VALUE; }
+  private static long    encode ( long v ) {
+    if( v < MIN_VALUE || v > MAX_VALUE )
+      throw new IllegalArgumentException("value out of range [MIN_VALUE, MAX_VALUE]: " + v);
+    return (v << 2) | 1L;
+  }
+
+  // Decides if a found value word matches the expected one
+  private static boolean matches( long V, long expVal ) {
+    return expVal == NO_MATCH_OLD ||  // Do we care about expected-Value at all?
+      V == expVal ||                  // Instant match
+      (expVal == MATCH_ANY && isLive(V)) ||
+      (expVal == TOMBSTONE && V == NULL_WORD); // Match on null/TOMBSTONE combo
+  }
+
+  // --- The Hash Table --------------------
+  private transient CHM _chm;
+  // This next field holds the value for Key 0 - the special key value which
+  // is the initial array value, and also means: no-key-inserted-yet.
+  private transient volatile long _val_1; // Value for Key: NO_KEY
+
+  // Time since last resize
+  private transient long _last_resize_milli;
+
+  // Optimize for space: use a 1/2-sized table and allow more re-probes
+  private final boolean _opt_for_space;
+
+  // --- Minimum table size ----------------
+  private static final int MIN_SIZE_LOG=4;             //
+  private static final int MIN_SIZE=(1<<MIN_SIZE_LOG); // Must be power of 2
+  // The table array holds 2 words per K/V pair, and is limited to 2^30 words.
+  private static final int MAX_SIZE_LOG=29;
+
+  // I exclude 1 long from the 2^64 possibilities, and test for it before
+  // entering the main array.  The NO_KEY value must be zero, the initial
+  // value set by Java before it hands me the array.
+  private static final long NO_KEY = 0L;
+
+  private static int reprobe_limit( int len ) {
+    return REPROBE_LIMIT + (len>>4);
+  }
+
+  // --- NonBlockingHashMapLongLong ------------------------------------------
+  // Constructors
+
+  /** Create a new NonBlockingHashMapLongLong with default minimum size. */
+  public NonBlockingHashMapLongLong( ) { this(MIN_SIZE,true); }
+
+  /** Create a new NonBlockingHashMapLongLong with initial room for the given
+   *  number of elements, thus avoiding internal resizing operations to reach
+   *  an appropriate size.  The initial size will be rounded up internally to
+   *  the next larger power of 2. */
+  public NonBlockingHashMapLongLong( final int initial_sz ) { this(initial_sz,true); }
+
+  /** Create a new NonBlockingHashMapLongLong, setting both the initial size
+   *  and the space-for-speed tradeoff.  {@code true} optimizes for space and
+   *  is the default.  {@code false} optimizes for speed and doubles space
+   *  costs for roughly a 10% speed improvement.  */
+  public NonBlockingHashMapLongLong( final int initial_sz, final boolean opt_for_space ) {
+    _opt_for_space = opt_for_space;
+    RangeUtil.checkPositiveOrZero(initial_sz, "initial_sz");
+    int i;                      // Convert to next largest power-of-2
+    for( i=MIN_SIZE_LOG; (1<<i) < initial_sz && i < MAX_SIZE_LOG; i++ ) {/*empty*/}
+    _chm = new CHM(this,new ConcurrentAutoTable(),i);
+    _val_1 = TOMBSTONE;         // Always as-if deleted
+    _last_resize_milli = System.currentTimeMillis();
+  }
+
+  // --- wrappers ------------------------------------------------------------
+
+  /** Returns the number of key-value mappings in this map.
+   *  @return the number of key-value mappings in this map */
+  public int     size       ( ) { return (_val_1==TOMBSTONE?0:1) + _chm.size(); }
+  /** Returns <tt>size() == 0</tt>.
+   *  @return <tt>size() == 0</tt> */
+  public boolean isEmpty    ( ) { return size() == 0; }
+  /** Tests if the key in the table.
+   * @return <tt>true</tt> if the key is in the table */
+  public boolean containsKey( long key ) { return isLive(get_word(key)); }
+
+  /** Returns the value to which the specified key is mapped.
+   *  @return the value mapped to the key, or {@link #NO_VALUE} if there is none */
+  public long get( long key ) { return decode(get_word(key)); }
+
+  /** Returns the value to which the specified key is mapped, or {@code
+   *  defaultValue} if this map contains no mapping for the key. */
+  public long getOrDefault( long key, long defaultValue ) {
+    final long w = get_word(key);
+    return isLive(w) ? decode(w) : defaultValue;
+  }
+
+  /** Maps the specified key to the specified value in the table.
+   *  @return the previous value associated with <tt>key</tt>, or
+   *          {@link #NO_VALUE} if there was no mapping for <tt>key</tt>
+   *  @throws IllegalArgumentException if the value is out of range */
+  public long put        ( long key, long val ) { return decode(putIfMatch( key, encode(val), NO_MATCH_OLD)); }
+
+  /** Atomically, do a {@link #put} if-and-only-if the key is not mapped.
+   *  @return the previous value associated with the specified key,
+   *         or {@link #NO_VALUE} if there was no mapping for the key
+   *  @throws IllegalArgumentException if the value is out of range */
+  public long putIfAbsent( long key, long val ) { return decode(putIfMatch( key, encode(val), TOMBSTONE   )); }
+
+  /** Removes the key (and its corresponding value) from this map.
+   *  @return the previous value associated with <tt>key</tt>, or
+   *         {@link #NO_VALUE} if there was no mapping for <tt>key</tt> */
+  public long remove     ( long key )           { return decode(putIfMatch( key, TOMBSTONE,   NO_MATCH_OLD)); }
+
+  /** Atomically do a {@link #remove(long)} if-and-only-if the key is mapped
+   *  to the given value.
+   *  @return <tt>true</tt> if the value was removed */
+  public boolean remove  ( long key, long val ) {
+    if( val < MIN_VALUE || val > MAX_VALUE ) return false;
+    final long expVal = encode(val);
+    return putIfMatch( key, TOMBSTONE, expVal ) == expVal;
+  }
+
+  /** Atomically do a <code>put(key,val)</code> if-and-only-if the key is
+   *  mapped to some value already.
+   *  @return the previous value associated with <tt>key</tt>, or
+   *         {@link #NO_VALUE} if there was no mapping for <tt>key</tt>
+   *  @throws IllegalArgumentException if the value is out of range */
+  public long replace    ( long key, long val ) { return decode(putIfMatch( key, encode(val), MATCH_ANY   )); }
+
+  /** Atomically do a <code>put(key,update)</code> if-and-only-if the key is
+   *  mapped to <code>expect</code>.
+   *  @return <tt>true</tt> if successful
+   *  @throws IllegalArgumentException if the update is out of range */
+  public boolean compareAndSet( long key, long expect, long update ) {
+    final long putval = encode(update);
+    if( expect < MIN_VALUE || expect > MAX_VALUE ) return false;
+    final long expVal = encode(expect);
+    return putIfMatch( key, putval, expVal ) == expVal;
+  }
+
+  /** Atomically adds {@code delta} to the value mapped to the key, mapping
+   *  the key to {@code delta} if it was not mapped.
+   *  @return the updated value
+   *  @throws IllegalArgumentException if the updated value is out of range */
+  public long addAndGet( long key, long delta ) { return decode(addAndGet_word( key, delta, false )); }
+
+  // The addAndGet of NonBlockingHashMapIntInt: the sum wraps around as an int.
+  int addAndGetInt( int key, int delta ) { return (int)decode(addAndGet_word( key, delta, true )); }
+
+  /** Removes all of the mappings from this map. */
+  public void clear() {         // Smack a new empty table down
+    CHM newchm = new CHM(this,new ConcurrentAutoTable(),MIN_SIZE_LOG);
+    while( !CAS_chm(_chm,newchm) ) { /*Spin until the clear works*/}
+    CAS_val_1(_val_1,TOMBSTONE);
+  }
+
+  /** Keys as a long array.  Array may be zero-padded if keys are concurrently
+   *  deleted, and keys concurrently inserted may be missed. */
+  public long[] keys() {
+    final CHM topchm = snapshot();
+    long[] dom = new long[size()];
+    int j=0;
+    if( j < dom.length && containsKey(NO_KEY) )
+      dom[j++] = NO_KEY;
+    final long[] kvs = topchm._kvs;
+    for( int i=0; i<kvs.length && j < dom.length; i+=2 ) {
+      final long K = kvs[i];
+      if( K != NO_KEY && containsKey(K) )
+        dom[j++] = K;
+    }
+    return dom;
+  }
+
+  /** Returns a string of the form <tt>{k1=v1, k2=v2}</tt>. */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    for( long K : keys() ) {
+      final long V = get_word(K);
+      if( !isLive(V) ) continue;
+      if( sb.length() > 1 ) sb.append(", ");
+      sb.append(K).append('=').append(decode(V));
+    }
+    return sb.append('}').toString();
+  }
+
+  private long putIfMatch( long key, long newVal, long oldVal ) {
+    if( key == NO_KEY ) {
+      while( true ) {
+        final long curVal = _val_1;
+        if( !matches(curVal, oldVal) || curVal == newVal ) return curVal;
+        if( CAS_val_1(curVal,newVal) ) return curVal;
+      }
+    }
+    final long res = _chm.putIfMatch( key, newVal, oldVal );
+    assert !isPrime(res);
+    return res;
+  }
+
+  // Returns the new value word
+  private long addAndGet_word( long key, long delta, boolean int_wrap ) {
+    if( key == NO_KEY ) {
+      while( true ) {
+        final long curVal = _val_1;
+        final long newVal = encode(sum(curVal, delta, int_wrap));
+        if( CAS_val_1(curVal,newVal) ) return newVal;
+      }
+    }
+    return _chm.addAndGet_impl( key, delta, int_wrap );
+  }
+
+  // The value after adding delta to value word V, a missing value counting as 0
+  private static long sum( long V, long delta, boolean int_wrap ) {
+    final long nv = isLive(V) ? decode(V) + delta : delta;
+    return int_wrap ? (int)nv : nv;
+  }
+
+  // Never returns a Prime
+  private long get_word( long key ) {
+    if( key == NO_KEY ) return _val_1;
+    final long V = _chm.get_impl(key);
+    assert !isPrime(V);
+    return V;
+  }
+
+  // Help finish any table copy, returning a table no longer being copied
+  private CHM snapshot() {
+    CHM topchm;
+    while( true ) {             // Verify no table-copy-in-progress
+      topchm = _chm;
+      if( topchm._newchm == null ) // No table-copy-in-progress
+        return topchm;
+      topchm.help_copy_impl(true);
+    }
+  }
+
+  // --- help_copy -----------------------------------------------------------
+  private void help_copy( ) {
+    CHM topchm = _chm;
+    if( topchm._newchm == null ) return; // No copy in-progress
+    topchm.help_copy_impl(false);
+  }
+
+
+  // --- CHM -----------------------------------------------------------------
+  // The control structure for the NonBlockingHashMapLongLong, following the
+  // NonBlockingHashMapLong.CHM protocol with value words in place of boxed
+  // values.  Slot 'idx' holds its key at _kvs[2*idx] and its value word at
+  // _kvs[2*idx+1].
+  private static final class CHM {
+    // Back-pointer to top-level structure
+    final NonBlockingHashMapLongLong _nbhmll;
+
+    // Size in active K,V pairs
+    private final ConcurrentAutoTable _size;
+    public int size () { return (int)_size.get(); }
+
+    // Count of used slots, to tell when table is full of dead unusable slots
+    private final ConcurrentAutoTable _slots;
+    public int slots() { return (int)_slots.get(); }
+
+    // The 'next' CHM - created during a resize operation.
+    volatile CHM _newchm;
+    private static final AtomicReferenceFieldUpdater<CHM,CHM> _newchmUpdater =
+      AtomicReferenceFieldUpdater.newUpdater(CHM.class,CHM.class, "_newchm");
+    boolean CAS_newchm( CHM newchm ) {
+      return _newchmUpdater.compareAndSet(this,null,newchm);
+    }
+    // Count of threads attempting an initial resize
+    volatile long _resizers;
+    private static final AtomicLongFieldUpdater<CHM> _resizerUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_resizers");
+
+    // --- key,val -------------------------------------------------------------
+    final long[] _kvs;
+    private final int _len;     // Count of K/V pairs
+
+    private long key( int idx ) { return _kvs[idx<<1]; }
+    private long val( int idx ) { return _kvs[(idx<<1)+1]; }
+    private boolean CAS_key( int idx, long old, long key ) {
+      return UNSAFE.compareAndSwapLong( _kvs, rawIndex(_kvs, idx<<1), old, key );
+    }
+    private boolean CAS_val( int idx, long old, long val ) {
+      return UNSAFE.compareAndSwapLong( _kvs, rawIndex(_kvs, (idx<<1)+1), old, val );
+    }
+
+    CHM( final NonBlockingHashMapLongLong nbhmll, ConcurrentAutoTable size, final int logsize ) {
+      _nbhmll = nbhmll;
+      _size = size;
+      _slots= new ConcurrentAutoTable();
+      _len  = 1<<logsize;
+      _kvs  = new long[_len<<1];
+    }
+
+    // --- get_impl ----------------------------------------------------------
+    // Never returns a Prime.
+    private long get_impl ( final long key ) {
+      final int len = _len;
+      int idx = (int)(key & (len-1)); // First key hash
+
+      int reprobe_cnt=0;
+      while( true ) {
+        final long K = key(idx); // Get key   before volatile read, could be NO_KEY
+        final long V = val(idx); // Get value before volatile read, could be null or Tombstone or Prime
+        if( K == NO_KEY ) return NULL_WORD; // A clear miss
+
+        if( key == K ) {
+          // Key hit!  Check for no table-copy-in-progress
+          if( !isPrime(V) ) {
+            // Volatile read before returning, matching the value CAS
+            @SuppressWarnings("unused") final CHM newchm = _newchm;
+            return V;
+          }
+          // Key hit - but slot is (possibly partially) copied to the new table.
+          return copy_slot_and_check(idx,true).get_impl(key); // Retry in the new table
+        }
+        if( ++reprobe_cnt >= reprobe_limit(len) ) // too many probes
+          return _newchm == null // Table copy in progress?
+            ? NULL_WORD          // Nope!  A clear miss
+            : copy_slot_and_check(idx,true).get_impl(key); // Retry in the new table
+
+        idx = (idx+1)&(len-1);    // Reprobe by 1!
+      }
+    }
+
+    // --- putIfMatch ---------------------------------------------------------
+    // Put, Remove, PutIfAbsent, etc.  Return the old value word.  Unlike
+    // NonBlockingHashMapLong a failed value CAS is retried, so the returned
+    // value matches expVal if-and-only-if the update happened.  That makes
+    // compareAndSet based update loops exact even when values repeat.
+    // Only the path through copy_slot passes in an expected value of null.
+    private long putIfMatch( final long key, final long putval, final long expVal ) {
+      assert putval != NULL_WORD;
+      assert !isPrime(putval);
+      assert !isPrime(expVal);
+      final int len = _len;
+      int idx = (int)(key & (len-1)); // The first key
+
+      // ---
+      // Key-Claim stanza: spin till we can claim a Key (or force a resizing).
+      int reprobe_cnt=0;
+      long K;
+      long V;
+      while( true ) {           // Spin till we get a Key slot
+        V = val(idx);           // Get old value
+        K = key(idx);           // Get current key
+        if( K == NO_KEY ) {     // Slot is free?
+          // Found an empty Key slot - which means this Key has never been in
+          // this table.  No need to put a Tombstone - the Key is not here!
+          if( putval == TOMBSTONE ) return putval; // Not-now & never-been in this table
+          if( expVal == MATCH_ANY ) return NULL_WORD; // Will not match, even after K inserts
+          // Claim the zero key-slot
+          if( CAS_key(idx, NO_KEY, key) ) { // Claim slot for Key
+            _slots.add(1);      // Raise key-slots-used count
+            break;              // Got it!
+          }
+          K = key(idx);         // CAS failed, get updated value
+          assert K != NO_KEY ;  // If keys[idx] is NO_KEY, CAS shoulda worked
+        }
+        // Key slot was not null, there exists a Key here
+        if( K == key )
+          break;                // Got it!
+
+        if( ++reprobe_cnt >= reprobe_limit(len) ) {
+          // We simply must have a new table to do a 'put'.
+          final CHM newchm = resize();
+          if( expVal != NULL_WORD ) _nbhmll.help_copy(); // help along an existing copy
+          return newchm.putIfMatch(key,putval,expVal);
+        }
+
+        idx = (idx+1)&(len-1); // Reprobe!
+      } // End of spinning till we get a Key slot
+
+      // ---
+      // Found the proper Key slot, now update the matching Value slot.
+      while( true ) {
+        if( putval == V ) return V; // Fast cutout for no-change
+
+        // See if we want to move to a new table (to avoid high average re-probe
+        // counts).  We only check on the initial set of a Value from null to
+        // not-null (i.e., once per key-insert).
+        if( (V == NULL_WORD && tableFull(reprobe_cnt,len)) ||
+            // Or we found a Prime: resize is already in progress.
+            isPrime(V) ) {
+          resize();               // Force the new table copy to start
+          return copy_slot_and_check(idx,expVal != NULL_WORD).putIfMatch(key,putval,expVal);
+        }
+
+        // Must match old, and we do not?  Then bail out now.
+        if( !matches(V, expVal) )
+          return V;               // Do not update!
+
+        // Actually change the Value in the Key,Value pair
+        if( CAS_val(idx, V, putval ) ) {
+          // Both normal put's and table-copy calls putIfMatch, but table-copy
+          // does not (effectively) increase the number of live k/v pairs.
+          if( expVal != NULL_WORD ) {
+            if( !isLive(V) &&  isLive(putval) ) _size.add( 1);
+            if(  isLive(V) && !isLive(putval) ) _size.add(-1);
+          }
+          return V;
+        }
+        V = val(idx);             // CAS failed, get new value and retry
+      }
+    }
+
+    // --- addAndGet_impl -----------------------------------------------------
+    // Atomically add delta to the value of the key, inserting the key if it
+    // is missing.  The key is probed for once, then the value CAS is retried
+    // in place until it sticks.  Returns the new value word.
+    private long addAndGet_impl( final long key, final long delta, final boolean int_wrap ) {
+      final int len = _len;
+      int idx = (int)(key & (len-1)); // The first key
+
+      // Key-Claim stanza, as in putIfMatch
+      int reprobe_cnt=0;
+      long K;
+      long V;
+      while( true ) {           // Spin till we get a Key slot
+        V = val(idx);           // Get old value
+        K = key(idx);           // Get current key
+        if( K == NO_KEY ) {     // Slot is free?
+          if( CAS_key(idx, NO_KEY, key) ) { // Claim slot for Key
+            _slots.add(1);      // Raise key-slots-used count
+            break;              // Got it!
+          }
+          K = key(idx);         // CAS failed, get updated value
+          assert K != NO_KEY ;  // If keys[idx] is NO_KEY, CAS shoulda worked
+        }
+        if( K == key )
+          break;                // Got it!
+
+        if( ++reprobe_cnt >= reprobe_limit(len) ) {
+          // We simply must have a new table to insert the key.
+          final CHM newchm = resize();
+          _nbhmll.help_copy();  // help along an existing copy
+          return newchm.addAndGet_impl(key,delta,int_wrap);
+        }
+
+        idx = (idx+1)&(len-1); // Reprobe!
+      }
+
+      // ---
+      // Found the proper Key slot, now add to the matching Value slot.
+      while( true ) {
+        if( (V == NULL_WORD && tableFull(reprobe_cnt,len)) || isPrime(V) ) {
+          resize();               // Force the new table copy to start
+          return copy_slot_and_check(idx,true).addAndGet_impl(key,delta,int_wrap);
+        }
+        final long putval = encode(sum(V, delta, int_wrap));
+        if( CAS_val(idx, V, putval) ) {
+          if( !isLive(V) ) _size.add(1);
+          return putval;
+        }
+        V = val(idx);             // CAS failed, get new value and retry
+      }
+    }
+
+    // --- tableFull ---------------------------------------------------------
+    private final boolean tableFull( int reprobe_cnt, int len ) {
+      return
+        // Do the cheap check first: we allow some number of reprobes always
+        reprobe_cnt >= REPROBE_LIMIT &&
+        (reprobe_cnt >= reprobe_limit(len) ||
+         // More expensive check: see if the table is > 1/2 full.
+         _slots.estimate_get() >= (len>>1));
+    }
+
+    // --- resize ------------------------------------------------------------
+    // Resizing after too many probes, see NonBlockingHashMapLong.CHM.resize
+    private final CHM resize() {
+      CHM newchm = _newchm;     // VOLATILE READ
+      if( newchm != null )      // See if resize is already in progress
+        return newchm;          // Use the new table already
+
+      int oldlen = _len;        // Old count of K,V pairs allowed
+      int sz = size();          // Get current table count of active K,V pairs
+      int newsz = sz;           // First size estimate
+
+      if( _nbhmll._opt_for_space ) {
+        if( sz >= (oldlen>>1) ) // If we are >50% full of keys then...
+          newsz = oldlen<<1;    // Double size
+      } else {
+        if( sz >= (oldlen>>2) ) { // If we are >25% full of keys then...
+          newsz = oldlen<<1;      // Double size
+          if( sz >= (oldlen>>1) ) // If we are >50% full of keys then...
+            newsz = oldlen<<2;    // Double double size
+        }
+      }
+
+      // Last (re)size operation was very recent?  Then double again.
+      long tm = System.currentTimeMillis();
+      if( newsz <= oldlen && // New table would shrink or hold steady?
+          tm <= _nbhmll._last_resize_milli+10000)  // Recent resize (less than 10 sec ago)
+        newsz = oldlen<<1;      // Double the existing size
+
+      // Do not shrink, ever.
+      if( newsz < oldlen ) newsz = oldlen;
+
+      // Convert to power-of-2
+      int log2;
+      for( log2=MIN_SIZE_LOG; (1<<log2) < newsz && log2 < MAX_SIZE_LOG; log2++ ) ; // Compute log2 of size
+      if( log2 == MAX_SIZE_LOG && sz > ((1<<log2) >> 2) + ((1<<log2) >> 1) )
+        throw new RuntimeException("Table is full.");
+
+      // Now limit the number of threads actually allocating memory to a
+      // handful - lest we have 750 threads all trying to allocate a giant
+      // resized array.
+      long r = _resizers;
+      while( !_resizerUpdater.compareAndSet(this,r,r+1) )
+        r = _resizers;
+      long megs = ((((1L<<log2)<<1)+8)<<3/*word to bytes*/)>>20/*megs*/;
+      if( r >= 2 && megs > 0 ) { // Already 2 guys trying; wait and see
+        newchm = _newchm;        // Between dorking around, another thread did it
+        if( newchm != null )     // See if resize is already in progress
+          return newchm;         // Use the new table already
+        try { Thread.sleep(megs); } catch( Exception e ) { /*empty*/}
+      }
+      newchm = _newchm;
+      if( newchm != null )      // See if resize is already in progress
+        return newchm;          // Use the new table already
+
+      // New CHM - actually allocate the big array
+      newchm = new CHM(_nbhmll,_size,log2);
+
+      if( _newchm != null )     // See if resize is already in progress
+        return _newchm;         // Use the new table already
+
+      if( !CAS_newchm( newchm ) ) // NOW a resize-is-in-progress!
+        newchm = _newchm;       // Reread new table
+      return newchm;
+    }
+
+
+    // The next part of the table to copy, see NonBlockingHashMapLong.CHM
+    volatile long _copyIdx = 0;
+    static private final AtomicLongFieldUpdater<CHM> _copyIdxUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_copyIdx");
+
+    // Work-done reporting.
+    volatile long _copyDone= 0;
+    static private final AtomicLongFieldUpdater<CHM> _copyDoneUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_copyDone");
+
+    // --- help_copy_impl ----------------------------------------------------
+    private final void help_copy_impl( final boolean copy_all ) {
+      final CHM newchm = _newchm;
+      assert newchm != null;    // Already checked by caller
+      int oldlen = _len;        // Total amount to copy
+      final int MIN_COPY_WORK = Math.min(oldlen,1024); // Limit per-thread work
+
+      int panic_start = -1;
+      int copyidx=-9999;            // Fool javac to think it's initialized
+      while( _copyDone < oldlen ) { // Still needing to copy?
+        if( panic_start == -1 ) { // No panic?
+          copyidx = (int)_copyIdx;
+          while( !_copyIdxUpdater.compareAndSet(this,copyidx,copyidx+MIN_COPY_WORK) )
+            copyidx = (int)_copyIdx;     // Re-read
+          if( !(copyidx < (oldlen<<1)) ) // Panic!
+            panic_start = copyidx;       // Record where we started to panic-copy
+        }
+
+        int workdone = 0;
+        for( int i=0; i<MIN_COPY_WORK; i++ )
+          if( copy_slot((copyidx+i)&(oldlen-1)) ) // Made an oldtable slot go dead?
+            workdone++;         // Yes!
+        if( workdone > 0 )      // Report work-done occasionally
+          copy_check_and_promote( workdone );// See if we can promote
+
+        copyidx += MIN_COPY_WORK;
+        if( !copy_all && panic_start == -1 ) // No panic?
+          return;               // Then done copying after doing MIN_COPY_WORK
+      }
+      // Extra promotion check, in case another thread finished all copying
+      // then got stalled before promoting.
+      copy_check_and_promote( 0 ); // See if we can promote
+    }
+
+
+    // --- copy_slot_and_check -----------------------------------------------
+    // Copy slot 'idx' from the old table to the new table, returning the new
+    // table.
+    private CHM copy_slot_and_check( int idx, boolean should_help ) {
+      assert _newchm != null;
+      if( copy_slot(idx) )      // Copy the desired slot
+        copy_check_and_promote(1); // Record the slot copied
+      // Generically help along any copy (except if called recursively from a helper)
+      if( should_help ) _nbhmll.help_copy();
+      return _newchm;
+    }
+
+    // --- copy_check_and_promote --------------------------------------------
+    private final void copy_check_and_promote( int workdone ) {
+      int oldlen = _len;
+      long copyDone = _copyDone;
+      assert (copyDone+workdone) <= oldlen;
+      if( workdone > 0 ) {
+        while( !_copyDoneUpdater.compareAndSet(this,copyDone,copyDone+workdone) ) {
+          copyDone = _copyDone; // Reload, retry
+          assert (copyDone+workdone) <= oldlen;
+        }
+      }
+
+      // Check for copy being ALL done, and promote.
+      if( copyDone+workdone == oldlen && // Ready to promote this table?
+          _nbhmll._chm == this &&        // Looking at the top-level table?
+          _nbhmll.CAS_chm(this,_newchm) ) {
+        _nbhmll._last_resize_milli = System.currentTimeMillis();  // Record resize time for next check
+      }
+    }
+
+    // --- copy_slot ---------------------------------------------------------
+    // Copy one K/V pair from the old table to the new one.  Returns true if we
+    // can confirm that we set an old-table slot to TOMBPRIME, and only returns
+    // after updating the new table.
+    private boolean copy_slot( int idx ) {
+      // Blindly set the key slot from NO_KEY to some key which hashes here,
+      // to eagerly stop fresh put's from inserting new values in the old
+      // table when the old table is mid-resize.
+      long key;
+      while( (key=key(idx)) == NO_KEY )
+        CAS_key(idx, NO_KEY, (idx+_len)/*a non-zero key which hashes here*/);
+
+      // ---
+      // Prevent new values from appearing in the old table.
+      // Box what we see in the old table, to prevent further updates.
+      long oldval = val(idx);   // Read OLD table
+      while( !isPrime(oldval) ) {
+        final long box = isLive(oldval) ? prime(oldval) : TOMBPRIME;
+        if( CAS_val(idx,oldval,box) ) { // CAS down a box'd version of oldval
+          if( box == TOMBPRIME )
+            return true;
+          oldval = box;         // Record updated oldval
+          break;                // Break loop; oldval is now boxed by us
+        }
+        oldval = val(idx);      // Else try, try again
+      }
+      if( oldval == TOMBPRIME ) return false; // Copy already complete here!
+
+      // ---
+      // Copy the value into the new table, but only if we overwrite a null.
+      final long old_unboxed = unbox(oldval);
+      assert old_unboxed != TOMBSTONE;
+      _newchm.putIfMatch(key, old_unboxed, NULL_WORD);
+
+      // ---
+      // Finally, now that any old value is exposed in the new table, we can
+      // forever hide the old-table value by slapping a TOMBPRIME down.
+      while( oldval != TOMBPRIME && !CAS_val(idx,oldval,TOMBPRIME) )
+        oldval = val(idx);
+
+      return oldval != TOMBPRIME; // True if we slammed the TOMBPRIME down
+    } // end copy_slot
+  } // End of CHM
+}  // End NonBlockingHashMapLongLong class
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Parallel bulk operations over the entries of a {@link NonBlockingHashMap}
+ * or {@link NonBlockingHashMapLong}, akin to those of {@link
+ * java.util.concurrent.ConcurrentHashMap}.
+ *
+ * <p><em>Requires Java 8:</em> the operations split the entry set
+ * spliterator of the map into tasks run in the common {@link ForkJoinPool}.
+ * The maps themselves only need a Java 6 runtime, so these operations are
+ * kept out of their API; calling them on an older runtime fails with a
+ * {@link LinkageError}.
+ *
+ * <p>The traversal has the same snapshot policy as the spliterators of the
+ * maps: every key present when the operation starts is visited once, even
+ * if the map is resized meanwhile, and keys added later may or may not be.
+ * Any other {@link ConcurrentMap} is traversed as its own entry set
+ * spliterator allows.
+ */
+public final class NonBlockingHashMaps {
+  private NonBlockingHashMaps( ) { }
+
+  /** Performs the given action for each (key, value), in parallel if the
+   *  map holds at least {@code parallelismThreshold} entries.
+   *  @param parallelismThreshold the (estimated) number of entries needed
+   *         for this operation to be executed in parallel, use {@code
+   *         Long.MAX_VALUE} to run sequentially in the calling thread
+   *  @param action the action
+   *  @throws NullPointerException if the action is null */
+  public static <K,V> void forEach( final ConcurrentMap<K,V> map, final long parallelismThreshold,
+                                    final BiConsumer<? super K,? super V> action ) {
+    if( action == null ) throw new NullPointerException();
+    final Spliterator<Map.Entry<K,V>> s = map.entrySet().spliterator();
+    final int depth = splitDepth(map, parallelismThreshold);
+    if( depth == 0 ) s.forEachRemaining(new EntryAction<K,V>(action));
+    else ForkJoinPool.commonPool().invoke(new ForEachTask<K,V>(s, depth, action));
+  }
+
+  /** Returns the result of accumulating the given transformation of all
+   *  (key, value) pairs using the given reducer to combine values, or null
+   *  if none.  The reduction is done in parallel if the map holds at least
+   *  {@code parallelismThreshold} entries, and the reducer should be
+   *  associative.
+   *  @param parallelismThreshold the (estimated) number of entries needed
+   *         for this operation to be executed in parallel, use {@code
+   *         Long.MAX_VALUE} to run sequentially in the calling thread
+   *  @param transformer returns the transformation for an entry, or null if
+   *         there is no transformation (in which case it is not combined)
+   *  @param reducer a commutative associative combining function
+   *  @throws NullPointerException if the transformer or reducer is null */
+  public static <K,V,U> U reduce( final ConcurrentMap<K,V> map, final long parallelismThreshold,
+                                  final BiFunction<? super K,? super V,? extends U> transformer,
+                                  final BiFunction<? super U,? super U,? extends U> reducer ) {
+    if( transformer == null || reducer == null ) throw new NullPointerException();
+    final ReduceTask<K,V,U> task =
+      new ReduceTask<K,V,U>(map.entrySet().spliterator(), splitDepth(map, parallelismThreshold), transformer, reducer);
+    if( task._depth == 0 ) return task.compute();
+    return ForkJoinPool.commonPool().invoke(task);
+  }
+
+  // Times to halve the traversal: none if not parallel, else enough to
+  // balance the load over the pool with a few tasks per thread.
+  private static int splitDepth( final Map<?,?> map, final long parallelismThreshold ) {
+    if( map.size() < parallelismThreshold ) return 0;
+    final int tasks = ForkJoinPool.getCommonPoolParallelism() << 2;
+    return 32 - Integer.numberOfLeadingZeros(tasks - 1);
+  }
+
+  private static final class EntryAction<K,V> implements Consumer<Map.Entry<K,V>> {
+    final BiConsumer<? super K,? super V> _action;
+    EntryAction( BiConsumer<? super K,? super V> action ) { _action = action; }
+    @Override
+    public void accept( Map.Entry<K,V> e ) { _action.accept(e.getKey(), e.getValue()); }
+  }
+
+  private static final class ForEachTask<K,V> extends RecursiveAction {
+    final Spliterator<Map.Entry<K,V>> _s;
+    final int _depth;
+    final BiConsumer<? super K,? super V> _action;
+    ForEachTask( Spliterator<Map.Entry<K,V>> s, int depth, BiConsumer<? super K,? super V> action ) {
+      _s = s; _depth = depth; _action = action;
+    }
+    @Override
+    protected void compute() {
+      final Spliterator<Map.Entry<K,V>> prefix;
+      if( _depth > 0 && (prefix = _s.trySplit()) != null ) {
+        invokeAll(new ForEachTask<K,V>(prefix, _depth-1, _action),
+                  new ForEachTask<K,V>(_s, _depth-1, _action));
+        return;
+      }
+      _s.forEachRemaining(new EntryAction<K,V>(_action));
+    }
+  }
+
+  private static final class ReduceTask<K,V,U> extends RecursiveTask<U> implements Consumer<Map.Entry<K,V>> {
+    final Spliterator<Map.Entry<K,V>> _s;
+    final int _depth;
+    final BiFunction<? super K,? super V,? extends U> _transformer;
+    final BiFunction<? super U,? super U,? extends U> _reducer;
+    U _result;                  // Accumulated by a leaf task
+    ReduceTask( Spliterator<Map.Entry<K,V>> s, int depth,
+                BiFunction<? super K,? super V,? extends U> transformer,
+                BiFunction<? super U,? super U,? extends U> reducer ) {
+      _s = s; _depth = depth; _transformer = transformer; _reducer = reducer;
+    }
+    @Override
+    protected U compute() {
+      final Spliterator<Map.Entry<K,V>> prefix;
+      if( _depth > 0 && (prefix = _s.trySplit()) != null ) {
+        final ReduceTask<K,V,U> left = new ReduceTask<K,V,U>(prefix, _depth-1, _transformer, _reducer);
+        left.fork();
+        final U r = new ReduceTask<K,V,U>(_s, _depth-1, _transformer, _reducer).compute();
+        final U l = left.join();
+        return l == null ? r : r == null ? l : _reducer.apply(l, r);
+      }
+      _s.forEachRemaining(this);
+      return _result;
+    }
+    @Override
+    public void accept( Map.Entry<K,V> e ) {
+      final U u = _transformer.apply(e.getKey(), e.getValue());
+      if( u != null ) _result = _result == null ? u : _reducer.apply(_result, u);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+/**
+ * A {@link NonBlockingOpenHashSet} comparing its elements by reference
+ * rather than with {@code equals}, the set counterpart of {@link
+ * NonBlockingIdentityHashMap}.  Uses System.identityHashCode() to place the
+ * elements, so their {@code hashCode} and {@code equals} are never called.
+ *
+ * @param <E> the type of elements
+ */
+public class NonBlockingIdentityOpenHashSet<E> extends NonBlockingOpenHashSet<E> {
+  private static final long serialVersionUID = 1L;
+
+  /** Create a new NonBlockingIdentityOpenHashSet with default minimum size. */
+  public NonBlockingIdentityOpenHashSet( ) { super(); }
+
+  /** Create a new NonBlockingIdentityOpenHashSet with initial room for the
+   *  given number of elements. */
+  public NonBlockingIdentityOpenHashSet( final int initial_sz ) { super(initial_sz); }
+
+  @Override
+  int hash( final Object key ) {
+    if( key == null ) throw new NullPointerException();
+    // System.identityHashCode is assumed well spread, as in NonBlockingIdentityHashMap
+    return System.identityHashCode(key);
+  }
+
+  @Override
+  boolean keyeq( final Object K, final Object key ) { return K == key; }
+}
@@ -0,0 +1,546 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+import static org.jctools.util.UnsafeRefArrayAccess.REF_ARRAY_BASE;
+import static org.jctools.util.UnsafeRefArrayAccess.REF_ELEMENT_SHIFT;
+
+/**
+ * A lock-free open addressing hash set, holding only the keys: one reference
+ * per table slot, where {@link NonBlockingHashSet} wraps a whole {@link
+ * NonBlockingHashMap} and so also pays for a value slot (and hash slot) per
+ * key.  All operations are non-blocking and multi-thread safe.
+ *
+ * <p>Keys are claimed into empty slots with a CAS and removed by a CAS to a
+ * tombstone of the key, which stays in the table: a slot never goes back to
+ * empty and is never claimed by another key, so the probe sequence for a key
+ * only ever grows, and adding the key back revives its tombstone.  Resizing
+ * copies the live keys into a new table the way {@link NonBlockingHashMap}
+ * does: every thread touching a table being copied helps the copy along, a
+ * slot being copied is frozen by boxing its key (a Prime), and a copied slot
+ * ends up as a Prime'd tombstone of its key.  An operation finding the slot
+ * of its key frozen, or an empty slot frozen (or, for a fresh or removed key,
+ * in a table being copied), freezes that slot and retries in the new table.
+ * Frozen slots of other keys are probed past.  Copies drop the tombstones.
+ *
+ * <p>As all the helpers of a copy add the key to the new table, a helper may
+ * get there after the key was copied and then removed.  A copy therefore
+ * stops at any slot of its key, tombstone or frozen, rather than claiming
+ * another one, which is what makes copying a slot idempotent like the value
+ * copy of {@link NonBlockingHashMap}.
+ *
+ * <p>Iterators are weakly consistent, like those of {@link
+ * NonBlockingHashMap}.  Null keys are not supported.
+ *
+ * @param <E> the type of elements
+ */
+public class NonBlockingOpenHashSet<E> extends AbstractSet<E> implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private static final int MIN_SIZE_LOG=3;             //
+  private static final int MIN_SIZE=(1<<MIN_SIZE_LOG); // Must be power of 2
+  // Number of slots copied by a thread each time it helps a resize along
+  private static final int MIN_COPY_WORK=1024;
+
+  // --- Sentinels ---------------------------------------------------------
+  // A removed key, the slot stays claimed by the key.
+  private static final class Tomb {
+    final Object _K;
+    Tomb( Object K ) { _K = K; }
+  }
+  // An empty slot frozen during a copy.
+  private static final Prime TOMBPRIME = new Prime(new Tomb(null));
+
+  // A key being copied; no more changes are allowed to the slot.  A Prime'd
+  // Tomb is final: the key, if still live, is in the new table.
+  private static final class Prime {
+    final Object _K;
+    Prime( Object K ) { _K = K; }
+    boolean isDead( ) { return _K instanceof Tomb; }
+  }
+
+  // The key which claimed a slot, or null for a (frozen) empty slot.
+  private static Object slotKey( Object K ) {
+    if( K instanceof Prime ) K = ((Prime)K)._K;
+    if( K instanceof Tomb  ) K = ((Tomb )K)._K;
+    return K;
+  }
+
+  // --- The top-level table, swapped for the new one when a copy completes
+  private transient volatile Table _table;
+  private static final long _table_offset = fieldOffset(NonBlockingOpenHashSet.class, "_table");
+  private final boolean CAS_table( Table oldt, Table newt ) {
+    return UNSAFE.compareAndSwapObject(this, _table_offset, oldt, newt);
+  }
+
+  private final HashingStrategy _hashing;
+
+  /** Create a new NonBlockingOpenHashSet with default minimum size (currently set
+   *  to 32 keys or roughly 128 bytes on a standard 32-bit JVM). */
+  public NonBlockingOpenHashSet( ) { this(MIN_SIZE<<2); }
+
+  /** Create a new NonBlockingOpenHashSet with initial room for the given number of
+   *  elements, thus avoiding internal resizing operations to reach an
+   *  appropriate size.  Large numbers here when used with a small count of
+   *  elements will sacrifice space for a small amount of time gained.  The
+   *  initial size will be rounded up internally to the next larger power of 2. */
+  public NonBlockingOpenHashSet( final int initial_sz ) { this(initial_sz, HashingStrategy.DEFAULT); }
+
+  /** Create a new NonBlockingOpenHashSet with initial room for the given number of
+   *  elements, placing them with the given {@link HashingStrategy}. */
+  public NonBlockingOpenHashSet( final int initial_sz, final HashingStrategy hashing ) {
+    if( initial_sz < 0 ) throw new IllegalArgumentException("initial_sz: "+initial_sz+" (expected: >= 0)");
+    if( hashing == null ) throw new NullPointerException();
+    _hashing = hashing;
+    initialize(initial_sz);
+  }
+
+  private void initialize( int initial_sz ) {
+    int i;                      // Convert to next largest power-of-2
+    if( initial_sz > 1024*1024 ) initial_sz = 1024*1024;
+    for( i=MIN_SIZE_LOG; (1<<i) < (initial_sz<<2); i++ ) ;
+    _table = new Table(1<<i, new ConcurrentAutoTable());
+  }
+
+  // --- Hashing and key equality, the identity set overrides both
+  int hash( final Object key ) { return _hashing.hash(key); }
+  boolean keyeq( final Object K, final Object key ) { return K == key || K.equals(key); }
+
+  // --- Table -------------------------------------------------------------
+  // A table of keys, with the control fields of its copy to a new table.
+  private static final class Table {
+    final Object[] _keys;
+    // Live keys, shared by all the tables of a set
+    final ConcurrentAutoTable _size;
+    // Used-up slots, live or tombstone, to tell when the table is full
+    final ConcurrentAutoTable _slots = new ConcurrentAutoTable();
+
+    Table( int len, ConcurrentAutoTable size ) {
+      _keys = new Object[len];
+      _size = size;
+    }
+
+    // The new table, monotonically transits from null to set (once)
+    volatile Table _newtable;
+    // The next part of the table to copy, claimed by CAS'ing it up
+    volatile long _copyIdx;
+    // Slots confirmed copied, the new table is promoted when it reaches len
+    volatile long _copyDone;
+    private static final long _newtable_offset = fieldOffset(Table.class, "_newtable");
+    private static final long _copyIdx_offset  = fieldOffset(Table.class, "_copyIdx");
+    private static final long _copyDone_offset = fieldOffset(Table.class, "_copyDone");
+
+    boolean CAS_newtable( Table newt ) {
+      return UNSAFE.compareAndSwapObject(this, _newtable_offset, null, newt);
+    }
+    boolean CAS_copyIdx( long old, long nnn ) {
+      return UNSAFE.compareAndSwapLong(this, _copyIdx_offset, old, nnn);
+    }
+    boolean CAS_copyDone( long old, long nnn ) {
+      return UNSAFE.compareAndSwapLong(this, _copyDone_offset, old, nnn);
+    }
+
+    Object key( int idx ) {
+      return UNSAFE.getObjectVolatile(_keys, rawIndex(idx));
+    }
+    boolean CAS_key( int idx, Object old, Object key ) {
+      return UNSAFE.compareAndSwapObject(_keys, rawIndex(idx), old, key);
+    }
+    private static long rawIndex( int idx ) {
+      return REF_ARRAY_BASE + ((long)idx << REF_ELEMENT_SHIFT);
+    }
+
+    // --- tableFull -------------------------------------------------------
+    // Same heuristic as NonBlockingHashMap: after a few reprobes, the table
+    // is full if half of its slots are used up.
+    boolean tableFull( int reprobe_cnt, int len, HashingStrategy hashing ) {
+      return
+        reprobe_cnt >= HashingStrategy.REPROBE_LIMIT &&
+        (reprobe_cnt >= hashing.reprobeLimit(len) ||
+         _slots.estimate_get() >= (len>>1));
+    }
+  }
+
+  // --- Public API --------------------------------------------------------
+
+  /** Current count of elements in the set.  Due to concurrent racing updates,
+   *  the size is only ever approximate.  Updates due to the calling thread are
+   *  immediately visible to calling thread.
+   *  @return count of elements. */
+  @Override
+  public int size( ) { return (int)_table._size.get(); }
+
+  /** Add {@code o} to the set.
+   *  @return <tt>true</tt> if {@code o} was added to the set, <tt>false</tt>
+   *  if {@code o} was already in the set.
+   *  @throws NullPointerException if the specified element is null */
+  @Override
+  public boolean add( final E o ) {
+    return add_impl(_table, o, hash(o), true);
+  }
+
+  /** @return <tt>true</tt> if {@code o} is in the set.
+   *  @throws NullPointerException if the specified object is null */
+  @Override
+  public boolean contains( final Object o ) {
+    return contains_impl(_table, o, hash(o));
+  }
+
+  /** Remove {@code o} from the set.
+   *  @return <tt>true</tt> if {@code o} was removed from the set, <tt>false</tt>
+   *  if {@code o} was not in the set.
+   *  @throws NullPointerException if the specified object is null */
+  @Override
+  public boolean remove( final Object o ) {
+    return remove_impl(_table, o, hash(o));
+  }
+
+  /** Removes all of the elements from this set. */
+  @Override
+  public void clear( ) {
+    final Table newt = new Table(MIN_SIZE<<2, new ConcurrentAutoTable());
+    while( !CAS_table(_table, newt) ) ;
+  }
+
+  // --- add_impl ----------------------------------------------------------
+  // Claim an empty slot for the key, unless the key is already in the set,
+  // or revive the tombstone of the key.  Copies into a new table use this
+  // too, without counting the key again, and stop at any slot of the key.
+  private boolean add_impl( Table t, final Object key, final int fullhash, final boolean count ) {
+    while( true ) {
+      final int len = t._keys.length;
+      final int mask = len-1;
+      int idx = fullhash & mask;
+      int reprobe_cnt = 0;
+      Table newt = null;
+      while( true ) {
+        final Object K = t.key(idx);
+        if( K == null ) {
+          // A fresh key goes to the new table if there is one, after this slot
+          // is frozen so no racing add of the same key can claim it.
+          if( t._newtable == null && !t.tableFull(reprobe_cnt, len, _hashing) ) {
+            if( t.CAS_key(idx, null, key) ) {
+              t._slots.add(1);
+              if( count ) t._size.add(1);
+              return true;
+            }
+            continue;           // Lost the race for the slot, look at it again
+          }
+          resize(t);
+          newt = copy_slot_and_check(t, idx, count);
+          break;
+        }
+        if( K instanceof Prime ) {
+          final Object PK = slotKey(K);
+          if( PK == null ) {    // Frozen empty slot, the key is not past it
+            newt = copy_slot_and_check(t, idx, count);
+            break;
+          }
+          if( keyeq(PK, key) ) {
+            if( !count ) return false; // Beaten to the copy of the key
+            newt = copy_slot_and_check(t, idx, true);
+            break;
+          }
+        } else if( K instanceof Tomb ) {
+          if( keyeq(((Tomb)K)._K, key) ) {
+            if( !count ) return false; // Copied and then removed: stays removed
+            // Like a fresh key, a removed key goes to the new table if any
+            if( t._newtable == null ) {
+              if( t.CAS_key(idx, K, key) ) {
+                t._size.add(1);
+                return true;
+              }
+              continue;         // Revived or frozen meanwhile, look at it again
+            }
+            newt = copy_slot_and_check(t, idx, true);
+            break;
+          }
+        } else if( keyeq(K, key) ) {
+          return false;         // Already in the set
+        }
+        if( ++reprobe_cnt >= _hashing.reprobeLimit(len) ) {
+          // The key is nowhere in this table: no add claims a slot past the
+          // reprobe limit.  Add it to a new table.
+          newt = resize(t);
+          help_copy();
+          break;
+        }
+        idx = _hashing.probe(idx, reprobe_cnt, mask);
+      }
+      t = newt;
+    }
+  }
+
+  // --- contains_impl -----------------------------------------------------
+  private boolean contains_impl( Table t, final Object key, final int fullhash ) {
+    while( true ) {
+      final int len = t._keys.length;
+      final int mask = len-1;
+      int idx = fullhash & mask;
+      int reprobe_cnt = 0;
+      Table newt = null;
+      while( true ) {
+        final Object K = t.key(idx);
+        // An empty slot ends the probe sequence, in the new table too: a key
+        // only goes to the new table after the empty slot is frozen.
+        if( K == null ) return false;
+        if( K instanceof Prime ) {
+          final Object PK = slotKey(K);
+          if( PK == null || keyeq(PK, key) ) {
+            newt = copy_slot_and_check(t, idx, false);
+            break;
+          }
+        } else if( K instanceof Tomb ) {
+          if( keyeq(((Tomb)K)._K, key) ) return false; // Removed
+        } else if( keyeq(K, key) ) {
+          return true;
+        }
+        if( ++reprobe_cnt >= _hashing.reprobeLimit(len) ) {
+          newt = t._newtable;
+          if( newt == null ) return false;
+          break;
+        }
+        idx = _hashing.probe(idx, reprobe_cnt, mask);
+      }
+      t = newt;
+    }
+  }
+
+  // --- remove_impl -------------------------------------------------------
+  private boolean remove_impl( Table t, final Object key, final int fullhash ) {
+    while( true ) {
+      final int len = t._keys.length;
+      final int mask = len-1;
+      int idx = fullhash & mask;
+      int reprobe_cnt = 0;
+      Table newt = null;
+      while( true ) {
+        final Object K = t.key(idx);
+        if( K == null ) return false;
+        if( K instanceof Prime ) {
+          final Object PK = slotKey(K);
+          if( PK == null || keyeq(PK, key) ) {
+            newt = copy_slot_and_check(t, idx, true);
+            break;
+          }
+        } else if( K instanceof Tomb ) {
+          if( keyeq(((Tomb)K)._K, key) ) return false; // Removed already
+        } else if( keyeq(K, key) ) {
+          if( t.CAS_key(idx, K, new Tomb(K)) ) {
+            t._size.add(-1);
+            return true;
+          }
+          continue;             // Removed or frozen meanwhile, look at it again
+        }
+        if( ++reprobe_cnt >= _hashing.reprobeLimit(len) ) {
+          newt = t._newtable;
+          if( newt == null ) return false;
+          help_copy();
+          break;
+        }
+        idx = _hashing.probe(idx, reprobe_cnt, mask);
+      }
+      t = newt;
+    }
+  }
+
+  // --- resize ------------------------------------------------------------
+  // Start a copy to a new table, sized with the NonBlockingHashMap heuristic
+  // for the live keys, unless one is on already.  Callers must help the copy.
+  private Table resize( final Table t ) {
+    Table newt = t._newtable;
+    if( newt != null ) return newt;
+    final int oldlen = t._keys.length;
+    final long sz = t._size.get();
+    long newsz = sz;
+    if( sz >= (oldlen>>2) ) {   // If we are >25% full of keys then...
+      newsz = oldlen<<1;        // Double size
+      if( 4L*sz >= ((oldlen>>20)!=0?3L:2L)*oldlen )
+        newsz = oldlen<<2;      // Double double size
+    }
+    if( newsz < oldlen ) newsz = oldlen; // Only clear out the tombstones
+    int log2;
+    for( log2=MIN_SIZE_LOG; (1L<<log2) < newsz; log2++ ) ;
+    if( log2 > 30 ) {
+      if( sz >= (1L<<30) - ((1L<<30)>>2) ) throw new RuntimeException("Table is full.");
+      log2 = 30;
+    }
+    newt = t._newtable;         // Another check before the allocation
+    if( newt != null ) return newt;
+    newt = new Table(1<<log2, t._size);
+    return t.CAS_newtable(newt) ? newt : t._newtable;
+  }
+
+  // --- help_copy ---------------------------------------------------------
+  // Help along the copy of the top-level table, if any.
+  private void help_copy( ) {
+    final Table topt = _table;
+    if( topt._newtable != null )
+      help_copy_impl(topt, false);
+  }
+
+  private void help_copy_impl( final Table oldt, final boolean copy_all ) {
+    final int oldlen = oldt._keys.length;
+    final int min_copy_work = Math.min(oldlen, MIN_COPY_WORK);
+    int panic_start = -1;
+    int copyidx = -9999;
+    while( oldt._copyDone < oldlen ) {
+      // Carve out a chunk of work, or after two rounds of claims without
+      // the copy completing, "panic" and copy everything ourselves.
+      if( panic_start == -1 ) {
+        copyidx = (int)oldt._copyIdx;
+        while( !oldt.CAS_copyIdx(copyidx, copyidx+min_copy_work) )
+          copyidx = (int)oldt._copyIdx;
+        if( !(copyidx < (oldlen<<1)) )
+          panic_start = copyidx;
+      }
+      int workdone = 0;
+      for( int i=0; i<min_copy_work; i++ )
+        if( copy_slot(oldt, (copyidx+i)&(oldlen-1)) )
+          workdone++;
+      if( workdone > 0 )
+        copy_check_and_promote(oldt, workdone);
+      copyidx += min_copy_work;
+      if( !copy_all && panic_start == -1 )
+        return;
+    }
+    // Extra promotion check, in case another thread finished all copying
+    // then got stalled before promoting.
+    copy_check_and_promote(oldt, 0);
+  }
+
+  // --- copy_slot_and_check -----------------------------------------------
+  // Copy slot 'idx' of the old table, then return the new table to retry in.
+  private Table copy_slot_and_check( final Table oldt, final int idx, final boolean should_help ) {
+    final Table newt = oldt._newtable; // Set before any slot is frozen
+    if( copy_slot(oldt, idx) )
+      copy_check_and_promote(oldt, 1);
+    if( should_help ) help_copy();
+    return newt;
+  }
+
+  // --- copy_check_and_promote --------------------------------------------
+  private void copy_check_and_promote( final Table oldt, final int workdone ) {
+    final int oldlen = oldt._keys.length;
+    long copyDone = oldt._copyDone;
+    if( workdone > 0 ) {
+      while( !oldt.CAS_copyDone(copyDone, copyDone+workdone) )
+        copyDone = oldt._copyDone;
+    }
+    // Only the top-level table is promoted, a nested copy is promoted once
+    // its parent was.
+    if( copyDone+workdone == oldlen && _table == oldt )
+      CAS_table(oldt, oldt._newtable);
+  }
+
+  // --- copy_slot ---------------------------------------------------------
+  // Freeze slot 'idx' of the old table and copy its key, if live, to the new
+  // table.  Returns true if this thread made the slot final (a Prime'd Tomb),
+  // so every slot is counted once; returns only after the key is in the new
+  // table.  Final slots keep their key, for late copies of it to stop at.
+  private boolean copy_slot( final Table oldt, final int idx ) {
+    Object K = oldt.key(idx);
+    while( !(K instanceof Prime) ) {
+      final Prime box = K == null ? TOMBPRIME : new Prime(K);
+      if( oldt.CAS_key(idx, K, box) ) {
+        if( box.isDead() ) return true; // Nothing to copy
+        K = box;
+        break;
+      }
+      K = oldt.key(idx);
+    }
+    final Prime P = (Prime)K;
+    if( P.isDead() ) return false; // Copied by someone else
+    final Object key = P._K;
+    add_impl(oldt._newtable, key, hash(key), false);
+    return oldt.CAS_key(idx, P, new Prime(new Tomb(key)));
+  }
+
+  // --- Iteration ---------------------------------------------------------
+
+  /** Returns a weakly consistent iterator over the elements of this set,
+   *  which finishes any copy in progress first.  Removals through the
+   *  iterator are supported. */
+  @Override
+  public Iterator<E> iterator( ) { return new SnapshotK(); }
+
+  private class SnapshotK implements Iterator<E> {
+    private final Table _st;
+    private int _idx;
+    private E _next, _prev;
+    SnapshotK( ) {
+      // Finish any copy, so the keys are all in one table
+      while( true ) {
+        final Table topt = _table;
+        if( topt._newtable == null ) { _st = topt; break; }
+        help_copy_impl(topt, true);
+      }
+      advance();
+    }
+    @SuppressWarnings("unchecked")
+    private void advance( ) {
+      final Object[] keys = _st._keys;
+      while( _idx < keys.length ) {
+        Object K = _st.key(_idx++);
+        if( K instanceof Prime ) K = ((Prime)K)._K; // Frozen by a later copy
+        if( K != null && !(K instanceof Tomb) ) { _next = (E)K; return; }
+      }
+      _next = null;
+    }
+    public boolean hasNext( ) { return _next != null; }
+    public E next( ) {
+      if( _next == null ) throw new NoSuchElementException();
+      _prev = _next;
+      advance();
+      return _prev;
+    }
+    public void remove( ) {
+      if( _prev == null ) throw new IllegalStateException();
+      NonBlockingOpenHashSet.this.remove(_prev);
+      _prev = null;
+    }
+  }
+
+  // --- Serialization -----------------------------------------------------
+
+  // Write the set out: the elements, then a null marker.
+  private void writeObject( ObjectOutputStream s ) throws IOException {
+    s.defaultWriteObject();
+    for( Object K : this )
+      s.writeObject(K);
+    s.writeObject(null);
+  }
+
+  // Read the set back in.
+  @SuppressWarnings("unchecked")
+  private void readObject( ObjectInputStream s ) throws IOException, ClassNotFoundException {
+    s.defaultReadObject();
+    initialize(MIN_SIZE);
+    for(;;) {
+      final E K = (E)s.readObject();
+      if( K == null ) break;
+      add(K);
+    }
+  }
+}
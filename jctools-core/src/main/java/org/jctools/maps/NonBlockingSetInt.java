@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.AbstractSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -138,6 +139,132 @@ public class NonBlockingSetInt extends AbstractSet<Integer> implements Serializa
       ;
   }
 
+  /**
+   * Returns the smallest element of the set greater than or equal to {@code
+   * from}, or -1 if there is none.  Scans the bit-vector a word at a time.
+   * @throws IllegalArgumentException if from is negative.
+   * @return the next element at or after from, or -1.
+   */
+  public int nextSetBit( final int from ) {
+    RangeUtil.checkPositiveOrZero(from, "from");
+    return _nbsi.next_set_bit(from);
+  }
+
+  /**
+   * Count the elements in the range from {@code from} (inclusive) to {@code
+   * to} (exclusive), a word at a time.  Like {@link #size}, only approximate
+   * when racing with concurrent updates.
+   * @throws IllegalArgumentException if from is negative or to is less than from.
+   * @return count of elements in the range.
+   */
+  public int cardinality( final int from, final int to ) {
+    check_range(from, to);
+    final int last = Math.min((to-1)>>6, max_words()-1);
+    int cnt = 0;
+    for( int k=from>>6; k<=last && from<to; k++ ) {
+      final long m = range_mask(k, from, to);
+      cnt += Long.bitCount(_nbsi.read_word(k) & m & ~NBSI.mask(63));
+      if( m < 0 && _nbsi.contains((k<<6)|63) ) cnt++;
+    }
+    return cnt;
+  }
+
+  /**
+   * Add all the elements from {@code from} (inclusive) to {@code to}
+   * (exclusive) to the set, with one CAS per word of the bit-vector.
+   * @throws IllegalArgumentException if from is negative or to is less than from.
+   * @return count of elements added to the set.
+   */
+  public int addRange( final int from, final int to ) {
+    check_range(from, to);
+    int cnt = 0;
+    for( int k=from>>6; from<to && k<=(to-1)>>6; k++ ) {
+      final long m = range_mask(k, from, to);
+      cnt += _nbsi.update_word(k, m & ~NBSI.mask(63), true);
+      if( m < 0 && _nbsi.add((k<<6)|63) ) cnt++;
+    }
+    return cnt;
+  }
+
+  /**
+   * Remove all the elements from {@code from} (inclusive) to {@code to}
+   * (exclusive) from the set, with one CAS per word of the bit-vector.
+   * @throws IllegalArgumentException if from is negative or to is less than from.
+   * @return count of elements removed from the set.
+   */
+  public int removeRange( final int from, final int to ) {
+    check_range(from, to);
+    final int last = Math.min((to-1)>>6, max_words()-1);
+    int cnt = 0;
+    for( int k=from>>6; from<to && k<=last; k++ ) {
+      final long m = range_mask(k, from, to);
+      cnt += _nbsi.update_word(k, m & ~NBSI.mask(63), false);
+      if( m < 0 && _nbsi.remove((k<<6)|63) ) cnt++;
+    }
+    return cnt;
+  }
+
+  /**
+   * Add all the elements of {@code c} to the set.  Another NonBlockingSetInt
+   * is merged in a word at a time, with one CAS per word changed.
+   * @return <tt>true</tt> if the set changed.
+   */
+  @Override
+  public boolean addAll( final Collection<? extends Integer> c ) {
+    if( !(c instanceof NonBlockingSetInt) ) return super.addAll(c);
+    final NonBlockingSetInt nbsi = (NonBlockingSetInt)c;
+    final int words = nbsi.max_words();
+    boolean changed = false;
+    for( int k=0; k<words; k++ ) {
+      final long bits = nbsi._nbsi.read_word(k);
+      if( bits != 0 && _nbsi.update_word(k, bits, true) != 0 ) changed = true;
+      final int i = (k<<6)|63;
+      if( nbsi.contains(i) && _nbsi.add(i) ) changed = true;
+    }
+    return changed;
+  }
+
+  /**
+   * Keep only the elements of the set also in {@code c}.  Intersecting with
+   * another NonBlockingSetInt goes a word at a time, with one CAS per word
+   * changed.
+   * @return <tt>true</tt> if the set changed.
+   */
+  @Override
+  public boolean retainAll( final Collection<?> c ) {
+    if( !(c instanceof NonBlockingSetInt) ) return super.retainAll(c);
+    final NonBlockingSetInt nbsi = (NonBlockingSetInt)c;
+    final int words = max_words();
+    boolean changed = false;
+    for( int k=0; k<words; k++ ) {
+      final long clear = ~nbsi._nbsi.read_word(k) & ~NBSI.mask(63);
+      if( _nbsi.update_word(k, clear, false) != 0 ) changed = true;
+      final int i = (k<<6)|63;
+      if( !nbsi.contains(i) && _nbsi.remove(i) ) changed = true;
+    }
+    return changed;
+  }
+
+  private static void check_range( final int from, final int to ) {
+    RangeUtil.checkPositiveOrZero(from, "from");
+    if( to < from ) throw new IllegalArgumentException("to: "+to+" (expected: >= from "+from+")");
+  }
+
+  // The bits of word 'k' (the elements k*64 to k*64+63) in the range
+  // [from,to).  Bit 63 stands for element k*64+63, kept in the nested set.
+  private static long range_mask( final int k, final int from, final int to ) {
+    final long lo = Math.max((long)from, (long)k<<6) - ((long)k<<6);
+    final long hi = Math.min((long)to, ((long)k<<6)+64) - ((long)k<<6);
+    return (hi == 64 ? -1L : (1L<<hi)-1) & (-1L<<lo);
+  }
+
+  // Words in the largest bit-vector, including one being copied to
+  private int max_words( ) {
+    NBSI nbsi = _nbsi;
+    while( nbsi._new != null ) nbsi = nbsi._new;
+    return nbsi._bits.length;
+  }
+
   /** Verbose printout of internal structure for debugging. */
   public void print() { _nbsi.print(0); }
 
@@ -148,33 +275,24 @@ public class NonBlockingSetInt extends AbstractSet<Integer> implements Serializa
   public Iterator<Integer> iterator( ) { return new iter(); }
 
   private class iter implements Iterator<Integer> {
-    NBSI _nbsi2;
     int _idx  = -1;
     int _prev = -1;
-    iter() { _nbsi2 = _nbsi; advance(); }
+    iter() { advance(); }
     public boolean hasNext() { return _idx != -2; }
-    private void advance() {     
-      while( true ) {
-        _idx++;                 // Next index
-        while( (_idx>>6) >= _nbsi2._bits.length ) { // Index out of range?
-          if( _nbsi2._new == null ) { // New table?
-            _idx = -2;          // No, so must be all done
-            return;             // 
-          }
-          _nbsi2 = _nbsi2._new; // Carry on, in the new table
-        }
-        if( _nbsi2.contains(_idx) ) return;
-      }
+    // Skip to the next element a word at a time, following any resize
+    private void advance() {
+      final int next = _idx == Integer.MAX_VALUE ? -1 : _nbsi.next_set_bit(_idx+1);
+      _idx = next == -1 ? -2 : next;
     }
     public Integer next() { 
-      if( _idx == -1 ) throw new NoSuchElementException();
+      if( _idx == -2 ) throw new NoSuchElementException();
       _prev = _idx;
       advance();
       return _prev;
     }
     public void remove() { 
       if( _prev == -1 ) throw new IllegalStateException();
-      _nbsi2.remove(_prev);
+      NonBlockingSetInt.this.remove(_prev);
       _prev = -1;
     }
   }
@@ -339,6 +457,53 @@ public class NonBlockingSetInt extends AbstractSet<Integer> implements Serializa
     
     public int size() { return (int)_size.get(); }
 
+    // Set or clear the bits of 'mask' in word 'k' with one CAS, the same way
+    // add and remove do for a single bit.  Bit 63 of the word is not an
+    // element: callers handle element k*64+63 on its own.
+    // Returns the count of elements changed.
+    private int update_word( final int k, final long mask, final boolean set ) {
+      if( k >= _bits.length ) { // Out of bounds?
+        if( set ) return install_larger_new_bits(k<<6).help_copy().update_word(k, mask, set);
+        return _new == null ? 0 : help_copy().update_word(k, mask, set);
+      }
+      long old, nnn;
+      do {
+        old = _bits[k];         // Read old bits
+        if( old < 0 )           // Not mutable?
+          // Not mutable: finish copy of word, and retry on copied word
+          return help_copy_impl(k<<6).help_copy().update_word(k, mask, set);
+        nnn = set ? old | mask : old & ~mask;
+        if( nnn == old ) return 0; // Bits already set (or clear)?
+      } while( !CAS( k, old, nnn ) );
+      final int cnt = Long.bitCount(old ^ nnn);
+      _size.add(set ? cnt : -cnt);
+      return cnt;
+    }
+
+    // The bits of word 'k', with bit 63 (element k*64+63) always clear.
+    private long read_word( final int k ) {
+      if( k >= _bits.length )   // Out of bounds?  Not in this array!
+        return _new == null ? 0 : help_copy().read_word(k);
+      final long bits = _bits[k];
+      if( bits < 0 )            // Not mutable?
+        // Not mutable: finish copy of word, and retry on copied word
+        return help_copy_impl(k<<6).help_copy().read_word(k);
+      return bits;
+    }
+
+    // Smallest element at or after 'from', or -1
+    private int next_set_bit( final int from ) {
+      for( int k=from>>6; k<_bits.length; k++ ) {
+        final long bits = _bits[k];
+        if( bits < 0 )          // Not mutable?  Carry on in the new table
+          return help_copy_impl(k<<6).help_copy().next_set_bit(Math.max(from, k<<6));
+        final long w = k == (from>>6) ? bits & (-1L<<(from&63)) : bits;
+        if( w != 0 ) return (k<<6) + Long.numberOfTrailingZeros(w);
+        if( contains((k<<6)|63) ) return (k<<6)|63; // Bit 64, in the nested set
+      }
+      return _new == null ? -1 : help_copy().next_set_bit(Math.max(from, _bits.length<<6));
+    }
+
     // Must grow the current array to hold an element of size i
     private NBSI install_larger_new_bits( final int i ) {
       if( _new == null ) {
@@ -0,0 +1,776 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.maps;
+
+import org.jctools.util.Pow2;
+import org.jctools.util.RangeUtil;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+
+/**
+ * A lock-free hash map with <strong>primitive long keys and fixed size
+ * binary values, held off-heap</strong>.  The table and the values are kept
+ * in memory allocated with {@code Unsafe}, so that very large maps add
+ * nothing but a handful of small objects to the Java heap, and the garbage
+ * collector neither scans nor copies the entries.  The map follows the design
+ * of {@link NonBlockingHashMapLong}: all threads visiting a table being
+ * resized help the copy along, and no operation ever blocks on another.
+ *
+ * <p>Every value is exactly {@link #valueSize()} bytes, copied in from and
+ * out to a caller supplied {@code byte[]}.  A stored value is never changed
+ * in place: each update writes a new value record and swaps the slot over to
+ * it, so a reader always copies out a consistent value.  Records left behind
+ * by updates and removals are reclaimed when the table is next copied, which
+ * happens when either its slots or its value records run out.
+ *
+ * <p>The memory of a replaced table is released once no operation is using
+ * it any more.  All remaining memory is released by {@link #close()}, after
+ * which every operation throws {@link IllegalStateException}.  Memory of a
+ * map which is never closed is never released.
+ *
+ * @see NonBlockingHashMapLong
+ */
+public class OffHeapNonBlockingHashMapLong implements Closeable {
+
+  private static final int REPROBE_LIMIT=10; // Too many reprobes then force a table-resize
+
+  // --- Bits to allow Unsafe CAS'ing of the CHM field
+  private static final long _chm_offset = fieldOffset(OffHeapNonBlockingHashMapLong.class, "_chm");
+  private static final long _Bbase = UNSAFE.arrayBaseOffset(byte[].class);
+
+  private final boolean CAS_chm( final CHM old, final CHM nnn ) {
+    return UNSAFE.compareAndSwapObject(this, _chm_offset, old, nnn );
+  }
+
+  // --- Value words -----------------------
+  // A slot value word refers to a value record of the slot's own table, as
+  // (record index + 1) shifted up by 2.  The low bits hold the slot state:
+  // bit 0 marks a Prime'd (boxed) word and bit 1 a TOMBSTONE.  The all-zero
+  // word is the initial memory value, and means: no value inserted yet (the
+  // 'null' of NonBlockingHashMapLong).
+  private static final long NULL_WORD = 0L;
+  private static final long PRIME_BIT = 1L;
+  // This K/V pair has been deleted (but the Key slot is forever claimed).
+  private static final long TOMBSTONE = 2L;
+  // Prime'd version of TOMBSTONE.
+  private static final long TOMBPRIME = TOMBSTONE | PRIME_BIT;
+  // Sentinels for putIfMatch, never stored.  No-Match-Old counts as a
+  // wildcard match, Match-Any matches any live value.
+  private static final long NO_MATCH_OLD = -4L;
+  private static final long MATCH_ANY = -8L;
+
+  private static boolean isPrime( long w ) { return (w & PRIME_BIT) != 0; }
+  private static boolean isLive ( long w ) { return (w & ~PRIME_BIT) > TOMBSTONE; }
+  private static long    prime  ( long w ) { return w | PRIME_BIT; }
+  private static long    unbox  ( long w ) { return w & ~PRIME_BIT; }
+
+  // Decides if a found value word matches the expected one
+  private static boolean matches( long V, long expVal ) {
+    return expVal == NO_MATCH_OLD ||  // Do we care about expected-Value at all?
+      V == expVal ||                  // Instant match
+      (expVal == MATCH_ANY && isLive(V)) ||
+      (expVal == TOMBSTONE && V == NULL_WORD); // Match on null/TOMBSTONE combo
+  }
+
+  // --- The Hash Table --------------------
+  private transient volatile CHM _chm;
+
+  // Time since last resize
+  private transient long _last_resize_milli;
+
+  // Bytes in a value, and in a value record (rounded up to whole words)
+  private final int _valueSize;
+  private final int _recordSize;
+
+  // Replaced tables, in the order they were replaced, waiting to be freed
+  private final ConcurrentLinkedQueue<CHM> _retired = new ConcurrentLinkedQueue<CHM>();
+
+  // --- Minimum table size ----------------
+  private static final int MIN_SIZE_LOG=4;             //
+  private static final int MIN_SIZE=(1<<MIN_SIZE_LOG); // Must be power of 2
+  private static final int MAX_SIZE_LOG=30;
+
+  // I exclude 1 long from the 2^64 possibilities from the main table, the
+  // initial memory value, and keep its value in a dedicated extra slot.
+  private static final long NO_KEY = 0L;
+
+  // Striped pin counts, padded to a cache line each
+  private static final int PIN_STRIPES = Math.min(64, Pow2.roundToPowerOfTwo(2*Runtime.getRuntime().availableProcessors()));
+  private static final int PIN_PAD_SHIFT = 3;
+
+  private static int reprobe_limit( int len ) {
+    return REPROBE_LIMIT + (len>>4);
+  }
+
+  // --- OffHeapNonBlockingHashMapLong ---------------------------------------
+  // Constructors
+
+  /** Create a new OffHeapNonBlockingHashMapLong with default minimum size.
+   *  @param valueSize the number of bytes in every value */
+  public OffHeapNonBlockingHashMapLong( final int valueSize ) { this(MIN_SIZE, valueSize); }
+
+  /** Create a new OffHeapNonBlockingHashMapLong with initial room for the
+   *  given number of elements, thus avoiding internal resizing operations to
+   *  reach an appropriate size.  The initial size will be rounded up
+   *  internally to the next larger power of 2.
+   *  @param valueSize the number of bytes in every value */
+  public OffHeapNonBlockingHashMapLong( final int initial_sz, final int valueSize ) {
+    RangeUtil.checkPositiveOrZero(initial_sz, "initial_sz");
+    RangeUtil.checkPositive(valueSize, "valueSize");
+    _valueSize = valueSize;
+    _recordSize = (valueSize + 7) & ~7;
+    int i;                      // Convert to next largest power-of-2
+    for( i=MIN_SIZE_LOG; (1<<i) < initial_sz && i < MAX_SIZE_LOG; i++ ) {/*empty*/}
+    _chm = new CHM(this,new ConcurrentAutoTable(),i);
+    _last_resize_milli = System.currentTimeMillis();
+  }
+
+  /** @return the number of bytes in every value */
+  public int valueSize( ) { return _valueSize; }
+
+  // --- wrappers ------------------------------------------------------------
+
+  /** Returns the number of key-value mappings in this map.
+   *  @return the number of key-value mappings in this map */
+  public int     size       ( ) {
+    final CHM chm = enter();
+    try { return chm.size(); } finally { exit(chm); }
+  }
+  /** Returns <tt>size() == 0</tt>.
+   *  @return <tt>size() == 0</tt> */
+  public boolean isEmpty    ( ) { return size() == 0; }
+  /** Tests if the key in the table.
+   *  @return <tt>true</tt> if the key is in the table */
+  public boolean containsKey( long key ) { return get(key, null, 0); }
+
+  /** Copies the value mapped to the key into {@code dst}, starting at {@code
+   *  offset}, if there is one.
+   *  @param dst receives the value, may be null to only test for the key
+   *  @return <tt>true</tt> if the key is mapped and the value was copied */
+  public boolean get( long key, byte[] dst, int offset ) {
+    if( dst != null ) checkBounds(dst, offset);
+    final CHM chm = enter();
+    try { return chm.get_impl(key, dst, offset); } finally { exit(chm); }
+  }
+
+  /** Maps the key to the value held in {@code src}, starting at {@code offset}.
+   *  @return <tt>true</tt> if the key was mapped before */
+  public boolean put( long key, byte[] src, int offset ) {
+    return isLive(putIfMatch( key, src, offset, NO_MATCH_OLD ));
+  }
+
+  /** Atomically, do a {@link #put} if-and-only-if the key is not mapped.
+   *  @return <tt>true</tt> if the value was put, <tt>false</tt> if the key
+   *         was mapped already */
+  public boolean putIfAbsent( long key, byte[] src, int offset ) {
+    return !isLive(putIfMatch( key, src, offset, TOMBSTONE ));
+  }
+
+  /** Atomically do a {@link #put} if-and-only-if the key is mapped.
+   *  @return <tt>true</tt> if the value was replaced */
+  public boolean replace( long key, byte[] src, int offset ) {
+    return isLive(putIfMatch( key, src, offset, MATCH_ANY ));
+  }
+
+  /** Removes the key (and its corresponding value) from this map.
+   *  @return <tt>true</tt> if the key was mapped */
+  public boolean remove( long key ) {
+    final CHM chm = enter();
+    try { return isLive(chm.putIfMatch( key, null, 0, TOMBSTONE, NO_MATCH_OLD )); } finally { exit(chm); }
+  }
+
+  /** Removes all of the mappings from this map. */
+  public void clear() {         // Smack a new empty table down
+    final CHM newchm = new CHM(this,new ConcurrentAutoTable(),MIN_SIZE_LOG);
+    CHM oldchm;
+    do {
+      oldchm = _chm;
+      if( oldchm == null ) {
+        newchm.free();
+        throw new IllegalStateException("closed");
+      }
+    } while( !CAS_chm(oldchm,newchm) );
+    retire(oldchm);
+  }
+
+  /** Keys as a long array.  Array may be zero-padded if keys are concurrently
+   *  deleted, and keys concurrently inserted may be missed. */
+  public long[] keys() {
+    final CHM chm = enter();
+    try {
+      final CHM topchm = snapshot(chm);
+      long[] dom = new long[topchm.size()];
+      int j=0;
+      for( int i=0; i<=topchm._len && j < dom.length; i++ ) {
+        final long K = i == topchm._len ? NO_KEY : topchm.key(i);
+        if( (K != NO_KEY || i == topchm._len) && chm.get_impl(K, null, 0) )
+          dom[j++] = K;
+      }
+      return dom;
+    } finally {
+      exit(chm);
+    }
+  }
+
+  /** Releases all the memory held by this map.  Operations still running
+   *  complete normally, but any later operation throws {@link
+   *  IllegalStateException}.  Closing a closed map has no effect. */
+  @Override
+  public void close() {
+    CHM chm;
+    do {
+      chm = _chm;
+      if( chm == null ) return;
+    } while( !CAS_chm(chm,null) );
+    retire(chm);
+  }
+
+  // Number of K,V pairs the current table has room for
+  final int capacity() {
+    final CHM chm = enter();
+    try { return chm._len; } finally { exit(chm); }
+  }
+
+  private void checkBounds( byte[] buffer, int offset ) {
+    if( offset < 0 || offset > buffer.length - _valueSize )
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + buffer.length + ", value size " + _valueSize);
+  }
+
+  private long putIfMatch( long key, byte[] src, int offset, long expVal ) {
+    checkBounds(src, offset);
+    final CHM chm = enter();
+    try {
+      final long res = chm.putIfMatch( key, src, _Bbase + offset, NULL_WORD, expVal );
+      assert !isPrime(res);
+      return res;
+    } finally {
+      exit(chm);
+    }
+  }
+
+  // Help finish any table copy, returning a table no longer being copied
+  private CHM snapshot( CHM topchm ) {
+    while( true ) {             // Verify no table-copy-in-progress
+      if( topchm._newchm == null ) // No table-copy-in-progress
+        return topchm;
+      topchm.help_copy_impl(true);
+      topchm = topchm._newchm;
+    }
+  }
+
+  // --- Memory reclamation --------------------------------------------------
+  // Every operation pins the top table when it starts, and unpins it when it
+  // is done.  Operations reach newer tables only through the table they
+  // pinned, so a replaced ("retired") table may be freed once it is unpinned
+  // and the table it was copied from (its _prev) is freed.  Tables chained
+  // by copies are thus freed oldest first, whatever the order their
+  // promoters got around to retiring them.  A table also drags along a newer
+  // table it was being copied into if that one was never promoted (the copy
+  // was cut short by a clear or close), as it has become unreachable.
+
+  // Pin the top table
+  private CHM enter( ) {
+    while( true ) {
+      final CHM chm = _chm;
+      if( chm == null ) throw new IllegalStateException("closed");
+      chm.pin(1);
+      if( !chm._retired ) return chm;
+      chm.pin(-1);              // Lost a race with a resize, retry
+    }
+  }
+
+  private void exit( final CHM chm ) {
+    chm.pin(-1);
+    if( chm._retired ) free_retired();
+  }
+
+  private void retire( final CHM chm ) {
+    chm._retired = true;
+    _retired.offer(chm);
+    free_retired();
+  }
+
+  private void free_retired( ) {
+    boolean progress = true;
+    while( progress ) {         // Freeing a table may make its successor free-able
+      progress = false;
+      for( final Iterator<CHM> it = _retired.iterator(); it.hasNext(); ) {
+        final CHM chm = it.next();
+        final CHM prev = chm._prev;
+        if( (prev == null || prev._freed != 0) && chm.unpinned() && chm.CAS_freed() ) {
+          final CHM newchm = chm._newchm;
+          if( newchm != null && chm._promoted != newchm ) { // Orphaned copy?
+            newchm._retired = true;
+            _retired.offer(newchm);
+          }
+          chm.free();
+          chm._prev = null;     // Do not hold on to the whole chain
+          it.remove();          // Only the CAS_freed winner removes it
+          progress = true;
+        }
+      }
+    }
+  }
+
+
+  // --- CHM -----------------------------------------------------------------
+  // The control structure for the OffHeapNonBlockingHashMapLong, following
+  // the NonBlockingHashMapLong.CHM protocol with value words in place of
+  // boxed values.  A single block of memory holds the slots, 2 words each
+  // with the key first, and then the value records.  The slot after the last
+  // is for NO_KEY.
+  private static final class CHM {
+    // Back-pointer to top-level structure
+    final OffHeapNonBlockingHashMapLong _ohnbhml;
+
+    // Size in active K,V pairs
+    private final ConcurrentAutoTable _size;
+    public int size () { return (int)_size.get(); }
+
+    // Count of used slots, to tell when table is full of dead unusable slots
+    private final ConcurrentAutoTable _slots;
+    public int slots() { return (int)_slots.get(); }
+
+    // The 'next' CHM - created during a resize operation.
+    volatile CHM _newchm;
+    private static final AtomicReferenceFieldUpdater<CHM,CHM> _newchmUpdater =
+      AtomicReferenceFieldUpdater.newUpdater(CHM.class,CHM.class, "_newchm");
+    boolean CAS_newchm( CHM newchm ) {
+      return _newchmUpdater.compareAndSet(this,null,newchm);
+    }
+    // Count of threads attempting an initial resize
+    volatile long _resizers;
+    private static final AtomicLongFieldUpdater<CHM> _resizerUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_resizers");
+
+    // --- memory ------------------------------------------------------------
+    private final long _address;
+    private final int _len;     // Count of K/V pairs, not counting NO_KEY's
+    private final long _records;// Address of the first value record
+    private final int _recordSize;
+
+    // Next value record to hand out, up to _len records
+    volatile long _recordIdx;
+    private static final AtomicLongFieldUpdater<CHM> _recordIdxUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_recordIdx");
+
+    // --- reclamation -------------------------------------------------------
+    volatile boolean _retired;
+    volatile CHM _promoted;     // The table this one was replaced by, if promoted
+    volatile CHM _prev;         // The table this one is a copy of, until freed
+    volatile int _freed;
+    private static final long _freed_offset = fieldOffset(CHM.class, "_freed");
+    private final AtomicLongArray _pins = new AtomicLongArray(PIN_STRIPES << PIN_PAD_SHIFT);
+
+    void pin( long delta ) {
+      final int stripe = (int)Thread.currentThread().getId() & (PIN_STRIPES-1);
+      _pins.getAndAdd(stripe << PIN_PAD_SHIFT, delta);
+    }
+    // A thread always pins and unpins on the same stripe, so every stripe
+    // stays positive and a zero sum means no pins after retirement.
+    boolean unpinned() {
+      long sum = 0;
+      for( int i=0; i<PIN_STRIPES; i++ )
+        sum += _pins.get(i << PIN_PAD_SHIFT);
+      return sum == 0;
+    }
+    boolean CAS_freed() {
+      return UNSAFE.compareAndSwapInt(this, _freed_offset, 0, 1);
+    }
+    void free() {
+      UNSAFE.freeMemory(_address);
+    }
+
+    // --- key,val -------------------------------------------------------------
+    private long slot( int idx ) { return _address + ((long)idx << 4); }
+    private long key( int idx ) { return UNSAFE.getLongVolatile(null, slot(idx)); }
+    private long val( int idx ) { return UNSAFE.getLongVolatile(null, slot(idx)+8); }
+    private boolean CAS_key( int idx, long old, long key ) {
+      return UNSAFE.compareAndSwapLong( null, slot(idx), old, key );
+    }
+    private boolean CAS_val( int idx, long old, long val ) {
+      return UNSAFE.compareAndSwapLong( null, slot(idx)+8, old, val );
+    }
+    private long record( long w ) { return _records + ((w >>> 2) - 1) * _recordSize; }
+
+    CHM( final OffHeapNonBlockingHashMapLong ohnbhml, ConcurrentAutoTable size, final int logsize ) {
+      _ohnbhml = ohnbhml;
+      _size = size;
+      _slots= new ConcurrentAutoTable();
+      _len  = 1<<logsize;
+      _recordSize = ohnbhml._recordSize;
+      final long slotBytes = ((long)_len+1) << 4;
+      _address = UNSAFE.allocateMemory(slotBytes + (long)_len * _recordSize);
+      UNSAFE.setMemory(_address, slotBytes, (byte)0);
+      _records = _address + slotBytes;
+    }
+
+    // Claim a value record and copy the value in, returning its value word or
+    // NULL_WORD if the records have run out.
+    private long new_record( final Object src, final long srcOffset ) {
+      final long r = _recordIdxUpdater.getAndIncrement(this);
+      if( r >= _len ) return NULL_WORD;
+      final long w = (r + 1) << 2;
+      UNSAFE.copyMemory(src, srcOffset, null, record(w), _ohnbhml._valueSize);
+      return w;
+    }
+
+    private int first_slot( final long key ) {
+      return key == NO_KEY ? _len : (int)(key & (_len-1));
+    }
+
+    // --- get_impl ----------------------------------------------------------
+    private boolean get_impl ( final long key, final byte[] dst, final int offset ) {
+      final int len = _len;
+      int idx = first_slot(key); // First key hash
+
+      int reprobe_cnt=0;
+      while( true ) {
+        final long K = idx == len ? NO_KEY : key(idx); // Get key, could be NO_KEY
+        final long V = val(idx); // Get value, could be null or Tombstone or Prime
+        if( K == NO_KEY && idx != len ) return false; // A clear miss
+
+        if( key == K ) {
+          // Key hit!  Check for no table-copy-in-progress
+          if( !isPrime(V) ) {
+            if( !isLive(V) ) return false;
+            // Records are never changed once published, and this table
+            // stays pinned while we copy
+            if( dst != null )
+              UNSAFE.copyMemory(null, record(V), dst, _Bbase + offset, _ohnbhml._valueSize);
+            return true;
+          }
+          // Key hit - but slot is (possibly partially) copied to the new table.
+          return copy_slot_and_check(idx,true).get_impl(key,dst,offset); // Retry in the new table
+        }
+        if( ++reprobe_cnt >= reprobe_limit(len) ) // too many probes
+          return _newchm != null && // Table copy in progress?
+            copy_slot_and_check(idx,true).get_impl(key,dst,offset); // Retry in the new table
+
+        idx = (idx+1)&(len-1);    // Reprobe by 1!
+      }
+    }
+
+    // --- putIfMatch ---------------------------------------------------------
+    // Put, Remove, PutIfAbsent, etc.  Return the old value word.  The value
+    // put is either TOMBSTONE, or read from src/srcOffset into a new record
+    // (when putval is NULL_WORD).  A failed value CAS is retried, so the
+    // returned value matches expVal if-and-only-if the update happened.  Only
+    // the path through copy_slot passes in an expected value of null.
+    private long putIfMatch( final long key, final Object src, final long srcOffset, long putval, final long expVal ) {
+      assert putval == NULL_WORD || putval == TOMBSTONE;
+      assert !isPrime(expVal);
+      final int len = _len;
+      int idx = first_slot(key); // The first key
+
+      // ---
+      // Key-Claim stanza: spin till we can claim a Key (or force a resizing).
+      int reprobe_cnt=0;
+      long K;
+      long V;
+      while( idx != len ) {     // Spin till we get a Key slot; NO_KEY has its own
+        V = val(idx);           // Get old value
+        K = key(idx);           // Get current key
+        if( K == NO_KEY ) {     // Slot is free?
+          // Found an empty Key slot - which means this Key has never been in
+          // this table.  No need to put a Tombstone - the Key is not here!
+          if( putval == TOMBSTONE ) return putval; // Not-now & never-been in this table
+          if( expVal == MATCH_ANY ) return NULL_WORD; // Will not match, even after K inserts
+          // Claim the zero key-slot
+          if( CAS_key(idx, NO_KEY, key) ) { // Claim slot for Key
+            _slots.add(1);      // Raise key-slots-used count
+            break;              // Got it!
+          }
+          K = key(idx);         // CAS failed, get updated value
+          assert K != NO_KEY ;  // If keys[idx] is NO_KEY, CAS shoulda worked
+        }
+        // Key slot was not null, there exists a Key here
+        if( K == key )
+          break;                // Got it!
+
+        if( ++reprobe_cnt >= reprobe_limit(len) ) {
+          // We simply must have a new table to do a 'put'.
+          final CHM newchm = resize(false);
+          if( expVal != NULL_WORD ) help_copy(); // help along the copy of this table
+          return newchm.putIfMatch(key,src,srcOffset,putval,expVal);
+        }
+
+        idx = (idx+1)&(len-1); // Reprobe!
+      } // End of spinning till we get a Key slot
+
+      // ---
+      // Found the proper Key slot, now update the matching Value slot.
+      V = val(idx);
+      while( true ) {
+        // See if we want to move to a new table (to avoid high average re-probe
+        // counts).  We only check on the initial set of a Value from null to
+        // not-null (i.e., once per key-insert).
+        if( (V == NULL_WORD && putval != TOMBSTONE && tableFull(reprobe_cnt,len)) ||
+            // Or we found a Prime: resize is already in progress.
+            isPrime(V) ) {
+          resize(false);          // Force the new table copy to start
+          return copy_slot_and_check(idx,expVal != NULL_WORD).putIfMatch(key,src,srcOffset,putval == TOMBSTONE ? TOMBSTONE : NULL_WORD,expVal);
+        }
+
+        // Must match old, and we do not?  Then bail out now.
+        if( !matches(V, expVal) )
+          return V;               // Do not update!
+        if( putval == TOMBSTONE && !isLive(V) )
+          return V;               // Fast cutout for no-change
+
+        // Copy the value into a record of this table, once
+        if( putval == NULL_WORD ) {
+          putval = new_record(src, srcOffset);
+          if( putval == NULL_WORD ) { // Out of records: time for a fresh table
+            resize(true);
+            return copy_slot_and_check(idx,expVal != NULL_WORD).putIfMatch(key,src,srcOffset,NULL_WORD,expVal);
+          }
+        }
+
+        // Actually change the Value in the Key,Value pair
+        if( CAS_val(idx, V, putval ) ) {
+          // Both normal put's and table-copy calls putIfMatch, but table-copy
+          // does not (effectively) increase the number of live k/v pairs.
+          if( expVal != NULL_WORD ) {
+            if( !isLive(V) &&  isLive(putval) ) _size.add( 1);
+            if(  isLive(V) && !isLive(putval) ) _size.add(-1);
+          }
+          return V;
+        }
+        V = val(idx);             // CAS failed, get new value and retry
+      }
+    }
+
+    // --- tableFull ---------------------------------------------------------
+    private final boolean tableFull( int reprobe_cnt, int len ) {
+      return
+        // Do the cheap check first: we allow some number of reprobes always
+        reprobe_cnt >= REPROBE_LIMIT &&
+        (reprobe_cnt >= reprobe_limit(len) ||
+         // More expensive check: see if the table is > 1/2 full.
+         _slots.estimate_get() >= (len>>1));
+    }
+
+    // --- resize ------------------------------------------------------------
+    // Resizing after too many probes or running out of value records, see
+    // NonBlockingHashMapLong.CHM.resize.  Records are never reused within a
+    // table, so churning over a few keys runs out of records long before the
+    // table fills up: such a copy is sized from the live keys alone, which
+    // leave at least half the records of the new table free.
+    private final CHM resize( final boolean records_out ) {
+      CHM newchm = _newchm;     // VOLATILE READ
+      if( newchm != null )      // See if resize is already in progress
+        return newchm;          // Use the new table already
+
+      int oldlen = _len;        // Old count of K,V pairs allowed
+      int sz = size();          // Get current table count of active K,V pairs
+      int newsz = sz;           // First size estimate
+
+      if( sz >= (oldlen>>1) )   // If we are >50% full of keys then...
+        newsz = oldlen<<1;      // Double size
+
+      // Last (re)size operation was very recent?  Then double again.
+      long tm = System.currentTimeMillis();
+      if( !records_out &&    // Too many probes, not just used-up records?
+          newsz <= oldlen && // New table would shrink or hold steady?
+          tm <= _ohnbhml._last_resize_milli+10000)  // Recent resize (less than 10 sec ago)
+        newsz = oldlen<<1;      // Double the existing size
+
+      // Do not shrink, ever.
+      if( newsz < oldlen ) newsz = oldlen;
+
+      // Convert to power-of-2
+      int log2;
+      for( log2=MIN_SIZE_LOG; (1<<log2) < newsz && log2 < MAX_SIZE_LOG; log2++ ) ; // Compute log2 of size
+      if( log2 == MAX_SIZE_LOG && sz > ((1<<log2) >> 2) + ((1<<log2) >> 1) )
+        throw new RuntimeException("Table is full.");
+
+      // Now limit the number of threads actually allocating memory to a
+      // handful - lest we have 750 threads all trying to allocate a giant
+      // resized table.
+      long r = _resizers;
+      while( !_resizerUpdater.compareAndSet(this,r,r+1) )
+        r = _resizers;
+      long megs = ((1L<<log2)*(16+_recordSize))>>20/*megs*/;
+      if( r >= 2 && megs > 0 ) { // Already 2 guys trying; wait and see
+        newchm = _newchm;        // Between dorking around, another thread did it
+        if( newchm != null )     // See if resize is already in progress
+          return newchm;         // Use the new table already
+        try { Thread.sleep(megs); } catch( Exception e ) { /*empty*/}
+      }
+      newchm = _newchm;
+      if( newchm != null )      // See if resize is already in progress
+        return newchm;          // Use the new table already
+
+      // New CHM - actually allocate the big table
+      newchm = new CHM(_ohnbhml,_size,log2);
+      newchm._prev = this;      // Not to be freed before this one
+
+      if( _newchm != null ) {   // See if resize is already in progress
+        newchm.free();
+        return _newchm;         // Use the new table already
+      }
+
+      if( !CAS_newchm( newchm ) ) { // NOW a resize-is-in-progress!
+        newchm.free();          // Lost the race, never shared
+        newchm = _newchm;       // Reread new table
+      }
+      return newchm;
+    }
+
+
+    // The next part of the table to copy, see NonBlockingHashMapLong.CHM
+    volatile long _copyIdx = 0;
+    static private final AtomicLongFieldUpdater<CHM> _copyIdxUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_copyIdx");
+
+    // Work-done reporting.
+    volatile long _copyDone= 0;
+    static private final AtomicLongFieldUpdater<CHM> _copyDoneUpdater =
+      AtomicLongFieldUpdater.newUpdater(CHM.class, "_copyDone");
+
+    // --- help_copy -----------------------------------------------------------
+    // Help along the copy of this table.  Unlike NonBlockingHashMapLong this
+    // is not the top-level table, which may have been replaced by a clear()
+    // and freed since: a thread only touches the tables reachable from the
+    // one it pinned, as a table is only freed after the one it was copied
+    // from.
+    private void help_copy( ) {
+      if( _newchm != null ) help_copy_impl(false);
+    }
+
+    // --- help_copy_impl ----------------------------------------------------
+    // Slots 0 to _len, the last being NO_KEY's, are copied.
+    private final void help_copy_impl( final boolean copy_all ) {
+      final CHM newchm = _newchm;
+      assert newchm != null;    // Already checked by caller
+      final int oldlen = _len+1;// Total amount to copy
+      final int MIN_COPY_WORK = Math.min(oldlen,1024); // Limit per-thread work
+
+      int panic_start = -1;
+      int copyidx=-9999;            // Fool javac to think it's initialized
+      while( _copyDone < oldlen ) { // Still needing to copy?
+        if( panic_start == -1 ) { // No panic?
+          copyidx = (int)_copyIdx;
+          while( !_copyIdxUpdater.compareAndSet(this,copyidx,copyidx+MIN_COPY_WORK) )
+            copyidx = (int)_copyIdx;     // Re-read
+          if( !(copyidx < (oldlen<<1)) ) // Panic!
+            panic_start = copyidx;       // Record where we started to panic-copy
+        }
+
+        int workdone = 0;
+        for( int i=0; i<MIN_COPY_WORK; i++ )
+          if( copy_slot((int)(((long)copyidx+i)%oldlen)) ) // Made an oldtable slot go dead?
+            workdone++;         // Yes!
+        if( workdone > 0 )      // Report work-done occasionally
+          copy_check_and_promote( workdone );// See if we can promote
+
+        copyidx += MIN_COPY_WORK;
+        if( !copy_all && panic_start == -1 ) // No panic?
+          return;               // Then done copying after doing MIN_COPY_WORK
+      }
+      // Extra promotion check, in case another thread finished all copying
+      // then got stalled before promoting.
+      copy_check_and_promote( 0 ); // See if we can promote
+    }
+
+
+    // --- copy_slot_and_check -----------------------------------------------
+    // Copy slot 'idx' from the old table to the new table, returning the new
+    // table.
+    private CHM copy_slot_and_check( int idx, boolean should_help ) {
+      assert _newchm != null;
+      if( copy_slot(idx) )      // Copy the desired slot
+        copy_check_and_promote(1); // Record the slot copied
+      // Generically help along the copy (except if called recursively from a helper)
+      if( should_help ) help_copy();
+      return _newchm;
+    }
+
+    // --- copy_check_and_promote --------------------------------------------
+    private final void copy_check_and_promote( int workdone ) {
+      int oldlen = _len+1;
+      long copyDone = _copyDone;
+      assert (copyDone+workdone) <= oldlen;
+      if( workdone > 0 ) {
+        while( !_copyDoneUpdater.compareAndSet(this,copyDone,copyDone+workdone) ) {
+          copyDone = _copyDone; // Reload, retry
+          assert (copyDone+workdone) <= oldlen;
+        }
+      }
+
+      // Check for copy being ALL done, and promote.
+      if( copyDone+workdone == oldlen && // Ready to promote this table?
+          _ohnbhml._chm == this &&       // Looking at the top-level table?
+          _ohnbhml.CAS_chm(this,_newchm) ) {
+        _ohnbhml._last_resize_milli = System.currentTimeMillis();  // Record resize time for next check
+        _promoted = _newchm;
+        _ohnbhml.retire(this);  // Free once no longer in use
+      }
+    }
+
+    // --- copy_slot ---------------------------------------------------------
+    // Copy one K/V pair from the old table to the new one.  Returns true if we
+    // can confirm that we set an old-table slot to TOMBPRIME, and only returns
+    // after updating the new table.
+    private boolean copy_slot( int idx ) {
+      // Blindly set the key slot from NO_KEY to some key which hashes here,
+      // to eagerly stop fresh put's from inserting new values in the old
+      // table when the old table is mid-resize.
+      long key = NO_KEY;
+      if( idx != _len )
+        while( (key=key(idx)) == NO_KEY )
+          CAS_key(idx, NO_KEY, (idx+_len)/*a non-zero key which hashes here*/);
+
+      // ---
+      // Prevent new values from appearing in the old table.
+      // Box what we see in the old table, to prevent further updates.
+      long oldval = val(idx);   // Read OLD table
+      while( !isPrime(oldval) ) {
+        final long box = isLive(oldval) ? prime(oldval) : TOMBPRIME;
+        if( CAS_val(idx,oldval,box) ) { // CAS down a box'd version of oldval
+          if( box == TOMBPRIME )
+            return true;
+          oldval = box;         // Record updated oldval
+          break;                // Break loop; oldval is now boxed by us
+        }
+        oldval = val(idx);      // Else try, try again
+      }
+      if( oldval == TOMBPRIME ) return false; // Copy already complete here!
+
+      // ---
+      // Copy the value into the new table, but only if we overwrite a null.
+      final long old_unboxed = unbox(oldval);
+      assert isLive(old_unboxed);
+      _newchm.putIfMatch(key, null, record(old_unboxed), NULL_WORD, NULL_WORD);
+
+      // ---
+      // Finally, now that any old value is exposed in the new table, we can
+      // forever hide the old-table value by slapping a TOMBPRIME down.
+      while( oldval != TOMBPRIME && !CAS_val(idx,oldval,TOMBPRIME) )
+        oldval = val(idx);
+
+      return oldval != TOMBPRIME; // True if we slammed the TOMBPRIME down
+    } // end copy_slot
+  } // End of CHM
+}  // End OffHeapNonBlockingHashMapLong class
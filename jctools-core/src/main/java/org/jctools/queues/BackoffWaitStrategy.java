@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+/**
+ * Progressive backoff: spins for the first <i>spins</i> idle calls, then yields for the next <i>yields</i>, then
+ * parks as a {@link ParkingWaitStrategy} does, with park times doubling from <i>minParkNanos</i> to
+ * <i>maxParkNanos</i>. A thread with a steady flow of work stays on the CPU, a thread idle for longer gives its
+ * core away. The defaults suit a consumer which should react within microseconds to bursts, without burning a
+ * core when there are none.
+ * <p>
+ * This strategy is stateless and may be shared by any number of threads.
+ */
+public final class BackoffWaitStrategy implements MessagePassingQueue.WaitStrategy
+{
+    public static final int DEFAULT_SPINS = 100;
+    public static final int DEFAULT_YIELDS = 10;
+
+    private final int spins;
+    private final int spinsAndYields;
+    private final ParkingWaitStrategy parking;
+
+    public BackoffWaitStrategy()
+    {
+        this(DEFAULT_SPINS, DEFAULT_YIELDS, ParkingWaitStrategy.DEFAULT_MIN_PARK_NANOS,
+            ParkingWaitStrategy.DEFAULT_MAX_PARK_NANOS);
+    }
+
+    /**
+     * @param spins the number of idle calls to spin for
+     * @param yields the number of idle calls to yield for, after spinning
+     * @param minParkNanos the time to park on the first idle call after yielding
+     * @param maxParkNanos the longest time to park
+     */
+    public BackoffWaitStrategy(int spins, int yields, long minParkNanos, long maxParkNanos)
+    {
+        if (spins < 0 || yields < 0 || spins > Integer.MAX_VALUE - yields)
+        {
+            throw new IllegalArgumentException("spins: " + spins + ", yields: " + yields);
+        }
+        this.spins = spins;
+        this.spinsAndYields = spins + yields;
+        this.parking = new ParkingWaitStrategy(minParkNanos, maxParkNanos);
+    }
+
+    @Override
+    public int idle(int idleCounter)
+    {
+        if (idleCounter < spins)
+        {
+            BusySpinWaitStrategy.onSpinWait();
+        }
+        else if (idleCounter < spinsAndYields)
+        {
+            Thread.yield();
+        }
+        else
+        {
+            parking.idle(idleCounter - spinsAndYields);
+        }
+        return idleCounter == Integer.MAX_VALUE ? idleCounter : idleCounter + 1;
+    }
+}
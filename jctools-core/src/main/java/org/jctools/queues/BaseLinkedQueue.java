@@ -252,6 +252,24 @@ abstract class BaseLinkedQueue<E> extends BaseLinkedQueuePad2<E>
         return limit;
     }
 
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy wait, ExitCondition exit)
     {
@@ -265,7 +283,7 @@ abstract class BaseLinkedQueue<E> extends BaseLinkedQueuePad2<E>
                 if (nextNode == null)
                 {
                     idleCounter = wait.idle(idleCounter);
-                    continue;
+                    break; // check the exit condition after idling
                 }
 
                 idleCounter = 0;
@@ -0,0 +1,598 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.queues.IndexedQueueSizeUtil.IndexedQueue;
+import org.jctools.util.PortableJvmInfo;
+import org.jctools.util.Pow2;
+import org.jctools.util.RangeUtil;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+
+import static org.jctools.queues.CircularArrayOffsetCalculator.calcElementOffset;
+import static org.jctools.queues.McUnboundedArrayChunk.calcSequenceOffset;
+import static org.jctools.queues.QueueStatsRecorder.*;
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+import static org.jctools.util.UnsafeRefArrayAccess.lpElement;
+import static org.jctools.util.UnsafeRefArrayAccess.lvElement;
+import static org.jctools.util.UnsafeRefArrayAccess.spElement;
+
+abstract class BaseMcUnboundedArrayQueuePad1<E> extends AbstractQueue<E> implements IndexedQueue
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class BaseMcUnboundedArrayQueueProducerFields<E> extends BaseMcUnboundedArrayQueuePad1<E>
+{
+    private final static long P_INDEX_OFFSET = fieldOffset(BaseMcUnboundedArrayQueueProducerFields.class, "producerIndex");
+
+    private volatile long producerIndex;
+
+    @Override
+    public final long lvProducerIndex()
+    {
+        return producerIndex;
+    }
+
+    final long lpProducerIndex()
+    {
+        return UNSAFE.getLong(this, P_INDEX_OFFSET);
+    }
+
+    final void soProducerIndex(long newValue)
+    {
+        UNSAFE.putOrderedLong(this, P_INDEX_OFFSET, newValue);
+    }
+
+    final boolean casProducerIndex(long expect, long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(this, P_INDEX_OFFSET, expect, newValue);
+    }
+}
+
+abstract class BaseMcUnboundedArrayQueuePad2<E> extends BaseMcUnboundedArrayQueueProducerFields<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class BaseMcUnboundedArrayQueueConsumerFields<E> extends BaseMcUnboundedArrayQueuePad2<E>
+{
+    private final static long C_INDEX_OFFSET = fieldOffset(BaseMcUnboundedArrayQueueConsumerFields.class, "consumerIndex");
+    private final static long C_CHUNK_OFFSET = fieldOffset(BaseMcUnboundedArrayQueueConsumerFields.class, "consumerChunk");
+
+    private volatile long consumerIndex;
+    private volatile McUnboundedArrayChunk<E> consumerChunk;
+
+    @Override
+    public final long lvConsumerIndex()
+    {
+        return consumerIndex;
+    }
+
+    final void soConsumerIndex(long newValue)
+    {
+        UNSAFE.putOrderedLong(this, C_INDEX_OFFSET, newValue);
+    }
+
+    final boolean casConsumerIndex(long expect, long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(this, C_INDEX_OFFSET, expect, newValue);
+    }
+
+    final McUnboundedArrayChunk<E> lvConsumerChunk()
+    {
+        return consumerChunk;
+    }
+
+    final void soConsumerChunk(McUnboundedArrayChunk<E> newValue)
+    {
+        UNSAFE.putOrderedObject(this, C_CHUNK_OFFSET, newValue);
+    }
+}
+
+abstract class BaseMcUnboundedArrayQueuePad3<E> extends BaseMcUnboundedArrayQueueConsumerFields<E>
+{
+    long p0, p1, p2, p3, p4, p5, p6, p7;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class BaseMcUnboundedArrayQueueColdProducerFields<E> extends BaseMcUnboundedArrayQueuePad3<E>
+{
+    private final static long P_CHUNK_OFFSET = fieldOffset(BaseMcUnboundedArrayQueueColdProducerFields.class, "producerChunk");
+
+    private volatile McUnboundedArrayChunk<E> producerChunk;
+
+    final McUnboundedArrayChunk<E> lvProducerChunk()
+    {
+        return producerChunk;
+    }
+
+    final void soProducerChunk(McUnboundedArrayChunk<E> newValue)
+    {
+        UNSAFE.putOrderedObject(this, P_CHUNK_OFFSET, newValue);
+    }
+}
+
+/**
+ * Common functionality for the multi-consumer unbounded queues. The queue is made of fixed size chunks linked
+ * together, the producers append chunks as they fill up and the consumers follow the links. Chunks which have been
+ * fully consumed are handed back to a bounded pool for the producers to reuse, which cuts the allocation rate of the
+ * queue down to almost nothing in steady state.<br>
+ * Similar to {@link BaseMpscLinkedArrayQueue} the indices are kept shifted left by one, and the lower bit is used to
+ * indicate a chunk rotation is in progress on either the producer or the consumer side. The thread which claims the
+ * first index of a new chunk is the one rotating the chunk and all other threads wait for it to finish.<br>
+ * Every slot in a chunk is paired with a sequence value (see {@link McUnboundedArrayChunk}) which consumers use to
+ * wait for the element to become visible, and which the producers use to make sure a recycled chunk is no longer in
+ * use.
+ *
+ * @param <E>
+ */
+public abstract class BaseMcUnboundedArrayQueue<E> extends BaseMcUnboundedArrayQueueColdProducerFields<E>
+    implements MessagePassingQueue<E>, QueueProgressIndicators, QueueStatsRecorder.Source
+{
+    // No post padding here, subclasses must add
+    protected final int chunkMask;
+    protected final int chunkShift;
+    protected QueueStatsRecorder stats;
+    private final SpscArrayQueue<McUnboundedArrayChunk<E>> freeChunksPool;
+
+    /**
+     * @param chunkSize       the size of each chunk, rounded up to the next power of 2. Must be 2 or more.
+     * @param maxPooledChunks the number of fully consumed chunks to keep around for reuse, 0 disables pooling.
+     */
+    public BaseMcUnboundedArrayQueue(int chunkSize, int maxPooledChunks)
+    {
+        RangeUtil.checkGreaterThanOrEqual(chunkSize, 2, "chunkSize");
+        RangeUtil.checkPositiveOrZero(maxPooledChunks, "maxPooledChunks");
+        chunkSize = Pow2.roundToPowerOfTwo(chunkSize);
+        chunkMask = chunkSize - 1;
+        chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        freeChunksPool = maxPooledChunks == 0 ? null : new SpscArrayQueue<McUnboundedArrayChunk<E>>(maxPooledChunks);
+        final McUnboundedArrayChunk<E> first = new McUnboundedArrayChunk<E>(chunkSize, 0);
+        soProducerChunk(first);
+        soConsumerChunk(first);
+    }
+
+    @Override
+    public final QueueStatsRecorder statsRecorder()
+    {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording()
+    {
+        if (stats == null)
+        {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
+    @Override
+    public final Iterator<E> iterator()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public final int size()
+    {
+        // NOTE: because indices are on even numbers we cannot use the size util.
+
+        /*
+         * It is possible for a thread to be interrupted or reschedule between the read of the producer and
+         * consumer indices, therefore protection is required to ensure size is within valid range. In the
+         * event of concurrent polls/offers to this method the size is OVER estimated as we read consumer
+         * index BEFORE the producer index.
+         */
+        long after = lvConsumerIndex();
+        long size;
+        while (true)
+        {
+            final long before = after;
+            final long currentProducerIndex = lvProducerIndex();
+            after = lvConsumerIndex();
+            if (before == after)
+            {
+                size = ((currentProducerIndex - after) >> 1);
+                break;
+            }
+        }
+        // Long overflow is impossible, so size is always positive. Integer overflow is possible for the unbounded
+        // indexed queues.
+        if (size > Integer.MAX_VALUE)
+        {
+            return Integer.MAX_VALUE;
+        }
+        else
+        {
+            return (int) size;
+        }
+    }
+
+    @Override
+    public final boolean isEmpty()
+    {
+        // Order matters!
+        // Loading consumer before producer allows for producer increments after consumer index is read.
+        // This ensures this method is conservative in it's estimate. Note that as this is an MPMC there is
+        // nothing we can do to make this an exact method.
+        return (this.lvConsumerIndex() == this.lvProducerIndex());
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public long currentProducerIndex()
+    {
+        return lvProducerIndex() / 2;
+    }
+
+    @Override
+    public long currentConsumerIndex()
+    {
+        return lvConsumerIndex() / 2;
+    }
+
+    @Override
+    public int capacity()
+    {
+        return MessagePassingQueue.UNBOUNDED_CAPACITY;
+    }
+
+    @Override
+    public void clear()
+    {
+        while (poll() != null)
+        {
+            // if you stare into the void
+        }
+    }
+
+    @Override
+    public boolean relaxedOffer(E e)
+    {
+        return offer(e);
+    }
+
+    /**
+     * Called by the producer which claimed the first index of a new chunk, while the producer index is locked (odd)
+     * or by the single producer.
+     *
+     * @return the chunk to be used for the claimed index and all following indices up to the next rotation
+     */
+    final McUnboundedArrayChunk<E> appendNextChunk(McUnboundedArrayChunk<E> currentChunk, long chunkIndex)
+    {
+        McUnboundedArrayChunk<E> newChunk = freeChunksPool == null ? null : freeChunksPool.poll();
+        // a pooled chunk may still be in use by a slow producer/consumer, in which case it is left to the GC
+        if (newChunk != null && newChunk.isQuiescent())
+        {
+            newChunk.soIndex(chunkIndex);
+        }
+        else
+        {
+            newChunk = new McUnboundedArrayChunk<E>(chunkMask + 1, chunkIndex);
+        }
+        recordResize(stats);
+        soProducerChunk(newChunk);
+        // link visible to the consumers before the producer index moves past the end of current chunk
+        currentChunk.soNext(newChunk);
+        return newChunk;
+    }
+
+    /**
+     * Called by the consumer which claimed the first index of a new chunk, while the consumer index is locked (odd).
+     * The chunk is recycled here, rather than after unlocking the index, so that the pool is only ever offered
+     * to by a single thread at a time.
+     */
+    private McUnboundedArrayChunk<E> moveToNextConsumerChunk(McUnboundedArrayChunk<E> currentChunk)
+    {
+        McUnboundedArrayChunk<E> next;
+        // the producer index is ahead of the consumer index, but the producer may not have linked the chunk yet
+        while ((next = currentChunk.lvNext()) == null)
+        {
+            // spin
+        }
+        currentChunk.soNext(null);
+        soConsumerChunk(next);
+        if (freeChunksPool != null)
+        {
+            freeChunksPool.offer(currentChunk);
+        }
+        return next;
+    }
+
+    final void writeElement(McUnboundedArrayChunk<E> chunk, long index, E e)
+    {
+        final int chunkMask = this.chunkMask;
+        spElement(chunk.buffer, calcElementOffset(index, chunkMask), e);
+        // StoreStore, the element is visible before the sequence
+        chunk.soSequence(calcSequenceOffset(index, chunkMask), index + 1);
+    }
+
+    private E takeElement(McUnboundedArrayChunk<E> chunk, long index)
+    {
+        final int chunkMask = this.chunkMask;
+        final long seqOffset = calcSequenceOffset(index, chunkMask);
+        // the index was claimed by a producer, but the element may not be visible yet
+        while (chunk.lvSequence(seqOffset) != index + 1)
+        {
+            // spin
+        }
+        final long offset = calcElementOffset(index, chunkMask);
+        final E e = lpElement(chunk.buffer, offset);
+        spElement(chunk.buffer, offset, null);
+        // StoreStore, the slot is released for reuse after it is nulled
+        chunk.soSequence(seqOffset, -(index + 1));
+        return e;
+    }
+
+    private boolean isFirstIndexOfChunk(long index)
+    {
+        return (index & chunkMask) == 0 && index != 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for multiple consumer threads.
+     */
+    @Override
+    public E poll()
+    {
+        while (true)
+        {
+            final long cIndex = lvConsumerIndex();
+            // lower bit is indicative of chunk rotation, if we see it we spin until it's cleared
+            if ((cIndex & 1) == 1)
+            {
+                continue;
+            }
+            // chunk may get changed by rotation -> only valid after a successful CAS
+            final McUnboundedArrayChunk<E> cChunk = lvConsumerChunk();
+            // the consumer index never passes the producer index, so this is a strict empty check
+            if (cIndex >= lvProducerIndex())
+            {
+                return null;
+            }
+            final long index = cIndex >> 1;
+            if (isFirstIndexOfChunk(index))
+            {
+                if (casConsumerIndex(cIndex, cIndex + 1))
+                {
+                    final McUnboundedArrayChunk<E> next = moveToNextConsumerChunk(cChunk);
+                    soConsumerIndex(cIndex + 2);
+                    return takeElement(next, index);
+                }
+            }
+            else if (casConsumerIndex(cIndex, cIndex + 2))
+            {
+                return takeElement(cChunk, index);
+            }
+            recordCasFailure(stats);
+        }
+    }
+
+    @Override
+    public E relaxedPoll()
+    {
+        while (true)
+        {
+            final long cIndex = lvConsumerIndex();
+            if ((cIndex & 1) == 1)
+            {
+                continue;
+            }
+            final McUnboundedArrayChunk<E> cChunk = lvConsumerChunk();
+            final long index = cIndex >> 1;
+            final boolean firstIndexOfChunk = isFirstIndexOfChunk(index);
+            final McUnboundedArrayChunk<E> chunk = firstIndexOfChunk ? cChunk.lvNext() : cChunk;
+            // element is not visible, or we are looking at a stale chunk
+            if (chunk == null || chunk.lvSequence(calcSequenceOffset(index, chunkMask)) != index + 1)
+            {
+                return null;
+            }
+            if (firstIndexOfChunk)
+            {
+                if (casConsumerIndex(cIndex, cIndex + 1))
+                {
+                    final McUnboundedArrayChunk<E> next = moveToNextConsumerChunk(cChunk);
+                    soConsumerIndex(cIndex + 2);
+                    return takeElement(next, index);
+                }
+            }
+            else if (casConsumerIndex(cIndex, cIndex + 2))
+            {
+                return takeElement(cChunk, index);
+            }
+            recordCasFailure(stats);
+        }
+    }
+
+    @Override
+    public E peek()
+    {
+        return peek(true);
+    }
+
+    @Override
+    public E relaxedPeek()
+    {
+        return peek(false);
+    }
+
+    private E peek(boolean strict)
+    {
+        while (true)
+        {
+            final long cIndex = lvConsumerIndex();
+            if ((cIndex & 1) == 1)
+            {
+                continue;
+            }
+            final McUnboundedArrayChunk<E> cChunk = lvConsumerChunk();
+            if (strict && cIndex >= lvProducerIndex())
+            {
+                return null;
+            }
+            final long index = cIndex >> 1;
+            final McUnboundedArrayChunk<E> chunk = isFirstIndexOfChunk(index) ? cChunk.lvNext() : cChunk;
+            if (chunk != null && chunk.lvSequence(calcSequenceOffset(index, chunkMask)) == index + 1)
+            {
+                final E e = lvElement(chunk.buffer, calcElementOffset(index, chunkMask));
+                // the chunk may have been consumed and recycled under our feet, only trust the element if no
+                // consumer has moved on since we started
+                if (cIndex == lvConsumerIndex())
+                {
+                    return e;
+                }
+            }
+            else if (!strict)
+            {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public int drain(Consumer<E> c)
+    {
+        return drain(c, 4096);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int limit)
+    {
+        final int chunkSize = chunkMask + 1;
+        int consumed = 0;
+        while (consumed < limit)
+        {
+            final long cIndex = lvConsumerIndex();
+            if ((cIndex & 1) == 1)
+            {
+                continue;
+            }
+            final McUnboundedArrayChunk<E> cChunk = lvConsumerChunk();
+            final long pIndex = lvProducerIndex();
+            if (cIndex >= pIndex)
+            {
+                return consumed;
+            }
+            final long index = cIndex >> 1;
+            if (isFirstIndexOfChunk(index))
+            {
+                if (casConsumerIndex(cIndex, cIndex + 1))
+                {
+                    final McUnboundedArrayChunk<E> next = moveToNextConsumerChunk(cChunk);
+                    soConsumerIndex(cIndex + 2);
+                    c.accept(takeElement(next, index));
+                    consumed++;
+                }
+                else
+                {
+                    recordCasFailure(stats);
+                }
+                continue;
+            }
+            // claim as many elements as are available in one go, but stop short of the next chunk rotation
+            final long available = (pIndex >> 1) - index;
+            final int batch = (int) Math.min(
+                Math.min(limit - consumed, available),
+                chunkSize - (index & chunkMask));
+            if (casConsumerIndex(cIndex, cIndex + 2L * batch))
+            {
+                for (int i = 0; i < batch; i++)
+                {
+                    c.accept(takeElement(cChunk, index + i));
+                }
+                consumed += batch;
+            }
+            else
+            {
+                recordCasFailure(stats);
+            }
+        }
+        return limit;
+    }
+
+    @Override
+    public int fill(Supplier<E> s)
+    {
+        long result = 0;// result is a long because we want to have a safepoint check at regular intervals
+        final int capacity = 4096;
+        do
+        {
+            final int filled = fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH);
+            if (filled == 0)
+            {
+                return (int) result;
+            }
+            result += filled;
+        }
+        while (result <= capacity);
+        return (int) result;
+    }
+
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
+    @Override
+    public void drain(Consumer<E> c, WaitStrategy w, ExitCondition exit)
+    {
+        int idleCounter = 0;
+        while (exit.keepRunning())
+        {
+            if (drain(c, PortableJvmInfo.RECOMENDED_POLL_BATCH) == 0)
+            {
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+        }
+    }
+
+    @Override
+    public void fill(Supplier<E> s, WaitStrategy w, ExitCondition exit)
+    {
+        // the queue is unbounded, so there's never a reason to wait
+        while (exit.keepRunning())
+        {
+            fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH);
+        }
+    }
+}
@@ -24,10 +24,14 @@ import java.util.Iterator;
 import static org.jctools.queues.CircularArrayOffsetCalculator.allocate;
 import static org.jctools.queues.LinkedArrayQueueUtil.length;
 import static org.jctools.queues.LinkedArrayQueueUtil.modifiedCalcElementOffset;
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 import static org.jctools.util.UnsafeAccess.fieldOffset;
 import static org.jctools.util.UnsafeRefArrayAccess.lvElement;
 import static org.jctools.util.UnsafeRefArrayAccess.soElement;
+import static org.jctools.util.UnsafeRefArrayAccess.spElement;
 
 abstract class BaseMpscLinkedArrayQueuePad1<E> extends AbstractQueue<E> implements IndexedQueue
 {
@@ -131,7 +135,7 @@ abstract class BaseMpscLinkedArrayQueueColdProducerFields<E> extends BaseMpscLin
  * @param <E>
  */
 public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQueueColdProducerFields<E>
-    implements MessagePassingQueue<E>, QueueProgressIndicators
+    implements MessagePassingQueue<E>, QueueProgressIndicators, QueueStatsRecorder.Source
 {
     // No post padding here, subclasses must add
     private static final Object JUMP = new Object();
@@ -140,6 +144,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
     private static final int QUEUE_FULL = 2;
     private static final int QUEUE_RESIZE = 3;
 
+    private QueueStatsRecorder stats;
 
     /**
      * @param initialCapacity the queue initial capacity. If chunk size is fixed this will be the chunk size.
@@ -161,6 +166,22 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
         soProducerLimit(mask); // we know it's all empty to start with
     }
 
+    @Override
+    public final QueueStatsRecorder statsRecorder()
+    {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording()
+    {
+        if (stats == null)
+        {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
     @Override
     public final Iterator<E> iterator()
     {
@@ -258,6 +279,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
                     case RETRY:
                         continue;
                     case QUEUE_FULL:
+                        recordOfferFull(stats);
                         return false;
                     case QUEUE_RESIZE:
                         resize(mask, buffer, pIndex, e);
@@ -269,6 +291,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
             {
                 break;
             }
+            recordCasFailure(stats);
         }
         // INDEX visible before ELEMENT
         final long offset = modifiedCalcElementOffset(pIndex, mask);
@@ -358,6 +381,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
      */
     private int offerSlowPath(long mask, long pIndex, long producerLimit)
     {
+        recordOfferSlowPath(stats);
         final long cIndex = lvConsumerIndex();
         long bufferCapacity = getCurrentBufferCapacity(mask);
 
@@ -365,6 +389,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
         {
             if (!casProducerLimit(producerLimit, cIndex + bufferCapacity))
             {
+                recordCasFailure(stats);
                 // retry from top
                 return RETRY;
             }
@@ -389,6 +414,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
         else
         {
             // failed resize attempt, retry from top
+            recordCasFailure(stats);
             return RETRY;
         }
     }
@@ -561,6 +587,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
                     case RETRY:
                         continue;
                     case QUEUE_FULL:
+                        recordOfferFull(stats);
                         return 0;
                     case QUEUE_RESIZE:
                         resize(mask, buffer, pIndex, s.get());
@@ -574,6 +601,7 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
                 claimedSlots = (int) ((batchIndex - pIndex) / 2);
                 break;
             }
+            recordCasFailure(stats);
         }
 
         for (int i = 0; i < claimedSlots; i++)
@@ -584,6 +612,125 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
         return claimedSlots;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slots for the batch are claimed with a single CAS on the producer index. As with
+     * {@link #fill(Supplier, int)} only the slots visible to the current producer limit are claimed, and a batch
+     * which triggers a resize will only offer the first element.
+     */
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        checkOfferBatch(src, off, len);
+        if (len == 0)
+        {
+            return 0;
+        }
+        long mask;
+        E[] buffer;
+        long pIndex;
+        int claimedSlots;
+        while (true)
+        {
+            long producerLimit = lvProducerLimit();
+            pIndex = lvProducerIndex();
+            // lower bit is indicative of resize, if we see it we spin until it's cleared
+            if ((pIndex & 1) == 1)
+            {
+                continue;
+            }
+            // pIndex is even (lower bit is 0) -> actual index is (pIndex >> 1)
+
+            // NOTE: mask/buffer may get changed by resizing -> only use for array access after successful CAS.
+            mask = this.producerMask;
+            buffer = this.producerBuffer;
+            // a successful CAS ties the ordering, lv(pIndex) -> [mask/buffer] -> cas(pIndex)
+
+            // we want 'len' slots, but will settle for whatever is visible to 'producerLimit'
+            long batchIndex = Math.min(producerLimit, pIndex + 2L * len);
+
+            if (pIndex >= producerLimit)
+            {
+                int result = offerSlowPath(mask, pIndex, producerLimit);
+                switch (result)
+                {
+                    case CONTINUE_TO_P_INDEX_CAS:
+                        // offer slow path verifies only one slot ahead, we cannot rely on indication here
+                    case RETRY:
+                        continue;
+                    case QUEUE_FULL:
+                        recordOfferFull(stats);
+                        return 0;
+                    case QUEUE_RESIZE:
+                        resize(mask, buffer, pIndex, src[off]);
+                        return 1;
+                }
+            }
+
+            // claim the batch slots at once
+            if (casProducerIndex(pIndex, batchIndex))
+            {
+                claimedSlots = (int) ((batchIndex - pIndex) / 2);
+                break;
+            }
+            recordCasFailure(stats);
+        }
+
+        for (int i = 0; i < claimedSlots; i++)
+        {
+            final long offset = modifiedCalcElementOffset(pIndex + 2 * i, mask);
+            soElement(buffer, offset, src[off + i]);
+        }
+        return claimedSlots;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only. The consumer index is published once
+     * for each buffer the batch is taken from.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        checkPollBatch(dst, off, len);
+        E[] buffer = consumerBuffer;
+        long index = lpConsumerIndex();
+        long mask = consumerMask;
+
+        int i = 0;
+        for (; i < len; i++)
+        {
+            final long offset = modifiedCalcElementOffset(index, mask);
+            final Object e = lvElement(buffer, offset);// LoadLoad
+            if (e == null)
+            {
+                break;
+            }
+            if (e == JUMP)
+            {
+                // release the elements taken from the old buffer before moving on
+                soConsumerIndex(index);
+                final E[] nextBuffer = getNextBuffer(buffer, mask);
+                dst[off + i] = newBufferPoll(nextBuffer, index);
+                buffer = nextBuffer;
+                mask = consumerMask;
+                index += 2;
+                continue;
+            }
+            spElement(buffer, offset, null);
+            dst[off + i] = (E) e;
+            index += 2;
+        }
+        if (i != 0)
+        {
+            soConsumerIndex(index); // release cIndex
+        }
+        return i;
+    }
+
     @Override
     public void fill(
         Supplier<E> s,
@@ -641,8 +788,56 @@ public abstract class BaseMpscLinkedArrayQueue<E> extends BaseMpscLinkedArrayQue
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        E[] buffer = consumerBuffer;
+        long index = lpConsumerIndex();
+        long mask = consumerMask;
+        final long deadline = maxWaitNanos > 0 ? System.nanoTime() + maxWaitNanos : 0;
+
+        int idleCounter = 0;
+        int i = 0;
+        while (i < maxBatch)
+        {
+            final long offset = modifiedCalcElementOffset(index, mask);
+            final Object e = lvElement(buffer, offset);// LoadLoad
+            if (e == null)
+            {
+                // the time is only read once the queue runs dry
+                if (maxWaitNanos <= 0 || System.nanoTime() - deadline >= 0)
+                {
+                    break;
+                }
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+            final E m;
+            if (e == JUMP)
+            {
+                final E[] nextBuffer = getNextBuffer(buffer, mask);
+                m = newBufferPoll(nextBuffer, index);
+                buffer = nextBuffer;
+                mask = consumerMask;
+            }
+            else
+            {
+                spElement(buffer, offset, null);
+                soConsumerIndex(index + 2); // ordered store -> atomic and ordered for size()
+                m = (E) e;
+            }
+            index += 2;
+            c.accept(m);
+            i++;
+        }
+        return i;
+    }
+
     private void resize(long oldMask, E[] oldBuffer, long pIndex, E e)
     {
+        recordResize(stats);
         int newBufferLength = getNextBufferSize(oldBuffer);
         final E[] newBuffer = allocate(newBufferLength);
 
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import static org.jctools.queues.CircularArrayOffsetCalculator.calcElementOffset;
 import static org.jctools.queues.LinkedArrayQueueUtil.length;
 import static org.jctools.queues.LinkedArrayQueueUtil.nextArrayOffset;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 import static org.jctools.util.UnsafeAccess.fieldOffset;
 import static org.jctools.util.UnsafeRefArrayAccess.lvElement;
@@ -105,11 +106,29 @@ abstract class BaseSpscLinkedArrayQueueProducerColdFields<E> extends BaseSpscLin
 }
 
 abstract class BaseSpscLinkedArrayQueue<E> extends BaseSpscLinkedArrayQueueProducerColdFields<E>
-    implements MessagePassingQueue<E>, QueueProgressIndicators
+    implements MessagePassingQueue<E>, QueueProgressIndicators, QueueStatsRecorder.Source
 {
 
     private static final Object JUMP = new Object();
 
+    private QueueStatsRecorder stats;
+
+    @Override
+    public final QueueStatsRecorder statsRecorder()
+    {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording()
+    {
+        if (stats == null)
+        {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
     @Override
     public final Iterator<E> iterator()
     {
@@ -227,8 +246,10 @@ abstract class BaseSpscLinkedArrayQueue<E> extends BaseSpscLinkedArrayQueueProdu
             }
             else
             {
+                recordOfferSlowPath(stats);
                 if (!offerColdPath(buffer, mask, index, offset, null, s))
                 {
+                    recordOfferFull(stats);
                     return i;
                 }
             }
@@ -236,6 +257,24 @@ abstract class BaseSpscLinkedArrayQueue<E> extends BaseSpscLinkedArrayQueueProdu
         return limit;
     }
 
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy wait, ExitCondition exit)
     {
@@ -284,7 +323,13 @@ abstract class BaseSpscLinkedArrayQueue<E> extends BaseSpscLinkedArrayQueueProdu
             writeToQueue(buffer, e, index, offset);
             return true;
         }
-        return offerColdPath(buffer, mask, index, offset, e, null);
+        recordOfferSlowPath(stats);
+        if (!offerColdPath(buffer, mask, index, offset, e, null))
+        {
+            recordOfferFull(stats);
+            return false;
+        }
+        return true;
     }
 
     abstract boolean offerColdPath(
@@ -353,6 +398,7 @@ abstract class BaseSpscLinkedArrayQueue<E> extends BaseSpscLinkedArrayQueueProdu
         final E[] newBuffer, final long offsetInNew,
         final E e)
     {
+        recordResize(stats);
         soElement(newBuffer, offsetInNew, e);// StoreStore
         // link to next buffer and add next indicator as element of old buffer
         soNext(oldBuffer, newBuffer);
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.queues.MessagePassingQueue.Consumer;
+import org.jctools.queues.MessagePassingQueue.WaitStrategy;
+
+import java.util.Collection;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shared waiting logic for the blocking queues.
+ * <p>
+ * Blocked consumers spin, then yield, then park and are woken up by the producers. The producers only pay for the
+ * wake up when a consumer is actually parked.<br>
+ * Blocked producers (waiting for space in a full queue) are not signalled by the consumers, so the consumer path
+ * is left untouched. They idle using a {@link WaitStrategy} instead, which by default spins, then yields, then
+ * parks for exponentially growing periods up to {@link #MAX_PARK_NANOS}.
+ */
+final class BlockingQueueUtil
+{
+    static final int SPIN_TRIES = Integer.getInteger("jctools.blocking.spin.tries", 256);
+    static final int YIELD_TRIES = Integer.getInteger("jctools.blocking.yield.tries", 64);
+    static final long MAX_PARK_NANOS = Long.getLong("jctools.blocking.max.park.nanos", 1000000L);
+
+    /**
+     * Spin, then yield, then park with exponential back off.
+     */
+    static final WaitStrategy BACKOFF_WAIT = new WaitStrategy()
+    {
+        @Override
+        public int idle(int idleCounter)
+        {
+            if (idleCounter < SPIN_TRIES)
+            {
+                return idleCounter + 1;
+            }
+            if (idleCounter < SPIN_TRIES + YIELD_TRIES)
+            {
+                Thread.yield();
+                return idleCounter + 1;
+            }
+            final int parks = idleCounter - SPIN_TRIES - YIELD_TRIES;
+            LockSupport.parkNanos(parks < 20 ? Math.min(1L << parks, MAX_PARK_NANOS) : MAX_PARK_NANOS);
+            return parks < 20 ? idleCounter + 1 : idleCounter;
+        }
+    };
+
+    private BlockingQueueUtil()
+    {
+
+    }
+
+    /**
+     * The busy phase of a blocked consumer, to be called for an increasing counter until it returns false.
+     *
+     * @return false when the consumer should stop spinning/yielding and park
+     */
+    static boolean spinThenYield(int counter)
+    {
+        if (counter < SPIN_TRIES)
+        {
+            return true;
+        }
+        if (counter < SPIN_TRIES + YIELD_TRIES)
+        {
+            Thread.yield();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Offer, waiting for space as required.
+     *
+     * @param timed if false wait until offered, otherwise wait up to <i>nanos</i>
+     * @return true if offered, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static <E> boolean offer(MessagePassingQueue<E> q, E e, WaitStrategy w, boolean timed, long nanos)
+        throws InterruptedException
+    {
+        if (q.offer(e))
+        {
+            return true;
+        }
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int idleCounter = 0;
+        do
+        {
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+            if (timed && deadline - System.nanoTime() <= 0)
+            {
+                return false;
+            }
+            idleCounter = w.idle(idleCounter);
+        }
+        while (!q.offer(e));
+        return true;
+    }
+
+    static <E> int drainTo(MessagePassingQueue<E> q, final Collection<? super E> c, int maxElements)
+    {
+        if (c == null)
+        {
+            throw new NullPointerException();
+        }
+        if (c == q)
+        {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0)
+        {
+            return 0;
+        }
+        final Consumer<E> adder = new Consumer<E>()
+        {
+            @Override
+            public void accept(E e)
+            {
+                c.add(e);
+            }
+        };
+        int sum = 0;
+        int drained;
+        do
+        {
+            drained = q.drain(adder, maxElements - sum);
+            sum += drained;
+        }
+        while (drained != 0 && sum < maxElements);
+        return sum;
+    }
+
+    static int remainingCapacity(MessagePassingQueue<?> q)
+    {
+        return Math.max(0, q.capacity() - q.size());
+    }
+}
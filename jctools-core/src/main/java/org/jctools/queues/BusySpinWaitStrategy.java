@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.lang.reflect.Method;
+
+/**
+ * Spins on the calling thread, hinting the CPU that it is in a spin-wait loop where the JVM supports it
+ * ({@code Thread.onSpinWait()} from JDK 9 on). Lowest latency, at the cost of a fully busy core while idle.
+ * <p>
+ * This strategy is stateless and may be shared by any number of threads.
+ */
+public final class BusySpinWaitStrategy implements MessagePassingQueue.WaitStrategy
+{
+    public static final BusySpinWaitStrategy INSTANCE = new BusySpinWaitStrategy();
+
+    // Thread.onSpinWait is not available at our source level, so it is looked up once and invoked reflectively
+    private static final Method ON_SPIN_WAIT = onSpinWaitMethod();
+
+    private BusySpinWaitStrategy()
+    {
+    }
+
+    @Override
+    public int idle(int idleCounter)
+    {
+        onSpinWait();
+        return idleCounter + 1;
+    }
+
+    /**
+     * Hint the CPU that the calling thread is busy-waiting, a no-op on JVMs which don't support it.
+     */
+    static void onSpinWait()
+    {
+        final Method onSpinWait = ON_SPIN_WAIT;
+        if (onSpinWait != null)
+        {
+            try
+            {
+                onSpinWait.invoke(null, (Object[]) null);
+            }
+            catch (Exception e)
+            {
+                // a static no-arg method which throws nothing, can't happen
+            }
+        }
+    }
+
+    private static Method onSpinWaitMethod()
+    {
+        try
+        {
+            return Thread.class.getMethod("onSpinWait");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -20,7 +20,7 @@ import java.util.AbstractQueue;
 import java.util.Iterator;
 
 abstract class ConcurrentCircularArrayQueueL0Pad<E> extends AbstractQueue<E>
-    implements MessagePassingQueue<E>, IndexedQueue, QueueProgressIndicators
+    implements MessagePassingQueue<E>, IndexedQueue, QueueProgressIndicators, QueueStatsRecorder.Source
 {
     long p01, p02, p03, p04, p05, p06, p07;
     long p10, p11, p12, p13, p14, p15, p16, p17;
@@ -37,6 +37,7 @@ public abstract class ConcurrentCircularArrayQueue<E> extends ConcurrentCircular
 {
     protected final long mask;
     protected final E[] buffer;
+    protected QueueStatsRecorder stats;
 
     public ConcurrentCircularArrayQueue(int capacity)
     {
@@ -64,6 +65,22 @@ public abstract class ConcurrentCircularArrayQueue<E> extends ConcurrentCircular
         return calcElementOffset(index, mask);
     }
 
+    @Override
+    public final QueueStatsRecorder statsRecorder()
+    {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording()
+    {
+        if (stats == null)
+        {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
     @Override
     public Iterator<E> iterator()
     {
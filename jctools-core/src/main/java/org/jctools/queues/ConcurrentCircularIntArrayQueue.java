@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.queues.IndexedQueueSizeUtil.IndexedQueue;
+import org.jctools.queues.MessagePassingQueue.ExitCondition;
+import org.jctools.queues.MessagePassingQueue.WaitStrategy;
+import org.jctools.util.PortableJvmInfo;
+import org.jctools.util.Pow2;
+import org.jctools.util.UnsafeAccess;
+
+import java.util.Arrays;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+
+abstract class ConcurrentCircularIntArrayQueueL0Pad
+    implements MessagePassingIntQueue, IndexedQueue, QueueProgressIndicators
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * Common functionality for the int[] backed queues, the primitive counterpart of
+ * {@link ConcurrentCircularArrayQueue}. The class is pre-padded and the array is padded on either side to help with
+ * False Sharing prevention. It is expected that subclasses handle post padding.
+ * <p>
+ * Unused slots hold the queue empty value, in the same way unused slots of the reference queues are null.
+ */
+public abstract class ConcurrentCircularIntArrayQueue extends ConcurrentCircularIntArrayQueueL0Pad
+{
+    private static final long ARRAY_BASE;
+    private static final int ELEMENT_SHIFT;
+    private static final int BUFFER_PAD;
+
+    static
+    {
+        final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(int[].class);
+        if (4 == scale)
+        {
+            ELEMENT_SHIFT = 2;
+        }
+        else
+        {
+            throw new IllegalStateException("Unexpected int[] element size");
+        }
+        // 2 cache lines pad
+        BUFFER_PAD = (PortableJvmInfo.CACHE_LINE_SIZE * 2) / scale;
+        // Including the buffer pad in the array base offset
+        ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(int[].class) + (BUFFER_PAD * scale);
+    }
+
+    protected final long mask;
+    protected final int[] buffer;
+    protected final int emptyValue;
+
+    public ConcurrentCircularIntArrayQueue(int capacity, int emptyValue)
+    {
+        int actualCapacity = Pow2.roundToPowerOfTwo(capacity);
+        mask = actualCapacity - 1;
+        // pad data on either end with some empty slots.
+        buffer = new int[actualCapacity + BUFFER_PAD * 2];
+        this.emptyValue = emptyValue;
+        Arrays.fill(buffer, emptyValue);
+    }
+
+    /**
+     * @param index desirable element index
+     * @param mask (length - 1)
+     * @return the offset in bytes within the array for a given index.
+     */
+    protected static long calcElementOffset(long index, long mask)
+    {
+        return ARRAY_BASE + ((index & mask) << ELEMENT_SHIFT);
+    }
+
+    /**
+     * A plain store (no ordering/fences) of an element to a given offset
+     */
+    protected static void spElement(int[] buffer, long offset, int e)
+    {
+        UNSAFE.putInt(buffer, offset, e);
+    }
+
+    /**
+     * An ordered store(store + StoreStore barrier) of an element to a given offset
+     */
+    protected static void soElement(int[] buffer, long offset, int e)
+    {
+        UNSAFE.putOrderedInt(buffer, offset, e);
+    }
+
+    /**
+     * A plain load (no ordering/fences) of an element from a given offset.
+     */
+    protected static int lpElement(int[] buffer, long offset)
+    {
+        return UNSAFE.getInt(buffer, offset);
+    }
+
+    /**
+     * A volatile load (load + LoadLoad barrier) of an element from a given offset.
+     */
+    protected static int lvElement(int[] buffer, long offset)
+    {
+        return UNSAFE.getIntVolatile(buffer, offset);
+    }
+
+    /**
+     * @throws IllegalArgumentException if <i>e</i> is the empty value
+     */
+    protected final void checkNotEmptyValue(int e)
+    {
+        if (e == emptyValue)
+        {
+            throw new IllegalArgumentException("The empty value cannot be offered: " + e);
+        }
+    }
+
+    @Override
+    public final int emptyValue()
+    {
+        return emptyValue;
+    }
+
+    @Override
+    public final int size()
+    {
+        return IndexedQueueSizeUtil.size(this);
+    }
+
+    @Override
+    public final boolean isEmpty()
+    {
+        return IndexedQueueSizeUtil.isEmpty(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public void clear()
+    {
+        while (poll() != emptyValue)
+        {
+            // if you stare into the void
+        }
+    }
+
+    @Override
+    public final int capacity()
+    {
+        return (int) (mask + 1);
+    }
+
+    @Override
+    public final long currentProducerIndex()
+    {
+        return lvProducerIndex();
+    }
+
+    @Override
+    public final long currentConsumerIndex()
+    {
+        return lvConsumerIndex();
+    }
+
+    @Override
+    public int drain(IntConsumer c)
+    {
+        return drain(c, capacity());
+    }
+
+    @Override
+    public int fill(IntSupplier s)
+    {
+        long result = 0;// result is a long because we want to have a safepoint check at regular intervals
+        final int capacity = capacity();
+        do
+        {
+            final int filled = fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH);
+            if (filled == 0)
+            {
+                return (int) result;
+            }
+            result += filled;
+        }
+        while (result <= capacity);
+        return (int) result;
+    }
+
+    @Override
+    public void drain(IntConsumer c, WaitStrategy w, ExitCondition exit)
+    {
+        final int emptyValue = this.emptyValue;
+        int idleCounter = 0;
+        while (exit.keepRunning())
+        {
+            final int e = relaxedPoll();
+            if (e == emptyValue)
+            {
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+            c.accept(e);
+        }
+    }
+
+    @Override
+    public void fill(IntSupplier s, WaitStrategy w, ExitCondition exit)
+    {
+        int idleCounter = 0;
+        while (exit.keepRunning())
+        {
+            if (fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH) == 0)
+            {
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+        }
+    }
+}
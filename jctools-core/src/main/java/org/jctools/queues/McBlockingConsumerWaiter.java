@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parks and wakes up the consumers of a multi consumer blocking queue. Consumers park on a condition and publish
+ * the number of parked consumers in a volatile field which producers check after offering, so the lock is only
+ * taken by producers when some consumer is parked.
+ * <p>
+ * The consumers publish the waiters count and then poll the queue, the producers publish an element and then
+ * check the count. For this to work the producers must have a StoreLoad barrier between the two, which is
+ * provided by a CAS on the producer index.
+ */
+final class McBlockingConsumerWaiter
+{
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // only written under the lock
+    private volatile int waiters;
+
+    /**
+     * Wake up a consumer, if any are parked. To be called by producers after offering an element.
+     */
+    void signal()
+    {
+        if (waiters != 0)
+        {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try
+            {
+                notEmpty.signal();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wake up all the parked consumers. To be called by producers after offering a batch of elements.
+     */
+    void signalAll()
+    {
+        if (waiters != 0)
+        {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try
+            {
+                notEmpty.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Poll the queue, waiting for an element as required.
+     *
+     * @param timed if false wait until an element is available, otherwise wait up to <i>nanos</i>
+     * @return the polled element, or null if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    <E> E take(MessagePassingQueue<E> q, boolean timed, long nanos) throws InterruptedException
+    {
+        E e = q.poll();
+        if (e != null || (timed && nanos <= 0))
+        {
+            return e;
+        }
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (int i = 0; BlockingQueueUtil.spinThenYield(i); i++)
+        {
+            if ((e = q.poll()) != null)
+            {
+                return e;
+            }
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try
+        {
+            waiters++; // StoreLoad
+            try
+            {
+                while ((e = q.poll()) == null)
+                {
+                    if (timed)
+                    {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                        {
+                            return null;
+                        }
+                        notEmpty.await(remaining, TimeUnit.NANOSECONDS);
+                    }
+                    else
+                    {
+                        notEmpty.await();
+                    }
+                }
+                return e;
+            }
+            finally
+            {
+                waiters--;
+                // we may have consumed a signal without taking an element (time out/interrupt), pass it on
+                if (waiters != 0 && !q.isEmpty())
+                {
+                    notEmpty.signal();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.util.UnsafeAccess;
+
+import static org.jctools.queues.CircularArrayOffsetCalculator.allocate;
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+/**
+ * A chunk of the multi-consumer unbounded linked array queues. Each slot is paired with a sequence value which
+ * records the last state transition for the slot:
+ * <ul>
+ * <li>0 - the slot was never used
+ * <li>index + 1 - the element for the (global) index was written by the producer
+ * <li>-(index + 1) - the element for the (global) index was taken by a consumer
+ * </ul>
+ * Chunks are recycled by the queues, but only once every slot is observed in the consumed state for the last
+ * index the chunk was used for. This guarantees no slow producer or consumer is still working on the chunk.
+ *
+ * @param <E>
+ */
+final class McUnboundedArrayChunk<E>
+{
+    private static final long NEXT_OFFSET = fieldOffset(McUnboundedArrayChunk.class, "next");
+    private static final long INDEX_OFFSET = fieldOffset(McUnboundedArrayChunk.class, "index");
+    private static final long SEQ_ARRAY_BASE;
+    private static final int SEQ_ELEMENT_SHIFT;
+
+    static
+    {
+        final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(long[].class);
+        if (8 == scale)
+        {
+            SEQ_ELEMENT_SHIFT = 3;
+        }
+        else
+        {
+            throw new IllegalStateException("Unexpected long[] element size");
+        }
+        SEQ_ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(long[].class);
+    }
+
+    final E[] buffer;
+    private final long[] sequence;
+    private volatile McUnboundedArrayChunk<E> next;
+    private volatile long index;
+
+    McUnboundedArrayChunk(int chunkSize, long index)
+    {
+        buffer = allocate(chunkSize);
+        sequence = new long[chunkSize];
+        soIndex(index);
+    }
+
+    static long calcSequenceOffset(long index, long mask)
+    {
+        return SEQ_ARRAY_BASE + ((index & mask) << SEQ_ELEMENT_SHIFT);
+    }
+
+    long lvSequence(long offset)
+    {
+        return UNSAFE.getLongVolatile(sequence, offset);
+    }
+
+    void soSequence(long offset, long value)
+    {
+        UNSAFE.putOrderedLong(sequence, offset, value);
+    }
+
+    McUnboundedArrayChunk<E> lvNext()
+    {
+        return next;
+    }
+
+    void soNext(McUnboundedArrayChunk<E> value)
+    {
+        UNSAFE.putOrderedObject(this, NEXT_OFFSET, value);
+    }
+
+    long lvIndex()
+    {
+        return index;
+    }
+
+    void soIndex(long value)
+    {
+        UNSAFE.putOrderedLong(this, INDEX_OFFSET, value);
+    }
+
+    /**
+     * @return true if every slot was consumed for the current chunk index, and so the chunk can be reused
+     */
+    boolean isQuiescent()
+    {
+        final long[] sequence = this.sequence;
+        final long mask = sequence.length - 1;
+        final long firstIndex = lvIndex() * sequence.length;
+        for (int i = 0; i < sequence.length; i++)
+        {
+            if (lvSequence(calcSequenceOffset(i, mask)) != -(firstIndex + i + 1))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.queues.MessagePassingQueue.ExitCondition;
+import org.jctools.queues.MessagePassingQueue.WaitStrategy;
+
+/**
+ * The primitive <i>long</i> counterpart of {@link MessagePassingQueue}, for passing long values through a queue
+ * without boxing them. The same happens before semantics apply.
+ * <p>
+ * As there is no null to indicate an empty queue each queue is created with an <i>empty value</i>, which the
+ * poll/peek methods return when no element is available. The empty value can therefore not be offered.
+ */
+public interface MessagePassingLongQueue
+{
+    interface LongSupplier
+    {
+        /**
+         * This method will return the next value to be written to the queue. As such the queue
+         * implementations are commited to insert the value once the call is made.
+         *
+         * @return new element, NEVER the queue empty value
+         * @see MessagePassingQueue.Supplier#get()
+         */
+        long get();
+    }
+
+    interface LongConsumer
+    {
+        /**
+         * This method will process an element already removed from the queue. This method is expected to
+         * never throw an exception.
+         *
+         * @param e not the queue empty value
+         * @see MessagePassingQueue.Consumer#accept(Object)
+         */
+        void accept(long e);
+    }
+
+    /**
+     * @return the value returned by poll/peek when the queue is empty, which cannot be offered to the queue
+     */
+    long emptyValue();
+
+    /**
+     * Called from a producer thread subject to the restrictions appropriate to the implementation.
+     *
+     * @param e not the {@link #emptyValue()}, will throw IllegalArgumentException if it is
+     * @return true if element was inserted into the queue, false iff full
+     * @see MessagePassingQueue#offer(Object)
+     */
+    boolean offer(long e);
+
+    /**
+     * Called from the consumer thread subject to the restrictions appropriate to the implementation.
+     *
+     * @return a message from the queue if one is available, {@link #emptyValue()} iff empty
+     * @see MessagePassingQueue#poll()
+     */
+    long poll();
+
+    /**
+     * Called from the consumer thread subject to the restrictions appropriate to the implementation.
+     *
+     * @return a message from the queue if one is available, {@link #emptyValue()} iff empty
+     * @see MessagePassingQueue#peek()
+     */
+    long peek();
+
+    /**
+     * @return number of messages in the queue, a best effort estimate as for {@link MessagePassingQueue#size()}
+     */
+    int size();
+
+    /**
+     * Removes all items from the queue. Called from the consumer thread subject to the restrictions
+     * appropriate to the implementation.
+     */
+    void clear();
+
+    /**
+     * @return true if empty, false otherwise
+     * @see MessagePassingQueue#isEmpty()
+     */
+    boolean isEmpty();
+
+    /**
+     * @return the capacity of this queue
+     */
+    int capacity();
+
+    /**
+     * As {@link #offer(long)}, but may return false without the queue being full.
+     *
+     * @see MessagePassingQueue#relaxedOffer(Object)
+     */
+    boolean relaxedOffer(long e);
+
+    /**
+     * As {@link #poll()}, but may return {@link #emptyValue()} without the queue being empty.
+     *
+     * @see MessagePassingQueue#relaxedPoll()
+     */
+    long relaxedPoll();
+
+    /**
+     * As {@link #peek()}, but may return {@link #emptyValue()} without the queue being empty.
+     *
+     * @see MessagePassingQueue#relaxedPeek()
+     */
+    long relaxedPeek();
+
+    /**
+     * Remove all available items from the queue and hand to consume.
+     *
+     * @return the number of polled elements
+     * @see MessagePassingQueue#drain(MessagePassingQueue.Consumer)
+     */
+    int drain(LongConsumer c);
+
+    /**
+     * Stuff the queue with elements from the supplier.
+     *
+     * @return the number of offered elements
+     * @see MessagePassingQueue#fill(MessagePassingQueue.Supplier)
+     */
+    int fill(LongSupplier s);
+
+    /**
+     * Remove up to <i>limit</i> elements from the queue and hand to consume.
+     *
+     * @return the number of polled elements
+     * @see MessagePassingQueue#drain(MessagePassingQueue.Consumer, int)
+     */
+    int drain(LongConsumer c, int limit);
+
+    /**
+     * Stuff the queue with up to <i>limit</i> elements from the supplier.
+     *
+     * @return the number of offered elements
+     * @see MessagePassingQueue#fill(MessagePassingQueue.Supplier, int)
+     */
+    int fill(LongSupplier s, int limit);
+
+    /**
+     * Remove elements from the queue and hand to consume forever, idling on the wait strategy when empty.
+     *
+     * @see MessagePassingQueue#drain(MessagePassingQueue.Consumer, WaitStrategy, ExitCondition)
+     */
+    void drain(LongConsumer c, WaitStrategy wait, ExitCondition exit);
+
+    /**
+     * Stuff the queue with elements from the supplier forever, idling on the wait strategy when full.
+     *
+     * @see MessagePassingQueue#fill(MessagePassingQueue.Supplier, WaitStrategy, ExitCondition)
+     */
+    void fill(LongSupplier s, WaitStrategy wait, ExitCondition exit);
+}
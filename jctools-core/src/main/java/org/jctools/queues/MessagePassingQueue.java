@@ -239,6 +239,59 @@ public interface MessagePassingQueue<T>
      */
     int fill(Supplier<T> s, int limit);
 
+    /**
+     * Offer up to <i>len</i> elements from <i>src</i>, starting at <i>off</i>. Semantically similar to:
+     * <p>
+     * <pre>
+     * <code>
+     *   int i = 0;
+     *   for(; i < len && relaxedOffer(src[off + i]); i++);
+     *   return i;
+     * </code>
+     * </pre>
+     * <p>
+     * Implementations may claim the slots for the whole batch in one step. The elements are offered in order,
+     * so a return value of n means elements <i>src[off, off + n)</i> were offered. There's no strong commitment
+     * to the queue being full when less than <i>len</i> elements are offered. Called from a producer thread
+     * subject to the restrictions appropriate to the implementation.
+     *
+     * @param src the elements to offer, none of <i>src[off, off + len)</i> may be null, will throw NPE (before
+     *            offering any of them) if one is
+     * @param off the offset of the first element to offer
+     * @param len the maximum number of elements to offer
+     * @return the number of offered elements
+     * @throws IndexOutOfBoundsException if <i>off</i> and <i>len</i> do not describe a range within <i>src</i>
+     */
+    int offer(T[] src, int off, int len);
+
+    /**
+     * Remove up to <i>len</i> elements from the queue into <i>dst</i>, starting at <i>off</i>. Semantically
+     * similar to:
+     * <p>
+     * <pre>
+     * <code>
+     *   M m;
+     *   int i = 0;
+     *   for(; i < len && (m = relaxedPoll()) != null; i++){
+     *     dst[off + i] = m;
+     *   }
+     *   return i;
+     * </code>
+     * </pre>
+     * <p>
+     * Implementations may claim the slots for the whole batch in one step. Entries of <i>dst</i> beyond the
+     * returned count are left untouched. There's no strong commitment to the queue being empty when less than
+     * <i>len</i> elements are polled. Called from a consumer thread subject to the restrictions appropriate
+     * to the implementation.
+     *
+     * @param dst the array to poll elements into
+     * @param off the offset of the first polled element in <i>dst</i>
+     * @param len the maximum number of elements to poll
+     * @return the number of polled elements
+     * @throws IndexOutOfBoundsException if <i>off</i> and <i>len</i> do not describe a range within <i>dst</i>
+     */
+    int poll(T[] dst, int off, int len);
+
     /**
      * Remove elements from the queue and hand to consume forever. Semantically similar to:
      * <p>
@@ -261,6 +314,43 @@ public interface MessagePassingQueue<T>
      */
     void drain(Consumer<T> c, WaitStrategy wait, ExitCondition exit);
 
+    /**
+     * Remove up to <i>maxBatch</i> elements from the queue and hand to consume, waiting for more elements while
+     * the queue is empty for no longer than <i>maxWaitNanos</i> from the call. Semantically similar to:
+     * <p>
+     * <pre>
+     * <code>
+     *  long deadline = System.nanoTime() + maxWaitNanos;
+     *  int idleCounter = 0;
+     *  int i = 0;
+     *  while (i < maxBatch) {
+     *      E e = relaxedPoll();
+     *      if(e==null){
+     *          if (System.nanoTime() - deadline >= 0) break;
+     *          idleCounter = wait.idle(idleCounter);
+     *          continue;
+     *      }
+     *      idleCounter = 0;
+     *      c.accept(e);
+     *      i++;
+     *  }
+     *  return i;
+     * </code>
+     * </pre>
+     * <p>
+     * Returns as soon as either bound is hit: <i>maxBatch</i> elements were consumed or the queue is found
+     * empty after the deadline. The deadline is only checked while waiting, so a run of available elements is
+     * consumed uninterrupted up to <i>maxBatch</i>. A <i>maxWaitNanos</i> of 0 or less never waits, same as
+     * {@link #drain(Consumer, int)}. Called from a consumer thread subject to the restrictions appropriate to
+     * the implementation.
+     *
+     * @param maxBatch the maximum number of elements to consume
+     * @param maxWaitNanos the longest time to wait for elements, in nanoseconds
+     * @param wait idles the consumer while the queue is empty
+     * @return the number of polled elements
+     */
+    int drain(Consumer<T> c, int maxBatch, long maxWaitNanos, WaitStrategy wait);
+
     /**
      * Stuff the queue with elements from the supplier forever. Semantically similar to:
      * <p>
@@ -71,4 +71,89 @@ public final class MessagePassingQueueUtil
         }
     }
 
+    /**
+     * {@link MessagePassingQueue#drain(MessagePassingQueue.Consumer, int, long, MessagePassingQueue.WaitStrategy)}
+     * built on the batch drain of the queue, so elements are consumed a run at a time.
+     */
+    public static <E> int drain(
+        MessagePassingQueue<E> queue,
+        MessagePassingQueue.Consumer<E> c,
+        int maxBatch,
+        long maxWaitNanos,
+        MessagePassingQueue.WaitStrategy wait)
+    {
+        final long deadline = maxWaitNanos > 0 ? System.nanoTime() + maxWaitNanos : 0;
+        int idleCounter = 0;
+        int i = 0;
+        while (i < maxBatch)
+        {
+            final int drained = queue.drain(c, maxBatch - i);
+            if (drained == 0)
+            {
+                if (maxWaitNanos <= 0 || System.nanoTime() - deadline >= 0)
+                {
+                    break;
+                }
+                idleCounter = wait.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+            i += drained;
+        }
+        return i;
+    }
+
+    public static <E> int offer(MessagePassingQueue<E> queue, E[] src, int off, int len)
+    {
+        checkOfferBatch(src, off, len);
+        int i = 0;
+        for (; i < len && queue.relaxedOffer(src[off + i]); i++);
+        return i;
+    }
+
+    public static <E> int poll(MessagePassingQueue<E> queue, E[] dst, int off, int len)
+    {
+        checkPollBatch(dst, off, len);
+        E e;
+        int i = 0;
+        for (; i < len && (e = queue.relaxedPoll()) != null; i++)
+        {
+            dst[off + i] = e;
+        }
+        return i;
+    }
+
+    /**
+     * Validate the arguments of {@link MessagePassingQueue#offer(Object[], int, int)}, before any slots are
+     * claimed.
+     */
+    public static void checkOfferBatch(Object[] src, int off, int len)
+    {
+        checkBatchRange(src, off, len);
+        for (int i = off, end = off + len; i < end; i++)
+        {
+            if (null == src[i])
+            {
+                throw new NullPointerException("src[" + i + "]");
+            }
+        }
+    }
+
+    /**
+     * Validate the arguments of {@link MessagePassingQueue#poll(Object[], int, int)}, before any slots are
+     * claimed.
+     */
+    public static void checkPollBatch(Object[] dst, int off, int len)
+    {
+        checkBatchRange(dst, off, len);
+    }
+
+    private static void checkBatchRange(Object[] array, int off, int len)
+    {
+        if (off < 0 || len < 0 || len > array.length - off)
+        {
+            throw new IndexOutOfBoundsException(
+                "off: " + off + ", len: " + len + " (array length: " + array.length + ')');
+        }
+    }
 }
@@ -16,6 +16,9 @@ package org.jctools.queues;
 import org.jctools.util.PortableJvmInfo;
 import org.jctools.util.RangeUtil;
 
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 import static org.jctools.util.UnsafeAccess.fieldOffset;
 import static org.jctools.util.UnsafeRefArrayAccess.lpElement;
@@ -164,6 +167,7 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
                 if (pIndex - capacity >= cIndex && // test against cached cIndex
                     pIndex - capacity >= (cIndex = lvConsumerIndex()))
                 { // test against latest cIndex
+                    recordOfferFull(stats);
                     return false;
                 }
                 else
@@ -173,7 +177,7 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
             }
         }
         while (seq > pIndex || // another producer has moved the sequence(or +)
-            !casProducerIndex(pIndex, pIndex + 1)); // failed to increment
+            (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats))); // failed to increment
 
         soElement(buffer, calcElementOffset(pIndex, mask), e);
         soSequence(sBuffer, seqOffset, pIndex + 1); // seq++;
@@ -219,7 +223,7 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
             }
         }
         while (seq > expectedSeq || // another consumer beat us to it
-            !casConsumerIndex(cIndex, cIndex + 1)); // failed the CAS
+            (!casConsumerIndex(cIndex, cIndex + 1) && recordCasFailure(stats))); // failed the CAS
 
         final long offset = calcElementOffset(cIndex, mask);
         final E e = lpElement(buffer, offset);
@@ -268,7 +272,7 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
             }
         }
         while (seq > pIndex || // another producer has moved the sequence
-            !casProducerIndex(pIndex, pIndex + 1)); // failed to increment
+            (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats))); // failed to increment
 
         soElement(buffer, calcElementOffset(pIndex, mask), e);
         soSequence(sBuffer, seqOffset, pIndex + 1);
@@ -297,7 +301,7 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
             }
         }
         while (seq > expectedSeq || // another consumer beat us to it
-            !casConsumerIndex(cIndex, cIndex + 1)); // failed the CAS
+            (!casConsumerIndex(cIndex, cIndex + 1) && recordCasFailure(stats))); // failed the CAS
 
         final long offset = calcElementOffset(cIndex, mask);
         final E e = lpElement(buffer, offset);
@@ -424,7 +428,7 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
                 }
             }
             while (seq > expectedSeq || // another consumer beat us to it
-                !casConsumerIndex(cIndex, cIndex + 1)); // failed the CAS
+                (!casConsumerIndex(cIndex, cIndex + 1) && recordCasFailure(stats))); // failed the CAS
 
             final long offset = calcElementOffset(cIndex, mask);
             final E e = lpElement(buffer, offset);
@@ -517,13 +521,134 @@ public class MpmcArrayQueue<E> extends MpmcArrayQueueL3Pad<E>
                 }
             }
             while (seq > pIndex || // another producer has moved the sequence
-                !casProducerIndex(pIndex, pIndex + 1)); // failed to increment
+                (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats))); // failed to increment
             soElement(buffer, calcElementOffset(pIndex, mask), s.get());
             soSequence(sBuffer, seqOffset, pIndex + 1);
         }
         return limit;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the last slot of the batch is available the whole batch is claimed with a single CAS on the producer
+     * index, otherwise elements are offered one by one.
+     */
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        checkOfferBatch(src, off, len);
+        final long[] sBuffer = sequenceBuffer;
+        final long mask = this.mask;
+        final E[] buffer = this.buffer;
+        final int batch = (int) Math.min(len, mask + 1);
+        if (batch == 0)
+        {
+            return 0;
+        }
+        final long pIndex = lvProducerIndex();
+        final long lastIndex = pIndex + batch - 1;
+        final long lastSeq = lvSequence(sBuffer, calcSequenceOffset(lastIndex, mask));
+        if (lastSeq == lastIndex && casProducerIndex(pIndex, lastIndex + 1))
+        {
+            for (int i = 0; i < batch; i++)
+            {
+                final long index = pIndex + i;
+                final long seqOffset = calcSequenceOffset(index, mask);
+                while (lvSequence(sBuffer, seqOffset) != index)
+                {
+
+                }
+                soElement(buffer, calcElementOffset(index, mask), src[off + i]);
+                soSequence(sBuffer, seqOffset, index + 1);
+            }
+            return batch;
+        }
+        if (lastSeq < lastIndex && notAvailable(pIndex, mask, sBuffer, pIndex))
+        {
+            return 0;
+        }
+        return offerOneByOne(src, off, len);
+    }
+
+    private int offerOneByOne(E[] src, int off, int len)
+    {
+        for (int i = 0; i < len; i++)
+        {
+            if (!relaxedOffer(src[off + i]))
+            {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the last slot of the batch is available the whole batch is claimed with a single CAS on the consumer
+     * index, otherwise elements are polled one by one.
+     */
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        checkPollBatch(dst, off, len);
+        final long[] sBuffer = sequenceBuffer;
+        final long mask = this.mask;
+        final E[] buffer = this.buffer;
+        final int batch = (int) Math.min(len, mask + 1);
+        if (batch == 0)
+        {
+            return 0;
+        }
+        final long cIndex = lvConsumerIndex();
+        final long lastIndex = cIndex + batch - 1;
+        final long lastSeq = lvSequence(sBuffer, calcSequenceOffset(lastIndex, mask));
+        if (lastSeq == lastIndex + 1 && casConsumerIndex(cIndex, lastIndex + 1))
+        {
+            for (int i = 0; i < batch; i++)
+            {
+                final long index = cIndex + i;
+                final long seqOffset = calcSequenceOffset(index, mask);
+                final long offset = calcElementOffset(index, mask);
+                final long expectedSeq = index + 1;
+                while (lvSequence(sBuffer, seqOffset) != expectedSeq)
+                {
+
+                }
+                dst[off + i] = lpElement(buffer, offset);
+                soElement(buffer, offset, null);
+                soSequence(sBuffer, seqOffset, index + mask + 1);
+            }
+            return batch;
+        }
+        if (lastSeq < lastIndex + 1 && notAvailable(cIndex, mask, sBuffer, cIndex + 1))
+        {
+            return 0;
+        }
+        return pollOneByOne(dst, off, len);
+    }
+
+    private int pollOneByOne(E[] dst, int off, int len)
+    {
+        for (int i = 0; i < len; i++)
+        {
+            final E e = relaxedPoll();
+            if (null == e)
+            {
+                return i;
+            }
+            dst[off + i] = e;
+        }
+        return len;
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(
         Consumer<E> c,
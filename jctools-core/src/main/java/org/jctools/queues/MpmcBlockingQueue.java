@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BlockingQueue} on top of {@link MpmcArrayQueue}, so any thread may offer/put and poll/take.
+ * <p>
+ * Blocked consumers spin, then yield, then park. Producers only wake up the consumers when some are parked,
+ * which is checked with a volatile read after each offer.<br>
+ * Producers blocked on a full queue are not signalled by the consumers, they idle using the
+ * {@link WaitStrategy} the queue was created with (by default: spin, then yield, then park with back off).
+ *
+ * @param <E>
+ */
+public class MpmcBlockingQueue<E> extends MpmcArrayQueue<E> implements BlockingQueue<E>
+{
+    private final McBlockingConsumerWaiter consumerWaiter = new McBlockingConsumerWaiter();
+    private final WaitStrategy offerWait;
+
+    public MpmcBlockingQueue(final int capacity)
+    {
+        this(capacity, BlockingQueueUtil.BACKOFF_WAIT);
+    }
+
+    /**
+     * @param capacity  the queue capacity
+     * @param offerWait the wait strategy used by producers blocked on a full queue
+     */
+    public MpmcBlockingQueue(final int capacity, final WaitStrategy offerWait)
+    {
+        super(capacity);
+        if (null == offerWait)
+        {
+            throw new NullPointerException();
+        }
+        this.offerWait = offerWait;
+    }
+
+    @Override
+    public boolean offer(final E e)
+    {
+        if (super.offer(e))
+        {
+            consumerWaiter.signal();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean relaxedOffer(E e)
+    {
+        if (super.relaxedOffer(e))
+        {
+            consumerWaiter.signal();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int fill(Supplier<E> s, int limit)
+    {
+        final int filled = super.fill(s, limit);
+        if (filled != 0)
+        {
+            consumerWaiter.signalAll();
+        }
+        return filled;
+    }
+
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        final int offered = super.offer(src, off, len);
+        if (offered != 0)
+        {
+            consumerWaiter.signalAll();
+        }
+        return offered;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException
+    {
+        BlockingQueueUtil.offer(this, e, offerWait, false, 0L);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return BlockingQueueUtil.offer(this, e, offerWait, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E take() throws InterruptedException
+    {
+        return consumerWaiter.take(this, false, 0L);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return consumerWaiter.take(this, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return BlockingQueueUtil.remainingCapacity(this);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        return BlockingQueueUtil.drainTo(this, c, maxElements);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import static org.jctools.queues.ConcurrentSequencedCircularArrayQueue.SEQ_BUFFER_PAD;
+import static org.jctools.queues.ConcurrentSequencedCircularArrayQueue.calcSequenceOffset;
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+abstract class MpmcIntArrayQueueSequenceField extends ConcurrentCircularIntArrayQueue
+{
+    protected final long[] sequenceBuffer;
+
+    MpmcIntArrayQueueSequenceField(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+        int actualCapacity = (int) (this.mask + 1);
+        // pad data on either end with some empty slots.
+        sequenceBuffer = new long[actualCapacity + SEQ_BUFFER_PAD * 2];
+        for (long i = 0; i < actualCapacity; i++)
+        {
+            soSequence(sequenceBuffer, calcSequenceOffset(i, mask), i);
+        }
+    }
+
+    protected static void soSequence(long[] buffer, long offset, long e)
+    {
+        UNSAFE.putOrderedLong(buffer, offset, e);
+    }
+
+    protected static long lvSequence(long[] buffer, long offset)
+    {
+        return UNSAFE.getLongVolatile(buffer, offset);
+    }
+}
+
+abstract class MpmcIntArrayQueueL1Pad extends MpmcIntArrayQueueSequenceField
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+
+    MpmcIntArrayQueueL1Pad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class MpmcIntArrayQueueProducerIndexField extends MpmcIntArrayQueueL1Pad
+{
+    private final static long P_INDEX_OFFSET = fieldOffset(MpmcIntArrayQueueProducerIndexField.class, "producerIndex");
+
+    private volatile long producerIndex;
+
+    MpmcIntArrayQueueProducerIndexField(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    @Override
+    public final long lvProducerIndex()
+    {
+        return producerIndex;
+    }
+
+    final boolean casProducerIndex(long expect, long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(this, P_INDEX_OFFSET, expect, newValue);
+    }
+}
+
+abstract class MpmcIntArrayQueueL2Pad extends MpmcIntArrayQueueProducerIndexField
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+
+    MpmcIntArrayQueueL2Pad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class MpmcIntArrayQueueConsumerIndexField extends MpmcIntArrayQueueL2Pad
+{
+    private final static long C_INDEX_OFFSET = fieldOffset(MpmcIntArrayQueueConsumerIndexField.class, "consumerIndex");
+
+    private volatile long consumerIndex;
+
+    MpmcIntArrayQueueConsumerIndexField(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    @Override
+    public final long lvConsumerIndex()
+    {
+        return consumerIndex;
+    }
+
+    final boolean casConsumerIndex(long expect, long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(this, C_INDEX_OFFSET, expect, newValue);
+    }
+}
+
+abstract class MpmcIntArrayQueueL3Pad extends MpmcIntArrayQueueConsumerIndexField
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpmcIntArrayQueueL3Pad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+/**
+ * A Multi-Producer-Multi-Consumer queue of int values backed by a pre-allocated int[] buffer. This is the
+ * primitive counterpart of {@link MpmcArrayQueue} and uses the same algorithm: the slots are handed between
+ * producers and consumers using a sequence per slot, so the empty value is only returned to signal an empty queue.
+ */
+public class MpmcIntArrayQueue extends MpmcIntArrayQueueL3Pad
+{
+    /**
+     * A queue using {@link Integer#MIN_VALUE} as the empty value.
+     */
+    public MpmcIntArrayQueue(final int capacity)
+    {
+        this(capacity, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param emptyValue the value returned by poll/peek when the queue is empty, cannot be offered
+     */
+    public MpmcIntArrayQueue(final int capacity, final int emptyValue)
+    {
+        super(Math.max(2, capacity), emptyValue);
+    }
+
+    @Override
+    public boolean offer(final int e)
+    {
+        checkNotEmptyValue(e);
+        final long mask = this.mask;
+        final long capacity = mask + 1;
+        final long[] sBuffer = sequenceBuffer;
+
+        long pIndex;
+        long seqOffset;
+        long seq;
+        long cIndex = Long.MIN_VALUE;// start with bogus value, hope we don't need it
+        do
+        {
+            pIndex = lvProducerIndex();
+            seqOffset = calcSequenceOffset(pIndex, mask);
+            seq = lvSequence(sBuffer, seqOffset);
+            // consumer has not moved this seq forward, it's as last producer left
+            if (seq < pIndex)
+            {
+                // Extra check required to ensure [Queue.offer == false iff queue is full]
+                if (pIndex - capacity >= cIndex && // test against cached cIndex
+                    pIndex - capacity >= (cIndex = lvConsumerIndex()))
+                { // test against latest cIndex
+                    return false;
+                }
+                else
+                {
+                    seq = pIndex + 1; // (+) hack to make it go around again without CAS
+                }
+            }
+        }
+        while (seq > pIndex || // another producer has moved the sequence(or +)
+            !casProducerIndex(pIndex, pIndex + 1)); // failed to increment
+
+        spElement(buffer, calcElementOffset(pIndex, mask), e);
+        soSequence(sBuffer, seqOffset, pIndex + 1); // seq++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Because return of the empty value indicates queue is empty we cannot simply rely on next element visibility
+     * for poll and must test producer index when next element is not visible.
+     */
+    @Override
+    public int poll()
+    {
+        // local load of field to avoid repeated loads after volatile reads
+        final long[] sBuffer = sequenceBuffer;
+        final long mask = this.mask;
+
+        long cIndex;
+        long seq;
+        long seqOffset;
+        long expectedSeq;
+        long pIndex = -1; // start with bogus value, hope we don't need it
+        do
+        {
+            cIndex = lvConsumerIndex();
+            seqOffset = calcSequenceOffset(cIndex, mask);
+            seq = lvSequence(sBuffer, seqOffset);
+            expectedSeq = cIndex + 1;
+            if (seq < expectedSeq)
+            { // slot has not been moved by producer
+                if (cIndex >= pIndex && // test against cached pIndex
+                    cIndex == (pIndex = lvProducerIndex()))
+                { // update pIndex if we must
+                    // strict empty check, this ensures [Queue.poll() == empty iff isEmpty()]
+                    return emptyValue;
+                }
+                else
+                {
+                    seq = expectedSeq + 1; // trip another go around
+                }
+            }
+        }
+        while (seq > expectedSeq || // another consumer beat us to it
+            !casConsumerIndex(cIndex, cIndex + 1)); // failed the CAS
+
+        final int e = lpElement(buffer, calcElementOffset(cIndex, mask));
+        soSequence(sBuffer, seqOffset, cIndex + mask + 1);// i.e. seq += capacity
+        return e;
+    }
+
+    @Override
+    public int peek()
+    {
+        return peek(true);
+    }
+
+    @Override
+    public boolean relaxedOffer(int e)
+    {
+        checkNotEmptyValue(e);
+        final long mask = this.mask;
+        final long[] sBuffer = sequenceBuffer;
+
+        long pIndex;
+        long seqOffset;
+        long seq;
+        do
+        {
+            pIndex = lvProducerIndex();
+            seqOffset = calcSequenceOffset(pIndex, mask);
+            seq = lvSequence(sBuffer, seqOffset);
+            if (seq < pIndex)
+            { // slot not cleared by consumer yet
+                return false;
+            }
+        }
+        while (seq > pIndex || // another producer has moved the sequence
+            !casProducerIndex(pIndex, pIndex + 1)); // failed to increment
+
+        spElement(buffer, calcElementOffset(pIndex, mask), e);
+        soSequence(sBuffer, seqOffset, pIndex + 1);
+        return true;
+    }
+
+    @Override
+    public int relaxedPoll()
+    {
+        final long[] sBuffer = sequenceBuffer;
+        final long mask = this.mask;
+
+        long cIndex;
+        long seqOffset;
+        long seq;
+        long expectedSeq;
+        do
+        {
+            cIndex = lvConsumerIndex();
+            seqOffset = calcSequenceOffset(cIndex, mask);
+            seq = lvSequence(sBuffer, seqOffset);
+            expectedSeq = cIndex + 1;
+            if (seq < expectedSeq)
+            {
+                return emptyValue;
+            }
+        }
+        while (seq > expectedSeq || // another consumer beat us to it
+            !casConsumerIndex(cIndex, cIndex + 1)); // failed the CAS
+
+        final int e = lpElement(buffer, calcElementOffset(cIndex, mask));
+        soSequence(sBuffer, seqOffset, cIndex + mask + 1);
+        return e;
+    }
+
+    @Override
+    public int relaxedPeek()
+    {
+        return peek(false);
+    }
+
+    /**
+     * The element is read between 2 loads of the consumer index, and is only returned if the index is unchanged,
+     * as otherwise the slot may have been consumed and reused by a producer.
+     */
+    private int peek(boolean strict)
+    {
+        final long[] sBuffer = sequenceBuffer;
+        final long mask = this.mask;
+
+        long cIndex;
+        int e;
+        do
+        {
+            cIndex = lvConsumerIndex();
+            final long seq = lvSequence(sBuffer, calcSequenceOffset(cIndex, mask));
+            if (seq < cIndex + 1)
+            { // slot has not been moved by producer
+                if (!strict || cIndex == lvProducerIndex())
+                {
+                    return emptyValue;
+                }
+                // a producer claimed the slot, but the element is not visible yet
+                continue;
+            }
+            e = lpElement(buffer, calcElementOffset(cIndex, mask));
+            if (cIndex == lvConsumerIndex())
+            {
+                return e;
+            }
+        }
+        while (true);
+    }
+
+    @Override
+    public int drain(IntConsumer c, int limit)
+    {
+        final int emptyValue = this.emptyValue;
+        for (int i = 0; i < limit; i++)
+        {
+            final int e = relaxedPoll();
+            if (e == emptyValue)
+            {
+                return i;
+            }
+            c.accept(e);
+        }
+        return limit;
+    }
+
+    @Override
+    public int fill(IntSupplier s, int limit)
+    {
+        final long[] sBuffer = sequenceBuffer;
+        final long mask = this.mask;
+        final int[] buffer = this.buffer;
+
+        long pIndex;
+        long seqOffset;
+        long seq;
+        for (int i = 0; i < limit; i++)
+        {
+            do
+            {
+                pIndex = lvProducerIndex();
+                seqOffset = calcSequenceOffset(pIndex, mask);
+                seq = lvSequence(sBuffer, seqOffset);
+                if (seq < pIndex)
+                { // slot not cleared by consumer yet
+                    return i;
+                }
+            }
+            while (seq > pIndex || // another producer has moved the sequence
+                !casProducerIndex(pIndex, pIndex + 1)); // failed to increment
+            spElement(buffer, calcElementOffset(pIndex, mask), s.get());
+            soSequence(sBuffer, seqOffset, pIndex + 1);
+        }
+        return limit;
+    }
+}
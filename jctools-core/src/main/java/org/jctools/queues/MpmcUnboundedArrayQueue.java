@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import static org.jctools.queues.QueueStatsRecorder.recordCasFailure;
+
+/**
+ * An MPMC array queue which starts at <i>chunkSize</i> and grows indefinitely in linked chunks of the same size.
+ * The queue grows only when the current chunk is full and elements are not copied on resize, instead a link to the
+ * new chunk is stored in the old chunk for the consumers to follow. Consumed chunks are pooled and reused by the
+ * producers.<br>
+ * Producers claim slots with a single CAS on the producer index, consumers claim slots with a single CAS on the
+ * consumer index (or a batch of slots on {@link #drain(Consumer, int)}).
+ *
+ * @param <E>
+ */
+public class MpmcUnboundedArrayQueue<E> extends BaseMcUnboundedArrayQueue<E>
+{
+    long p0, p1, p2, p3, p4, p5, p6, p7;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    public MpmcUnboundedArrayQueue(int chunkSize)
+    {
+        this(chunkSize, 2);
+    }
+
+    public MpmcUnboundedArrayQueue(int chunkSize, int maxPooledChunks)
+    {
+        super(chunkSize, maxPooledChunks);
+    }
+
+    @Override
+    public boolean offer(E e)
+    {
+        if (null == e)
+        {
+            throw new NullPointerException();
+        }
+        final int chunkMask = this.chunkMask;
+        McUnboundedArrayChunk<E> pChunk;
+        long pIndex;
+        while (true)
+        {
+            pIndex = lvProducerIndex();
+            // lower bit is indicative of chunk rotation, if we see it we spin until it's cleared
+            if ((pIndex & 1) == 1)
+            {
+                continue;
+            }
+            // chunk may get changed by rotation -> only valid after a successful CAS
+            // a successful CAS ties the ordering, lv(pIndex) -> [chunk] -> cas(pIndex)
+            pChunk = lvProducerChunk();
+            final long index = pIndex >> 1;
+            if ((index & chunkMask) == 0 && index != 0)
+            {
+                // grab index for rotation -> set lower bit
+                if (casProducerIndex(pIndex, pIndex + 1))
+                {
+                    pChunk = appendNextChunk(pChunk, index >> chunkShift);
+                    soProducerIndex(pIndex + 2);
+                    break;
+                }
+            }
+            else if (casProducerIndex(pIndex, pIndex + 2))
+            {
+                break;
+            }
+            recordCasFailure(stats);
+        }
+        writeElement(pChunk, pIndex >> 1, e);
+        return true;
+    }
+
+    @Override
+    public int fill(Supplier<E> s, int limit)
+    {
+        final int chunkMask = this.chunkMask;
+        final int chunkSize = chunkMask + 1;
+        int produced = 0;
+        while (produced < limit)
+        {
+            final long pIndex = lvProducerIndex();
+            if ((pIndex & 1) == 1)
+            {
+                continue;
+            }
+            final McUnboundedArrayChunk<E> pChunk = lvProducerChunk();
+            final long index = pIndex >> 1;
+            if ((index & chunkMask) == 0 && index != 0)
+            {
+                if (casProducerIndex(pIndex, pIndex + 1))
+                {
+                    final McUnboundedArrayChunk<E> newChunk = appendNextChunk(pChunk, index >> chunkShift);
+                    soProducerIndex(pIndex + 2);
+                    writeElement(newChunk, index, s.get());
+                    produced++;
+                }
+                else
+                {
+                    recordCasFailure(stats);
+                }
+                continue;
+            }
+            // claim up to 'limit' slots at once, but stop short of the next chunk rotation
+            final int batch = (int) Math.min(limit - produced, chunkSize - (index & chunkMask));
+            if (casProducerIndex(pIndex, pIndex + 2L * batch))
+            {
+                for (int i = 0; i < batch; i++)
+                {
+                    writeElement(pChunk, index + i, s.get());
+                }
+                produced += batch;
+            }
+            else
+            {
+                recordCasFailure(stats);
+            }
+        }
+        return limit;
+    }
+}
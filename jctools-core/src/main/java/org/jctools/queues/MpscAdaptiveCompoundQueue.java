@@ -0,0 +1,562 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.counters.Counter;
+import org.jctools.counters.CountersFactory;
+import org.jctools.util.PortableJvmInfo;
+import org.jctools.util.RangeUtil;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+
+import static org.jctools.util.PortableJvmInfo.CPUs;
+import static org.jctools.util.Pow2.isPowerOfTwo;
+import static org.jctools.util.Pow2.roundToPowerOfTwo;
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+abstract class MpscAdaptiveCompoundQueueL0Pad<E> extends AbstractQueue<E> implements MessagePassingQueue<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class MpscAdaptiveCompoundQueueColdFields<E> extends MpscAdaptiveCompoundQueueL0Pad<E>
+{
+    private final static long ACTIVE_MASK_OFFSET =
+        fieldOffset(MpscAdaptiveCompoundQueueColdFields.class, "activeQueuesMask");
+
+    // must be power of 2
+    protected final int parallelQueues;
+    protected final int parallelQueuesMask;
+    protected final MpscArrayQueue<E>[] queues;
+    // producers record their CAS failures, striped so the recording does not add to the contention
+    protected final Counter casFailures;
+    // written by the consumer only, rarely changes so it is kept with the fields read on every offer
+    private volatile int activeQueuesMask;
+
+    @SuppressWarnings("unchecked")
+    MpscAdaptiveCompoundQueueColdFields(int capacity, int queueParallelism)
+    {
+        RangeUtil.checkPositive(queueParallelism, "queueParallelism");
+        final int parallelQueues = Math.min(
+            isPowerOfTwo(queueParallelism) ? queueParallelism : roundToPowerOfTwo(queueParallelism) / 2,
+            MpscAdaptiveCompoundQueue.MAX_PARALLEL_QUEUES);
+        this.parallelQueues = parallelQueues;
+        parallelQueuesMask = parallelQueues - 1;
+        queues = new MpscArrayQueue[parallelQueues];
+        int fullCapacity = roundToPowerOfTwo(capacity);
+        RangeUtil.checkGreaterThanOrEqual(fullCapacity, parallelQueues, "fullCapacity");
+        for (int i = 0; i < parallelQueues; i++)
+        {
+            queues[i] = new MpscArrayQueue<E>(fullCapacity / parallelQueues);
+        }
+        casFailures = CountersFactory.createFixedSizeStripedCounter(parallelQueues);
+        // start with a single queue, contention will spread the producers
+        activeQueuesMask = 0;
+    }
+
+    final int lvActiveQueuesMask()
+    {
+        return activeQueuesMask;
+    }
+
+    final void soActiveQueuesMask(int mask)
+    {
+        UNSAFE.putOrderedInt(this, ACTIVE_MASK_OFFSET, mask);
+    }
+}
+
+abstract class MpscAdaptiveCompoundQueueMidPad<E> extends MpscAdaptiveCompoundQueueColdFields<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpscAdaptiveCompoundQueueMidPad(int capacity, int queueParallelism)
+    {
+        super(capacity, queueParallelism);
+    }
+}
+
+abstract class MpscAdaptiveCompoundQueueQueueBitsField<E> extends MpscAdaptiveCompoundQueueMidPad<E>
+{
+    private final static long QUEUE_BITS_OFFSET =
+        fieldOffset(MpscAdaptiveCompoundQueueQueueBitsField.class, "queueBits");
+
+    private volatile long queueBits;
+
+    MpscAdaptiveCompoundQueueQueueBitsField(int capacity, int queueParallelism)
+    {
+        super(capacity, queueParallelism);
+    }
+
+    final long lvQueueBits()
+    {
+        return queueBits;
+    }
+
+    final boolean casQueueBits(long expect, long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(this, QUEUE_BITS_OFFSET, expect, newValue);
+    }
+}
+
+abstract class MpscAdaptiveCompoundQueueL1Pad<E> extends MpscAdaptiveCompoundQueueQueueBitsField<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpscAdaptiveCompoundQueueL1Pad(int capacity, int queueParallelism)
+    {
+        super(capacity, queueParallelism);
+    }
+}
+
+abstract class MpscAdaptiveCompoundQueueConsumerFields<E> extends MpscAdaptiveCompoundQueueL1Pad<E>
+{
+    int consumerQueueIndex;
+    int consumedSinceAdapt;
+
+    MpscAdaptiveCompoundQueueConsumerFields(int capacity, int queueParallelism)
+    {
+        super(capacity, queueParallelism);
+    }
+}
+
+/**
+ * A {@link MpscCompoundQueue} which adapts the number of queues producers are spread over to the contention
+ * they meet. Producers start on a single queue and count the CAS failures on its producer index. Every 4096
+ * elements the consumer doubles the active queues when more than 1 in 8 elements cost a CAS failure, and halves
+ * them when less than 1 in 64 did. A producer finding its queue full still tries all the queues, so the capacity does not change with the
+ * active queues.
+ * <p>
+ * Producers flag a queue as non-empty in a shared bitmap after offering to it, and the consumer clears the flag
+ * when it finds the queue empty, so a poll visits only the queues which have elements rather than scanning all
+ * of them. Elements left in a queue which is no longer active are still polled.
+ *
+ * @param <E>
+ */
+public class MpscAdaptiveCompoundQueue<E> extends MpscAdaptiveCompoundQueueConsumerFields<E>
+{
+    /**
+     * The bitmap tracking the non-empty queues is a long.
+     */
+    public static final int MAX_PARALLEL_QUEUES = 64;
+    static final int ADAPT_INTERVAL = 4096;
+    static final int GROW_RATIO = 8;
+    static final int SHRINK_RATIO = 64;
+
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    public MpscAdaptiveCompoundQueue(int capacity)
+    {
+        this(capacity, CPUs);
+    }
+
+    /**
+     * @param capacity the total capacity, split evenly between the queues
+     * @param queueParallelism the most queues producers may be spread over, rounded down to a power of 2 and at
+     *                         most {@link #MAX_PARALLEL_QUEUES}
+     */
+    public MpscAdaptiveCompoundQueue(int capacity, int queueParallelism)
+    {
+        super(capacity, queueParallelism);
+    }
+
+    /**
+     * @return the number of queues producers are currently spread over
+     */
+    public int activeQueues()
+    {
+        return lvActiveQueuesMask() + 1;
+    }
+
+    @Override
+    public boolean offer(final E e)
+    {
+        if (null == e)
+        {
+            throw new NullPointerException();
+        }
+        final int start = (int) (Thread.currentThread().getId() & lvActiveQueuesMask());
+        final MpscArrayQueue<E> queue = queues[start];
+        int status;
+        while ((status = queue.failFastOffer(e)) < 0)
+        {
+            casFailures.inc();
+        }
+        if (status == 0)
+        {
+            markNonEmpty(start);
+            return true;
+        }
+        else
+        {
+            return slowOffer(start + 1, e);
+        }
+    }
+
+    private boolean slowOffer(int start, E e)
+    {
+        final MpscArrayQueue<E>[] queues = this.queues;
+        final int parallelQueuesMask = this.parallelQueuesMask;
+        final int end = start + parallelQueuesMask;
+        while (true)
+        {
+            int full = 0;
+            for (int i = start; i < end; i++)
+            {
+                final int qIndex = i & parallelQueuesMask;
+                final int s = queues[qIndex].failFastOffer(e);
+                if (s == 0)
+                {
+                    markNonEmpty(qIndex);
+                    return true;
+                }
+                if (s < 0)
+                {
+                    casFailures.inc();
+                }
+                else
+                {
+                    full++;
+                }
+            }
+            // the queue we started on was full already
+            if (full == parallelQueuesMask)
+            {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean relaxedOffer(E e)
+    {
+        if (null == e)
+        {
+            throw new NullPointerException();
+        }
+        final int parallelQueuesMask = this.parallelQueuesMask;
+        final int start = (int) (Thread.currentThread().getId() & lvActiveQueuesMask());
+        final MpscArrayQueue<E>[] queues = this.queues;
+        for (int i = start; i <= start + parallelQueuesMask; i++)
+        {
+            final int qIndex = i & parallelQueuesMask;
+            final int s = queues[qIndex].failFastOffer(e);
+            if (s == 0)
+            {
+                markNonEmpty(qIndex);
+                return true;
+            }
+            if (s < 0)
+            {
+                casFailures.inc();
+            }
+        }
+        // this is a relaxed offer, we can fail for any reason we like
+        return false;
+    }
+
+    /*
+     * The producer index CAS, which claims the slot, comes before the read of the queue bit. The consumer clears
+     * the bit before reading the queue indices again. Either the producer sees the cleared bit and sets it, or
+     * the consumer sees the claimed slot and sets it back.
+     */
+    private void markNonEmpty(final int qIndex)
+    {
+        final long bit = 1L << qIndex;
+        long bits;
+        while (((bits = lvQueueBits()) & bit) == 0 && !casQueueBits(bits, bits | bit))
+        {
+            ;
+        }
+    }
+
+    /**
+     * Clear the bit of a queue seen empty, then check the queue again.
+     *
+     * @return true if the queue is still empty, false if an element was offered meanwhile (and the bit is set)
+     */
+    private boolean markEmpty(final int qIndex)
+    {
+        final long bit = 1L << qIndex;
+        long bits;
+        while (((bits = lvQueueBits()) & bit) != 0 && !casQueueBits(bits, bits & ~bit))
+        {
+            ;
+        }
+        if (queues[qIndex].isEmpty())
+        {
+            return true;
+        }
+        markNonEmpty(qIndex);
+        return false;
+    }
+
+    /**
+     * @return the first queue flagged in bits from the current consumer queue on, wrapping around
+     */
+    private int nextQueue(long bits)
+    {
+        final int from = consumerQueueIndex;
+        return (from + Long.numberOfTrailingZeros(Long.rotateRight(bits, from))) & parallelQueuesMask;
+    }
+
+    /**
+     * Called by the consumer for each element taken out of the queue, every {@link #ADAPT_INTERVAL} elements the
+     * CAS failures producers met since are used to grow or shrink the active queues.
+     */
+    private void onConsumed()
+    {
+        if (++consumedSinceAdapt < ADAPT_INTERVAL)
+        {
+            return;
+        }
+        consumedSinceAdapt = 0;
+        adapt(casFailures.getAndReset(), ADAPT_INTERVAL);
+    }
+
+    void adapt(long failures, int consumed)
+    {
+        final int activeMask = lvActiveQueuesMask();
+        if (failures * GROW_RATIO > consumed)
+        {
+            if (activeMask != parallelQueuesMask)
+            {
+                soActiveQueuesMask((activeMask << 1) | 1);
+            }
+        }
+        else if (failures * SHRINK_RATIO < consumed && activeMask != 0)
+        {
+            soActiveQueuesMask(activeMask >>> 1);
+        }
+    }
+
+    @Override
+    public E poll()
+    {
+        long bits = lvQueueBits();
+        while (bits != 0)
+        {
+            final int qIndex = nextQueue(bits);
+            final E e = queues[qIndex].poll();
+            if (e != null)
+            {
+                consumerQueueIndex = qIndex;
+                onConsumed();
+                return e;
+            }
+            if (markEmpty(qIndex))
+            {
+                bits &= ~(1L << qIndex);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E relaxedPoll()
+    {
+        long bits = lvQueueBits();
+        while (bits != 0)
+        {
+            final int qIndex = nextQueue(bits);
+            final E e = queues[qIndex].relaxedPoll();
+            if (e != null)
+            {
+                consumerQueueIndex = qIndex;
+                onConsumed();
+                return e;
+            }
+            // a queue with an element on the way is passed over, as a relaxed poll of it would
+            if (!queues[qIndex].isEmpty() || markEmpty(qIndex))
+            {
+                bits &= ~(1L << qIndex);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E peek()
+    {
+        long bits = lvQueueBits();
+        while (bits != 0)
+        {
+            final int qIndex = nextQueue(bits);
+            final E e = queues[qIndex].peek();
+            if (e != null)
+            {
+                consumerQueueIndex = qIndex;
+                return e;
+            }
+            bits &= ~(1L << qIndex);
+        }
+        return null;
+    }
+
+    @Override
+    public E relaxedPeek()
+    {
+        long bits = lvQueueBits();
+        while (bits != 0)
+        {
+            final int qIndex = nextQueue(bits);
+            final E e = queues[qIndex].relaxedPeek();
+            if (e != null)
+            {
+                consumerQueueIndex = qIndex;
+                return e;
+            }
+            bits &= ~(1L << qIndex);
+        }
+        return null;
+    }
+
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (MpscArrayQueue<E> queue : queues)
+        {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (MpscArrayQueue<E> queue : queues)
+        {
+            if (!queue.isEmpty())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int capacity()
+    {
+        return queues.length * queues[0].capacity();
+    }
+
+    @Override
+    public int drain(Consumer<E> c)
+    {
+        final int limit = capacity();
+        return drain(c, limit);
+    }
+
+    @Override
+    public int fill(Supplier<E> s)
+    {
+        long result = 0;// result is a long because we want to have a safepoint check at regular intervals
+        final int capacity = capacity();
+        do
+        {
+            final int filled = fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH);
+            if (filled == 0)
+            {
+                return (int) result;
+            }
+            result += filled;
+        }
+        while (result <= capacity);
+        return (int) result;
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int limit)
+    {
+        return MessagePassingQueueUtil.drain(this, c, limit);
+    }
+
+    @Override
+    public int fill(Supplier<E> s, int limit)
+    {
+        final int parallelQueuesMask = this.parallelQueuesMask;
+        final int start = (int) (Thread.currentThread().getId() & lvActiveQueuesMask());
+        final MpscArrayQueue<E>[] queues = this.queues;
+        int filled = 0;
+        for (int i = start; i <= start + parallelQueuesMask && filled < limit; i++)
+        {
+            final int qIndex = i & parallelQueuesMask;
+            final int queueFilled = queues[qIndex].fill(s, limit - filled);
+            if (queueFilled != 0)
+            {
+                markNonEmpty(qIndex);
+                filled += queueFilled;
+            }
+        }
+        // this is a relaxed fill, we can stop short for any reason we like
+        return filled;
+    }
+
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
+    @Override
+    public void drain(Consumer<E> c, WaitStrategy wait, ExitCondition exit)
+    {
+        MessagePassingQueueUtil.drain(this, c, wait, exit);
+    }
+
+    @Override
+    public void fill(Supplier<E> s, WaitStrategy w, ExitCondition exit)
+    {
+        int idleCounter = 0;
+        while (exit.keepRunning())
+        {
+            if (fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH) == 0)
+            {
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+        }
+    }
+}
@@ -15,6 +15,9 @@ package org.jctools.queues;
 
 import org.jctools.util.PortableJvmInfo;
 
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 import static org.jctools.util.UnsafeAccess.fieldOffset;
 import static org.jctools.util.UnsafeRefArrayAccess.*;
@@ -203,7 +206,7 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
                 }
             }
         }
-        while (!casProducerIndex(pIndex, pIndex + 1));
+        while (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats));
         /*
          * NOTE: the new producer index value is made visible BEFORE the element in the array. If we relied on
          * the index visibility to poll() we would need to handle the case where the element is not visible.
@@ -242,11 +245,13 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
             pIndex = lvProducerIndex(); // LoadLoad
             if (pIndex >= producerLimit)
             {
+                recordOfferSlowPath(stats);
                 final long cIndex = lvConsumerIndex(); // LoadLoad
                 producerLimit = cIndex + mask + 1;
 
                 if (pIndex >= producerLimit)
                 {
+                    recordOfferFull(stats);
                     return false; // FULL :(
                 }
                 else
@@ -257,7 +262,7 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
                 }
             }
         }
-        while (!casProducerIndex(pIndex, pIndex + 1));
+        while (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats));
         /*
          * NOTE: the new producer index value is made visible BEFORE the element in the array. If we relied on
          * the index visibility to poll() we would need to handle the case where the element is not visible.
@@ -275,7 +280,7 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
      * @param e new element, not null
      * @return 1 if next element cannot be filled, -1 if CAS failed, 0 if successful
      */
-    public final int failFastOffer(final E e)
+    public int failFastOffer(final E e)
     {
         if (null == e)
         {
@@ -287,10 +292,12 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
         long producerLimit = lvProducerLimit(); // LoadLoad
         if (pIndex >= producerLimit)
         {
+            recordOfferSlowPath(stats);
             final long cIndex = lvConsumerIndex(); // LoadLoad
             producerLimit = cIndex + capacity;
             if (pIndex >= producerLimit)
             {
+                recordOfferFull(stats);
                 return 1; // FULL :(
             }
             else
@@ -303,6 +310,7 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
         // look Ma, no loop!
         if (!casProducerIndex(pIndex, pIndex + 1))
         {
+            recordCasFailure(stats);
             return -1; // CAS FAIL :(
         }
 
@@ -493,11 +501,13 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
             long available = producerLimit - pIndex;
             if (available <= 0)
             {
+                recordOfferSlowPath(stats);
                 final long cIndex = lvConsumerIndex(); // LoadLoad
                 producerLimit = cIndex + capacity;
                 available = producerLimit - pIndex;
                 if (available <= 0)
                 {
+                    recordOfferFull(stats);
                     return 0; // FULL :(
                 }
                 else
@@ -508,7 +518,7 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
             }
             actualLimit = Math.min((int) available, limit);
         }
-        while (!casProducerIndex(pIndex, pIndex + actualLimit));
+        while (!casProducerIndex(pIndex, pIndex + actualLimit) && recordCasFailure(stats));
         // right, now we claimed a few slots and can fill them with goodness
         final E[] buffer = this.buffer;
         for (int i = 0; i < actualLimit; i++)
@@ -520,6 +530,90 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
         return actualLimit;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slots for the batch are claimed with a single CAS on the producer index.
+     */
+    @Override
+    public int offer(final E[] src, final int off, final int len)
+    {
+        checkOfferBatch(src, off, len);
+        if (len == 0)
+        {
+            return 0;
+        }
+        final long mask = this.mask;
+        final long capacity = mask + 1;
+        long producerLimit = lvProducerLimit(); // LoadLoad
+        long pIndex;
+        int actualLen;
+        do
+        {
+            pIndex = lvProducerIndex(); // LoadLoad
+            long available = producerLimit - pIndex;
+            if (available <= 0)
+            {
+                recordOfferSlowPath(stats);
+                final long cIndex = lvConsumerIndex(); // LoadLoad
+                producerLimit = cIndex + capacity;
+                available = producerLimit - pIndex;
+                if (available <= 0)
+                {
+                    recordOfferFull(stats);
+                    return 0; // FULL :(
+                }
+                else
+                {
+                    // update producer limit to the next index that we must recheck the consumer index
+                    soProducerLimit(producerLimit); // StoreLoad
+                }
+            }
+            actualLen = (int) Math.min(available, len);
+        }
+        while (!casProducerIndex(pIndex, pIndex + actualLen) && recordCasFailure(stats));
+        // Won CAS, copy the batch into the claimed slots
+        final E[] buffer = this.buffer;
+        for (int i = 0; i < actualLen; i++)
+        {
+            final long offset = calcElementOffset(pIndex + i, mask);
+            soElement(buffer, offset, src[off + i]); // StoreStore
+        }
+        return actualLen;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The consumer index is published once for the whole batch.
+     */
+    @Override
+    public int poll(final E[] dst, final int off, final int len)
+    {
+        checkPollBatch(dst, off, len);
+        final E[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long cIndex = lpConsumerIndex();
+
+        int i = 0;
+        for (; i < len; i++)
+        {
+            final long offset = calcElementOffset(cIndex + i, mask);
+            final E e = lvElement(buffer, offset);// LoadLoad
+            if (null == e)
+            {
+                break;
+            }
+            spElement(buffer, offset, null);
+            dst[off + i] = e;
+        }
+        if (i != 0)
+        {
+            soConsumerIndex(cIndex + i); // StoreStore
+        }
+        return i;
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy w, ExitCondition exit)
     {
@@ -537,7 +631,7 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
                 if (null == e)
                 {
                     counter = w.idle(counter);
-                    continue;
+                    break; // check the exit condition after idling
                 }
                 cIndex++;
                 counter = 0;
@@ -548,6 +642,40 @@ public class MpscArrayQueue<E> extends MpscArrayQueueL3Pad<E>
         }
     }
 
+    @Override
+    public int drain(final Consumer<E> c, final int maxBatch, final long maxWaitNanos, final WaitStrategy w)
+    {
+        final E[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long cIndex = lpConsumerIndex();
+        final long deadline = maxWaitNanos > 0 ? System.nanoTime() + maxWaitNanos : 0;
+
+        int idleCounter = 0;
+        int i = 0;
+        while (i < maxBatch)
+        {
+            final long index = cIndex + i;
+            final long offset = calcElementOffset(index, mask);
+            final E e = lvElement(buffer, offset);// LoadLoad
+            if (null == e)
+            {
+                // the time is only read once the queue runs dry
+                if (maxWaitNanos <= 0 || System.nanoTime() - deadline >= 0)
+                {
+                    break;
+                }
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+            spElement(buffer, offset, null);
+            soConsumerIndex(index + 1); // ordered store -> atomic and ordered for size()
+            c.accept(e);
+            i++;
+        }
+        return i;
+    }
+
     @Override
     public void fill(Supplier<E> s, WaitStrategy w, ExitCondition exit)
     {
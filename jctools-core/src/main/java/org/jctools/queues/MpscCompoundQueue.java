@@ -24,7 +24,8 @@ import static org.jctools.util.Pow2.isPowerOfTwo;
 import static org.jctools.util.Pow2.roundToPowerOfTwo;
 
 /**
- * Use a set number of parallel MPSC queues to diffuse the contention on tail.
+ * Use a set number of parallel MPSC queues to diffuse the contention on tail. See
+ * {@link MpscAdaptiveCompoundQueue} for a variant which adapts the number of queues in use to the contention.
  */
 abstract class MpscCompoundQueueL0Pad<E> extends AbstractQueue<E> implements MessagePassingQueue<E>
 {
@@ -332,6 +333,24 @@ public class MpscCompoundQueue<E> extends MpscCompoundQueueConsumerQueueIndex<E>
         }
     }
 
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(
         Consumer<E> c,
@@ -0,0 +1,375 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+abstract class MpscIntArrayQueueL1Pad extends ConcurrentCircularIntArrayQueue
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+
+    MpscIntArrayQueueL1Pad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class MpscIntArrayQueueProducerIndexField extends MpscIntArrayQueueL1Pad
+{
+    private final static long P_INDEX_OFFSET = fieldOffset(MpscIntArrayQueueProducerIndexField.class, "producerIndex");
+
+    private volatile long producerIndex;
+
+    MpscIntArrayQueueProducerIndexField(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    @Override
+    public final long lvProducerIndex()
+    {
+        return producerIndex;
+    }
+
+    final boolean casProducerIndex(long expect, long newValue)
+    {
+        return UNSAFE.compareAndSwapLong(this, P_INDEX_OFFSET, expect, newValue);
+    }
+}
+
+abstract class MpscIntArrayQueueMidPad extends MpscIntArrayQueueProducerIndexField
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpscIntArrayQueueMidPad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class MpscIntArrayQueueProducerLimitField extends MpscIntArrayQueueMidPad
+{
+    private final static long P_LIMIT_OFFSET = fieldOffset(MpscIntArrayQueueProducerLimitField.class, "producerLimit");
+
+    // First unavailable index the producer may claim up to before rereading the consumer index
+    private volatile long producerLimit;
+
+    MpscIntArrayQueueProducerLimitField(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+        this.producerLimit = capacity();
+    }
+
+    final long lvProducerLimit()
+    {
+        return producerLimit;
+    }
+
+    final void soProducerLimit(long newValue)
+    {
+        UNSAFE.putOrderedLong(this, P_LIMIT_OFFSET, newValue);
+    }
+}
+
+abstract class MpscIntArrayQueueL2Pad extends MpscIntArrayQueueProducerLimitField
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+
+    MpscIntArrayQueueL2Pad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class MpscIntArrayQueueConsumerIndexField extends MpscIntArrayQueueL2Pad
+{
+    private final static long C_INDEX_OFFSET = fieldOffset(MpscIntArrayQueueConsumerIndexField.class, "consumerIndex");
+
+    private volatile long consumerIndex;
+
+    MpscIntArrayQueueConsumerIndexField(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    @Override
+    public final long lvConsumerIndex()
+    {
+        return consumerIndex;
+    }
+
+    final long lpConsumerIndex()
+    {
+        return UNSAFE.getLong(this, C_INDEX_OFFSET);
+    }
+
+    final void soConsumerIndex(long newValue)
+    {
+        UNSAFE.putOrderedLong(this, C_INDEX_OFFSET, newValue);
+    }
+}
+
+abstract class MpscIntArrayQueueL3Pad extends MpscIntArrayQueueConsumerIndexField
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpscIntArrayQueueL3Pad(int capacity, int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+/**
+ * A Multi-Producer-Single-Consumer queue of int values backed by a pre-allocated int[] buffer. This is the
+ * primitive counterpart of {@link MpscArrayQueue} and uses the same algorithm, with the queue empty value in place
+ * of null as the empty slot marker.
+ */
+public class MpscIntArrayQueue extends MpscIntArrayQueueL3Pad
+{
+    /**
+     * A queue using {@link Integer#MIN_VALUE} as the empty value.
+     */
+    public MpscIntArrayQueue(final int capacity)
+    {
+        this(capacity, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param emptyValue the value returned by poll/peek when the queue is empty, cannot be offered
+     */
+    public MpscIntArrayQueue(final int capacity, final int emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    /**
+     * {@inheritDoc} <br>
+     * <p>
+     * IMPLEMENTATION NOTES:<br>
+     * Lock free offer using a single CAS. As class name suggests access is permitted to many threads
+     * concurrently.
+     */
+    @Override
+    public boolean offer(final int e)
+    {
+        checkNotEmptyValue(e);
+
+        // use a cached view on consumer index (potentially updated in loop)
+        final long mask = this.mask;
+        long producerLimit = lvProducerLimit(); // LoadLoad
+        long pIndex;
+        do
+        {
+            pIndex = lvProducerIndex(); // LoadLoad
+            if (pIndex >= producerLimit)
+            {
+                final long cIndex = lvConsumerIndex(); // LoadLoad
+                producerLimit = cIndex + mask + 1;
+
+                if (pIndex >= producerLimit)
+                {
+                    return false; // FULL :(
+                }
+                else
+                {
+                    // update producer limit to the next index that we must recheck the consumer index
+                    // this is racy, but the race is benign
+                    soProducerLimit(producerLimit);
+                }
+            }
+        }
+        while (!casProducerIndex(pIndex, pIndex + 1));
+        // Won CAS, move on to storing
+        soElement(buffer, calcElementOffset(pIndex, mask), e); // StoreStore
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * IMPLEMENTATION NOTES:<br>
+     * Lock free poll using ordered loads/stores. As class name suggests access is limited to a single thread.
+     */
+    @Override
+    public int poll()
+    {
+        final long cIndex = lpConsumerIndex();
+        final long offset = calcElementOffset(cIndex, mask);
+        // Copy field to avoid re-reading after volatile load
+        final int[] buffer = this.buffer;
+        final int emptyValue = this.emptyValue;
+
+        // If we can't see the next available element we can't poll
+        int e = lvElement(buffer, offset); // LoadLoad
+        if (emptyValue == e)
+        {
+            /*
+             * NOTE: Queue may not actually be empty in the case of a producer (P1) being interrupted after
+             * winning the CAS on offer but before storing the element in the queue. Other producers may go on
+             * to fill up the queue after this element.
+             */
+            if (cIndex != lvProducerIndex())
+            {
+                do
+                {
+                    e = lvElement(buffer, offset);
+                }
+                while (emptyValue == e);
+            }
+            else
+            {
+                return emptyValue;
+            }
+        }
+
+        soElement(buffer, offset, emptyValue);
+        soConsumerIndex(cIndex + 1); // StoreStore
+        return e;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * IMPLEMENTATION NOTES:<br>
+     * Lock free peek using ordered loads. As class name suggests access is limited to a single thread.
+     */
+    @Override
+    public int peek()
+    {
+        // Copy field to avoid re-reading after volatile load
+        final int[] buffer = this.buffer;
+        final int emptyValue = this.emptyValue;
+
+        final long cIndex = lpConsumerIndex(); // LoadLoad
+        final long offset = calcElementOffset(cIndex, mask);
+        int e = lvElement(buffer, offset);
+        if (emptyValue == e)
+        {
+            // see note in poll
+            if (cIndex != lvProducerIndex())
+            {
+                do
+                {
+                    e = lvElement(buffer, offset);
+                }
+                while (emptyValue == e);
+            }
+            else
+            {
+                return emptyValue;
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public boolean relaxedOffer(int e)
+    {
+        return offer(e);
+    }
+
+    @Override
+    public int relaxedPoll()
+    {
+        final int[] buffer = this.buffer;
+        final long cIndex = lpConsumerIndex();
+        final long offset = calcElementOffset(cIndex, mask);
+
+        // If we can't see the next available element we can't poll
+        final int e = lvElement(buffer, offset); // LoadLoad
+        if (emptyValue == e)
+        {
+            return emptyValue;
+        }
+
+        soElement(buffer, offset, emptyValue);
+        soConsumerIndex(cIndex + 1); // StoreStore
+        return e;
+    }
+
+    @Override
+    public int relaxedPeek()
+    {
+        return lvElement(buffer, calcElementOffset(lpConsumerIndex(), mask));
+    }
+
+    @Override
+    public int drain(final IntConsumer c, final int limit)
+    {
+        final int[] buffer = this.buffer;
+        final long mask = this.mask;
+        final int emptyValue = this.emptyValue;
+        final long cIndex = lpConsumerIndex();
+
+        for (int i = 0; i < limit; i++)
+        {
+            final long index = cIndex + i;
+            final long offset = calcElementOffset(index, mask);
+            final int e = lvElement(buffer, offset);// LoadLoad
+            if (emptyValue == e)
+            {
+                return i;
+            }
+            soElement(buffer, offset, emptyValue);
+            soConsumerIndex(index + 1); // ordered store -> atomic and ordered for size()
+            c.accept(e);
+        }
+        return limit;
+    }
+
+    @Override
+    public int fill(IntSupplier s, int limit)
+    {
+        final long mask = this.mask;
+        final long capacity = mask + 1;
+        long producerLimit = lvProducerLimit(); // LoadLoad
+        long pIndex;
+        int actualLimit = 0;
+        do
+        {
+            pIndex = lvProducerIndex(); // LoadLoad
+            long available = producerLimit - pIndex;
+            if (available <= 0)
+            {
+                final long cIndex = lvConsumerIndex(); // LoadLoad
+                producerLimit = cIndex + capacity;
+                available = producerLimit - pIndex;
+                if (available <= 0)
+                {
+                    return 0; // FULL :(
+                }
+                else
+                {
+                    // update producer limit to the next index that we must recheck the consumer index
+                    soProducerLimit(producerLimit); // StoreLoad
+                }
+            }
+            actualLimit = Math.min((int) available, limit);
+        }
+        while (!casProducerIndex(pIndex, pIndex + actualLimit));
+        // right, now we claimed a few slots and can fill them with goodness
+        final int[] buffer = this.buffer;
+        for (int i = 0; i < actualLimit; i++)
+        {
+            // Won CAS, move on to storing
+            soElement(buffer, calcElementOffset(pIndex + i, mask), s.get());
+        }
+        return actualLimit;
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.util.PortableJvmInfo;
+import org.jctools.util.RangeUtil;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+abstract class MpscPriorityLanesQueueL0Pad<E> extends AbstractQueue<E> implements MessagePassingQueue<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class MpscPriorityLanesQueueColdFields<E> extends MpscPriorityLanesQueueL0Pad<E>
+{
+    protected final MpscArrayQueue<E>[] lanes;
+
+    @SuppressWarnings("unchecked")
+    MpscPriorityLanesQueueColdFields(int[] laneCapacities)
+    {
+        RangeUtil.checkGreaterThanOrEqual(laneCapacities.length, 1, "lanes");
+        RangeUtil.checkLessThanOrEqual(laneCapacities.length, MpscPriorityLanesQueue.MAX_LANES, "lanes");
+        lanes = new MpscArrayQueue[laneCapacities.length];
+        for (int i = 0; i < lanes.length; i++)
+        {
+            lanes[i] = new MpscArrayQueue<E>(laneCapacities[i]);
+        }
+    }
+}
+
+abstract class MpscPriorityLanesQueueMidPad<E> extends MpscPriorityLanesQueueColdFields<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpscPriorityLanesQueueMidPad(int[] laneCapacities)
+    {
+        super(laneCapacities);
+    }
+}
+
+// $gen:ordered-fields
+abstract class MpscPriorityLanesQueueLaneBitsField<E> extends MpscPriorityLanesQueueMidPad<E>
+{
+    private final static long LANE_BITS_OFFSET = fieldOffset(MpscPriorityLanesQueueLaneBitsField.class, "laneBits");
+
+    private volatile int laneBits;
+
+    MpscPriorityLanesQueueLaneBitsField(int[] laneCapacities)
+    {
+        super(laneCapacities);
+    }
+
+    final int lvLaneBits()
+    {
+        return laneBits;
+    }
+
+    final boolean casLaneBits(int expect, int newValue)
+    {
+        return UNSAFE.compareAndSwapInt(this, LANE_BITS_OFFSET, expect, newValue);
+    }
+}
+
+/**
+ * A Multi-Producer-Single-Consumer queue made of a small fixed number of priority lanes, each a bounded
+ * {@link MpscArrayQueue} of its own capacity. The consumer always serves the highest priority non-empty lane
+ * first: lane {@code lanes() - 1} is the most urgent, lane 0 the least, and is where the plain
+ * {@link #offer(Object)} goes. Elements are FIFO within a lane.
+ * <p>
+ * Producers flag a lane as non-empty in a shared bitmap after offering to it, and the consumer clears the flag
+ * when it finds the lane empty, so a poll visits only the lanes which have elements rather than every lane. The
+ * flag is only written when it changes, so under load it stays set and costs producers a read.
+ *
+ * @param <E>
+ */
+public class MpscPriorityLanesQueue<E> extends MpscPriorityLanesQueueLaneBitsField<E>
+{
+    public static final int MAX_LANES = 32;
+
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    /**
+     * @param lanes the number of lanes, 1 to {@link #MAX_LANES}
+     * @param laneCapacity the capacity of each lane, rounded up to the next power of 2
+     */
+    public MpscPriorityLanesQueue(int lanes, int laneCapacity)
+    {
+        this(sameCapacities(lanes, laneCapacity));
+    }
+
+    /**
+     * @param laneCapacities the capacity of each lane, from the least to the most urgent, each rounded up to the
+     *                       next power of 2
+     */
+    public MpscPriorityLanesQueue(int... laneCapacities)
+    {
+        super(laneCapacities.clone());
+    }
+
+    private static int[] sameCapacities(int lanes, int laneCapacity)
+    {
+        RangeUtil.checkGreaterThanOrEqual(lanes, 1, "lanes");
+        final int[] capacities = new int[lanes];
+        for (int i = 0; i < lanes; i++)
+        {
+            capacities[i] = laneCapacity;
+        }
+        return capacities;
+    }
+
+    /**
+     * Offer to the least urgent lane, 0.
+     */
+    @Override
+    public boolean offer(final E e)
+    {
+        return offer(e, 0);
+    }
+
+    /**
+     * Offer to the given lane, the higher the lane the sooner the consumer sees the element.
+     *
+     * @param e not null, will throw NPE if it is
+     * @param lane from 0 to {@code lanes() - 1}
+     * @return true if the element was added, false if the lane is full
+     */
+    public boolean offer(final E e, final int lane)
+    {
+        if (lanes[lane].offer(e))
+        {
+            markNonEmpty(lane);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean relaxedOffer(final E e)
+    {
+        return relaxedOffer(e, 0);
+    }
+
+    public boolean relaxedOffer(final E e, final int lane)
+    {
+        if (lanes[lane].relaxedOffer(e))
+        {
+            markNonEmpty(lane);
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * The lane producer index CAS, which claims the slot, comes before the read of the lane bit. The consumer
+     * clears the bit before reading the lane indices again. Either the producer sees the cleared bit and sets it,
+     * or the consumer sees the claimed slot and sets it back.
+     */
+    private void markNonEmpty(final int lane)
+    {
+        final int bit = 1 << lane;
+        int bits;
+        while (((bits = lvLaneBits()) & bit) == 0 && !casLaneBits(bits, bits | bit))
+        {
+            ;
+        }
+    }
+
+    /**
+     * Clear the bit of a lane seen empty, then check the lane again.
+     *
+     * @return true if the lane is still empty, false if an element was offered meanwhile (and the bit is set)
+     */
+    private boolean markEmpty(final int lane)
+    {
+        final int bit = 1 << lane;
+        int bits;
+        while (((bits = lvLaneBits()) & bit) != 0 && !casLaneBits(bits, bits & ~bit))
+        {
+            ;
+        }
+        if (lanes[lane].isEmpty())
+        {
+            return true;
+        }
+        markNonEmpty(lane);
+        return false;
+    }
+
+    private static int highestLane(int bits)
+    {
+        return 31 - Integer.numberOfLeadingZeros(bits);
+    }
+
+    @Override
+    public E poll()
+    {
+        int bits = lvLaneBits();
+        while (bits != 0)
+        {
+            final int lane = highestLane(bits);
+            final E e = lanes[lane].poll();
+            if (e != null)
+            {
+                return e;
+            }
+            if (markEmpty(lane))
+            {
+                bits &= ~(1 << lane);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E relaxedPoll()
+    {
+        int bits = lvLaneBits();
+        while (bits != 0)
+        {
+            final int lane = highestLane(bits);
+            final E e = lanes[lane].relaxedPoll();
+            if (e != null)
+            {
+                return e;
+            }
+            // a lane with an element on the way is passed over, as a relaxed poll of it would
+            if (!lanes[lane].isEmpty() || markEmpty(lane))
+            {
+                bits &= ~(1 << lane);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E peek()
+    {
+        int bits = lvLaneBits();
+        while (bits != 0)
+        {
+            final int lane = highestLane(bits);
+            final E e = lanes[lane].peek();
+            if (e != null)
+            {
+                return e;
+            }
+            bits &= ~(1 << lane);
+        }
+        return null;
+    }
+
+    @Override
+    public E relaxedPeek()
+    {
+        int bits = lvLaneBits();
+        while (bits != 0)
+        {
+            final int lane = highestLane(bits);
+            final E e = lanes[lane].relaxedPeek();
+            if (e != null)
+            {
+                return e;
+            }
+            bits &= ~(1 << lane);
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of lanes
+     */
+    public int lanes()
+    {
+        return lanes.length;
+    }
+
+    @Override
+    public int size()
+    {
+        long size = 0;
+        for (MpscArrayQueue<E> lane : lanes)
+        {
+            size += lane.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of elements in the given lane, as {@link #size()} does for the whole queue
+     */
+    public int size(int lane)
+    {
+        return lanes[lane].size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (MpscArrayQueue<E> lane : lanes)
+        {
+            if (!lane.isEmpty())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the sum of the lane capacities, note that the plain {@link #offer(Object)} only fills lane 0
+     */
+    @Override
+    public int capacity()
+    {
+        int capacity = 0;
+        for (MpscArrayQueue<E> lane : lanes)
+        {
+            capacity += lane.capacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * @return the capacity of the given lane
+     */
+    public int capacity(int lane)
+    {
+        return lanes[lane].capacity();
+    }
+
+    @Override
+    public void clear()
+    {
+        for (MpscArrayQueue<E> lane : lanes)
+        {
+            lane.clear();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int drain(Consumer<E> c)
+    {
+        return drain(c, capacity());
+    }
+
+    /**
+     * Elements are polled one at a time so that an element offered to a more urgent lane during the drain is
+     * served before the rest of a less urgent one.
+     */
+    @Override
+    public int drain(Consumer<E> c, int limit)
+    {
+        for (int i = 0; i < limit; i++)
+        {
+            E e = relaxedPoll();
+            if (e == null)
+            {
+                return i;
+            }
+            c.accept(e);
+        }
+        return limit;
+    }
+
+    /**
+     * Fill the least urgent lane, 0.
+     */
+    @Override
+    public int fill(Supplier<E> s)
+    {
+        return fill(s, lanes[0].capacity());
+    }
+
+    /**
+     * Fill the least urgent lane, 0.
+     */
+    @Override
+    public int fill(Supplier<E> s, int limit)
+    {
+        final int filled = lanes[0].fill(s, limit);
+        if (filled != 0)
+        {
+            markNonEmpty(0);
+        }
+        return filled;
+    }
+
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
+    @Override
+    public void drain(Consumer<E> c, WaitStrategy wait, ExitCondition exit)
+    {
+        MessagePassingQueueUtil.drain(this, c, wait, exit);
+    }
+
+    @Override
+    public void fill(Supplier<E> s, WaitStrategy wait, ExitCondition exit)
+    {
+        int idleCounter = 0;
+        while (exit.keepRunning())
+        {
+            if (fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH) == 0)
+            {
+                idleCounter = wait.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks the calling thread for a time that adapts to how long it has been idle: the first park lasts
+ * <i>minParkNanos</i> and every further idle call doubles it, up to <i>maxParkNanos</i>. A thread which finds
+ * work after a short gap is woken quickly, while a long idle period costs few wake-ups. The idle counter
+ * tracks the number of parks, so resetting it to 0 on work starts over from the shortest park.
+ * <p>
+ * This strategy is stateless and may be shared by any number of threads.
+ */
+public final class ParkingWaitStrategy implements MessagePassingQueue.WaitStrategy
+{
+    public static final long DEFAULT_MIN_PARK_NANOS = 1000;
+    public static final long DEFAULT_MAX_PARK_NANOS = 1000000;
+
+    private final long minParkNanos;
+    private final long maxParkNanos;
+    // number of doublings after which a park lasts maxParkNanos
+    private final int maxShift;
+
+    public ParkingWaitStrategy()
+    {
+        this(DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    /**
+     * @param minParkNanos the time to park on the first idle call, at least 1
+     * @param maxParkNanos the longest time to park, at least minParkNanos
+     */
+    public ParkingWaitStrategy(long minParkNanos, long maxParkNanos)
+    {
+        if (minParkNanos < 1)
+        {
+            throw new IllegalArgumentException("minParkNanos must be positive: " + minParkNanos);
+        }
+        if (maxParkNanos < minParkNanos)
+        {
+            throw new IllegalArgumentException(
+                "maxParkNanos: " + maxParkNanos + " is less than minParkNanos: " + minParkNanos);
+        }
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        int shift = 0;
+        while (shift < 62 && (minParkNanos << shift) < maxParkNanos)
+        {
+            shift++;
+        }
+        this.maxShift = shift;
+    }
+
+    @Override
+    public int idle(int idleCounter)
+    {
+        LockSupport.parkNanos(parkNanos(idleCounter));
+        return idleCounter == Integer.MAX_VALUE ? idleCounter : idleCounter + 1;
+    }
+
+    /**
+     * @return the time an idle call with the given counter parks for
+     */
+    public long parkNanos(int idleCounter)
+    {
+        if (idleCounter >= maxShift)
+        {
+            return maxParkNanos;
+        }
+        return Math.min(minParkNanos << Math.max(idleCounter, 0), maxParkNanos);
+    }
+
+    public long minParkNanos()
+    {
+        return minParkNanos;
+    }
+
+    public long maxParkNanos()
+    {
+        return maxParkNanos;
+    }
+}
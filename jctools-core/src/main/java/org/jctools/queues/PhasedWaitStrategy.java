@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Blocks idle threads until the other side signals progress, rather than polling on a timer. The side making
+ * progress (e.g. a producer after an offer, or a consumer after a poll when producers wait for space) calls
+ * {@link #signal()}, which advances the phase of this strategy and unparks any waiting threads.
+ * <p>
+ * The first idle call after work notes the current phase and returns at once; the next idle calls park until
+ * the phase moves on from the noted one. Since the phase is noted before the caller checks for work again, a
+ * signal racing with that check is never lost. The noted phase is carried in the idle counter, so this strategy
+ * may be shared by any number of waiting threads. Waits are bounded by <i>maxWaitNanos</i>, as a safety net for
+ * a missed signal. An interrupt ends a wait early and leaves the thread interrupted.
+ * <p>
+ * Idle threads use no CPU, at the cost of a wake-up latency in the microseconds and of an atomic increment for
+ * every signal. Threads are only unparked while some are waiting.
+ */
+public final class PhasedWaitStrategy implements MessagePassingQueue.WaitStrategy
+{
+    public static final long DEFAULT_MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicInteger phase = new AtomicInteger();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+    private final long maxWaitNanos;
+
+    public PhasedWaitStrategy()
+    {
+        this(DEFAULT_MAX_WAIT_NANOS);
+    }
+
+    /**
+     * @param maxWaitNanos the longest time an idle call blocks for
+     */
+    public PhasedWaitStrategy(long maxWaitNanos)
+    {
+        if (maxWaitNanos < 1)
+        {
+            throw new IllegalArgumentException("maxWaitNanos must be positive: " + maxWaitNanos);
+        }
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /**
+     * Wake up the threads idling on this strategy. Called after making progress that waiting threads may be
+     * interested in.
+     */
+    public void signal()
+    {
+        phase.getAndIncrement();
+        // a waiter is queued before it is counted, and counted before it checks the phase: either it sees the
+        // new phase, or it is seen here
+        if (waiterCount.get() != 0)
+        {
+            for (Thread waiter : waiters)
+            {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    @Override
+    public int idle(int idleCounter)
+    {
+        // phases are non-negative, the counter holds the noted phase + 1 so 0 remains the reset value
+        if (idleCounter == 0)
+        {
+            return currentPhase() + 1;
+        }
+        final int noted = idleCounter - 1;
+        int current = currentPhase();
+        if (current != noted)
+        {
+            return current + 1;
+        }
+        final Thread thread = Thread.currentThread();
+        waiters.offer(thread);
+        waiterCount.getAndIncrement();
+        try
+        {
+            final long deadline = System.nanoTime() + maxWaitNanos;
+            while ((current = currentPhase()) == noted)
+            {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || thread.isInterrupted())
+                {
+                    return idleCounter;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return current + 1;
+        }
+        finally
+        {
+            waiterCount.getAndDecrement();
+            waiters.remove(thread);
+        }
+    }
+
+    private int currentPhase()
+    {
+        return phase.get() & Integer.MAX_VALUE;
+    }
+}
@@ -17,7 +17,6 @@ import org.jctools.queues.spec.ConcurrentQueueSpec;
 import org.jctools.queues.spec.Ordering;
 
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The queue factory produces {@link java.util.Queue} instances based on a best fit to the {@link ConcurrentQueueSpec}.
@@ -28,6 +27,10 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public class QueueFactory
 {
+    /**
+     * The chunk size used for the unbounded multi-consumer queues.
+     */
+    static final int UNBOUNDED_CHUNK_SIZE = Integer.getInteger("jctools.unbounded.chunk.size", 1024);
 
     public static <E> Queue<E> newQueue(ConcurrentQueueSpec qs)
     {
@@ -73,7 +76,16 @@ public class QueueFactory
             {
                 return MpscLinkedQueue.newMpscLinkedQueue();
             }
+            // SPMC
+            else if (qs.isSpmc())
+            {
+                return new SpmcUnboundedArrayQueue<E>(UNBOUNDED_CHUNK_SIZE);
+            }
+            // MPMC
+            else
+            {
+                return new MpmcUnboundedArrayQueue<E>(UNBOUNDED_CHUNK_SIZE);
+            }
         }
-        return new ConcurrentLinkedQueue<E>();
     }
 }
@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.util.Queue;
+
+import static org.jctools.queues.MessagePassingQueue.UNBOUNDED_CAPACITY;
+
+/**
+ * A point in time sample of the occupancy of a queue and of the events recorded for it. Occupancy is available for
+ * all queues, the event counts are only available for queues which implement {@link QueueStatsRecorder.Source}
+ * once recording is enabled for them with {@link #enableRecording(Queue)}, and are 0 otherwise.<br>
+ * The sample is not atomic, each value is read independently.
+ */
+public final class QueueStats
+{
+    private final long timestamp;
+    private final int size;
+    private final int capacity;
+    private final long producerIndex;
+    private final long consumerIndex;
+    private final boolean recorded;
+    private final long casFailures;
+    private final long offerFullFailures;
+    private final long offerSlowPaths;
+    private final long resizes;
+
+    private QueueStats(Queue<?> queue, boolean reset)
+    {
+        timestamp = System.nanoTime();
+        size = queue.size();
+        capacity = queue instanceof MessagePassingQueue ? ((MessagePassingQueue<?>) queue).capacity() :
+            UNBOUNDED_CAPACITY;
+        if (queue instanceof QueueProgressIndicators)
+        {
+            final QueueProgressIndicators indicators = (QueueProgressIndicators) queue;
+            producerIndex = indicators.currentProducerIndex();
+            consumerIndex = indicators.currentConsumerIndex();
+        }
+        else
+        {
+            producerIndex = -1;
+            consumerIndex = -1;
+        }
+        final QueueStatsRecorder recorder = queue instanceof QueueStatsRecorder.Source ?
+            ((QueueStatsRecorder.Source) queue).statsRecorder() : null;
+        recorded = recorder != null;
+        if (!recorded)
+        {
+            casFailures = offerFullFailures = offerSlowPaths = resizes = 0;
+        }
+        else if (reset)
+        {
+            casFailures = recorder.casFailures.getAndReset();
+            offerFullFailures = recorder.offerFullFailures.getAndReset();
+            offerSlowPaths = recorder.offerSlowPaths.getAndReset();
+            resizes = recorder.resizes.getAndReset();
+        }
+        else
+        {
+            casFailures = recorder.casFailures.get();
+            offerFullFailures = recorder.offerFullFailures.get();
+            offerSlowPaths = recorder.offerSlowPaths.get();
+            resizes = recorder.resizes.get();
+        }
+    }
+
+    /**
+     * Start recording events for the given queue. Recording is per queue instance and should be enabled before the
+     * queue is shared with other threads, events recorded before (or concurrently with) this call may be missed.
+     *
+     * @return true if the queue records events, false if it does not support recording
+     */
+    public static boolean enableRecording(Queue<?> queue)
+    {
+        if (queue instanceof QueueStatsRecorder.Source)
+        {
+            ((QueueStatsRecorder.Source) queue).enableStatsRecording();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return a sample of the current queue occupancy and of the events recorded since recording was enabled (or
+     * since the last {@link #sampleAndReset(Queue)})
+     */
+    public static QueueStats sample(Queue<?> queue)
+    {
+        return new QueueStats(queue, false);
+    }
+
+    /**
+     * Same as {@link #sample(Queue)}, but the event counts are reset, so consecutive calls sample the events
+     * recorded in between.
+     */
+    public static QueueStats sampleAndReset(Queue<?> queue)
+    {
+        return new QueueStats(queue, true);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the sample was taken
+     */
+    public long timestamp()
+    {
+        return timestamp;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the queue capacity, or {@link MessagePassingQueue#UNBOUNDED_CAPACITY} if not bounded (or unknown)
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return the queue producer index, or -1 if the queue does not implement {@link QueueProgressIndicators}
+     */
+    public long producerIndex()
+    {
+        return producerIndex;
+    }
+
+    /**
+     * @return the queue consumer index, or -1 if the queue does not implement {@link QueueProgressIndicators}
+     */
+    public long consumerIndex()
+    {
+        return consumerIndex;
+    }
+
+    /**
+     * @return true if the event counts were recorded for the queue, false if they are not available
+     */
+    public boolean isRecorded()
+    {
+        return recorded;
+    }
+
+    /**
+     * @return the number of failed CAS attempts on the producer/consumer indices
+     */
+    public long casFailures()
+    {
+        return casFailures;
+    }
+
+    /**
+     * @return the number of offers which failed because the queue was full
+     */
+    public long offerFullFailures()
+    {
+        return offerFullFailures;
+    }
+
+    /**
+     * @return the number of offers which took the slow path, e.g. to refresh a cached consumer index
+     */
+    public long offerSlowPaths()
+    {
+        return offerSlowPaths;
+    }
+
+    /**
+     * @return the number of buffers/chunks allocated by linked array queues
+     */
+    public long resizes()
+    {
+        return resizes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueueStats{" +
+            "size=" + size +
+            ", capacity=" + capacity +
+            ", producerIndex=" + producerIndex +
+            ", consumerIndex=" + consumerIndex +
+            ", casFailures=" + casFailures +
+            ", offerFullFailures=" + offerFullFailures +
+            ", offerSlowPaths=" + offerSlowPaths +
+            ", resizes=" + resizes +
+            '}';
+    }
+}
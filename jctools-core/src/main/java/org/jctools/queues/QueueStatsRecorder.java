@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.counters.Counter;
+import org.jctools.counters.CountersFactory;
+import org.jctools.util.InternalAPI;
+import org.jctools.util.PortableJvmInfo;
+
+/**
+ * Records contention and capacity events for a queue into striped counters. Recording is opt-in per queue instance,
+ * see {@link QueueStats#enableRecording(java.util.Queue)}. Until enabled a queue has no recorder and the static record
+ * methods, which are only called off the fast paths, reduce to a null check.<br>
+ * The recorded counts are read via {@link QueueStats#sample(java.util.Queue)}.
+ */
+@InternalAPI
+public final class QueueStatsRecorder
+{
+    private static final int STRIPES = Math.min(PortableJvmInfo.CPUs, 16);
+
+    /**
+     * Implemented by the queues which record {@link QueueStats}.
+     */
+    public interface Source
+    {
+        /**
+         * @return the recorder for this queue, or null if recording is not enabled
+         */
+        QueueStatsRecorder statsRecorder();
+
+        /**
+         * Start recording events for this queue. Recording should be enabled before the queue is shared with other
+         * threads, as the recorder is published with a plain store and earlier events are not counted.
+         *
+         * @return the recorder for this queue
+         */
+        QueueStatsRecorder enableStatsRecording();
+    }
+
+    final Counter casFailures;
+    final Counter offerFullFailures;
+    final Counter offerSlowPaths;
+    final Counter resizes;
+
+    public QueueStatsRecorder()
+    {
+        casFailures = CountersFactory.createFixedSizeStripedCounter(STRIPES);
+        offerFullFailures = CountersFactory.createFixedSizeStripedCounter(STRIPES);
+        offerSlowPaths = CountersFactory.createFixedSizeStripedCounter(STRIPES);
+        resizes = CountersFactory.createFixedSizeStripedCounter(STRIPES);
+    }
+
+    /**
+     * Record a failed CAS on a producer/consumer index. Always returns true so it can be chained after the failed
+     * CAS in a retry loop condition.
+     */
+    public static boolean recordCasFailure(QueueStatsRecorder recorder)
+    {
+        if (recorder != null)
+        {
+            recorder.casFailures.inc();
+        }
+        return true;
+    }
+
+    /**
+     * Record an offer which failed because the queue is full.
+     */
+    public static void recordOfferFull(QueueStatsRecorder recorder)
+    {
+        if (recorder != null)
+        {
+            recorder.offerFullFailures.inc();
+        }
+    }
+
+    /**
+     * Record an offer which had to take the slow path (e.g. refresh the cached consumer index).
+     */
+    public static void recordOfferSlowPath(QueueStatsRecorder recorder)
+    {
+        if (recorder != null)
+        {
+            recorder.offerSlowPaths.inc();
+        }
+    }
+
+    /**
+     * Record the allocation of a new buffer/chunk by a linked array queue.
+     */
+    public static void recordResize(QueueStatsRecorder recorder)
+    {
+        if (recorder != null)
+        {
+            recorder.resizes.inc();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+/**
+ * A {@link MessagePassingQueue.ExitCondition} which keeps running until {@link #stop()} is called, from any
+ * thread.
+ */
+public final class RunFlag implements MessagePassingQueue.ExitCondition
+{
+    private volatile boolean running = true;
+
+    @Override
+    public boolean keepRunning()
+    {
+        return running;
+    }
+
+    public void stop()
+    {
+        running = false;
+    }
+}
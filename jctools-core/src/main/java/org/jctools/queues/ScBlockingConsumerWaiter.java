@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+/**
+ * Parks and wakes up the single consumer of a blocking queue. The parked consumer thread is published in a
+ * volatile field which producers check after offering, so no unpark is issued unless the consumer is parked.
+ * <p>
+ * The consumer publishes itself and then polls the queue, the producers publish an element and then check for a
+ * parked consumer. For this to work the producers must have a StoreLoad barrier between the two, which is
+ * provided by a CAS on the producer index for multi producer queues, or by {@link #fenceAndSignal()}.
+ */
+final class ScBlockingConsumerWaiter
+{
+    private final static long WAITER_OFFSET = fieldOffset(ScBlockingConsumerWaiter.class, "waiter");
+
+    private volatile Thread waiter;
+    private volatile int fence;
+
+    /**
+     * Wake up the consumer, if parked. To be called by producers after offering, where the offer is followed by
+     * a StoreLoad barrier.
+     */
+    void signal()
+    {
+        final Thread waiter = this.waiter;
+        if (waiter != null)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Wake up the consumer, if parked. To be called by producers after offering, where the offer is not followed
+     * by a StoreLoad barrier.
+     */
+    void fenceAndSignal()
+    {
+        fence = 0; // StoreLoad
+        signal();
+    }
+
+    /**
+     * Poll the queue, waiting for an element as required.
+     *
+     * @param timed if false wait until an element is available, otherwise wait up to <i>nanos</i>
+     * @return the polled element, or null if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    <E> E take(MessagePassingQueue<E> q, boolean timed, long nanos) throws InterruptedException
+    {
+        E e = q.poll();
+        if (e != null || (timed && nanos <= 0))
+        {
+            return e;
+        }
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (int i = 0; BlockingQueueUtil.spinThenYield(i); i++)
+        {
+            if ((e = q.poll()) != null)
+            {
+                return e;
+            }
+        }
+        waiter = Thread.currentThread(); // StoreLoad
+        try
+        {
+            while ((e = q.poll()) == null)
+            {
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+                if (timed)
+                {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                    {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                else
+                {
+                    LockSupport.park(this);
+                }
+            }
+            return e;
+        }
+        finally
+        {
+            // a late signal will at worst leave a spurious permit
+            UNSAFE.putOrderedObject(this, WAITER_OFFSET, null);
+        }
+    }
+}
@@ -15,6 +15,7 @@ package org.jctools.queues;
 
 import org.jctools.util.PortableJvmInfo;
 
+import static org.jctools.queues.QueueStatsRecorder.*;
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 import static org.jctools.util.UnsafeAccess.fieldOffset;
 import static org.jctools.util.UnsafeRefArrayAccess.*;
@@ -165,6 +166,7 @@ public class SpmcArrayQueue<E> extends SpmcArrayQueueL3Pad<E>
 
             if (size > mask)
             {
+                recordOfferFull(stats);
                 return false;
             }
             else
@@ -205,7 +207,7 @@ public class SpmcArrayQueue<E> extends SpmcArrayQueueL3Pad<E>
                 }
             }
         }
-        while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + 1));
+        while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + 1) && recordCasFailure(stats));
         // consumers are gated on latest visible tail, and so can't see a null value in the queue or overtake
         // and wrap to hit same location.
         return removeElement(buffer, currentConsumerIndex, mask);
@@ -337,7 +339,8 @@ public class SpmcArrayQueue<E> extends SpmcArrayQueueL3Pad<E>
             int remaining = (int) (currProducerIndexCache - currentConsumerIndex);
             adjustedLimit = Math.min(remaining, limit);
         }
-        while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + adjustedLimit));
+        while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + adjustedLimit) &&
+            recordCasFailure(stats));
 
         for (int i = 0; i < adjustedLimit; i++)
         {
@@ -368,6 +371,24 @@ public class SpmcArrayQueue<E> extends SpmcArrayQueueL3Pad<E>
         return limit;
     }
 
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len)
+    {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(final Consumer<E> c, final WaitStrategy w, final ExitCondition exit)
     {
@@ -398,7 +419,7 @@ public class SpmcArrayQueue<E> extends SpmcArrayQueueL3Pad<E>
                 if (null != lvElement(buffer, offset))
                 {// LoadLoad
                     counter = w.idle(counter);
-                    continue;
+                    break; // check the exit condition after idling
                 }
                 producerIndex++;
                 counter = 0;
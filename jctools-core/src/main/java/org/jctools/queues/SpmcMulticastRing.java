@@ -0,0 +1,445 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.util.Pow2;
+
+import java.util.Arrays;
+
+import static org.jctools.queues.CircularArrayOffsetCalculator.calcElementOffset;
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+import static org.jctools.util.UnsafeRefArrayAccess.lpElement;
+import static org.jctools.util.UnsafeRefArrayAccess.lvElement;
+import static org.jctools.util.UnsafeRefArrayAccess.soElement;
+import static org.jctools.util.UnsafeRefArrayAccess.spElement;
+
+abstract class SpmcMulticastRingL0Pad<E>
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+}
+
+abstract class SpmcMulticastRingColdFields<E> extends SpmcMulticastRingL0Pad<E>
+{
+    private final static long SUBSCRIBERS_OFFSET = fieldOffset(SpmcMulticastRingColdFields.class, "subscribers");
+    static final SpmcMulticastRing.Subscriber[] NO_SUBSCRIBERS = new SpmcMulticastRing.Subscriber[0];
+
+    protected final E[] buffer;
+    protected final long mask;
+    protected final boolean lossy;
+    private volatile SpmcMulticastRing.Subscriber<E>[] subscribers;
+
+    @SuppressWarnings("unchecked")
+    SpmcMulticastRingColdFields(int capacity, boolean lossy)
+    {
+        int actualCapacity = Pow2.roundToPowerOfTwo(capacity);
+        mask = actualCapacity - 1;
+        buffer = CircularArrayOffsetCalculator.allocate(actualCapacity);
+        this.lossy = lossy;
+        subscribers = NO_SUBSCRIBERS;
+    }
+
+    final SpmcMulticastRing.Subscriber<E>[] lvSubscribers()
+    {
+        return subscribers;
+    }
+
+    final boolean casSubscribers(SpmcMulticastRing.Subscriber<E>[] expect, SpmcMulticastRing.Subscriber<E>[] newValue)
+    {
+        return UNSAFE.compareAndSwapObject(this, SUBSCRIBERS_OFFSET, expect, newValue);
+    }
+}
+
+abstract class SpmcMulticastRingL1Pad<E> extends SpmcMulticastRingColdFields<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpmcMulticastRingL1Pad(int capacity, boolean lossy)
+    {
+        super(capacity, lossy);
+    }
+}
+
+// $gen:ordered-fields
+abstract class SpmcMulticastRingProducerFields<E> extends SpmcMulticastRingL1Pad<E>
+{
+    private final static long P_INDEX_OFFSET = fieldOffset(SpmcMulticastRingProducerFields.class, "producerIndex");
+
+    private volatile long producerIndex;
+    protected long producerLimit;
+
+    SpmcMulticastRingProducerFields(int capacity, boolean lossy)
+    {
+        super(capacity, lossy);
+    }
+
+    final long lvProducerIndex()
+    {
+        return producerIndex;
+    }
+
+    final long lpProducerIndex()
+    {
+        return UNSAFE.getLong(this, P_INDEX_OFFSET);
+    }
+
+    final void soProducerIndex(final long newValue)
+    {
+        UNSAFE.putOrderedLong(this, P_INDEX_OFFSET, newValue);
+    }
+}
+
+abstract class SpmcMulticastRingL2Pad<E> extends SpmcMulticastRingProducerFields<E>
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpmcMulticastRingL2Pad(int capacity, boolean lossy)
+    {
+        super(capacity, lossy);
+    }
+}
+
+abstract class SpmcMulticastRingSubscriberL0Pad
+{
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+}
+
+// $gen:ordered-fields
+abstract class SpmcMulticastRingSubscriberIndexField extends SpmcMulticastRingSubscriberL0Pad
+{
+    private final static long INDEX_OFFSET = fieldOffset(SpmcMulticastRingSubscriberIndexField.class, "index");
+
+    private volatile long index;
+
+    final long lvIndex()
+    {
+        return index;
+    }
+
+    final long lpIndex()
+    {
+        return UNSAFE.getLong(this, INDEX_OFFSET);
+    }
+
+    final void soIndex(final long newValue)
+    {
+        UNSAFE.putOrderedLong(this, INDEX_OFFSET, newValue);
+    }
+}
+
+abstract class SpmcMulticastRingSubscriberL1Pad extends SpmcMulticastRingSubscriberIndexField
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * A Single-Producer-Multi-Consumer broadcast ring backed by a pre-allocated buffer: every element offered by the
+ * producer is seen by every {@link Subscriber}, each of which tracks its own position in the ring. Where a
+ * queue per consumer costs an offer (and a copy of the reference) per consumer, the ring costs one.
+ * <p>
+ * Subscribers are created with {@link #subscribe()}, see only the elements offered after subscribing, and are
+ * each used by a single consumer thread. In the default lossless mode the producer is gated on the slowest
+ * subscriber: {@link #offer(Object)} fails once an element would overwrite one a subscriber has yet to read.
+ * In lossy mode the producer never waits, and a subscriber which falls more than the capacity behind skips
+ * the overwritten elements, as counted by {@link Subscriber#lostCount()}.
+ * <p>
+ * Since no single consumer can clear a slot, the ring holds on to up to capacity of the latest elements until
+ * they are overwritten.
+ * <p>
+ * This implementation is wait free for the producer and the subscribers, subscribing and closing are lock free.
+ *
+ * @param <E>
+ */
+public class SpmcMulticastRing<E> extends SpmcMulticastRingL2Pad<E>
+{
+    /**
+     * A lossless ring, the producer is gated on the slowest subscriber.
+     *
+     * @param capacity the ring capacity, rounded up to the next power of 2
+     */
+    public SpmcMulticastRing(int capacity)
+    {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity the ring capacity, rounded up to the next power of 2
+     * @param lossy true if the producer should overwrite elements slow subscribers have yet to read rather than
+     *              wait for them
+     */
+    public SpmcMulticastRing(int capacity, boolean lossy)
+    {
+        super(Math.max(2, capacity), lossy);
+        producerLimit = lossy ? Long.MAX_VALUE : 0;
+    }
+
+    /**
+     * Publish an element to all current subscribers. Called from the producer thread only.
+     *
+     * @param e not null, will throw NPE if it is
+     * @return true if published, false if (in lossless mode) a subscriber has yet to read the element it would
+     * overwrite
+     */
+    public boolean offer(final E e)
+    {
+        if (null == e)
+        {
+            throw new NullPointerException();
+        }
+        final long pIndex = lpProducerIndex();
+        if (pIndex >= producerLimit && !recalculateProducerLimit(pIndex))
+        {
+            return false;
+        }
+        final long offset = calcElementOffset(pIndex, mask);
+        if (lossy)
+        {
+            // subscribers detect an overwrite from the producer index, it must be visible before the element
+            soElement(buffer, offset, e);
+        }
+        else
+        {
+            spElement(buffer, offset, e);
+        }
+        soProducerIndex(pIndex + 1); // StoreStore
+        return true;
+    }
+
+    private boolean recalculateProducerLimit(long pIndex)
+    {
+        long minIndex = pIndex;
+        for (Subscriber<E> s : lvSubscribers())
+        {
+            minIndex = Math.min(minIndex, s.lvIndex());
+        }
+        final long producerLimit = minIndex + mask + 1;
+        this.producerLimit = producerLimit;
+        return pIndex < producerLimit;
+    }
+
+    /**
+     * Create a subscriber which sees the elements offered from now on. Thread safe.
+     *
+     * @return a new subscriber, to be used by a single consumer thread
+     */
+    @SuppressWarnings("unchecked")
+    public Subscriber<E> subscribe()
+    {
+        final Subscriber<E> s = new Subscriber<E>(this);
+        // the producer may see the subscriber as soon as it is added, it must gate on a sane index
+        s.soIndex(lvProducerIndex());
+        Subscriber<E>[] current;
+        Subscriber<E>[] next;
+        do
+        {
+            current = lvSubscribers();
+            next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = s;
+        }
+        while (!casSubscribers(current, next));
+        // A producer not yet aware of the subscriber computed its limit from an index no later than this one,
+        // so it will look again before overwriting any element from here on.
+        final long start = lvProducerIndex();
+        s.producerIndexCache = start;
+        s.soIndex(start);
+        return s;
+    }
+
+    @SuppressWarnings("unchecked")
+    boolean unsubscribe(Subscriber<E> s)
+    {
+        Subscriber<E>[] current;
+        Subscriber<E>[] next;
+        do
+        {
+            current = lvSubscribers();
+            int i = 0;
+            while (i < current.length && current[i] != s)
+            {
+                i++;
+            }
+            if (i == current.length)
+            {
+                return false;
+            }
+            next = current.length == 1 ? NO_SUBSCRIBERS : new Subscriber[current.length - 1];
+            System.arraycopy(current, 0, next, 0, i);
+            System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+        }
+        while (!casSubscribers(current, next));
+        return true;
+    }
+
+    public int subscriberCount()
+    {
+        return lvSubscribers().length;
+    }
+
+    public int capacity()
+    {
+        return (int) (mask + 1);
+    }
+
+    public boolean isLossy()
+    {
+        return lossy;
+    }
+
+    /**
+     * @return the number of elements offered so far
+     */
+    public long currentProducerIndex()
+    {
+        return lvProducerIndex();
+    }
+
+    /**
+     * A cursor into the ring for a single consumer thread. All methods other than {@link #lag()} and
+     * {@link #close()} are to be called from that thread only.
+     */
+    public static final class Subscriber<E> extends SpmcMulticastRingSubscriberL1Pad
+    {
+        private final SpmcMulticastRing<E> ring;
+        private long producerIndexCache;
+        private long lostCount;
+
+        Subscriber(SpmcMulticastRing<E> ring)
+        {
+            this.ring = ring;
+        }
+
+        /**
+         * @return the next element in the ring, or null if this subscriber has seen all offered elements
+         */
+        public E poll()
+        {
+            final SpmcMulticastRing<E> ring = this.ring;
+            if (ring.lossy)
+            {
+                return lossyPoll(ring);
+            }
+            final long index = lpIndex();
+            if (index >= producerIndexCache)
+            {
+                final long pIndex = ring.lvProducerIndex(); // LoadLoad
+                producerIndexCache = pIndex;
+                if (index >= pIndex)
+                {
+                    return null;
+                }
+            }
+            final E e = lpElement(ring.buffer, calcElementOffset(index, ring.mask));
+            soIndex(index + 1); // the producer may overwrite the slot from here on
+            return e;
+        }
+
+        private E lossyPoll(SpmcMulticastRing<E> ring)
+        {
+            final E[] buffer = ring.buffer;
+            final long mask = ring.mask;
+            long index = lpIndex();
+            long pIndex = ring.lvProducerIndex();
+            while (index < pIndex)
+            {
+                // the producer may be overwriting the slot of index pIndex - capacity
+                final long oldestIndex = pIndex - mask;
+                if (index < oldestIndex)
+                {
+                    lostCount += oldestIndex - index;
+                    index = oldestIndex;
+                }
+                final E e = lvElement(buffer, calcElementOffset(index, mask)); // LoadLoad
+                pIndex = ring.lvProducerIndex();
+                if (index >= pIndex - mask)
+                {
+                    soIndex(index + 1);
+                    return e;
+                }
+                // overwritten as we read it, skip ahead
+            }
+            return null;
+        }
+
+        /**
+         * Hand up to <i>limit</i> elements to the consumer, as repeated {@link #poll()} calls would.
+         *
+         * @return the number of elements consumed
+         */
+        public int drain(MessagePassingQueue.Consumer<E> c, int limit)
+        {
+            final SpmcMulticastRing<E> ring = this.ring;
+            if (ring.lossy)
+            {
+                int i = 0;
+                E e;
+                for (; i < limit && (e = lossyPoll(ring)) != null; i++)
+                {
+                    c.accept(e);
+                }
+                return i;
+            }
+            final E[] buffer = ring.buffer;
+            final long mask = ring.mask;
+            final long index = lpIndex();
+            long pIndex = producerIndexCache;
+            if (pIndex - index < limit)
+            {
+                pIndex = ring.lvProducerIndex(); // LoadLoad
+                producerIndexCache = pIndex;
+            }
+            final int n = (int) Math.min(limit, pIndex - index);
+            for (int i = 0; i < n; i++)
+            {
+                final long nextIndex = index + i;
+                final E e = lpElement(buffer, calcElementOffset(nextIndex, mask));
+                soIndex(nextIndex + 1);
+                c.accept(e);
+            }
+            return Math.max(n, 0);
+        }
+
+        /**
+         * @return the number of elements this subscriber skipped as they were overwritten before it read them,
+         * always 0 in lossless mode
+         */
+        public long lostCount()
+        {
+            return lostCount;
+        }
+
+        /**
+         * @return the number of offered elements this subscriber has yet to see, at most capacity in lossless mode
+         */
+        public long lag()
+        {
+            return Math.max(0, ring.lvProducerIndex() - lvIndex());
+        }
+
+        /**
+         * Stop following the ring, the producer no longer waits on this subscriber. The subscriber is not to be
+         * used after closing.
+         *
+         * @return false if already closed
+         */
+        public boolean close()
+        {
+            return ring.unsubscribe(this);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+/**
+ * An SPMC array queue which starts at <i>chunkSize</i> and grows indefinitely in linked chunks of the same size.
+ * The queue grows only when the current chunk is full and elements are not copied on resize, instead a link to the
+ * new chunk is stored in the old chunk for the consumers to follow. Consumed chunks are pooled and reused by the
+ * producer.<br>
+ * The single producer publishes the producer index with an ordered store, no CAS is required on the producer side.
+ *
+ * @param <E>
+ */
+public class SpmcUnboundedArrayQueue<E> extends BaseMcUnboundedArrayQueue<E>
+{
+    long p0, p1, p2, p3, p4, p5, p6, p7;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    public SpmcUnboundedArrayQueue(int chunkSize)
+    {
+        this(chunkSize, 2);
+    }
+
+    public SpmcUnboundedArrayQueue(int chunkSize, int maxPooledChunks)
+    {
+        super(chunkSize, maxPooledChunks);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single producer thread use only.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        if (null == e)
+        {
+            throw new NullPointerException();
+        }
+        final long pIndex = lpProducerIndex();
+        final long index = pIndex >> 1;
+        McUnboundedArrayChunk<E> pChunk = lvProducerChunk();
+        if ((index & chunkMask) == 0 && index != 0)
+        {
+            pChunk = appendNextChunk(pChunk, index >> chunkShift);
+        }
+        writeElement(pChunk, index, e);
+        soProducerIndex(pIndex + 2);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single producer thread use only. The producer index is only published
+     * once all elements are written.
+     */
+    @Override
+    public int fill(Supplier<E> s, int limit)
+    {
+        final int chunkMask = this.chunkMask;
+        long pIndex = lpProducerIndex();
+        McUnboundedArrayChunk<E> pChunk = lvProducerChunk();
+        for (int i = 0; i < limit; i++)
+        {
+            final long index = pIndex >> 1;
+            if ((index & chunkMask) == 0 && index != 0)
+            {
+                pChunk = appendNextChunk(pChunk, index >> chunkShift);
+            }
+            writeElement(pChunk, index, s.get());
+            pIndex += 2;
+        }
+        soProducerIndex(pIndex);
+        return limit;
+    }
+}
@@ -13,6 +13,9 @@
  */
 package org.jctools.queues;
 
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import static org.jctools.util.UnsafeAccess.UNSAFE;
 import static org.jctools.util.UnsafeAccess.fieldOffset;
 import static org.jctools.util.UnsafeRefArrayAccess.lvElement;
@@ -166,6 +169,7 @@ public class SpscArrayQueue<E> extends SpscArrayQueueL3Pad<E>
         if (producerIndex >= producerLimit &&
             !offerSlowPath(buffer, mask, producerIndex))
         {
+            recordOfferFull(stats);
             return false;
         }
         final long offset = calcElementOffset(producerIndex, mask);
@@ -177,6 +181,7 @@ public class SpscArrayQueue<E> extends SpscArrayQueueL3Pad<E>
 
     private boolean offerSlowPath(final E[] buffer, final long mask, final long producerIndex)
     {
+        recordOfferSlowPath(stats);
         final int lookAheadStep = this.lookAheadStep;
         if (null == lvElement(buffer, calcElementOffset(producerIndex + lookAheadStep, mask)))
         {// LoadLoad
@@ -317,6 +322,81 @@ public class SpscArrayQueue<E> extends SpscArrayQueueL3Pad<E>
         return limit;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single producer thread use only. The producer index is published once
+     * for the whole batch.
+     */
+    @Override
+    public int offer(final E[] src, final int off, final int len)
+    {
+        checkOfferBatch(src, off, len);
+        // local load of field to avoid repeated loads after volatile reads
+        final E[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long producerIndex = this.lpProducerIndex();
+
+        int batch = len;
+        if (producerIndex + len > producerLimit)
+        {
+            // the consumer nulls the slots before moving the consumer index, all slots up to it are free
+            final long limit = lvConsumerIndex() + mask + 1; // LoadLoad
+            producerLimit = limit;
+            batch = (int) Math.min(len, limit - producerIndex);
+            if (batch <= 0)
+            {
+                return 0;
+            }
+        }
+        for (int i = 0; i < batch; i++)
+        {
+            final long offset = calcElementOffset(producerIndex + i, mask);
+            soElement(buffer, offset, src[off + i]); // StoreStore
+        }
+        soProducerIndex(producerIndex + batch); // ordered store -> atomic and ordered for size()
+        return batch;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only. The consumer index is published once
+     * for the whole batch.
+     */
+    @Override
+    public int poll(final E[] dst, final int off, final int len)
+    {
+        checkPollBatch(dst, off, len);
+        final E[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long consumerIndex = this.lpConsumerIndex();
+
+        int i = 0;
+        for (; i < len; i++)
+        {
+            final long offset = calcElementOffset(consumerIndex + i, mask);
+            final E e = lvElement(buffer, offset);// LoadLoad
+            if (null == e)
+            {
+                break;
+            }
+            soElement(buffer, offset, null);// StoreStore
+            dst[off + i] = e;
+        }
+        if (i != 0)
+        {
+            soConsumerIndex(consumerIndex + i); // ordered store -> atomic and ordered for size()
+        }
+        return i;
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w)
+    {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(final Consumer<E> c, final WaitStrategy w, final ExitCondition exit)
     {
@@ -334,7 +414,7 @@ public class SpscArrayQueue<E> extends SpscArrayQueueL3Pad<E>
                 if (null == e)
                 {
                     counter = w.idle(counter);
-                    continue;
+                    break; // check the exit condition after idling
                 }
                 consumerIndex++;
                 counter = 0;
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import org.jctools.util.PortableJvmInfo;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BlockingQueue} on top of {@link SpscArrayQueue}, so only a single producer and a single consumer thread may use it.
+ * <p>
+ * Blocked consumers spin, then yield, then park. Producers only wake up the consumer when it is parked,
+ * which is checked with a volatile read after a StoreLoad barrier on each offer.<br>
+ * Producers blocked on a full queue are not signalled by the consumer, they idle using the
+ * {@link WaitStrategy} the queue was created with (by default: spin, then yield, then park with back off).
+ *
+ * @param <E>
+ */
+public class SpscBlockingQueue<E> extends SpscArrayQueue<E> implements BlockingQueue<E>
+{
+    private final ScBlockingConsumerWaiter consumerWaiter = new ScBlockingConsumerWaiter();
+    private final WaitStrategy offerWait;
+
+    public SpscBlockingQueue(final int capacity)
+    {
+        this(capacity, BlockingQueueUtil.BACKOFF_WAIT);
+    }
+
+    /**
+     * @param capacity  the queue capacity
+     * @param offerWait the wait strategy used by producers blocked on a full queue
+     */
+    public SpscBlockingQueue(final int capacity, final WaitStrategy offerWait)
+    {
+        super(capacity);
+        if (null == offerWait)
+        {
+            throw new NullPointerException();
+        }
+        this.offerWait = offerWait;
+    }
+
+    @Override
+    public boolean offer(final E e)
+    {
+        if (super.offer(e))
+        {
+            consumerWaiter.fenceAndSignal();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int fill(Supplier<E> s, int limit)
+    {
+        final int filled = super.fill(s, limit);
+        if (filled != 0)
+        {
+            consumerWaiter.fenceAndSignal();
+        }
+        return filled;
+    }
+
+    @Override
+    public int offer(E[] src, int off, int len)
+    {
+        final int offered = super.offer(src, off, len);
+        if (offered != 0)
+        {
+            consumerWaiter.fenceAndSignal();
+        }
+        return offered;
+    }
+
+    @Override
+    public void fill(Supplier<E> s, WaitStrategy w, ExitCondition exit)
+    {
+        int idleCounter = 0;
+        while (exit.keepRunning())
+        {
+            if (fill(s, PortableJvmInfo.RECOMENDED_OFFER_BATCH) == 0)
+            {
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException
+    {
+        BlockingQueueUtil.offer(this, e, offerWait, false, 0L);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return BlockingQueueUtil.offer(this, e, offerWait, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only.
+     */
+    @Override
+    public E take() throws InterruptedException
+    {
+        return consumerWaiter.take(this, false, 0L);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only.
+     */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return consumerWaiter.take(this, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return BlockingQueueUtil.remainingCapacity(this);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        return BlockingQueueUtil.drainTo(this, c, maxElements);
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jctools.queues;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+
+abstract class SpscLongArrayQueueColdField extends ConcurrentCircularLongArrayQueue
+{
+    final int lookAheadStep;
+
+    SpscLongArrayQueueColdField(int capacity, long emptyValue)
+    {
+        super(capacity, emptyValue);
+        lookAheadStep = Math.min(capacity() / 4, SpscArrayQueueColdField.MAX_LOOK_AHEAD_STEP);
+    }
+}
+
+abstract class SpscLongArrayQueueL1Pad extends SpscLongArrayQueueColdField
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpscLongArrayQueueL1Pad(int capacity, long emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class SpscLongArrayQueueProducerIndexFields extends SpscLongArrayQueueL1Pad
+{
+    private final static long P_INDEX_OFFSET = fieldOffset(SpscLongArrayQueueProducerIndexFields.class, "producerIndex");
+
+    private volatile long producerIndex;
+    protected long producerLimit;
+
+    SpscLongArrayQueueProducerIndexFields(int capacity, long emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    @Override
+    public final long lvProducerIndex()
+    {
+        return producerIndex;
+    }
+
+    final long lpProducerIndex()
+    {
+        return UNSAFE.getLong(this, P_INDEX_OFFSET);
+    }
+
+    final void soProducerIndex(final long newValue)
+    {
+        UNSAFE.putOrderedLong(this, P_INDEX_OFFSET, newValue);
+    }
+}
+
+abstract class SpscLongArrayQueueL2Pad extends SpscLongArrayQueueProducerIndexFields
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpscLongArrayQueueL2Pad(int capacity, long emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+abstract class SpscLongArrayQueueConsumerIndexField extends SpscLongArrayQueueL2Pad
+{
+    private final static long C_INDEX_OFFSET = fieldOffset(SpscLongArrayQueueConsumerIndexField.class, "consumerIndex");
+
+    private volatile long consumerIndex;
+
+    SpscLongArrayQueueConsumerIndexField(int capacity, long emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+
+    @Override
+    public final long lvConsumerIndex()
+    {
+        return consumerIndex;
+    }
+
+    final long lpConsumerIndex()
+    {
+        return UNSAFE.getLong(this, C_INDEX_OFFSET);
+    }
+
+    final void soConsumerIndex(final long newValue)
+    {
+        UNSAFE.putOrderedLong(this, C_INDEX_OFFSET, newValue);
+    }
+}
+
+abstract class SpscLongArrayQueueL3Pad extends SpscLongArrayQueueConsumerIndexField
+{
+    long p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpscLongArrayQueueL3Pad(int capacity, long emptyValue)
+    {
+        super(capacity, emptyValue);
+    }
+}
+
+/**
+ * A Single-Producer-Single-Consumer queue of long values backed by a pre-allocated long[] buffer. This is the
+ * primitive counterpart of {@link SpscArrayQueue} and uses the same algorithm, with the queue empty value in place
+ * of null as the empty slot marker.
+ */
+public class SpscLongArrayQueue extends SpscLongArrayQueueL3Pad
+{
+    /**
+     * A queue using {@link Long#MIN_VALUE} as the empty value.
+     */
+    public SpscLongArrayQueue(final int capacity)
+    {
+        this(capacity, Long.MIN_VALUE);
+    }
+
+    /**
+     * @param emptyValue the value returned by poll/peek when the queue is empty, cannot be offered
+     */
+    public SpscLongArrayQueue(final int capacity, final long emptyValue)
+    {
+        super(Math.max(capacity, 4), emptyValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single producer thread use only.
+     */
+    @Override
+    public boolean offer(final long e)
+    {
+        checkNotEmptyValue(e);
+        // local load of field to avoid repeated loads after volatile reads
+        final long[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long producerIndex = this.lpProducerIndex();
+
+        if (producerIndex >= producerLimit &&
+            !offerSlowPath(buffer, mask, producerIndex))
+        {
+            return false;
+        }
+        final long offset = calcElementOffset(producerIndex, mask);
+
+        soElement(buffer, offset, e); // StoreStore
+        soProducerIndex(producerIndex + 1); // ordered store -> atomic and ordered for size()
+        return true;
+    }
+
+    private boolean offerSlowPath(final long[] buffer, final long mask, final long producerIndex)
+    {
+        final int lookAheadStep = this.lookAheadStep;
+        if (emptyValue == lvElement(buffer, calcElementOffset(producerIndex + lookAheadStep, mask)))
+        {// LoadLoad
+            producerLimit = producerIndex + lookAheadStep;
+        }
+        else
+        {
+            final long offset = calcElementOffset(producerIndex, mask);
+            if (emptyValue != lvElement(buffer, offset))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only.
+     */
+    @Override
+    public long poll()
+    {
+        final long consumerIndex = this.lpConsumerIndex();
+        final long offset = calcElementOffset(consumerIndex, mask);
+        // local load of field to avoid repeated loads after volatile reads
+        final long[] buffer = this.buffer;
+        final long e = lvElement(buffer, offset);// LoadLoad
+        if (emptyValue == e)
+        {
+            return emptyValue;
+        }
+        soElement(buffer, offset, emptyValue);// StoreStore
+        soConsumerIndex(consumerIndex + 1); // ordered store -> atomic and ordered for size()
+        return e;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only.
+     */
+    @Override
+    public long peek()
+    {
+        return lvElement(buffer, calcElementOffset(lpConsumerIndex(), mask));
+    }
+
+    @Override
+    public boolean relaxedOffer(final long e)
+    {
+        return offer(e);
+    }
+
+    @Override
+    public long relaxedPoll()
+    {
+        return poll();
+    }
+
+    @Override
+    public long relaxedPeek()
+    {
+        return peek();
+    }
+
+    @Override
+    public int fill(final LongSupplier s)
+    {
+        return fill(s, capacity());
+    }
+
+    @Override
+    public int drain(final LongConsumer c, final int limit)
+    {
+        final long[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long emptyValue = this.emptyValue;
+        final long consumerIndex = this.lpConsumerIndex();
+
+        for (int i = 0; i < limit; i++)
+        {
+            final long index = consumerIndex + i;
+            final long offset = calcElementOffset(index, mask);
+            final long e = lvElement(buffer, offset);// LoadLoad
+            if (emptyValue == e)
+            {
+                return i;
+            }
+            soElement(buffer, offset, emptyValue);// StoreStore
+            soConsumerIndex(index + 1); // ordered store -> atomic and ordered for size()
+            c.accept(e);
+        }
+        return limit;
+    }
+
+    @Override
+    public int fill(final LongSupplier s, final int limit)
+    {
+        final long[] buffer = this.buffer;
+        final long mask = this.mask;
+        final long emptyValue = this.emptyValue;
+        final int lookAheadStep = this.lookAheadStep;
+        final long producerIndex = this.lpProducerIndex();
+
+        for (int i = 0; i < limit; i++)
+        {
+            final long index = producerIndex + i;
+            final long lookAheadElementOffset = calcElementOffset(index + lookAheadStep, mask);
+            if (emptyValue == lvElement(buffer, lookAheadElementOffset))
+            {// LoadLoad
+                int lookAheadLimit = Math.min(lookAheadStep, limit - i);
+                for (int j = 0; j < lookAheadLimit; j++)
+                {
+                    final long offset = calcElementOffset(index + j, mask);
+                    soElement(buffer, offset, s.get()); // StoreStore
+                    soProducerIndex(index + j + 1); // ordered store -> atomic and ordered for size()
+                }
+                i += lookAheadLimit - 1;
+            }
+            else
+            {
+                final long offset = calcElementOffset(index, mask);
+                if (emptyValue != lvElement(buffer, offset))
+                {
+                    return i;
+                }
+                soElement(buffer, offset, s.get()); // StoreStore
+                soProducerIndex(index + 1); // ordered store -> atomic and ordered for size()
+            }
+        }
+        return limit;
+    }
+}
@@ -17,6 +17,7 @@ import org.jctools.queues.IndexedQueueSizeUtil;
 import org.jctools.queues.IndexedQueueSizeUtil.IndexedQueue;
 import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.QueueProgressIndicators;
+import org.jctools.queues.QueueStatsRecorder;
 import org.jctools.util.Pow2;
 
 import java.util.AbstractQueue;
@@ -24,10 +25,12 @@ import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
-abstract class AtomicReferenceArrayQueue<E> extends AbstractQueue<E> implements IndexedQueue, QueueProgressIndicators, MessagePassingQueue<E>
+abstract class AtomicReferenceArrayQueue<E> extends AbstractQueue<E> implements IndexedQueue, QueueProgressIndicators, MessagePassingQueue<E>,
+    QueueStatsRecorder.Source
 {
     protected final AtomicReferenceArray<E> buffer;
     protected final int mask;
+    protected QueueStatsRecorder stats;
 
     public AtomicReferenceArrayQueue(int capacity)
     {
@@ -36,6 +39,22 @@ abstract class AtomicReferenceArrayQueue<E> extends AbstractQueue<E> implements
         this.buffer = new AtomicReferenceArray<E>(actualCapacity);
     }
 
+    @Override
+    public final QueueStatsRecorder statsRecorder()
+    {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording()
+    {
+        if (stats == null)
+        {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
     @Override
     public Iterator<E> iterator()
     {
@@ -21,6 +21,7 @@ import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.MessagePassingQueue.Supplier;
 import org.jctools.queues.MessagePassingQueueUtil;
 import org.jctools.queues.QueueProgressIndicators;
+import org.jctools.queues.QueueStatsRecorder;
 import org.jctools.queues.IndexedQueueSizeUtil;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.*;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -259,6 +260,21 @@ abstract class BaseLinkedAtomicQueue<E> extends BaseLinkedAtomicQueuePad2<E> {
         return limit;
     }
 
+    @Override
+    public int offer(E[] src, int off, int len) {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len) {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy wait, ExitCondition exit) {
         LinkedQueueAtomicNode<E> chaserNode = this.lpConsumerNode();
@@ -268,7 +284,8 @@ abstract class BaseLinkedAtomicQueue<E> extends BaseLinkedAtomicQueuePad2<E> {
                 final LinkedQueueAtomicNode<E> nextNode = chaserNode.lvNext();
                 if (nextNode == null) {
                     idleCounter = wait.idle(idleCounter);
-                    continue;
+                    // check the exit condition after idling
+                    break;
                 }
                 idleCounter = 0;
                 // we have to null out the value because we are going to hang on to the node
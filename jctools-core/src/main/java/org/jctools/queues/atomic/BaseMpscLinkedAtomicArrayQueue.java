@@ -21,12 +21,16 @@ import java.util.AbstractQueue;
 import java.util.Iterator;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.length;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.modifiedCalcElementOffset;
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.MessagePassingQueue.Supplier;
 import org.jctools.queues.MessagePassingQueueUtil;
 import org.jctools.queues.QueueProgressIndicators;
+import org.jctools.queues.QueueStatsRecorder;
 import org.jctools.queues.IndexedQueueSizeUtil;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.*;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -154,7 +158,7 @@ abstract class BaseMpscLinkedAtomicArrayQueueColdProducerFields<E> extends BaseM
  *
  * @param <E>
  */
-public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAtomicArrayQueueColdProducerFields<E> implements MessagePassingQueue<E>, QueueProgressIndicators {
+public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAtomicArrayQueueColdProducerFields<E> implements MessagePassingQueue<E>, QueueProgressIndicators, QueueStatsRecorder.Source {
 
     // No post padding here, subclasses must add
     private static final Object JUMP = new Object();
@@ -167,6 +171,8 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
 
     private static final int QUEUE_RESIZE = 3;
 
+    private QueueStatsRecorder stats;
+
     /**
      * @param initialCapacity the queue initial capacity. If chunk size is fixed this will be the chunk size.
      *                        Must be 2 or more.
@@ -186,6 +192,19 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
         soProducerLimit(mask);
     }
 
+    @Override
+    public final QueueStatsRecorder statsRecorder() {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording() {
+        if (stats == null) {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
     @Override
     public final Iterator<E> iterator() {
         throw new UnsupportedOperationException();
@@ -258,6 +277,7 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
                     case RETRY:
                         continue;
                     case QUEUE_FULL:
+                        recordOfferFull(stats);
                         return false;
                     case QUEUE_RESIZE:
                         resize(mask, buffer, pIndex, e);
@@ -267,6 +287,7 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
             if (casProducerIndex(pIndex, pIndex + 2)) {
                 break;
             }
+            recordCasFailure(stats);
         }
         // INDEX visible before ELEMENT
         final int offset = modifiedCalcElementOffset(pIndex, mask);
@@ -340,10 +361,12 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
      * We do not inline resize into this method because we do not resize on fill.
      */
     private int offerSlowPath(long mask, long pIndex, long producerLimit) {
+        recordOfferSlowPath(stats);
         final long cIndex = lvConsumerIndex();
         long bufferCapacity = getCurrentBufferCapacity(mask);
         if (cIndex + bufferCapacity > pIndex) {
             if (!casProducerLimit(producerLimit, cIndex + bufferCapacity)) {
+                recordCasFailure(stats);
                 // retry from top
                 return RETRY;
             } else {
@@ -360,6 +383,7 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
             return QUEUE_RESIZE;
         } else {
             // failed resize attempt, retry from top
+            recordCasFailure(stats);
             return RETRY;
         }
     }
@@ -509,6 +533,7 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
                     case RETRY:
                         continue;
                     case QUEUE_FULL:
+                        recordOfferFull(stats);
                         return 0;
                     case QUEUE_RESIZE:
                         resize(mask, buffer, pIndex, s.get());
@@ -520,6 +545,7 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
                 claimedSlots = (int) ((batchIndex - pIndex) / 2);
                 break;
             }
+            recordCasFailure(stats);
         }
         for (int i = 0; i < claimedSlots; i++) {
             final int offset = modifiedCalcElementOffset(pIndex + 2 * i, mask);
@@ -528,6 +554,108 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
         return claimedSlots;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slots for the batch are claimed with a single CAS on the producer index. As with
+     * {@link #fill(Supplier, int)} only the slots visible to the current producer limit are claimed, and a batch
+     * which triggers a resize will only offer the first element.
+     */
+    @Override
+    public int offer(E[] src, int off, int len) {
+        checkOfferBatch(src, off, len);
+        if (len == 0) {
+            return 0;
+        }
+        long mask;
+        AtomicReferenceArray<E> buffer;
+        long pIndex;
+        int claimedSlots;
+        while (true) {
+            long producerLimit = lvProducerLimit();
+            pIndex = lvProducerIndex();
+            // lower bit is indicative of resize, if we see it we spin until it's cleared
+            if ((pIndex & 1) == 1) {
+                continue;
+            }
+            // pIndex is even (lower bit is 0) -> actual index is (pIndex >> 1)
+            // NOTE: mask/buffer may get changed by resizing -> only use for array access after successful CAS.
+            mask = this.producerMask;
+            buffer = this.producerBuffer;
+            // a successful CAS ties the ordering, lv(pIndex) -> [mask/buffer] -> cas(pIndex)
+            // we want 'len' slots, but will settle for whatever is visible to 'producerLimit'
+            long batchIndex = Math.min(producerLimit, pIndex + 2L * len);
+            if (pIndex >= producerLimit) {
+                int result = offerSlowPath(mask, pIndex, producerLimit);
+                switch(result) {
+                    case CONTINUE_TO_P_INDEX_CAS:
+                    // offer slow path verifies only one slot ahead, we cannot rely on indication here
+                    case RETRY:
+                        continue;
+                    case QUEUE_FULL:
+                        recordOfferFull(stats);
+                        return 0;
+                    case QUEUE_RESIZE:
+                        resize(mask, buffer, pIndex, src[off]);
+                        return 1;
+                }
+            }
+            // claim the batch slots at once
+            if (casProducerIndex(pIndex, batchIndex)) {
+                claimedSlots = (int) ((batchIndex - pIndex) / 2);
+                break;
+            }
+            recordCasFailure(stats);
+        }
+        for (int i = 0; i < claimedSlots; i++) {
+            final int offset = modifiedCalcElementOffset(pIndex + 2 * i, mask);
+            soElement(buffer, offset, src[off + i]);
+        }
+        return claimedSlots;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only. The consumer index is published once
+     * for each buffer the batch is taken from.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int poll(E[] dst, int off, int len) {
+        checkPollBatch(dst, off, len);
+        AtomicReferenceArray<E> buffer = consumerBuffer;
+        long index = lpConsumerIndex();
+        long mask = consumerMask;
+        int i = 0;
+        for (; i < len; i++) {
+            final int offset = modifiedCalcElementOffset(index, mask);
+            // LoadLoad
+            final Object e = lvElement(buffer, offset);
+            if (e == null) {
+                break;
+            }
+            if (e == JUMP) {
+                // release the elements taken from the old buffer before moving on
+                soConsumerIndex(index);
+                final AtomicReferenceArray<E> nextBuffer = getNextBuffer(buffer, mask);
+                dst[off + i] = newBufferPoll(nextBuffer, index);
+                buffer = nextBuffer;
+                mask = consumerMask;
+                index += 2;
+                continue;
+            }
+            spElement(buffer, offset, null);
+            dst[off + i] = (E) e;
+            index += 2;
+        }
+        if (i != 0) {
+            // release cIndex
+            soConsumerIndex(index);
+        }
+        return i;
+    }
+
     @Override
     public void fill(Supplier<E> s, WaitStrategy w, ExitCondition exit) {
         while (exit.keepRunning()) {
@@ -571,7 +699,49 @@ public abstract class BaseMpscLinkedAtomicArrayQueue<E> extends BaseMpscLinkedAt
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        AtomicReferenceArray<E> buffer = consumerBuffer;
+        long index = lpConsumerIndex();
+        long mask = consumerMask;
+        final long deadline = maxWaitNanos > 0 ? System.nanoTime() + maxWaitNanos : 0;
+        int idleCounter = 0;
+        int i = 0;
+        while (i < maxBatch) {
+            final int offset = modifiedCalcElementOffset(index, mask);
+            // LoadLoad
+            final Object e = lvElement(buffer, offset);
+            if (e == null) {
+                // the time is only read once the queue runs dry
+                if (maxWaitNanos <= 0 || System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+            final E m;
+            if (e == JUMP) {
+                final AtomicReferenceArray<E> nextBuffer = getNextBuffer(buffer, mask);
+                m = newBufferPoll(nextBuffer, index);
+                buffer = nextBuffer;
+                mask = consumerMask;
+            } else {
+                spElement(buffer, offset, null);
+                // ordered store -> atomic and ordered for size()
+                soConsumerIndex(index + 2);
+                m = (E) e;
+            }
+            index += 2;
+            c.accept(m);
+            i++;
+        }
+        return i;
+    }
+
     private void resize(long oldMask, AtomicReferenceArray<E> oldBuffer, long pIndex, E e) {
+        recordResize(stats);
         int newBufferLength = getNextBufferSize(oldBuffer);
         final AtomicReferenceArray<E> newBuffer = allocate(newBufferLength);
         producerBuffer = newBuffer;
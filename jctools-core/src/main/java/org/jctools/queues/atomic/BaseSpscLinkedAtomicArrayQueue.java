@@ -19,12 +19,14 @@ import java.util.AbstractQueue;
 import java.util.Iterator;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.length;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.nextArrayOffset;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.MessagePassingQueue.Supplier;
 import org.jctools.queues.MessagePassingQueueUtil;
 import org.jctools.queues.QueueProgressIndicators;
+import org.jctools.queues.QueueStatsRecorder;
 import org.jctools.queues.IndexedQueueSizeUtil;
 import static org.jctools.queues.atomic.LinkedAtomicArrayQueueUtil.*;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -129,10 +131,25 @@ abstract class BaseSpscLinkedAtomicArrayQueueProducerColdFields<E> extends BaseS
  * NOTE: This class was automatically generated by org.jctools.queues.atomic.JavaParsingAtomicLinkedQueueGenerator
  * which can found in the jctools-build module. The original source file is BaseSpscLinkedArrayQueue.java.
  */
-abstract class BaseSpscLinkedAtomicArrayQueue<E> extends BaseSpscLinkedAtomicArrayQueueProducerColdFields<E> implements MessagePassingQueue<E>, QueueProgressIndicators {
+abstract class BaseSpscLinkedAtomicArrayQueue<E> extends BaseSpscLinkedAtomicArrayQueueProducerColdFields<E> implements MessagePassingQueue<E>, QueueProgressIndicators, QueueStatsRecorder.Source {
 
     private static final Object JUMP = new Object();
 
+    private QueueStatsRecorder stats;
+
+    @Override
+    public final QueueStatsRecorder statsRecorder() {
+        return stats;
+    }
+
+    @Override
+    public final QueueStatsRecorder enableStatsRecording() {
+        if (stats == null) {
+            stats = new QueueStatsRecorder();
+        }
+        return stats;
+    }
+
     @Override
     public final Iterator<E> iterator() {
         throw new UnsupportedOperationException();
@@ -229,7 +246,9 @@ abstract class BaseSpscLinkedAtomicArrayQueue<E> extends BaseSpscLinkedAtomicArr
             if (index < producerBufferLimit) {
                 writeToQueue(buffer, s.get(), index, offset);
             } else {
+                recordOfferSlowPath(stats);
                 if (!offerColdPath(buffer, mask, index, offset, null, s)) {
+                    recordOfferFull(stats);
                     return i;
                 }
             }
@@ -237,6 +256,21 @@ abstract class BaseSpscLinkedAtomicArrayQueue<E> extends BaseSpscLinkedAtomicArr
         return limit;
     }
 
+    @Override
+    public int offer(E[] src, int off, int len) {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len) {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy wait, ExitCondition exit) {
         MessagePassingQueueUtil.drain(this, c, wait, exit);
@@ -276,7 +310,12 @@ abstract class BaseSpscLinkedAtomicArrayQueue<E> extends BaseSpscLinkedAtomicArr
             writeToQueue(buffer, e, index, offset);
             return true;
         }
-        return offerColdPath(buffer, mask, index, offset, e, null);
+        recordOfferSlowPath(stats);
+        if (!offerColdPath(buffer, mask, index, offset, e, null)) {
+            recordOfferFull(stats);
+            return false;
+        }
+        return true;
     }
 
     abstract boolean offerColdPath(AtomicReferenceArray<E> buffer, long mask, long pIndex, int offset, E v, Supplier<? extends E> s);
@@ -329,6 +368,7 @@ abstract class BaseSpscLinkedAtomicArrayQueue<E> extends BaseSpscLinkedAtomicArr
     }
 
     final void linkOldToNew(final long currIndex, final AtomicReferenceArray<E> oldBuffer, final int offset, final AtomicReferenceArray<E> newBuffer, final int offsetInNew, final E e) {
+        recordResize(stats);
         // StoreStore
         soElement(newBuffer, offsetInNew, e);
         // link to next buffer and add next indicator as element of old buffer
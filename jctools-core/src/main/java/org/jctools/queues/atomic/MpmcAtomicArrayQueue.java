@@ -15,9 +15,13 @@ package org.jctools.queues.atomic;
 
 import org.jctools.util.PortableJvmInfo;
 import org.jctools.util.RangeUtil;
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicLongArray;
+import org.jctools.queues.MessagePassingQueueUtil;
 
 /**
  * NOTE: This class was automatically generated by org.jctools.queues.atomic.JavaParsingAtomicArrayQueueGenerator
@@ -173,6 +177,7 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
                 if (// test against cached cIndex
                 pIndex - capacity >= cIndex && pIndex - capacity >= (cIndex = lvConsumerIndex())) {
                     // test against latest cIndex
+                    recordOfferFull(stats);
                     return false;
                 } else {
                     // (+) hack to make it go around again without CAS
@@ -181,7 +186,7 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
             }
         } while (// another producer has moved the sequence(or +)
         seq > pIndex || // failed to increment
-        !casProducerIndex(pIndex, pIndex + 1));
+        (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats)));
         soElement(buffer, calcElementOffset(pIndex, mask), e);
         // seq++;
         soSequence(sBuffer, seqOffset, pIndex + 1);
@@ -223,7 +228,7 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
             }
         } while (// another consumer beat us to it
         seq > expectedSeq || // failed the CAS
-        !casConsumerIndex(cIndex, cIndex + 1));
+        (!casConsumerIndex(cIndex, cIndex + 1) && recordCasFailure(stats)));
         final int offset = calcElementOffset(cIndex, mask);
         final E e = lpElement(buffer, offset);
         soElement(buffer, offset, null);
@@ -265,7 +270,7 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
             }
         } while (// another producer has moved the sequence
         seq > pIndex || // failed to increment
-        !casProducerIndex(pIndex, pIndex + 1));
+        (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats)));
         soElement(buffer, calcElementOffset(pIndex, mask), e);
         soSequence(sBuffer, seqOffset, pIndex + 1);
         return true;
@@ -289,7 +294,7 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
             }
         } while (// another consumer beat us to it
         seq > expectedSeq || // failed the CAS
-        !casConsumerIndex(cIndex, cIndex + 1));
+        (!casConsumerIndex(cIndex, cIndex + 1) && recordCasFailure(stats)));
         final int offset = calcElementOffset(cIndex, mask);
         final E e = lpElement(buffer, offset);
         soElement(buffer, offset, null);
@@ -392,7 +397,7 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
                 }
             } while (// another consumer beat us to it
             seq > expectedSeq || // failed the CAS
-            !casConsumerIndex(cIndex, cIndex + 1));
+            (!casConsumerIndex(cIndex, cIndex + 1) && recordCasFailure(stats)));
             final int offset = calcElementOffset(cIndex, mask);
             final E e = lpElement(buffer, offset);
             soElement(buffer, offset, null);
@@ -467,13 +472,113 @@ public class MpmcAtomicArrayQueue<E> extends MpmcAtomicArrayQueueL3Pad<E> {
                 }
             } while (// another producer has moved the sequence
             seq > pIndex || // failed to increment
-            !casProducerIndex(pIndex, pIndex + 1));
+            (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats)));
             soElement(buffer, calcElementOffset(pIndex, mask), s.get());
             soSequence(sBuffer, seqOffset, pIndex + 1);
         }
         return limit;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the last slot of the batch is available the whole batch is claimed with a single CAS on the producer
+     * index, otherwise elements are offered one by one.
+     */
+    @Override
+    public int offer(E[] src, int off, int len) {
+        checkOfferBatch(src, off, len);
+        final AtomicLongArray sBuffer = sequenceBuffer;
+        final int mask = this.mask;
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        final int batch = (int) Math.min(len, mask + 1);
+        if (batch == 0) {
+            return 0;
+        }
+        final long pIndex = lvProducerIndex();
+        final long lastIndex = pIndex + batch - 1;
+        final long lastSeq = lvSequence(sBuffer, calcSequenceOffset(lastIndex, mask));
+        if (lastSeq == lastIndex && casProducerIndex(pIndex, lastIndex + 1)) {
+            for (int i = 0; i < batch; i++) {
+                final long index = pIndex + i;
+                final int seqOffset = calcSequenceOffset(index, mask);
+                while (lvSequence(sBuffer, seqOffset) != index) {
+                }
+                soElement(buffer, calcElementOffset(index, mask), src[off + i]);
+                soSequence(sBuffer, seqOffset, index + 1);
+            }
+            return batch;
+        }
+        if (lastSeq < lastIndex && notAvailable(pIndex, mask, sBuffer, pIndex)) {
+            return 0;
+        }
+        return offerOneByOne(src, off, len);
+    }
+
+    private int offerOneByOne(E[] src, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            if (!relaxedOffer(src[off + i])) {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the last slot of the batch is available the whole batch is claimed with a single CAS on the consumer
+     * index, otherwise elements are polled one by one.
+     */
+    @Override
+    public int poll(E[] dst, int off, int len) {
+        checkPollBatch(dst, off, len);
+        final AtomicLongArray sBuffer = sequenceBuffer;
+        final int mask = this.mask;
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        final int batch = (int) Math.min(len, mask + 1);
+        if (batch == 0) {
+            return 0;
+        }
+        final long cIndex = lvConsumerIndex();
+        final long lastIndex = cIndex + batch - 1;
+        final long lastSeq = lvSequence(sBuffer, calcSequenceOffset(lastIndex, mask));
+        if (lastSeq == lastIndex + 1 && casConsumerIndex(cIndex, lastIndex + 1)) {
+            for (int i = 0; i < batch; i++) {
+                final long index = cIndex + i;
+                final int seqOffset = calcSequenceOffset(index, mask);
+                final int offset = calcElementOffset(index, mask);
+                final long expectedSeq = index + 1;
+                while (lvSequence(sBuffer, seqOffset) != expectedSeq) {
+                }
+                dst[off + i] = lpElement(buffer, offset);
+                soElement(buffer, offset, null);
+                soSequence(sBuffer, seqOffset, index + mask + 1);
+            }
+            return batch;
+        }
+        if (lastSeq < lastIndex + 1 && notAvailable(cIndex, mask, sBuffer, cIndex + 1)) {
+            return 0;
+        }
+        return pollOneByOne(dst, off, len);
+    }
+
+    private int pollOneByOne(E[] dst, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            final E e = relaxedPoll();
+            if (null == e) {
+                return i;
+            }
+            dst[off + i] = e;
+        }
+        return len;
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy w, ExitCondition exit) {
         int idleCounter = 0;
@@ -14,9 +14,13 @@
 package org.jctools.queues.atomic;
 
 import org.jctools.util.PortableJvmInfo;
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicLongArray;
+import org.jctools.queues.MessagePassingQueueUtil;
 
 /**
  * NOTE: This class was automatically generated by org.jctools.queues.atomic.JavaParsingAtomicArrayQueueGenerator
@@ -212,7 +216,7 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
                     soProducerLimit(producerLimit);
                 }
             }
-        } while (!casProducerIndex(pIndex, pIndex + 1));
+        } while (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats));
         /*
          * NOTE: the new producer index value is made visible BEFORE the element in the array. If we relied on
          * the index visibility to poll() we would need to handle the case where the element is not visible.
@@ -249,10 +253,12 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
             // LoadLoad
             pIndex = lvProducerIndex();
             if (pIndex >= producerLimit) {
+                recordOfferSlowPath(stats);
                 // LoadLoad
                 final long cIndex = lvConsumerIndex();
                 producerLimit = cIndex + mask + 1;
                 if (pIndex >= producerLimit) {
+                    recordOfferFull(stats);
                     // FULL :(
                     return false;
                 } else {
@@ -261,7 +267,7 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
                     soProducerLimit(producerLimit);
                 }
             }
-        } while (!casProducerIndex(pIndex, pIndex + 1));
+        } while (!casProducerIndex(pIndex, pIndex + 1) && recordCasFailure(stats));
         /*
          * NOTE: the new producer index value is made visible BEFORE the element in the array. If we relied on
          * the index visibility to poll() we would need to handle the case where the element is not visible.
@@ -280,7 +286,7 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
      * @param e new element, not null
      * @return 1 if next element cannot be filled, -1 if CAS failed, 0 if successful
      */
-    public final int failFastOffer(final E e) {
+    public int failFastOffer(final E e) {
         if (null == e) {
             throw new NullPointerException();
         }
@@ -291,10 +297,12 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
         // LoadLoad
         long producerLimit = lvProducerLimit();
         if (pIndex >= producerLimit) {
+            recordOfferSlowPath(stats);
             // LoadLoad
             final long cIndex = lvConsumerIndex();
             producerLimit = cIndex + capacity;
             if (pIndex >= producerLimit) {
+                recordOfferFull(stats);
                 // FULL :(
                 return 1;
             } else {
@@ -305,6 +313,7 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
         }
         // look Ma, no loop!
         if (!casProducerIndex(pIndex, pIndex + 1)) {
+            recordCasFailure(stats);
             // CAS FAIL :(
             return -1;
         }
@@ -471,11 +480,13 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
             pIndex = lvProducerIndex();
             long available = producerLimit - pIndex;
             if (available <= 0) {
+                recordOfferSlowPath(stats);
                 // LoadLoad
                 final long cIndex = lvConsumerIndex();
                 producerLimit = cIndex + capacity;
                 available = producerLimit - pIndex;
                 if (available <= 0) {
+                    recordOfferFull(stats);
                     // FULL :(
                     return 0;
                 } else {
@@ -485,7 +496,7 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
                 }
             }
             actualLimit = Math.min((int) available, limit);
-        } while (!casProducerIndex(pIndex, pIndex + actualLimit));
+        } while (!casProducerIndex(pIndex, pIndex + actualLimit) && recordCasFailure(stats));
         // right, now we claimed a few slots and can fill them with goodness
         final AtomicReferenceArray<E> buffer = this.buffer;
         for (int i = 0; i < actualLimit; i++) {
@@ -496,6 +507,84 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
         return actualLimit;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slots for the batch are claimed with a single CAS on the producer index.
+     */
+    @Override
+    public int offer(final E[] src, final int off, final int len) {
+        checkOfferBatch(src, off, len);
+        if (len == 0) {
+            return 0;
+        }
+        final int mask = this.mask;
+        final long capacity = mask + 1;
+        // LoadLoad
+        long producerLimit = lvProducerLimit();
+        long pIndex;
+        int actualLen;
+        do {
+            // LoadLoad
+            pIndex = lvProducerIndex();
+            long available = producerLimit - pIndex;
+            if (available <= 0) {
+                recordOfferSlowPath(stats);
+                // LoadLoad
+                final long cIndex = lvConsumerIndex();
+                producerLimit = cIndex + capacity;
+                available = producerLimit - pIndex;
+                if (available <= 0) {
+                    recordOfferFull(stats);
+                    // FULL :(
+                    return 0;
+                } else {
+                    // update producer limit to the next index that we must recheck the consumer index
+                    // StoreLoad
+                    soProducerLimit(producerLimit);
+                }
+            }
+            actualLen = (int) Math.min(available, len);
+        } while (!casProducerIndex(pIndex, pIndex + actualLen) && recordCasFailure(stats));
+        // Won CAS, copy the batch into the claimed slots
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        for (int i = 0; i < actualLen; i++) {
+            final int offset = calcElementOffset(pIndex + i, mask);
+            // StoreStore
+            soElement(buffer, offset, src[off + i]);
+        }
+        return actualLen;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The consumer index is published once for the whole batch.
+     */
+    @Override
+    public int poll(final E[] dst, final int off, final int len) {
+        checkPollBatch(dst, off, len);
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        final int mask = this.mask;
+        final long cIndex = lpConsumerIndex();
+        int i = 0;
+        for (; i < len; i++) {
+            final int offset = calcElementOffset(cIndex + i, mask);
+            // LoadLoad
+            final E e = lvElement(buffer, offset);
+            if (null == e) {
+                break;
+            }
+            spElement(buffer, offset, null);
+            dst[off + i] = e;
+        }
+        if (i != 0) {
+            // StoreStore
+            soConsumerIndex(cIndex + i);
+        }
+        return i;
+    }
+
     @Override
     public void drain(Consumer<E> c, WaitStrategy w, ExitCondition exit) {
         final AtomicReferenceArray<E> buffer = this.buffer;
@@ -509,7 +598,8 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
                 final E e = lvElement(buffer, offset);
                 if (null == e) {
                     counter = w.idle(counter);
-                    continue;
+                    // check the exit condition after idling
+                    break;
                 }
                 cIndex++;
                 counter = 0;
@@ -521,6 +611,37 @@ public class MpscAtomicArrayQueue<E> extends MpscAtomicArrayQueueL3Pad<E> {
         }
     }
 
+    @Override
+    public int drain(final Consumer<E> c, final int maxBatch, final long maxWaitNanos, final WaitStrategy w) {
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        final int mask = this.mask;
+        final long cIndex = lpConsumerIndex();
+        final long deadline = maxWaitNanos > 0 ? System.nanoTime() + maxWaitNanos : 0;
+        int idleCounter = 0;
+        int i = 0;
+        while (i < maxBatch) {
+            final long index = cIndex + i;
+            final int offset = calcElementOffset(index, mask);
+            // LoadLoad
+            final E e = lvElement(buffer, offset);
+            if (null == e) {
+                // the time is only read once the queue runs dry
+                if (maxWaitNanos <= 0 || System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+                idleCounter = w.idle(idleCounter);
+                continue;
+            }
+            idleCounter = 0;
+            spElement(buffer, offset, null);
+            // ordered store -> atomic and ordered for size()
+            soConsumerIndex(index + 1);
+            c.accept(e);
+            i++;
+        }
+        return i;
+    }
+
     @Override
     public void fill(Supplier<E> s, WaitStrategy w, ExitCondition exit) {
         int idleCounter = 0;
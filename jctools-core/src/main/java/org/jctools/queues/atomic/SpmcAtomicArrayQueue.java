@@ -14,9 +14,11 @@
 package org.jctools.queues.atomic;
 
 import org.jctools.util.PortableJvmInfo;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicLongArray;
+import org.jctools.queues.MessagePassingQueueUtil;
 
 /**
  * NOTE: This class was automatically generated by org.jctools.queues.atomic.JavaParsingAtomicArrayQueueGenerator
@@ -175,6 +177,7 @@ public class SpmcAtomicArrayQueue<E> extends SpmcAtomicArrayQueueL3Pad<E> {
         if (null != lvElement(buffer, offset)) {
             long size = currProducerIndex - lvConsumerIndex();
             if (size > mask) {
+                recordOfferFull(stats);
                 return false;
             } else {
                 // spin wait for slot to clear, buggers wait freedom
@@ -205,7 +208,7 @@ public class SpmcAtomicArrayQueue<E> extends SpmcAtomicArrayQueueL3Pad<E> {
                     svProducerIndexCache(currProducerIndex);
                 }
             }
-        } while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + 1));
+        } while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + 1) && recordCasFailure(stats));
         // and wrap to hit same location.
         return removeElement(buffer, currentConsumerIndex, mask);
     }
@@ -312,7 +315,7 @@ public class SpmcAtomicArrayQueue<E> extends SpmcAtomicArrayQueueL3Pad<E> {
             // try and claim up to 'limit' elements in one go
             int remaining = (int) (currProducerIndexCache - currentConsumerIndex);
             adjustedLimit = Math.min(remaining, limit);
-        } while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + adjustedLimit));
+        } while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + adjustedLimit) && recordCasFailure(stats));
         for (int i = 0; i < adjustedLimit; i++) {
             c.accept(removeElement(buffer, currentConsumerIndex + i, mask));
         }
@@ -338,6 +341,21 @@ public class SpmcAtomicArrayQueue<E> extends SpmcAtomicArrayQueueL3Pad<E> {
         return limit;
     }
 
+    @Override
+    public int offer(E[] src, int off, int len) {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len) {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(final Consumer<E> c, final WaitStrategy w, final ExitCondition exit) {
         int idleCounter = 0;
@@ -362,7 +380,8 @@ public class SpmcAtomicArrayQueue<E> extends SpmcAtomicArrayQueueL3Pad<E> {
                 if (null != lvElement(buffer, offset)) {
                     // LoadLoad
                     counter = w.idle(counter);
-                    continue;
+                    // check the exit condition after idling
+                    break;
                 }
                 producerIndex++;
                 counter = 0;
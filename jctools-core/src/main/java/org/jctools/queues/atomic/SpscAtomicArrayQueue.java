@@ -13,9 +13,13 @@
  */
 package org.jctools.queues.atomic;
 
+import static org.jctools.queues.MessagePassingQueueUtil.checkOfferBatch;
+import static org.jctools.queues.MessagePassingQueueUtil.checkPollBatch;
+import static org.jctools.queues.QueueStatsRecorder.*;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicLongArray;
+import org.jctools.queues.MessagePassingQueueUtil;
 
 /**
  * NOTE: This class was automatically generated by org.jctools.queues.atomic.JavaParsingAtomicArrayQueueGenerator
@@ -174,6 +178,7 @@ public class SpscAtomicArrayQueue<E> extends SpscAtomicArrayQueueL3Pad<E> {
         final int mask = this.mask;
         final long producerIndex = this.lpProducerIndex();
         if (producerIndex >= producerLimit && !offerSlowPath(buffer, mask, producerIndex)) {
+            recordOfferFull(stats);
             return false;
         }
         final int offset = calcElementOffset(producerIndex, mask);
@@ -185,6 +190,7 @@ public class SpscAtomicArrayQueue<E> extends SpscAtomicArrayQueueL3Pad<E> {
     }
 
     private boolean offerSlowPath(final AtomicReferenceArray<E> buffer, final int mask, final long producerIndex) {
+        recordOfferSlowPath(stats);
         final int lookAheadStep = this.lookAheadStep;
         if (null == lvElement(buffer, calcElementOffset(producerIndex + lookAheadStep, mask))) {
             // LoadLoad
@@ -312,6 +318,76 @@ public class SpscAtomicArrayQueue<E> extends SpscAtomicArrayQueueL3Pad<E> {
         return limit;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single producer thread use only. The producer index is published once
+     * for the whole batch.
+     */
+    @Override
+    public int offer(final E[] src, final int off, final int len) {
+        checkOfferBatch(src, off, len);
+        // local load of field to avoid repeated loads after volatile reads
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        final int mask = this.mask;
+        final long producerIndex = this.lpProducerIndex();
+        int batch = len;
+        if (producerIndex + len > producerLimit) {
+            // the consumer nulls the slots before moving the consumer index, all slots up to it are free
+            // LoadLoad
+            final long limit = lvConsumerIndex() + mask + 1;
+            producerLimit = limit;
+            batch = (int) Math.min(len, limit - producerIndex);
+            if (batch <= 0) {
+                return 0;
+            }
+        }
+        for (int i = 0; i < batch; i++) {
+            final int offset = calcElementOffset(producerIndex + i, mask);
+            // StoreStore
+            soElement(buffer, offset, src[off + i]);
+        }
+        // ordered store -> atomic and ordered for size()
+        soProducerIndex(producerIndex + batch);
+        return batch;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is correct for single consumer thread use only. The consumer index is published once
+     * for the whole batch.
+     */
+    @Override
+    public int poll(final E[] dst, final int off, final int len) {
+        checkPollBatch(dst, off, len);
+        final AtomicReferenceArray<E> buffer = this.buffer;
+        final int mask = this.mask;
+        final long consumerIndex = this.lpConsumerIndex();
+        int i = 0;
+        for (; i < len; i++) {
+            final int offset = calcElementOffset(consumerIndex + i, mask);
+            // LoadLoad
+            final E e = lvElement(buffer, offset);
+            if (null == e) {
+                break;
+            }
+            // StoreStore
+            soElement(buffer, offset, null);
+            dst[off + i] = e;
+        }
+        if (i != 0) {
+            // ordered store -> atomic and ordered for size()
+            soConsumerIndex(consumerIndex + i);
+        }
+        return i;
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(final Consumer<E> c, final WaitStrategy w, final ExitCondition exit) {
         final AtomicReferenceArray<E> buffer = this.buffer;
@@ -325,7 +401,8 @@ public class SpscAtomicArrayQueue<E> extends SpscAtomicArrayQueueL3Pad<E> {
                 final E e = lvElement(buffer, offset);
                 if (null == e) {
                     counter = w.idle(counter);
-                    continue;
+                    // check the exit condition after idling
+                    break;
                 }
                 consumerIndex++;
                 counter = 0;
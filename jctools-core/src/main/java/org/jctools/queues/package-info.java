@@ -23,7 +23,11 @@
  * <li>Bounded/Unbounded MPSC queues - The Multi Producer Single Consumer case also has a multi-lane implementation on
  * offer which trades the FIFO ordering(re-ordering is not limited) for reduced contention and increased throughput
  * under contention.
- * <li>Bounded SPMC/MPMC queues
+ * <li>Bounded/Unbounded SPMC/MPMC queues
+ * <li>Bounded SPSC/MPSC/MPMC blocking queues - Implementing {@link java.util.concurrent.BlockingQueue} on top of
+ * the array queues, blocked consumers are only signalled when parked.
+ * <li>Bounded SPSC/MPSC/MPMC long and int queues - Passing primitive values without boxing, see
+ * {@link org.jctools.queues.MessagePassingLongQueue} and {@link org.jctools.queues.MessagePassingIntQueue}.
  * </ol>
  * <p>
  * <br>
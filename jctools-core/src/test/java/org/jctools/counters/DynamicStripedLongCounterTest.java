@@ -0,0 +1,115 @@
+package org.jctools.counters;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class DynamicStripedLongCounterTest {
+
+    private static final int THREADS = 4;
+
+    @Test
+    public void testStartsWithOneStripe() {
+        DynamicStripedLongCounter counter = CountersFactory.createDynamicStripedCounter(64);
+        for (int i = 0; i < 1000; i++) {
+            counter.inc();
+        }
+        counter.inc(-10);
+        assertEquals(1, counter.stripes());
+        assertEquals(990L, counter.get());
+        assertEquals(990L, counter.getAndReset());
+        assertEquals(0L, counter.get());
+    }
+
+    @Test
+    public void testMultipleThreadsCounterSanity() throws Exception {
+        final DynamicStripedLongCounter counter = new DynamicStripedLongCounter(THREADS);
+        final AtomicLong summary = new AtomicLong();
+        runThreads(running -> {
+            long local = 0;
+            while (running.get()) {
+                counter.inc();
+                local++;
+            }
+            summary.addAndGet(local);
+        });
+        assertTrue(counter.stripes() <= THREADS);
+        assertEquals(summary.get(), counter.get());
+        assertEquals(summary.get(), counter.getAndReset());
+        assertEquals(0L, counter.get());
+    }
+
+    @Test
+    public void testGetAndResetLosesNoIncrements() throws Exception {
+        final DynamicStripedLongCounter counter = new DynamicStripedLongCounter(THREADS);
+        final AtomicLong summary = new AtomicLong();
+        final AtomicLong resetSum = new AtomicLong();
+        runThreads(running -> {
+            long local = 0;
+            while (running.get()) {
+                counter.inc();
+                if ((++local & 1023) == 0) {
+                    resetSum.addAndGet(counter.getAndReset());
+                }
+            }
+            summary.addAndGet(local);
+        });
+        assertEquals(summary.get(), resetSum.get() + counter.get());
+    }
+
+    @Test
+    public void testMaxAndMin() throws Exception {
+        final DynamicStripedLongMax max = new DynamicStripedLongMax(THREADS);
+        final DynamicStripedLongMin min = new DynamicStripedLongMin(THREADS);
+        assertEquals(Long.MIN_VALUE, max.get());
+        assertEquals(Long.MAX_VALUE, min.get());
+        final AtomicLong ids = new AtomicLong();
+        runThreads(running -> {
+            long id = ids.incrementAndGet();
+            long i = 0;
+            while (running.get()) {
+                long v = (i++ % 1000) * id;
+                max.update(v);
+                min.update(-v);
+            }
+        });
+        assertEquals(999L * THREADS, max.get());
+        assertEquals(-999L * THREADS, min.get());
+        assertEquals(999L * THREADS, max.getAndReset());
+        assertEquals(Long.MIN_VALUE, max.get());
+        assertEquals(-999L * THREADS, min.getAndReset());
+        assertEquals(Long.MAX_VALUE, min.get());
+    }
+
+    interface ThreadBody {
+        void run(AtomicBoolean running);
+    }
+
+    private static void runThreads(final ThreadBody body) throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch finishLatch = new CountDownLatch(THREADS);
+        final AtomicBoolean fail = new AtomicBoolean(false);
+        for (int i = 0; i < THREADS; i++) {
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    body.run(running);
+                } catch (Exception e) {
+                    fail.set(true);
+                } finally {
+                    finishLatch.countDown();
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        Thread.sleep(500);
+        running.set(false);
+        finishLatch.await();
+        assertFalse(fail.get());
+    }
+}
@@ -0,0 +1,114 @@
+package org.jctools.counters;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class StripedLongHistogramTest {
+
+    @Test
+    public void testBucketsCoverTheRange() {
+        for (int precisionBits = 1; precisionBits <= 8; precisionBits++) {
+            int buckets = StripedLongHistogram.bucketIndex(Long.MAX_VALUE, precisionBits) + 1;
+            assertEquals((64 - precisionBits) << precisionBits, buckets);
+            long expectedLow = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long low = StripedLongHistogram.bucketLowestValue(bucket, precisionBits);
+                long high = StripedLongHistogram.bucketHighestValue(bucket, precisionBits);
+                assertEquals(expectedLow, low);
+                assertTrue(high >= low);
+                assertEquals(bucket, StripedLongHistogram.bucketIndex(low, precisionBits));
+                assertEquals(bucket, StripedLongHistogram.bucketIndex(high, precisionBits));
+                // bucket width is within the relative precision
+                assertTrue(high - low <= low >> precisionBits);
+                expectedLow = high + 1;
+            }
+            assertEquals(Long.MIN_VALUE, expectedLow);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        StripedLongHistogram histogram = new StripedLongHistogram(1000000, 7, 4);
+        for (long v = 1; v <= 10000; v++) {
+            histogram.record(v);
+        }
+        StripedLongHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.totalCount());
+        assertEquals(1, snapshot.minValue());
+        assertWithinPrecision(10000, snapshot.maxValue(), 7);
+        assertWithinPrecision(5000, snapshot.valueAtPercentile(50), 7);
+        assertWithinPrecision(9900, snapshot.valueAtPercentile(99), 7);
+        assertWithinPrecision(10000, snapshot.valueAtPercentile(100), 7);
+        assertEquals(1, snapshot.valueAtPercentile(0));
+        assertEquals(5000.5, snapshot.mean(), 5000.5 / (1 << 7));
+        // a plain snapshot leaves the counts in place
+        assertEquals(10000, histogram.snapshot().totalCount());
+    }
+
+    @Test
+    public void testValuesAboveTheMaxAreClamped() {
+        StripedLongHistogram histogram = new StripedLongHistogram(1000, 3);
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(0, 3);
+        StripedLongHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(4, snapshot.totalCount());
+        assertEquals(1000, snapshot.maxValue());
+        assertEquals(0, snapshot.valueAtPercentile(75));
+        assertEquals(0, histogram.snapshot().totalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValuesAreRejected() {
+        new StripedLongHistogram(1000, 3).record(-1);
+    }
+
+    @Test
+    public void testMultipleThreadsIntervalSnapshots() throws Exception {
+        final StripedLongHistogram histogram = new StripedLongHistogram(1L << 20, 3, 4);
+        int threadsCount = 4;
+        AtomicLong recorded = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch finishLatch = new CountDownLatch(threadsCount);
+        AtomicBoolean fail = new AtomicBoolean(false);
+        for (int i = 0; i < threadsCount; i++) {
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    long local = 0;
+                    while (running.get()) {
+                        histogram.record(local & 1023);
+                        local++;
+                    }
+                    recorded.addAndGet(local);
+                } catch (Exception e) {
+                    fail.set(true);
+                } finally {
+                    finishLatch.countDown();
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        long snapshotted = 0;
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(50);
+            StripedLongHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+            assertTrue(snapshot.maxValue() <= 1023);
+            snapshotted += snapshot.totalCount();
+        }
+        running.set(false);
+        finishLatch.await();
+        assertFalse(fail.get());
+        snapshotted += histogram.snapshotAndReset().totalCount();
+        assertEquals(recorded.get(), snapshotted);
+    }
+
+    private static void assertWithinPrecision(long expected, long actual, int precisionBits) {
+        assertTrue(expected + " ~ " + actual, Math.abs(actual - expected) <= expected >> precisionBits);
+    }
+}
@@ -0,0 +1,152 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class NonBlockingBoundedCacheTest
+{
+    @Test
+    public void evictsBeyondMaximumSize()
+    {
+        NonBlockingBoundedCache<Integer, Integer> cache = new NonBlockingBoundedCache<>(100);
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.evictionCount());
+        for (Integer key : cache.keySet())
+        {
+            assertEquals(key, cache.get(key));
+        }
+    }
+
+    @Test
+    public void frequentlyReadEntriesSurviveScan()
+    {
+        NonBlockingBoundedCache<Integer, Integer> cache = new NonBlockingBoundedCache<>(100);
+        for (int i = 0; i < 50; i++)
+        {
+            cache.put(i, i);
+        }
+        for (int round = 0; round < 10; round++)
+        {
+            for (int i = 0; i < 50; i++)
+            {
+                assertEquals(Integer.valueOf(i), cache.get(i));
+            }
+            cache.cleanUp();
+        }
+        // a scan of one-hit wonders is not admitted over the hot entries
+        for (int i = 1000; i < 3000; i++)
+        {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        int hot = 0;
+        for (int i = 0; i < 50; i++)
+        {
+            if (cache.containsKey(i))
+            {
+                hot++;
+            }
+        }
+        assertTrue("hot entries retained: " + hot, hot >= 45);
+    }
+
+    @Test
+    public void updatesAndRemovalsKeepPolicyConsistent()
+    {
+        NonBlockingBoundedCache<Integer, String> cache = new NonBlockingBoundedCache<>(10);
+        for (int i = 0; i < 10; i++)
+        {
+            assertNull(cache.put(i, "a" + i));
+        }
+        assertEquals("a3", cache.put(3, "b3"));
+        assertEquals("b3", cache.replace(3, "c3"));
+        assertTrue(cache.replace(4, "a4", "b4"));
+        assertFalse(cache.replace(4, "a4", "c4"));
+        assertEquals("a5", cache.putIfAbsent(5, "b5"));
+        assertEquals("a6", cache.remove(6));
+        assertFalse(cache.remove(7, "b7"));
+        assertTrue(cache.remove(7, "a7"));
+        cache.cleanUp();
+        assertEquals(8, cache.size());
+        assertEquals(0, cache.evictionCount());
+        assertEquals("c3", cache.get(3));
+        assertEquals("b4", cache.get(4));
+
+        for (int i = 10; i < 20; i++)
+        {
+            cache.put(i, "a" + i);
+        }
+        cache.cleanUp();
+        assertEquals(10, cache.size());
+        assertEquals(8, cache.evictionCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumSizeMustBePositive()
+    {
+        new NonBlockingBoundedCache<Integer, Integer>(0);
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentReadsAndWritesStayBounded() throws Exception
+    {
+        final int maximumSize = 500;
+        final NonBlockingBoundedCache<Integer, Integer> cache = new NonBlockingBoundedCache<>(maximumSize);
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int seed = t;
+            Thread worker = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < 100000; i++)
+                    {
+                        int key = (i * 31 + seed) % 2000;
+                        if (i % 4 == 0)
+                        {
+                            cache.put(key, key);
+                        }
+                        else
+                        {
+                            Integer value = cache.get(key);
+                            if (value != null && value != key)
+                            {
+                                throw new AssertionError(key + "=" + value);
+                            }
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        cache.cleanUp();
+        assertEquals(maximumSize, cache.size());
+    }
+}
@@ -0,0 +1,128 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class NonBlockingHashMapCompactTest
+{
+    @Test
+    public void shrinksAfterMassRemovals()
+    {
+        NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>();
+        for (int i = 0; i < 100000; i++)
+        {
+            map.put(i, i);
+        }
+        int peak = map.capacity();
+        for (int i = 100; i < 100000; i++)
+        {
+            map.remove(i);
+        }
+        // removals drive the copy, a few more finish it
+        for (int i = 0; i < 100; i++)
+        {
+            map.remove(-1 - i);
+        }
+        assertTrue(map.capacity() + " of " + peak, map.capacity() <= peak / 16);
+        assertEquals(100, map.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(Integer.valueOf(i), map.get(i));
+        }
+        assertNull(map.get(100));
+    }
+
+    @Test
+    public void compactDropsTombstonesAndShrinks()
+    {
+        NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>();
+        for (int i = 0; i < 10000; i++)
+        {
+            map.put(i, i);
+        }
+        int peak = map.capacity();
+        // stay above the automatic threshold
+        for (int i = 0; i < 10000; i++)
+        {
+            if (i % 10 != 0)
+            {
+                map.remove(i);
+            }
+        }
+        assertEquals(peak, map.capacity());
+        map.compact();
+        assertTrue(map.capacity() < peak);
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 10000; i++)
+        {
+            assertEquals(i % 10 != 0 ? null : Integer.valueOf(i), map.get(i));
+        }
+        map.clear();
+        map.compact();
+        assertEquals(8, map.capacity());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void compactWhileUpdating() throws Exception
+    {
+        final NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>();
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final int keys = 2000;
+        final AtomicBoolean stop = new AtomicBoolean();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int id = t;
+            Thread worker = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    int round = 0;
+                    while (!stop.get())
+                    {
+                        // each thread owns its keys, so it knows what it must see
+                        for (int k = 0; k < keys; k++)
+                        {
+                            int key = k * threads + id;
+                            assertNull(map.put(key, round));
+                            assertEquals(Integer.valueOf(round), map.get(key));
+                        }
+                        for (int k = 0; k < keys; k++)
+                        {
+                            assertEquals(Integer.valueOf(round), map.remove(k * threads + id));
+                        }
+                        round++;
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (int i = 0; i < 200 && failure.get() == null; i++)
+        {
+            map.compact();
+        }
+        stop.set(true);
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertTrue(map.isEmpty());
+    }
+}
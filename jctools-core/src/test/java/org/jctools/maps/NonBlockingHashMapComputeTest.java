@@ -0,0 +1,128 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class NonBlockingHashMapComputeTest
+{
+    @Test
+    public void computeIfAbsent()
+    {
+        NonBlockingHashMap<String, Integer> map = new NonBlockingHashMap<>();
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals(Integer.valueOf(1), map.computeIfAbsent("a", k -> calls.incrementAndGet()));
+        assertEquals(Integer.valueOf(1), map.computeIfAbsent("a", k -> calls.incrementAndGet()));
+        assertEquals(1, calls.get());
+        assertNull(map.computeIfAbsent("b", k -> null));
+        assertFalse(map.containsKey("b"));
+        assertEquals(1, map.size());
+        map.remove("a");
+        assertEquals(Integer.valueOf(7), map.computeIfAbsent("a", k -> 7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void computeIfPresent()
+    {
+        NonBlockingHashMap<String, Integer> map = new NonBlockingHashMap<>();
+        assertNull(map.computeIfPresent("a", (k, v) -> v + 1));
+        assertFalse(map.containsKey("a"));
+        map.put("a", 1);
+        assertEquals(Integer.valueOf(2), map.computeIfPresent("a", (k, v) -> v + 1));
+        assertNull(map.computeIfPresent("a", (k, v) -> null));
+        assertFalse(map.containsKey("a"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void compute()
+    {
+        NonBlockingHashMap<String, String> map = new NonBlockingHashMap<>();
+        assertEquals("a:null", map.compute("a", (k, v) -> k + ":" + v));
+        assertEquals("a:a:null", map.compute("a", (k, v) -> k + ":" + v));
+        assertEquals(1, map.size());
+        assertNull(map.compute("a", (k, v) -> null));
+        assertEquals(0, map.size());
+        assertNull(map.compute("b", (k, v) -> null));
+        assertFalse(map.containsKey("b"));
+    }
+
+    @Test
+    public void merge()
+    {
+        NonBlockingHashMap<String, Long> map = new NonBlockingHashMap<>();
+        assertEquals(Long.valueOf(3), map.merge("a", 3L, Long::sum));
+        assertEquals(Long.valueOf(5), map.merge("a", 2L, Long::sum));
+        assertNull(map.merge("a", 1L, (a, b) -> null));
+        assertEquals(0, map.size());
+        try
+        {
+            map.merge("a", null, Long::sum);
+            fail();
+        }
+        catch (NullPointerException expected)
+        {
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentMergeCountsExactlyThroughResizes() throws Exception
+    {
+        final NonBlockingHashMap<Integer, Long> map = new NonBlockingHashMap<>();
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final int keys = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger absentCalls = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            Thread worker = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < keys; i++)
+                    {
+                        map.merge(i, 1L, Long::sum);
+                        map.compute(-i - 1, (k, v) -> v == null ? 1L : v + 1);
+                        map.computeIfAbsent(keys + i, k -> {
+                            absentCalls.incrementAndGet();
+                            return 0L;
+                        });
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertEquals(3 * keys, map.size());
+        for (int i = 0; i < keys; i++)
+        {
+            assertEquals(Long.valueOf(threads), map.get(i));
+            assertEquals(Long.valueOf(threads), map.get(-i - 1));
+        }
+        // racing calls for an absent key may each compute a value, only one is kept
+        assertTrue(absentCalls.get() >= keys);
+        for (int i = 0; i < keys; i++)
+        {
+            assertEquals(Long.valueOf(0), map.get(keys + i));
+        }
+    }
+}
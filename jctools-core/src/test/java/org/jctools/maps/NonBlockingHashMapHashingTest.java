@@ -0,0 +1,135 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NonBlockingHashMapHashingTest
+{
+    @Test
+    public void seededStrategyMatchesHashMap()
+    {
+        NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>(0, HashingStrategy.seeded(42));
+        assertRandomOpsMatchHashMap(map);
+    }
+
+    @Test
+    public void customStrategyWithCollidingHashes()
+    {
+        // every key collides, the map must still resize its way to correctness
+        HashingStrategy constant = new HashingStrategy()
+        {
+            @Override
+            public int hash(Object key)
+            {
+                key.hashCode();
+                return 7;
+            }
+
+            @Override
+            public int probe(int idx, int reprobes, int mask)
+            {
+                return (idx + 1) & mask;
+            }
+
+            @Override
+            public int reprobeLimit(int len)
+            {
+                return 10 + (len >> 4);
+            }
+        };
+        NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>(0, constant, true);
+        for (int i = 0; i < 200; i++)
+        {
+            assertNull(map.put(i, i));
+        }
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals(Integer.valueOf(i), map.get(i));
+        }
+        assertNull(map.get(200));
+        assertEquals(200, map.size());
+        assertSame(constant, map.hashingStrategy());
+        assertTrue(map.reprobes() > 0);
+    }
+
+    @Test
+    public void probeHistogramOnlyWhenRequested()
+    {
+        NonBlockingHashMap<Integer, Integer> plain = new NonBlockingHashMap<>();
+        plain.put(1, 1);
+        assertEquals(0, plain.probeHistogram().length);
+
+        NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>(1024, HashingStrategy.DEFAULT, true);
+        for (int i = 0; i < 1000; i++)
+        {
+            map.put(i, i);
+            map.get(i);
+        }
+        long[] histogram = map.probeHistogram();
+        assertEquals(32, histogram.length);
+        long total = 0;
+        for (long count : histogram)
+        {
+            total += count;
+        }
+        // one lookup per put and get, plus those repeated in a new table after resizes
+        assertTrue(total >= 2000);
+        assertTrue(histogram[0] > 0);
+
+        NonBlockingHashMap<Integer, Integer> clone = (NonBlockingHashMap<Integer, Integer>) map.clone();
+        assertEquals(1000, clone.size());
+        assertNotEquals(histogram[0], clone.probeHistogram()[0]);
+    }
+
+    @Test
+    public void strategySurvivesSerialization() throws Exception
+    {
+        NonBlockingHashMap<String, String> map = new NonBlockingHashMap<>(0, HashingStrategy.seeded(7));
+        map.put("a", "b");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(map);
+        }
+        NonBlockingHashMap<String, String> copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            copy = (NonBlockingHashMap<String, String>) in.readObject();
+        }
+        assertEquals("b", copy.get("a"));
+        assertEquals(map.hashingStrategy().hash("x"), copy.hashingStrategy().hash("x"));
+        assertNotEquals(HashingStrategy.DEFAULT.hash("x"), copy.hashingStrategy().hash("x"));
+    }
+
+    private static void assertRandomOpsMatchHashMap(NonBlockingHashMap<Integer, Integer> map)
+    {
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random r = new Random(7);
+        for (int i = 0; i < 100000; i++)
+        {
+            // low entropy keys: multiples of a large power of 2
+            Integer key = (r.nextInt(5000) - 2500) << 12;
+            switch (r.nextInt(3))
+            {
+                case 0:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+            }
+        }
+        assertEquals(expected, map);
+    }
+}
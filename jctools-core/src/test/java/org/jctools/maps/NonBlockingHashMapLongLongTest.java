@@ -0,0 +1,180 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.jctools.maps.NonBlockingHashMapLongLong.NO_VALUE;
+import static org.junit.Assert.*;
+
+public class NonBlockingHashMapLongLongTest
+{
+    @Test
+    public void basicOperations()
+    {
+        NonBlockingHashMapLongLong map = new NonBlockingHashMapLongLong();
+        assertTrue(map.isEmpty());
+        assertEquals(NO_VALUE, map.get(1));
+        assertEquals(-7, map.getOrDefault(1, -7));
+        assertEquals(NO_VALUE, map.put(1, 10));
+        assertEquals(10, map.put(1, 11));
+        assertEquals(11, map.putIfAbsent(1, 12));
+        assertEquals(NO_VALUE, map.putIfAbsent(2, 0));
+        assertTrue(map.containsKey(2));
+        assertEquals(0, map.get(2));
+        assertEquals(NO_VALUE, map.replace(3, 1));
+        assertFalse(map.containsKey(3));
+        assertEquals(0, map.replace(2, 20));
+        assertFalse(map.compareAndSet(2, 0, 21));
+        assertTrue(map.compareAndSet(2, 20, 21));
+        assertFalse(map.remove(2, 20));
+        assertTrue(map.remove(2, 21));
+        assertEquals(11, map.remove(1));
+        assertEquals(NO_VALUE, map.remove(1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void zeroKeyAndValueLimits()
+    {
+        NonBlockingHashMapLongLong map = new NonBlockingHashMapLongLong();
+        assertEquals(NO_VALUE, map.put(0, NonBlockingHashMapLongLong.MIN_VALUE));
+        assertEquals(NonBlockingHashMapLongLong.MIN_VALUE, map.get(0));
+        assertTrue(map.compareAndSet(0, NonBlockingHashMapLongLong.MIN_VALUE, NonBlockingHashMapLongLong.MAX_VALUE));
+        assertEquals(NonBlockingHashMapLongLong.MAX_VALUE, map.get(0));
+        assertEquals(1, map.size());
+        assertEquals(5, map.addAndGet(Long.MIN_VALUE, 5));
+        assertEquals(-1, map.addAndGet(Long.MIN_VALUE, -6));
+        assertEquals(2, map.size());
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 0}, keys);
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueOutOfRange()
+    {
+        new NonBlockingHashMapLongLong().put(1, NonBlockingHashMapLongLong.MAX_VALUE + 1);
+    }
+
+    @Test
+    public void matchesHashMapThroughResizes()
+    {
+        NonBlockingHashMapLongLong map = new NonBlockingHashMapLongLong();
+        Map<Long, Long> expected = new HashMap<>();
+        Random r = new Random(42);
+        for (int i = 0; i < 200000; i++)
+        {
+            long key = r.nextInt(20000) - 10000;
+            long val = r.nextLong() >> 2;
+            switch (r.nextInt(4))
+            {
+                case 0:
+                    assertEquals(unbox(expected.put(key, val)), map.put(key, val));
+                    break;
+                case 1:
+                    assertEquals(unbox(expected.remove(key)), map.remove(key));
+                    break;
+                case 2:
+                    Long sum = expected.containsKey(key) ? expected.get(key) + 1 : 1;
+                    expected.put(key, sum);
+                    assertEquals(sum.longValue(), map.addAndGet(key, 1));
+                    break;
+                default:
+                    assertEquals(unbox(expected.get(key)), map.get(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> e : expected.entrySet())
+        {
+            assertEquals(e.getValue().longValue(), map.get(e.getKey()));
+        }
+        assertEquals(expected.size(), map.keys().length);
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentAddAndGetIsExact() throws Exception
+    {
+        final NonBlockingHashMapLongLong map = new NonBlockingHashMapLongLong();
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final int keys = 5000;
+        final int rounds = 20;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            Thread worker = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int round = 0; round < rounds; round++)
+                    {
+                        // growing key space forces table copies while adding
+                        for (int k = 1; k <= keys; k++)
+                        {
+                            map.addAndGet(k * 31L, 1);
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertEquals(keys, map.size());
+        for (int k = 1; k <= keys; k++)
+        {
+            assertEquals(threads * rounds, map.get(k * 31L));
+        }
+    }
+
+    @Test
+    public void intIntMap()
+    {
+        NonBlockingHashMapIntInt map = new NonBlockingHashMapIntInt(-1);
+        assertEquals(-1, map.get(5));
+        assertEquals(-1, map.put(5, Integer.MIN_VALUE));
+        assertEquals(Integer.MIN_VALUE, map.get(5));
+        assertEquals(Integer.MAX_VALUE, map.addAndGet(5, -1));
+        assertEquals(Integer.MIN_VALUE, map.addAndGet(5, 1));
+        assertTrue(map.compareAndSet(5, Integer.MIN_VALUE, 3));
+        assertEquals(3, map.putIfAbsent(5, 4));
+        assertEquals(7, map.addAndGet(6, 7));
+        assertEquals(2, map.size());
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new int[]{5, 6}, keys);
+        assertEquals(3, map.remove(5));
+        assertEquals(-1, map.remove(5));
+        assertEquals(42, map.getOrDefault(5, 42));
+        assertEquals(2, map.addAndGet(5, 2));
+        assertEquals(1, map.addAndGet(0, 1));
+        assertEquals(Integer.MIN_VALUE, map.addAndGet(0, Integer.MAX_VALUE));
+        assertEquals(3, map.size());
+    }
+
+    private static long unbox(Long value)
+    {
+        return value == null ? NO_VALUE : value;
+    }
+}
@@ -0,0 +1,168 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class NonBlockingHashMapSpliteratorTest
+{
+    private static final int SIZE = 100000;
+
+    @Test
+    public void parallelStreamsSeeEveryEntry()
+    {
+        NonBlockingHashMap<Integer, Long> map = new NonBlockingHashMap<>();
+        for (int i = 0; i < SIZE; i++)
+        {
+            map.put(i, (long) i);
+        }
+        assertEquals(SIZE, map.keySet().parallelStream().distinct().count());
+        assertEquals(sum(SIZE), map.values().parallelStream().mapToLong(Long::longValue).sum());
+        assertEquals(sum(SIZE), map.entrySet().parallelStream().mapToLong(e -> e.getKey() + 0L).sum());
+        assertTrue(map.entrySet().parallelStream().allMatch(e -> e.getValue() == e.getKey().longValue()));
+    }
+
+    @Test
+    public void splitsCoverAllKeysOnce()
+    {
+        NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>();
+        for (int i = 0; i < 10000; i++)
+        {
+            map.put(i, i);
+        }
+        List<Spliterator<Integer>> parts = new ArrayList<>();
+        Spliterator<Integer> top = map.keySet().spliterator();
+        // concurrent updates are seen while traversing, so no part is sized
+        assertFalse(top.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(-1, top.getExactSizeIfKnown());
+        parts.add(top);
+        for (int round = 0; round < 4; round++)
+        {
+            List<Spliterator<Integer>> next = new ArrayList<>();
+            for (Spliterator<Integer> s : parts)
+            {
+                Spliterator<Integer> prefix = s.trySplit();
+                if (prefix != null)
+                {
+                    next.add(prefix);
+                }
+                next.add(s);
+            }
+            parts = next;
+        }
+        assertEquals(16, parts.size());
+        long sizes = 0;
+        for (Spliterator<Integer> s : parts)
+        {
+            assertFalse(s.hasCharacteristics(Spliterator.SIZED));
+            assertFalse(s.hasCharacteristics(Spliterator.SUBSIZED));
+            assertEquals(-1, s.getExactSizeIfKnown());
+            sizes += s.estimateSize();
+        }
+        // without concurrent updates the estimates of the parts add up
+        assertEquals(map.size(), sizes);
+        Set<Integer> seen = new HashSet<>();
+        for (Spliterator<Integer> s : parts)
+        {
+            assertTrue(s.hasCharacteristics(Spliterator.CONCURRENT | Spliterator.DISTINCT | Spliterator.NONNULL));
+            long expected = s.estimateSize();
+            int before = seen.size();
+            s.forEachRemaining(k -> assertTrue(seen.add(k)));
+            assertEquals(expected, seen.size() - before);
+            assertEquals(0, s.estimateSize());
+            assertFalse(s.tryAdvance(k -> fail()));
+        }
+        assertEquals(map.size(), seen.size());
+    }
+
+    @Test
+    public void bulkForEachAndReduce()
+    {
+        NonBlockingHashMap<Integer, Long> map = new NonBlockingHashMap<>();
+        assertNull(NonBlockingHashMaps.reduce(map, 1, (k, v) -> v, Long::sum));
+        for (int i = 0; i < SIZE; i++)
+        {
+            map.put(i, (long) i);
+        }
+        for (long threshold : new long[]{1, Long.MAX_VALUE})
+        {
+            AtomicLong total = new AtomicLong();
+            Set<Integer> seen = ConcurrentHashMap.newKeySet();
+            NonBlockingHashMaps.forEach(map, threshold, (k, v) -> {
+                total.addAndGet(v);
+                assertTrue(seen.add(k));
+            });
+            assertEquals(sum(SIZE), total.get());
+            assertEquals(SIZE, seen.size());
+            assertEquals(Long.valueOf(sum(SIZE)), NonBlockingHashMaps.reduce(map, threshold, (k, v) -> v, Long::sum));
+            // null transformations are skipped
+            assertEquals(Long.valueOf(SIZE / 2), NonBlockingHashMaps.reduce(map, threshold, (k, v) -> k % 2 == 0 ? 1L : null, Long::sum));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void traversalDuringResizeSeesStableKeys() throws Exception
+    {
+        final NonBlockingHashMap<Integer, Integer> map = new NonBlockingHashMap<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            map.put(i, i);
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 1000; i < SIZE; i++)
+            {
+                map.put(i, i);
+            }
+        });
+        writer.start();
+        Set<Integer> seen = map.keySet().parallelStream().collect(Collectors.toSet());
+        writer.join();
+        for (int i = 0; i < 1000; i++)
+        {
+            assertTrue(seen.contains(i));
+        }
+    }
+
+    @Test
+    public void longKeyedMap()
+    {
+        NonBlockingHashMapLong<Long> map = new NonBlockingHashMapLong<>();
+        for (long i = 0; i < SIZE; i++)
+        {
+            map.put(i, Long.valueOf(i));
+        }
+        assertEquals(SIZE, map.keySet().parallelStream().distinct().count());
+        assertTrue(map.keySet().parallelStream().anyMatch(k -> k == 0));
+        assertEquals(sum(SIZE), map.values().parallelStream().mapToLong(Long::longValue).sum());
+        for (Map.Entry<Long, Long> e : map.entrySet().stream().collect(Collectors.toList()))
+        {
+            assertEquals(e.getKey(), e.getValue());
+        }
+        for (long threshold : new long[]{1, Long.MAX_VALUE})
+        {
+            AtomicLong total = new AtomicLong();
+            NonBlockingHashMaps.forEach(map, threshold, (k, v) -> total.addAndGet(k));
+            assertEquals(sum(SIZE), total.get());
+            assertEquals(Long.valueOf(SIZE), NonBlockingHashMaps.reduce(map, threshold, (k, v) -> 1L, Long::sum));
+        }
+        NonBlockingHashMapLong<String> zero = new NonBlockingHashMapLong<>();
+        zero.put(0, "zero");
+        assertEquals(Long.valueOf(0), NonBlockingHashMaps.reduce(zero, 1, (k, v) -> k, Long::sum));
+        assertEquals(1, zero.entrySet().parallelStream().count());
+    }
+
+    private static long sum(int n)
+    {
+        return (long) n * (n - 1) / 2;
+    }
+}
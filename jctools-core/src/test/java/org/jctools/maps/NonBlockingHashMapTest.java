@@ -90,8 +90,38 @@ public class NonBlockingHashMapTest extends TestCase
             }
         }, NonBlockingHashMapLong.class.getSimpleName());
 
+        TestSuite cacheSuite = mapTestSuite(new TestStringMapGenerator()
+        {
+            @Override
+            protected Map<String, String> create(Map.Entry<String, String>[] entries)
+            {
+                Map<String, String> map = new NonBlockingBoundedCache<>(1024);
+                for (Map.Entry<String, String> entry : entries)
+                {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+                return map;
+            }
+        }, NonBlockingBoundedCache.class.getSimpleName());
+
+        TestSuite seededMapSuite = mapTestSuite(new TestStringMapGenerator()
+        {
+            @Override
+            protected Map<String, String> create(Map.Entry<String, String>[] entries)
+            {
+                Map<String, String> map = new NonBlockingHashMap<>(8, HashingStrategy.seeded(0x5eed), true);
+                for (Map.Entry<String, String> entry : entries)
+                {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+                return map;
+            }
+        }, NonBlockingHashMap.class.getSimpleName() + "Seeded");
+
         suite.addTest(mapSuite);
         suite.addTest(longMapSuite);
+        suite.addTest(cacheSuite);
+        suite.addTest(seededMapSuite);
         return suite;
     }
 
@@ -0,0 +1,247 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class NonBlockingOpenHashSetConcurrencyTest
+{
+    @Test
+    public void resizesKeepingAllKeys()
+    {
+        NonBlockingOpenHashSet<Integer> set = new NonBlockingOpenHashSet<>(0);
+        for (int i = 0; i < 100000; i++)
+        {
+            assertTrue(set.add(i));
+        }
+        for (int i = 0; i < 100000; i += 2)
+        {
+            assertTrue(set.remove(i));
+        }
+        assertEquals(50000, set.size());
+        for (int i = 0; i < 100000; i++)
+        {
+            assertEquals(i % 2 != 0, set.contains(i));
+            assertEquals(i % 2 == 0, set.add(i));
+        }
+        assertEquals(100000, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(1));
+    }
+
+    @Test
+    public void identitySetComparesReferences()
+    {
+        NonBlockingIdentityOpenHashSet<String> set = new NonBlockingIdentityOpenHashSet<>();
+        String a = new String("a");
+        String b = new String("a");
+        assertTrue(set.add(a));
+        assertTrue(set.add(b));
+        assertFalse(set.add(a));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(b));
+        assertFalse(set.contains("a"));
+        assertTrue(set.remove(a));
+        assertFalse(set.contains(a));
+        assertTrue(set.contains(b));
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentAddsAreDeduplicated() throws Exception
+    {
+        final NonBlockingOpenHashSet<Integer> set = new NonBlockingOpenHashSet<>(0);
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int keys = 200000;
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int offset = t * 7919;
+            Thread worker = new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                    int count = 0;
+                    // all threads add the same keys, in different orders, racing the resizes
+                    for (int i = 0; i < keys; i++)
+                    {
+                        Integer key = (i + offset) % keys;
+                        if (set.add(key))
+                        {
+                            count++;
+                        }
+                        assertTrue(set.contains(key));
+                    }
+                    added.addAndGet(count);
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertEquals(keys, added.get());
+        assertEquals(keys, set.size());
+        Set<Integer> seen = new HashSet<>();
+        for (Integer key : set)
+        {
+            assertTrue("duplicate " + key, seen.add(key));
+        }
+        assertEquals(keys, seen.size());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentAddAndRemove() throws Exception
+    {
+        final NonBlockingOpenHashSet<Integer> set = new NonBlockingOpenHashSet<>(0);
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int keysPerThread = 20000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int base = t * keysPerThread;
+            Thread worker = new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                    // each thread owns its keys, churning tombstones into copies
+                    for (int round = 0; round < 5; round++)
+                    {
+                        for (int i = base; i < base + keysPerThread; i++)
+                        {
+                            assertTrue(set.add(i));
+                        }
+                        for (int i = base; i < base + keysPerThread; i++)
+                        {
+                            assertTrue(set.remove(i));
+                            assertFalse(set.contains(i));
+                        }
+                    }
+                    for (int i = base; i < base + keysPerThread; i += 2)
+                    {
+                        assertTrue(set.add(i));
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertEquals(threads * keysPerThread / 2, set.size());
+        for (int i = 0; i < threads * keysPerThread; i++)
+        {
+            assertEquals(i % 2 == 0, set.contains(i));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void removedKeysStayRemovedAcrossResizes() throws Exception
+    {
+        final NonBlockingOpenHashSet<Integer> set = new NonBlockingOpenHashSet<>(0);
+        final int removers = Math.max(3, Runtime.getRuntime().availableProcessors() - 1);
+        final int keysPerThread = 2000;
+        final int rounds = 50;
+        final int growKeys = 400000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        // keeps growing the set, so the removals race the copies to new tables
+        workers.add(new Thread(() ->
+        {
+            try
+            {
+                start.await();
+                for (int i = 0; i < growKeys; i++)
+                {
+                    set.add(-1 - i);
+                }
+            }
+            catch (Throwable e)
+            {
+                failure.compareAndSet(null, e);
+            }
+        }));
+        for (int t = 0; t < removers; t++)
+        {
+            final int base = t * keysPerThread;
+            workers.add(new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                    for (int round = 0; round < rounds; round++)
+                    {
+                        for (int i = base; i < base + keysPerThread; i++)
+                        {
+                            assertTrue(set.add(i));
+                        }
+                        for (int i = base; i < base + keysPerThread; i++)
+                        {
+                            assertTrue(set.remove(i));
+                        }
+                        // a late copy must not bring back any of the removed keys
+                        for (int i = base; i < base + keysPerThread; i++)
+                        {
+                            assertFalse("resurrected " + i, set.contains(i));
+                        }
+                        assertTrue(set.size() >= 0);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread worker : workers)
+        {
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertEquals(growKeys, set.size());
+        int seen = 0;
+        for (Integer key : set)
+        {
+            assertTrue("resurrected " + key, key < 0);
+            seen++;
+        }
+        assertEquals(growKeys, seen);
+    }
+}
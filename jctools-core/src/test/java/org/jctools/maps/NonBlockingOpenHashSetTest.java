@@ -0,0 +1,53 @@
+package org.jctools.maps;
+
+import com.google.common.collect.testing.SetTestSuiteBuilder;
+import com.google.common.collect.testing.TestStringSetGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Collections;
+import java.util.Set;
+
+public class NonBlockingOpenHashSetTest extends TestCase
+{
+
+    public static Test suite() throws Exception
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTest(setTestSuite(new TestStringSetGenerator()
+        {
+            @Override
+            protected Set<String> create(String[] elements)
+            {
+                Set<String> set = new NonBlockingOpenHashSet<>();
+                Collections.addAll(set, elements);
+                return set;
+            }
+        }, NonBlockingOpenHashSet.class.getSimpleName()));
+        suite.addTest(setTestSuite(new TestStringSetGenerator()
+        {
+            @Override
+            protected Set<String> create(String[] elements)
+            {
+                Set<String> set = new NonBlockingOpenHashSet<>(0, HashingStrategy.seeded(42));
+                Collections.addAll(set, elements);
+                return set;
+            }
+        }, NonBlockingOpenHashSet.class.getSimpleName() + "_Seeded"));
+        return suite;
+    }
+
+    private static Test setTestSuite(TestStringSetGenerator generator, String name)
+    {
+        return SetTestSuiteBuilder.using(generator)
+            .withFeatures(
+                CollectionFeature.GENERAL_PURPOSE,
+                CollectionFeature.SERIALIZABLE,
+                CollectionSize.ANY)
+            .named(name)
+            .createTestSuite();
+    }
+}
@@ -0,0 +1,296 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class OffHeapNonBlockingHashMapLongTest
+{
+    private static final int VALUE_SIZE = 12;
+
+    @Test
+    public void basicOperations()
+    {
+        try (OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            byte[] buf = new byte[VALUE_SIZE + 2];
+            assertTrue(map.isEmpty());
+            assertFalse(map.get(1, buf, 0));
+            assertFalse(map.put(1, value(10), 0));
+            assertTrue(map.put(1, value(11), 0));
+            assertFalse(map.putIfAbsent(1, value(12), 0));
+            assertTrue(map.get(1, buf, 2));
+            assertEquals(11, decode(buf, 2));
+            assertFalse(map.replace(2, value(20), 0));
+            assertFalse(map.containsKey(2));
+            assertTrue(map.putIfAbsent(2, value(20), 0));
+            assertTrue(map.replace(2, value(21), 0));
+            assertTrue(map.get(2, buf, 0));
+            assertEquals(21, decode(buf, 0));
+            assertEquals(2, map.size());
+            assertTrue(map.remove(2));
+            assertFalse(map.remove(2));
+            assertFalse(map.containsKey(2));
+            assertEquals(1, map.size());
+            map.clear();
+            assertTrue(map.isEmpty());
+            assertEquals(VALUE_SIZE, map.valueSize());
+        }
+    }
+
+    @Test
+    public void zeroKey()
+    {
+        try (OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            byte[] buf = new byte[VALUE_SIZE];
+            assertFalse(map.containsKey(0));
+            assertFalse(map.put(0, value(7), 0));
+            assertFalse(map.put(-1, value(8), 0));
+            assertTrue(map.get(0, buf, 0));
+            assertEquals(7, decode(buf, 0));
+            long[] keys = map.keys();
+            Arrays.sort(keys);
+            assertArrayEquals(new long[]{-1, 0}, keys);
+            assertTrue(map.remove(0));
+            assertEquals(1, map.size());
+        }
+    }
+
+    @Test
+    public void matchesHashMapThroughResizesAndChurn()
+    {
+        try (OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            Map<Long, Long> expected = new HashMap<>();
+            byte[] buf = new byte[VALUE_SIZE];
+            Random r = new Random(42);
+            for (int i = 0; i < 300000; i++)
+            {
+                long key = r.nextInt(20000) - 10000;
+                long val = r.nextLong();
+                switch (r.nextInt(4))
+                {
+                    case 0:
+                        assertEquals(expected.put(key, val) != null, map.put(key, value(val), 0));
+                        break;
+                    case 1:
+                        assertEquals(expected.remove(key) != null, map.remove(key));
+                        break;
+                    case 2:
+                        boolean absent = !expected.containsKey(key);
+                        if (absent)
+                        {
+                            expected.put(key, val);
+                        }
+                        assertEquals(absent, map.putIfAbsent(key, value(val), 0));
+                        break;
+                    default:
+                        Long v = expected.get(key);
+                        assertEquals(v != null, map.get(key, buf, 0));
+                        if (v != null)
+                        {
+                            assertEquals(v.longValue(), decode(buf, 0));
+                        }
+                }
+            }
+            assertEquals(expected.size(), map.size());
+            for (Map.Entry<Long, Long> e : expected.entrySet())
+            {
+                assertTrue(map.get(e.getKey(), buf, 0));
+                assertEquals(e.getValue().longValue(), decode(buf, 0));
+            }
+            assertEquals(expected.size(), map.keys().length);
+        }
+    }
+
+    @Test
+    public void overwritesDoNotGrowTable()
+    {
+        try (OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            byte[] buf = new byte[VALUE_SIZE];
+            // every put takes a fresh value record, so the records run out over and over
+            for (int i = 0; i < 2000000; i++)
+            {
+                map.put(i & 7, value(i), 0);
+            }
+            assertEquals(8, map.size());
+            assertTrue("capacity " + map.capacity(), map.capacity() <= 64);
+            for (int k = 0; k < 8; k++)
+            {
+                assertTrue(map.get(k, buf, 0));
+                assertEquals(2000000 - 8 + k, decode(buf, 0));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentWritersAndReaders() throws Exception
+    {
+        try (final OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            final int keys = 20000;
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                final int id = t;
+                Thread worker = new Thread(() -> {
+                    try
+                    {
+                        byte[] buf = new byte[VALUE_SIZE];
+                        start.await();
+                        for (int round = 0; round < 5; round++)
+                        {
+                            for (int k = 0; k < keys; k++)
+                            {
+                                // every value of a key is a multiple of the key, torn reads would not be
+                                long key = k * threads + id;
+                                map.put(key, value(key * round), 0);
+                                assertTrue(map.get(key, buf, 0));
+                                assertEquals(key * round, decode(buf, 0));
+                                long other = (k * 7L) % (keys * (long) threads);
+                                if (map.get(other, buf, 0) && other != 0)
+                                {
+                                    assertEquals(0, decode(buf, 0) % other);
+                                }
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.set(e);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers)
+            {
+                worker.join();
+            }
+            assertNull(failure.get());
+            assertEquals(keys * threads, map.size());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void clearsRacingResizes() throws Exception
+    {
+        try (final OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            final int keys = 20000;
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                final int id = t;
+                workers.add(new Thread(() -> {
+                    try
+                    {
+                        byte[] buf = new byte[VALUE_SIZE];
+                        start.await();
+                        for (int round = 0; round < 5; round++)
+                        {
+                            // growing key space keeps copies going while the tables are cleared away
+                            for (int k = 1; k <= keys; k++)
+                            {
+                                long key = k * threads + id;
+                                map.put(key, value(key * round), 0);
+                                if (map.get(key, buf, 0))
+                                {
+                                    assertEquals(key * round, decode(buf, 0));
+                                }
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.set(e);
+                    }
+                }));
+            }
+            workers.add(new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < 200; i++)
+                    {
+                        map.clear();
+                        Thread.yield();
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            }));
+            for (Thread worker : workers)
+            {
+                worker.start();
+            }
+            start.countDown();
+            for (Thread worker : workers)
+            {
+                worker.join();
+            }
+            assertNull(failure.get());
+            assertTrue(map.size() <= keys * threads);
+        }
+    }
+
+    @Test
+    public void closedMapRejectsOperations()
+    {
+        OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(1000, VALUE_SIZE);
+        map.put(1, value(1), 0);
+        map.close();
+        map.close();
+        try
+        {
+            map.get(1, new byte[VALUE_SIZE], 0);
+            fail();
+        }
+        catch (IllegalStateException expected)
+        {
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void valueMustFitBuffer()
+    {
+        try (OffHeapNonBlockingHashMapLong map = new OffHeapNonBlockingHashMapLong(VALUE_SIZE))
+        {
+            map.put(1, new byte[VALUE_SIZE], 1);
+        }
+    }
+
+    private static byte[] value(long v)
+    {
+        return ByteBuffer.allocate(VALUE_SIZE).putLong(v).putInt((int) (v >>> 16)).array();
+    }
+
+    private static long decode(byte[] buf, int offset)
+    {
+        ByteBuffer bb = ByteBuffer.wrap(buf, offset, VALUE_SIZE);
+        long v = bb.getLong();
+        assertEquals((int) (v >>> 16), bb.getInt());
+        return v;
+    }
+}
@@ -6,7 +6,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.*;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.anyOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -187,6 +189,135 @@ public class nbsi_tester
         _nbsi.clear();
     }
 
+    @Test
+    public void testNextSetBit()
+    {
+        final NonBlockingSetInt nbsi = new NonBlockingSetInt();
+        assertEquals(-1, nbsi.nextSetBit(0));
+        final int[] elems = {0, 62, 63, 64, 127, 4095, 4096, 100000};
+        for (int e : elems)
+        {
+            nbsi.add(e);
+        }
+        int prev = -1;
+        for (int e : elems)
+        {
+            assertEquals(e, nbsi.nextSetBit(prev + 1));
+            prev = e;
+        }
+        assertEquals(-1, nbsi.nextSetBit(100001));
+        assertEquals(-1, nbsi.nextSetBit(Integer.MAX_VALUE));
+        assertEquals(4095, nbsi.nextSetBit(128));
+    }
+
+    // Check the bulk operations against a BitSet
+    @Test
+    public void testRanges()
+    {
+        final NonBlockingSetInt nbsi = new NonBlockingSetInt();
+        final BitSet expected = new BitSet();
+        assertEquals(200, nbsi.addRange(10, 210));
+        expected.set(10, 210);
+        assertEquals(0, nbsi.addRange(50, 60));
+        assertEquals(4000 - 210, nbsi.addRange(100, 4000));
+        expected.set(100, 4000);
+        assertEquals(64, nbsi.removeRange(63, 127));
+        expected.clear(63, 127);
+        assertEquals(0, nbsi.removeRange(5000, 100000));
+        assertEquals(0, nbsi.addRange(7, 7));
+        checkEquals(expected, nbsi);
+        for (int from = 0; from < 4200; from += 37)
+        {
+            for (int to = from; to < 4200; to += 101)
+            {
+                assertEquals(from + ".." + to, expected.get(from, to).cardinality(), nbsi.cardinality(from, to));
+            }
+        }
+        assertEquals(expected.cardinality(), nbsi.removeRange(0, Integer.MAX_VALUE));
+        assertTrue(nbsi.isEmpty());
+        assertEquals(-1, nbsi.nextSetBit(0));
+    }
+
+    @Test
+    public void testUnionIntersection()
+    {
+        final NonBlockingSetInt a = new NonBlockingSetInt();
+        final NonBlockingSetInt b = new NonBlockingSetInt();
+        final BitSet union = new BitSet();
+        final BitSet intersection = new BitSet();
+        a.addRange(0, 1000);
+        b.addRange(500, 5000);
+        for (int i = 0; i < 20000; i += 63)
+        {
+            b.add(i);
+        }
+        union.set(0, 5000);
+        intersection.set(500, 1000);
+        for (int i = 0; i < 20000; i += 63)
+        {
+            union.set(i);
+            if (i < 1000)
+            {
+                intersection.set(i);
+            }
+        }
+        final NonBlockingSetInt c = new NonBlockingSetInt();
+        assertTrue(c.addAll(a));
+        assertTrue(c.addAll(b));
+        assertFalse(c.addAll(b));
+        checkEquals(union, c);
+        assertTrue(a.retainAll(b));
+        assertFalse(a.retainAll(b));
+        checkEquals(intersection, a);
+    }
+
+    @Test
+    public void testConcurrentAddRange() throws InterruptedException
+    {
+        final NonBlockingSetInt nbsi = new NonBlockingSetInt();
+        final AtomicInteger added = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int offset = t * 1000;
+            threads[t] = new Thread(() ->
+            {
+                // overlapping ranges racing the resizes
+                for (int from = offset; from < 100000; from += 4000)
+                {
+                    added.addAndGet(nbsi.addRange(from, from + 2500));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        final BitSet expected = new BitSet();
+        for (int t = 0; t < threads.length; t++)
+        {
+            for (int from = t * 1000; from < 100000; from += 4000)
+            {
+                expected.set(from, from + 2500);
+            }
+        }
+        assertEquals(expected.cardinality(), added.get());
+        checkEquals(expected, nbsi);
+    }
+
+    private static void checkEquals(BitSet expected, NonBlockingSetInt nbsi)
+    {
+        assertEquals(expected.cardinality(), nbsi.size());
+        int i = -1;
+        for (int e : nbsi)
+        {
+            assertEquals(expected.nextSetBit(i + 1), e);
+            i = e;
+        }
+        assertEquals(-1, expected.nextSetBit(i + 1));
+    }
+
     // Do some simple concurrent testing
     @Test
     public void testConcurrentSimple() throws InterruptedException
@@ -0,0 +1,257 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.jctools.queues.spec.Preference;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class BlockingQueueSanityTest
+{
+    static final int TEST_TIMEOUT = 30000;
+    static final int CAPACITY = 16;
+
+    private final ConcurrentQueueSpec spec;
+    private final BlockingQueue<Integer> queue;
+
+    public BlockingQueueSanityTest(ConcurrentQueueSpec spec, BlockingQueue<Integer> queue)
+    {
+        this.spec = spec;
+        this.queue = queue;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(makeBlocking(1, 1, new SpscBlockingQueue<>(CAPACITY)));
+        list.add(makeBlocking(0, 1, new MpscBlockingQueue<>(CAPACITY)));
+        list.add(makeBlocking(0, 0, new MpmcBlockingQueue<>(CAPACITY)));
+        return list;
+    }
+
+    static Object[] makeBlocking(int producers, int consumers, BlockingQueue<Integer> q)
+    {
+        ConcurrentQueueSpec spec = new ConcurrentQueueSpec(producers, consumers, CAPACITY, Ordering.FIFO,
+            Preference.NONE);
+        return new Object[] {spec, q};
+    }
+
+    @After
+    public void clear()
+    {
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void takeReturnsAvailableElements() throws Exception
+    {
+        queue.put(1);
+        queue.put(2);
+        assertEquals(1, queue.take().intValue());
+        assertEquals(2, queue.take().intValue());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void takeBlocksUntilOffer() throws Exception
+    {
+        final AtomicReference<Integer> taken = new AtomicReference<Integer>();
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread consumer = new Thread(() ->
+        {
+            started.countDown();
+            try
+            {
+                taken.set(queue.take());
+            }
+            catch (InterruptedException e)
+            {
+            }
+        });
+        consumer.start();
+        started.await();
+        // let the consumer park
+        Thread.sleep(50);
+        assertNull(taken.get());
+        assertTrue(queue.offer(7));
+        consumer.join();
+        assertEquals(7, taken.get().intValue());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void timedPollTimesOut() throws Exception
+    {
+        assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+        final long start = System.nanoTime();
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        queue.offer(1);
+        assertEquals(1, queue.poll(20, TimeUnit.MILLISECONDS).intValue());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void takeIsInterruptible() throws Exception
+    {
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread consumer = new Thread(() ->
+        {
+            try
+            {
+                queue.take();
+            }
+            catch (Throwable t)
+            {
+                thrown.set(t);
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join();
+        assertTrue(thrown.get() instanceof InterruptedException);
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void putBlocksUntilPoll() throws Exception
+    {
+        final int capacity = ((MessagePassingQueue<Integer>) queue).capacity();
+        for (int i = 0; i < capacity; i++)
+        {
+            queue.put(i);
+        }
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(-1));
+        final long start = System.nanoTime();
+        assertFalse(queue.offer(-1, 20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        Thread producer = new Thread(() ->
+        {
+            try
+            {
+                queue.put(capacity);
+            }
+            catch (InterruptedException e)
+            {
+            }
+        });
+        producer.start();
+        Thread.sleep(50);
+        assertEquals(capacity, queue.size());
+        assertEquals(0, queue.poll().intValue());
+        producer.join();
+        for (int i = 1; i <= capacity; i++)
+        {
+            assertEquals(i, queue.poll().intValue());
+        }
+    }
+
+    @Test
+    public void drainTo()
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            queue.offer(i);
+        }
+        List<Integer> c = new ArrayList<Integer>();
+        assertEquals(0, queue.drainTo(c, 0));
+        assertEquals(4, queue.drainTo(c, 4));
+        assertEquals(6, queue.drainTo(c));
+        assertEquals(10, c.size());
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals(i, c.get(i).intValue());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void drainToSelfResultsInIAE()
+    {
+        queue.drainTo(queue);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void drainToNullResultsInNPE()
+    {
+        queue.drainTo(null);
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void putTakeNoLostWakeups() throws Exception
+    {
+        final int producersCount = spec.producers == 1 ? 1 : 2;
+        final int consumersCount = spec.consumers == 1 ? 1 : 2;
+        final int perProducer = 100000;
+        final AtomicLong sum = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[producersCount + consumersCount];
+        for (int p = 0; p < producersCount; p++)
+        {
+            threads[p] = new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 1; i <= perProducer; i++)
+                    {
+                        queue.put(i);
+                        if ((i & 1023) == 0)
+                        {
+                            // give the consumers a chance to park
+                            Thread.sleep(1);
+                        }
+                    }
+                }
+                catch (Throwable t)
+                {
+                    failure.set(t);
+                }
+            });
+        }
+        final int perConsumer = producersCount * perProducer / consumersCount;
+        for (int c = 0; c < consumersCount; c++)
+        {
+            threads[producersCount + c] = new Thread(() ->
+            {
+                try
+                {
+                    long local = 0;
+                    for (int i = 0; i < perConsumer; i++)
+                    {
+                        local += (i & 1) == 0 ? queue.take() : queue.poll(1, TimeUnit.DAYS);
+                    }
+                    sum.addAndGet(local);
+                }
+                catch (Throwable t)
+                {
+                    failure.set(t);
+                }
+            });
+        }
+        for (Thread t : threads)
+        {
+            t.start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertEquals(producersCount * ((long) perProducer * (perProducer + 1) / 2), sum.get());
+    }
+}
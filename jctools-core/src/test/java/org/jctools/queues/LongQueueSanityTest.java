@@ -0,0 +1,164 @@
+package org.jctools.queues;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class LongQueueSanityTest
+{
+    static final int TEST_TIMEOUT = 30000;
+    static final int SIZE = 8192 * 2;
+
+    private final int producers;
+    private final int consumers;
+    private final MessagePassingLongQueue queue;
+
+    public LongQueueSanityTest(int producers, int consumers, MessagePassingLongQueue queue)
+    {
+        this.producers = producers;
+        this.consumers = consumers;
+        this.queue = queue;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(new Object[] {1, 1, new SpscLongArrayQueue(SIZE)});
+        list.add(new Object[] {2, 1, new MpscLongArrayQueue(SIZE)});
+        list.add(new Object[] {2, 2, new MpmcLongArrayQueue(SIZE)});
+        list.add(new Object[] {1, 1, new SpscLongArrayQueue(16, -1)});
+        list.add(new Object[] {2, 1, new MpscLongArrayQueue(16, -1)});
+        list.add(new Object[] {2, 2, new MpmcLongArrayQueue(16, -1)});
+        return list;
+    }
+
+    @After
+    public void clear()
+    {
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void sanity()
+    {
+        final long empty = queue.emptyValue();
+        assertEquals(empty, queue.poll());
+        assertEquals(empty, queue.peek());
+        assertEquals(empty, queue.relaxedPoll());
+        int i = 0;
+        while (i < SIZE && queue.offer(i))
+        {
+            i++;
+        }
+        assertEquals(queue.capacity(), i);
+        assertEquals(i, queue.size());
+        assertFalse(queue.offer(i));
+        assertFalse(queue.relaxedOffer(i));
+        for (int j = 0; j < i; j++)
+        {
+            assertEquals(j, queue.peek());
+            assertEquals(j, queue.poll());
+        }
+        assertEquals(empty, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void offerMinAndMaxValues()
+    {
+        final long other = queue.emptyValue() == Long.MIN_VALUE ? -1 : Long.MIN_VALUE;
+        assertTrue(queue.offer(other));
+        assertTrue(queue.offer(Long.MAX_VALUE));
+        assertEquals(other, queue.poll());
+        assertEquals(Long.MAX_VALUE, queue.relaxedPoll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offerEmptyValueResultsInIAE()
+    {
+        queue.offer(queue.emptyValue());
+    }
+
+    @Test
+    public void fillAndDrain()
+    {
+        final long[] next = {1};
+        assertEquals(10, queue.fill(() -> next[0]++, 10));
+        assertEquals(10, queue.size());
+        final AtomicLong sum = new AtomicLong();
+        assertEquals(4, queue.drain(sum::addAndGet, 4));
+        assertEquals(1 + 2 + 3 + 4, sum.get());
+        assertEquals(6, queue.drain(sum::addAndGet));
+        assertEquals(55, sum.get());
+        assertEquals(queue.capacity(), queue.fill(() -> next[0]++));
+        assertEquals(0, queue.fill(() -> next[0]++, 1));
+        assertEquals(queue.capacity(), queue.drain(e -> {}));
+        assertEquals(0, queue.drain(e -> {}, 1));
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testHappensBefore() throws Exception
+    {
+        final int perProducer = 100000;
+        final AtomicLong sum = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++)
+        {
+            threads[p] = new Thread(() ->
+            {
+                for (int i = 1; i <= perProducer; i++)
+                {
+                    while (!queue.offer(i))
+                    {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        final int perConsumer = producers * perProducer / consumers;
+        for (int c = 0; c < consumers; c++)
+        {
+            threads[producers + c] = new Thread(() ->
+            {
+                long local = 0;
+                for (int i = 0; i < perConsumer; i++)
+                {
+                    long e;
+                    while ((e = queue.poll()) == queue.emptyValue())
+                    {
+                        Thread.yield();
+                    }
+                    if (e < 1 || e > perProducer)
+                    {
+                        failure.set(new AssertionError("Unexpected element: " + e));
+                    }
+                    local += e;
+                }
+                sum.addAndGet(local);
+            });
+        }
+        for (Thread t : threads)
+        {
+            t.start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertEquals(producers * ((long) perProducer * (perProducer + 1) / 2), sum.get());
+    }
+}
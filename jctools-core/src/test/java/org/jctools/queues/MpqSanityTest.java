@@ -10,7 +10,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -175,6 +178,178 @@ public abstract class MpqSanityTest
         }
     }
 
+    @Test
+    public void sanityOfferPollBatch()
+    {
+        final Integer[] src = new Integer[7];
+        final Integer[] dst = new Integer[5];
+        assertEquals(0, queue.poll(dst, 0, dst.length));
+        assertTrue(queue.isEmpty());
+        int size = 0;
+        int offered;
+        do
+        {
+            for (int j = 0; j < src.length; j++)
+            {
+                src[j] = size + j;
+            }
+            offered = queue.offer(src, 0, Math.min(src.length, SIZE - size));
+            size += offered;
+        }
+        while (offered != 0 && size < SIZE);
+        assertEquals(size, queue.size());
+        if (spec.isBounded())
+        {
+            assertEquals(spec.capacity, size);
+            assertEquals(0, queue.offer(src, 0, src.length));
+        }
+
+        int polled;
+        int i = 0;
+        int sum = (size - 1) * size / 2;
+        while ((polled = queue.poll(dst, 1, dst.length - 1)) != 0)
+        {
+            assertNull(dst[0]);
+            for (int j = 0; j < polled; j++)
+            {
+                final int e = dst[1 + j];
+                if (spec.ordering == Ordering.FIFO)
+                {
+                    assertEquals(i + j, e);
+                }
+                sum -= e;
+            }
+            i += polled;
+            assertEquals(size - i, queue.size());
+        }
+        assertEquals(size, i);
+        assertEquals(0, sum);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void offerBatchWithNullElementOffersNothing()
+    {
+        final Integer[] src = {1, 2, null, 4};
+        try
+        {
+            queue.offer(src, 0, src.length);
+            fail();
+        }
+        catch (NullPointerException expected)
+        {
+        }
+        assertTrue(queue.isEmpty());
+        // the null is out of range
+        assertEquals(1, queue.offer(src, 3, 1));
+        assertEquals(4, queue.relaxedPoll().intValue());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void offerBatchOutOfRangeResultsInIOOBE()
+    {
+        queue.offer(new Integer[] {1, 2, 3}, 2, 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void pollBatchOutOfRangeResultsInIOOBE()
+    {
+        queue.poll(new Integer[4], -1, 2);
+    }
+
+    @Test
+    public void timedDrainStopsAtMaxBatch()
+    {
+        int size = 0;
+        while (size < 10 && queue.relaxedOffer(size))
+        {
+            size++;
+        }
+        final int batch = (size + 1) / 2;
+        count = 0;
+        sum = 0;
+        final MessagePassingQueue.WaitStrategy noWait = idleCounter ->
+        {
+            throw new AssertionError("elements were available");
+        };
+        assertEquals(batch, queue.drain(e ->
+        {
+            if (spec.ordering == Ordering.FIFO)
+            {
+                assertEquals(count, e.intValue());
+            }
+            count++;
+            sum += e;
+        }, batch, TimeUnit.SECONDS.toNanos(10), noWait));
+        assertEquals(batch, count);
+        assertEquals(size - batch, queue.size());
+        assertEquals(size - batch, queue.drain(e -> sum += e, 10, 0, noWait));
+        assertEquals((size - 1) * size / 2, sum);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void timedDrainReturnsAtDeadlineWhenEmpty()
+    {
+        final MessagePassingQueue.WaitStrategy noWait = idleCounter ->
+        {
+            throw new AssertionError("should not wait");
+        };
+        assertEquals(0, queue.drain(e -> fail(), 10, 0, noWait));
+        assertTrue(queue.relaxedOffer(1));
+        assertEquals(1, queue.drain(e -> assertEquals(1, e.intValue()), 10, -1, noWait));
+
+        final long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(5);
+        final int[] idles = new int[1];
+        final long start = System.nanoTime();
+        assertEquals(0, queue.drain(e -> fail(), 10, maxWaitNanos, idleCounter ->
+        {
+            idles[0]++;
+            Thread.yield();
+            return idleCounter + 1;
+        }));
+        assertTrue(System.nanoTime() - start >= maxWaitNanos);
+        assertTrue(idles[0] > 0);
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void timedDrainWaitsForBatchToFill() throws Exception
+    {
+        final int batch = 64;
+        final Thread producer = new Thread(() ->
+        {
+            for (int i = 0; i < batch; i++)
+            {
+                while (!queue.relaxedOffer(i))
+                {
+                    Thread.yield();
+                }
+                if (i % 8 == 0)
+                {
+                    LockSupport.parkNanos(100000);
+                }
+            }
+        });
+        producer.start();
+        count = 0;
+        final int drained = queue.drain(e ->
+        {
+            if (spec.ordering == Ordering.FIFO)
+            {
+                assertEquals(count, e.intValue());
+            }
+            count++;
+        }, batch, TimeUnit.SECONDS.toNanos(TEST_TIMEOUT), idleCounter ->
+        {
+            Thread.yield();
+            return idleCounter + 1;
+        });
+        producer.join();
+        assertEquals(batch, drained);
+        assertEquals(batch, count);
+        assertTrue(queue.isEmpty());
+    }
+
     @Test
     public void testSizeIsTheNumberOfOffers()
     {
@@ -570,6 +745,81 @@ public abstract class MpqSanityTest
 
     }
 
+    @Test(timeout = TEST_TIMEOUT)
+    public void testHappensBeforeOfferPollBatch() throws Exception
+    {
+        final AtomicBoolean stop = new AtomicBoolean();
+        final MessagePassingQueue q = queue;
+        final Val fail = new Val();
+        final AtomicLong offered = new AtomicLong();
+        final Runnable runnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final Val[] src = new Val[10];
+                long count = 0;
+                while (!stop.get())
+                {
+                    for (int i = 0; i < src.length; i++)
+                    {
+                        Val v = new Val();
+                        v.value = i + 1;
+                        src[i] = v;
+                    }
+                    int off = 0;
+                    while (off < src.length && !stop.get())
+                    {
+                        off += q.offer(src, off, src.length - off);
+                    }
+                    count += off;
+                    // slow down the producer, this will make the queue mostly empty encouraging visibility
+                    // issues.
+                    Thread.yield();
+                }
+                offered.addAndGet(count);
+            }
+        };
+        Thread[] producers = producers(runnable);
+
+        final AtomicLong polled = new AtomicLong();
+        Thread consumer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final Val[] dst = new Val[7];
+                long count = 0;
+                while (!stop.get())
+                {
+                    final int n = q.poll(dst, 0, dst.length);
+                    for (int i = 0; i < n; i++)
+                    {
+                        if (dst[i] == null || dst[i].value == 0)
+                        {
+                            fail.value = 1;
+                            stop.set(true);
+                        }
+                        dst[i] = null;
+                    }
+                    count += n;
+                }
+                polled.set(count);
+            }
+        });
+
+        stopAll(stop, producers, consumer);
+        assertEquals("reordering detected", 0, fail.value);
+        final Val[] dst = new Val[16];
+        long remaining = 0;
+        int n;
+        while ((n = q.poll(dst, 0, dst.length)) != 0)
+        {
+            remaining += n;
+        }
+        assertEquals(offered.get(), polled.get() + remaining);
+    }
+
     @Test(timeout = TEST_TIMEOUT)
     public void testRelaxedOfferPollObservedSize() throws Exception
     {
@@ -22,6 +22,7 @@ public class MpqSanityTestMpmcArray extends MpqSanityTest
         ArrayList<Object[]> list = new ArrayList<Object[]>();
         list.add(makeMpq(0, 0, 2, Ordering.FIFO, null));
         list.add(makeMpq(0, 0, SIZE, Ordering.FIFO, null));
+        list.add(makeMpq(0, 0, 2, Ordering.FIFO, new MpmcBlockingQueue<>(2)));
         return list;
     }
 }
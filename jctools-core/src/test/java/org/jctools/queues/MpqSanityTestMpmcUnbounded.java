@@ -0,0 +1,29 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@RunWith(Parameterized.class)
+public class MpqSanityTestMpmcUnbounded extends MpqSanityTest
+{
+    public MpqSanityTestMpmcUnbounded(ConcurrentQueueSpec spec, MessagePassingQueue<Integer> queue)
+    {
+        super(spec, queue);
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(makeMpq(0, 0, 0, Ordering.FIFO, null));
+        list.add(makeMpq(0, 0, 0, Ordering.FIFO, new MpmcUnboundedArrayQueue<>(2)));
+        list.add(makeMpq(0, 0, 0, Ordering.FIFO, new MpmcUnboundedArrayQueue<>(64, 0)));
+        return list;
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static org.jctools.util.PortableJvmInfo.CPUs;
+
+@RunWith(Parameterized.class)
+public class MpqSanityTestMpscAdaptiveCompound extends MpqSanityTest
+{
+    public MpqSanityTestMpscAdaptiveCompound(ConcurrentQueueSpec spec, MessagePassingQueue<Integer> queue)
+    {
+        super(spec, queue);
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(makeMpq(0, 1, 8, Ordering.NONE, new MpscAdaptiveCompoundQueue<Integer>(8, 4)));
+        list.add(makeMpq(0, 1, SIZE, Ordering.NONE, new MpscAdaptiveCompoundQueue<Integer>(SIZE, CPUs)));
+        return list;
+    }
+}
@@ -22,6 +22,7 @@ public class MpqSanityTestMpscArray extends MpqSanityTest
         ArrayList<Object[]> list = new ArrayList<Object[]>();
         list.add(makeMpq(0, 1, 1, Ordering.FIFO, null));// MPSC size 1
         list.add(makeMpq(0, 1, SIZE, Ordering.FIFO, null));// MPSC size SIZE
+        list.add(makeMpq(0, 1, SIZE, Ordering.FIFO, new MpscBlockingQueue<>(SIZE)));
         return list;
     }
 }
@@ -0,0 +1,28 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@RunWith(Parameterized.class)
+public class MpqSanityTestMpscPriorityLanes extends MpqSanityTest
+{
+    public MpqSanityTestMpscPriorityLanes(ConcurrentQueueSpec spec, MessagePassingQueue<Integer> queue)
+    {
+        super(spec, queue);
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        // a single lane, as plain offers only go to lane 0 and could not fill the other lanes
+        list.add(makeMpq(0, 1, 4, Ordering.FIFO, new MpscPriorityLanesQueue<Integer>(4)));
+        list.add(makeMpq(0, 1, SIZE, Ordering.FIFO, new MpscPriorityLanesQueue<Integer>(SIZE)));
+        return list;
+    }
+}
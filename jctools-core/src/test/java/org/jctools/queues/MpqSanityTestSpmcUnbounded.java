@@ -0,0 +1,29 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@RunWith(Parameterized.class)
+public class MpqSanityTestSpmcUnbounded extends MpqSanityTest
+{
+    public MpqSanityTestSpmcUnbounded(ConcurrentQueueSpec spec, MessagePassingQueue<Integer> queue)
+    {
+        super(spec, queue);
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(makeMpq(1, 0, 0, Ordering.FIFO, null));
+        list.add(makeMpq(1, 0, 0, Ordering.FIFO, new SpmcUnboundedArrayQueue<>(2)));
+        list.add(makeMpq(1, 0, 0, Ordering.FIFO, new SpmcUnboundedArrayQueue<>(64, 0)));
+        return list;
+    }
+
+}
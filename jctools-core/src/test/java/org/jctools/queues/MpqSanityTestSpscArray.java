@@ -22,6 +22,7 @@ public class MpqSanityTestSpscArray extends MpqSanityTest
         ArrayList<Object[]> list = new ArrayList<Object[]>();
         list.add(makeMpq(1, 1, 4, Ordering.FIFO, null));// SPSC size 4
         list.add(makeMpq(1, 1, SIZE, Ordering.FIFO, null));// SPSC size SIZE
+        list.add(makeMpq(1, 1, 4, Ordering.FIFO, new SpscBlockingQueue<>(4)));
         return list;
     }
 }
@@ -0,0 +1,172 @@
+package org.jctools.queues;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MpscAdaptiveCompoundQueueTest
+{
+    @Test
+    public void startsOnOneQueueAndKeepsTheFullCapacity()
+    {
+        MpscAdaptiveCompoundQueue<Integer> q = new MpscAdaptiveCompoundQueue<>(16, 4);
+        assertEquals(1, q.activeQueues());
+        assertEquals(16, q.capacity());
+        for (int i = 0; i < 16; i++)
+        {
+            assertTrue(q.offer(i));
+        }
+        assertFalse(q.offer(16));
+        assertFalse(q.relaxedOffer(16));
+        assertEquals(16, q.size());
+        int polled = 0;
+        while (q.poll() != null)
+        {
+            polled++;
+        }
+        assertEquals(16, polled);
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void contentionGrowsAndQuietShrinksTheActiveQueues()
+    {
+        MpscAdaptiveCompoundQueue<Integer> q = new MpscAdaptiveCompoundQueue<>(64, 4);
+        final int interval = MpscAdaptiveCompoundQueue.ADAPT_INTERVAL;
+        q.adapt(interval / MpscAdaptiveCompoundQueue.GROW_RATIO + 1, interval);
+        assertEquals(2, q.activeQueues());
+        q.adapt(interval, interval);
+        assertEquals(4, q.activeQueues());
+        // capped at the queue parallelism
+        q.adapt(interval, interval);
+        assertEquals(4, q.activeQueues());
+        // between the ratios nothing changes
+        q.adapt(interval / MpscAdaptiveCompoundQueue.SHRINK_RATIO, interval);
+        assertEquals(4, q.activeQueues());
+        q.adapt(0, interval);
+        assertEquals(2, q.activeQueues());
+        q.adapt(0, interval);
+        q.adapt(0, interval);
+        assertEquals(1, q.activeQueues());
+    }
+
+    @Test
+    public void uncontendedConsumptionShrinksTheActiveQueues()
+    {
+        MpscAdaptiveCompoundQueue<Integer> q = new MpscAdaptiveCompoundQueue<>(64, 4);
+        q.adapt(Integer.MAX_VALUE, 1);
+        q.adapt(Integer.MAX_VALUE, 1);
+        assertEquals(4, q.activeQueues());
+        for (int i = 0; i < 2 * MpscAdaptiveCompoundQueue.ADAPT_INTERVAL; i++)
+        {
+            assertTrue(q.offer(i));
+            assertEquals(i, q.poll().intValue());
+        }
+        assertEquals(1, q.activeQueues());
+    }
+
+    @Test
+    public void elementsLeftInDeactivatedQueuesAreStillPolled() throws Exception
+    {
+        final MpscAdaptiveCompoundQueue<Integer> q = new MpscAdaptiveCompoundQueue<>(64, 4);
+        q.adapt(Integer.MAX_VALUE, 1);
+        q.adapt(Integer.MAX_VALUE, 1);
+        // threads with different ids spread over the active queues
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++)
+        {
+            final int base = p * 4;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 4; i++)
+                {
+                    q.offer(base + i);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers)
+        {
+            producer.join();
+        }
+        q.adapt(0, 1);
+        q.adapt(0, 1);
+        assertEquals(1, q.activeQueues());
+        boolean[] seen = new boolean[16];
+        Integer e;
+        while ((e = q.relaxedPoll()) != null)
+        {
+            assertFalse(seen[e]);
+            seen[e] = true;
+        }
+        for (boolean s : seen)
+        {
+            assertTrue(s);
+        }
+        assertTrue(q.isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentProducersNeverStrandAQueue() throws Exception
+    {
+        final MpscAdaptiveCompoundQueue<Integer> q = new MpscAdaptiveCompoundQueue<>(256, 8);
+        final int producers = 4;
+        final int perProducer = 50000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++)
+        {
+            final int id = p;
+            Thread producer = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++)
+                    {
+                        // producer id in the top bits, sequence below
+                        while (!q.offer((id << 24) | i))
+                        {
+                            Thread.yield();
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            producer.start();
+            threads.add(producer);
+        }
+        start.countDown();
+        final boolean[][] seen = new boolean[producers][perProducer];
+        int received = 0;
+        while (received < producers * perProducer)
+        {
+            final Integer e = q.poll();
+            if (e == null)
+            {
+                Thread.yield();
+                continue;
+            }
+            // a producer finding its queue full moves on to the others, so there is no order to check
+            final int id = e >>> 24;
+            assertFalse(seen[id][e & 0xFFFFFF]);
+            seen[id][e & 0xFFFFFF] = true;
+            received++;
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+}
@@ -0,0 +1,132 @@
+package org.jctools.queues;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MpscPriorityLanesQueueTest
+{
+    @Test
+    public void higherLanesAreServedFirst()
+    {
+        MpscPriorityLanesQueue<String> q = new MpscPriorityLanesQueue<>(3, 8);
+        assertEquals(3, q.lanes());
+        assertEquals(24, q.capacity());
+        assertTrue(q.offer("order1"));
+        assertTrue(q.offer("order2", 0));
+        assertTrue(q.offer("cancel1", 2));
+        assertTrue(q.relaxedOffer("amend1", 1));
+        assertTrue(q.offer("cancel2", 2));
+        assertEquals(5, q.size());
+        assertEquals(2, q.size(0));
+        assertEquals(1, q.size(1));
+        assertEquals(2, q.size(2));
+        assertEquals("cancel1", q.peek());
+        assertEquals("cancel1", q.poll());
+        assertEquals("cancel2", q.relaxedPoll());
+        assertEquals("amend1", q.poll());
+        // a more urgent element offered mid drain is served before the rest of a lane
+        List<String> drained = new ArrayList<>();
+        assertEquals(3, q.drain(e -> {
+            drained.add(e);
+            if (e.equals("order1"))
+            {
+                q.offer("cancel3", 2);
+            }
+        }, 10));
+        assertEquals(Arrays.asList("order1", "cancel3", "order2"), drained);
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+        assertNull(q.relaxedPeek());
+    }
+
+    @Test
+    public void lanesHaveTheirOwnCapacity()
+    {
+        MpscPriorityLanesQueue<Integer> q = new MpscPriorityLanesQueue<>(new int[]{2, 4});
+        assertEquals(2, q.capacity(0));
+        assertEquals(4, q.capacity(1));
+        assertTrue(q.offer(1));
+        assertTrue(q.offer(2));
+        assertFalse(q.offer(3));
+        assertFalse(q.relaxedOffer(3, 0));
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(q.offer(10 + i, 1));
+        }
+        assertFalse(q.offer(14, 1));
+        assertEquals(6, q.size());
+        q.clear();
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyLanes()
+    {
+        new MpscPriorityLanesQueue<Integer>(MpscPriorityLanesQueue.MAX_LANES + 1, 2);
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentProducersNeverStrandALane() throws Exception
+    {
+        final MpscPriorityLanesQueue<Integer> q = new MpscPriorityLanesQueue<>(4, 64);
+        final int producers = 4;
+        final int perProducer = 50000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++)
+        {
+            final int lane = p;
+            Thread producer = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++)
+                    {
+                        // lane in the top bits, sequence below
+                        while (!q.offer((lane << 24) | i, lane))
+                        {
+                            Thread.yield();
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            producer.start();
+            threads.add(producer);
+        }
+        start.countDown();
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer)
+        {
+            final Integer e = q.poll();
+            if (e == null)
+            {
+                Thread.yield();
+                continue;
+            }
+            final int lane = e >>> 24;
+            assertEquals(next[lane]++, e & 0xFFFFFF);
+            received++;
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+}
@@ -28,6 +28,7 @@ public class QueueSanityTestMpmcArray extends QueueSanityTest
         // Mpmc minimal size is 2
         list.add(makeQueue(0, 0, 2, Ordering.FIFO, null));
         list.add(makeQueue(0, 0, SIZE, Ordering.FIFO, null));
+        list.add(makeQueue(0, 0, 2, Ordering.FIFO, new MpmcBlockingQueue<>(2)));
         return list;
     }
 
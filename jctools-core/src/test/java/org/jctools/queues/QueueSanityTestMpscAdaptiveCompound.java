@@ -0,0 +1,30 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+
+import static org.jctools.util.PortableJvmInfo.CPUs;
+
+@RunWith(Parameterized.class)
+public class QueueSanityTestMpscAdaptiveCompound extends QueueSanityTest
+{
+    public QueueSanityTestMpscAdaptiveCompound(ConcurrentQueueSpec spec, Queue<Integer> queue)
+    {
+        super(spec, queue);
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(makeQueue(0, 1, 8, Ordering.NONE, new MpscAdaptiveCompoundQueue<Integer>(8, 4)));
+        list.add(makeQueue(0, 1, SIZE, Ordering.NONE, new MpscAdaptiveCompoundQueue<Integer>(SIZE, CPUs)));
+        return list;
+    }
+}
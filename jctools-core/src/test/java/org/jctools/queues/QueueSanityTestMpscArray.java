@@ -27,6 +27,7 @@ public class QueueSanityTestMpscArray extends QueueSanityTest
         ArrayList<Object[]> list = new ArrayList<Object[]>();
         list.add(makeQueue(0, 1, 1, Ordering.FIFO, null));
         list.add(makeQueue(0, 1, SIZE, Ordering.FIFO, null));
+        list.add(makeQueue(0, 1, SIZE, Ordering.FIFO, new MpscBlockingQueue<>(SIZE)));
 
         return list;
     }
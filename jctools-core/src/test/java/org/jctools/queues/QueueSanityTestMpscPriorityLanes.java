@@ -0,0 +1,28 @@
+package org.jctools.queues;
+
+import org.jctools.queues.spec.ConcurrentQueueSpec;
+import org.jctools.queues.spec.Ordering;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+
+@RunWith(Parameterized.class)
+public class QueueSanityTestMpscPriorityLanes extends QueueSanityTest
+{
+    public QueueSanityTestMpscPriorityLanes(ConcurrentQueueSpec spec, Queue<Integer> queue)
+    {
+        super(spec, queue);
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> parameters()
+    {
+        ArrayList<Object[]> list = new ArrayList<Object[]>();
+        list.add(makeQueue(0, 1, 4, Ordering.FIFO, new MpscPriorityLanesQueue<Integer>(4)));
+        list.add(makeQueue(0, 1, SIZE, Ordering.FIFO, new MpscPriorityLanesQueue<Integer>(SIZE)));
+        return list;
+    }
+}
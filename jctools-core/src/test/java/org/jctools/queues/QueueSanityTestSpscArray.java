@@ -23,6 +23,7 @@ public class QueueSanityTestSpscArray extends QueueSanityTest
         ArrayList<Object[]> list = new ArrayList<Object[]>();
         list.add(makeQueue(1, 1, 4, Ordering.FIFO, null));
         list.add(makeQueue(1, 1, SIZE, Ordering.FIFO, null));
+        list.add(makeQueue(1, 1, 4, Ordering.FIFO, new SpscBlockingQueue<>(4)));
         return list;
     }
 
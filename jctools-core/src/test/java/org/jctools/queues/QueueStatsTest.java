@@ -0,0 +1,133 @@
+package org.jctools.queues;
+
+import org.jctools.queues.atomic.MpscAtomicArrayQueue;
+import org.jctools.queues.atomic.SpscAtomicArrayQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class QueueStatsTest
+{
+    @Test
+    public void sampleOccupancy()
+    {
+        MpscArrayQueue<Integer> q = new MpscArrayQueue<Integer>(8);
+        for (int i = 0; i < 5; i++)
+        {
+            q.offer(i);
+        }
+        q.poll();
+        QueueStats stats = QueueStats.sample(q);
+        assertEquals(4, stats.size());
+        assertEquals(8, stats.capacity());
+        assertEquals(5, stats.producerIndex());
+        assertEquals(1, stats.consumerIndex());
+        assertFalse(stats.isRecorded());
+    }
+
+    @Test
+    public void sampleOccupancyOfOtherQueues()
+    {
+        Queue<Integer> q = new ConcurrentLinkedQueue<Integer>();
+        q.offer(1);
+        QueueStats stats = QueueStats.sample(q);
+        assertEquals(1, stats.size());
+        assertEquals(MessagePassingQueue.UNBOUNDED_CAPACITY, stats.capacity());
+        assertEquals(-1, stats.producerIndex());
+        assertEquals(-1, stats.consumerIndex());
+        assertFalse(stats.isRecorded());
+        assertEquals(0, stats.casFailures());
+        assertEquals(0, stats.offerFullFailures());
+        assertFalse(QueueStats.enableRecording(q));
+    }
+
+    @Test
+    public void recordingIsPerInstance()
+    {
+        assertNull(new MpscArrayQueue<Integer>(8).statsRecorder());
+        assertNull(new MpscUnboundedArrayQueue<Integer>(8).statsRecorder());
+        assertNull(new MpmcUnboundedArrayQueue<Integer>(8).statsRecorder());
+        assertNull(new SpscAtomicArrayQueue<Integer>(8).statsRecorder());
+
+        MpscArrayQueue<Integer> recorded = new MpscArrayQueue<Integer>(8);
+        MpscArrayQueue<Integer> other = new MpscArrayQueue<Integer>(8);
+        assertTrue(QueueStats.enableRecording(recorded));
+        QueueStatsRecorder recorder = recorded.statsRecorder();
+        assertNotNull(recorder);
+        assertSame(recorder, recorded.enableStatsRecording());
+        assertNull(other.statsRecorder());
+        for (int i = 0; i < 9; i++)
+        {
+            recorded.offer(i);
+            other.offer(i);
+        }
+        assertEquals(1, QueueStats.sample(recorded).offerFullFailures());
+        assertFalse(QueueStats.sample(other).isRecorded());
+    }
+
+    @Test
+    public void recordOfferFull()
+    {
+        ArrayList<Queue<Integer>> queues = new ArrayList<>();
+        queues.add(new SpscArrayQueue<>(4));
+        queues.add(new MpscArrayQueue<>(4));
+        queues.add(new SpmcArrayQueue<>(4));
+        queues.add(new MpmcArrayQueue<>(4));
+        queues.add(new MpscChunkedArrayQueue<>(4, 8));
+        queues.add(new SpscChunkedArrayQueue<>(8, 16));
+        queues.add(new MpscAtomicArrayQueue<>(4));
+        for (Queue<Integer> q : queues)
+        {
+            assertTrue(QueueStats.enableRecording(q));
+            int offered = 0;
+            while (q.offer(offered))
+            {
+                offered++;
+            }
+            assertFalse(q.offer(-1));
+            QueueStats stats = QueueStats.sample(q);
+            assertTrue(q.getClass().getSimpleName(), stats.isRecorded());
+            assertEquals(q.getClass().getSimpleName(), 2, stats.offerFullFailures());
+            assertEquals(offered, stats.size());
+        }
+    }
+
+    @Test
+    public void recordResizesAndReset()
+    {
+        ArrayList<Queue<Integer>> queues = new ArrayList<>();
+        queues.add(new MpscUnboundedArrayQueue<>(4));
+        queues.add(new SpscUnboundedArrayQueue<>(4));
+        queues.add(new MpmcUnboundedArrayQueue<>(4, 0));
+        for (Queue<Integer> q : queues)
+        {
+            assertTrue(QueueStats.enableRecording(q));
+            for (int i = 0; i < 64; i++)
+            {
+                q.offer(i);
+            }
+            QueueStats stats = QueueStats.sampleAndReset(q);
+            assertTrue(q.getClass().getSimpleName(), stats.resizes() > 0);
+            assertTrue(q.getClass().getSimpleName(), stats.offerSlowPaths() > 0 || q instanceof MpmcUnboundedArrayQueue);
+            stats = QueueStats.sample(q);
+            assertEquals(0, stats.resizes());
+            assertEquals(0, stats.offerSlowPaths());
+        }
+    }
+
+    @Test
+    public void recordCasFailures()
+    {
+        MpmcArrayQueue<Integer> q = new MpmcArrayQueue<Integer>(8);
+        QueueStats.enableRecording(q);
+        // CAS failures need contention, which is not reliably reproducible, so record them directly
+        assertTrue(QueueStatsRecorder.recordCasFailure(q.statsRecorder()));
+        assertTrue(QueueStatsRecorder.recordCasFailure(q.statsRecorder()));
+        assertEquals(2, QueueStats.sampleAndReset(q).casFailures());
+        assertEquals(0, QueueStats.sample(q).casFailures());
+    }
+}
@@ -0,0 +1,180 @@
+package org.jctools.queues;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SpmcMulticastRingTest
+{
+    @Test
+    public void everySubscriberSeesEveryElement()
+    {
+        SpmcMulticastRing<Integer> ring = new SpmcMulticastRing<>(8);
+        assertTrue(ring.offer(-1)); // nobody subscribed, lost to all
+        SpmcMulticastRing.Subscriber<Integer> a = ring.subscribe();
+        SpmcMulticastRing.Subscriber<Integer> b = ring.subscribe();
+        assertEquals(2, ring.subscriberCount());
+        assertNull(a.poll());
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(ring.offer(i));
+        }
+        assertEquals(5, a.lag());
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(Integer.valueOf(i), a.poll());
+        }
+        assertNull(a.poll());
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, b.drain(drained::add, 3));
+        assertEquals(2, b.drain(drained::add, 10));
+        assertEquals(0, b.drain(drained::add, 10));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+        assertEquals(0, a.lostCount());
+    }
+
+    @Test
+    public void losslessProducerIsGatedOnSlowestSubscriber()
+    {
+        SpmcMulticastRing<Integer> ring = new SpmcMulticastRing<>(4);
+        SpmcMulticastRing.Subscriber<Integer> fast = ring.subscribe();
+        SpmcMulticastRing.Subscriber<Integer> slow = ring.subscribe();
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(ring.offer(i));
+            assertEquals(Integer.valueOf(i), fast.poll());
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(Integer.valueOf(0), slow.poll());
+        assertTrue(ring.offer(4));
+        assertFalse(ring.offer(5));
+        assertTrue(slow.close());
+        assertFalse(slow.close());
+        assertTrue(ring.offer(5));
+        assertEquals(Integer.valueOf(4), fast.poll());
+        assertEquals(Integer.valueOf(5), fast.poll());
+    }
+
+    @Test
+    public void lossyLaggardSkipsOverwrittenElements()
+    {
+        SpmcMulticastRing<Integer> ring = new SpmcMulticastRing<>(4, true);
+        assertTrue(ring.isLossy());
+        SpmcMulticastRing.Subscriber<Integer> s = ring.subscribe();
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(ring.offer(i));
+        }
+        // the slot of element 6 may be in the middle of an overwrite, so 7 is the oldest safe element
+        assertEquals(Integer.valueOf(7), s.poll());
+        assertEquals(7, s.lostCount());
+        assertEquals(Integer.valueOf(8), s.poll());
+        assertEquals(Integer.valueOf(9), s.poll());
+        assertNull(s.poll());
+        assertEquals(7, s.lostCount());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentLosslessSubscribersSeeAllInOrder() throws Exception
+    {
+        final SpmcMulticastRing<Long> ring = new SpmcMulticastRing<>(64);
+        final long count = 200000;
+        final int subscribers = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch ready = new CountDownLatch(subscribers);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < subscribers; t++)
+        {
+            final SpmcMulticastRing.Subscriber<Long> s = ring.subscribe();
+            Thread consumer = new Thread(() -> {
+                ready.countDown();
+                long expected = 0;
+                while (expected < count)
+                {
+                    Long e = s.poll();
+                    if (e == null)
+                    {
+                        Thread.yield();
+                        continue;
+                    }
+                    if (e != expected)
+                    {
+                        failure.set(new AssertionError("expected " + expected + " but was " + e));
+                        return;
+                    }
+                    expected++;
+                }
+            });
+            consumer.start();
+            threads.add(consumer);
+        }
+        ready.await();
+        for (long i = 0; i < count && failure.get() == null; i++)
+        {
+            while (!ring.offer(i))
+            {
+                Thread.yield();
+            }
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentLossySubscribersDetectEveryGap() throws Exception
+    {
+        final SpmcMulticastRing<Long> ring = new SpmcMulticastRing<>(16, true);
+        final long count = 500000;
+        final int subscribers = 3;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < subscribers; t++)
+        {
+            final SpmcMulticastRing.Subscriber<Long> s = ring.subscribe();
+            Thread consumer = new Thread(() -> {
+                long last = -1;
+                while (last < count - 1)
+                {
+                    final long lostBefore = s.lostCount();
+                    Long e = s.poll();
+                    if (e == null)
+                    {
+                        continue;
+                    }
+                    // an element is either the next one or follows exactly the lost ones
+                    if (e != last + 1 + s.lostCount() - lostBefore)
+                    {
+                        failure.set(new AssertionError("after " + last + " got " + e + ", lost " +
+                            (s.lostCount() - lostBefore)));
+                        return;
+                    }
+                    last = e;
+                }
+                if (s.lostCount() + 1 > count)
+                {
+                    failure.set(new AssertionError("lost " + s.lostCount()));
+                }
+            });
+            consumer.start();
+            threads.add(consumer);
+        }
+        for (long i = 0; i < count; i++)
+        {
+            assertTrue(ring.offer(i));
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(failure.get());
+    }
+}
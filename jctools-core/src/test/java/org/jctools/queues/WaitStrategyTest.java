@@ -0,0 +1,153 @@
+package org.jctools.queues;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class WaitStrategyTest
+{
+    @Test
+    public void parkTimesDoubleUpToMax()
+    {
+        ParkingWaitStrategy parking = new ParkingWaitStrategy(1000, 10000);
+        assertEquals(1000, parking.parkNanos(0));
+        assertEquals(2000, parking.parkNanos(1));
+        assertEquals(8000, parking.parkNanos(3));
+        assertEquals(10000, parking.parkNanos(4));
+        assertEquals(10000, parking.parkNanos(Integer.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, new ParkingWaitStrategy(1, Long.MAX_VALUE).parkNanos(100));
+        assertEquals(1, parking.idle(0));
+        assertEquals(Integer.MAX_VALUE, parking.idle(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parkingRejectsMaxBelowMin()
+    {
+        new ParkingWaitStrategy(1000, 999);
+    }
+
+    @Test
+    public void backoffCountsThroughAllPhases()
+    {
+        BackoffWaitStrategy backoff = new BackoffWaitStrategy(2, 2, 1, 1);
+        int idleCounter = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            idleCounter = backoff.idle(idleCounter);
+        }
+        assertEquals(10, idleCounter);
+        assertEquals(1, BusySpinWaitStrategy.INSTANCE.idle(0));
+    }
+
+    @Test(timeout = 10000)
+    public void phasedWaitIsWokenBySignal() throws Exception
+    {
+        final PhasedWaitStrategy wait = new PhasedWaitStrategy(TimeUnit.SECONDS.toNanos(60));
+        final SpscArrayQueue<Integer> q = new SpscArrayQueue<>(16);
+        final AtomicReference<Integer> received = new AtomicReference<>();
+        final AtomicLong idleCalls = new AtomicLong();
+        Thread consumer = new Thread(() -> {
+            int idleCounter = 0;
+            Integer e;
+            while ((e = q.relaxedPoll()) == null)
+            {
+                idleCalls.incrementAndGet();
+                idleCounter = wait.idle(idleCounter);
+            }
+            received.set(e);
+        });
+        consumer.start();
+        while (idleCalls.get() < 2)
+        {
+            Thread.yield();
+        }
+        // the consumer is blocked well within its wait time
+        Thread.sleep(50);
+        assertTrue(consumer.isAlive());
+        final long idlesWhileBlocked = idleCalls.get();
+        q.offer(42);
+        wait.signal();
+        consumer.join();
+        assertEquals(Integer.valueOf(42), received.get());
+        assertTrue(idleCalls.get() - idlesWhileBlocked <= 1);
+    }
+
+    @Test
+    public void phasedWaitReturnsAtOnceWhenSignalledSinceNotedPhase()
+    {
+        PhasedWaitStrategy wait = new PhasedWaitStrategy(TimeUnit.SECONDS.toNanos(60));
+        int idleCounter = wait.idle(0);
+        wait.signal();
+        // would block for a minute if the signal was lost
+        assertNotEquals(idleCounter, wait.idle(idleCounter));
+    }
+
+    @Test
+    public void phasedWaitTimesOut()
+    {
+        PhasedWaitStrategy wait = new PhasedWaitStrategy(TimeUnit.MILLISECONDS.toNanos(1));
+        int idleCounter = wait.idle(0);
+        assertEquals(idleCounter, wait.idle(idleCounter));
+    }
+
+    @Test(timeout = 10000)
+    public void phasedWaitEndsOnInterrupt()
+    {
+        PhasedWaitStrategy wait = new PhasedWaitStrategy(TimeUnit.SECONDS.toNanos(60));
+        int idleCounter = wait.idle(0);
+        Thread.currentThread().interrupt();
+        try
+        {
+            // would block for a minute if the interrupt was ignored
+            assertEquals(idleCounter, wait.idle(idleCounter));
+            assertTrue(Thread.currentThread().isInterrupted());
+        }
+        finally
+        {
+            Thread.interrupted();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void drainUntilStoppedWithEachStrategy() throws Exception
+    {
+        MessagePassingQueue.WaitStrategy[] strategies = {
+            BusySpinWaitStrategy.INSTANCE,
+            new BackoffWaitStrategy(),
+            new ParkingWaitStrategy(),
+            new PhasedWaitStrategy()
+        };
+        for (MessagePassingQueue.WaitStrategy wait : strategies)
+        {
+            final MpscArrayQueue<Integer> q = new MpscArrayQueue<>(64);
+            final RunFlag running = new RunFlag();
+            final AtomicLong sum = new AtomicLong();
+            Thread consumer = new Thread(() -> q.drain(e -> sum.addAndGet(e), wait, running));
+            consumer.start();
+            long expected = 0;
+            for (int i = 1; i <= 1000; i++)
+            {
+                while (!q.offer(i))
+                {
+                    Thread.yield();
+                }
+                if (wait instanceof PhasedWaitStrategy)
+                {
+                    ((PhasedWaitStrategy) wait).signal();
+                }
+                expected += i;
+            }
+            while (sum.get() != expected)
+            {
+                Thread.yield();
+            }
+            running.stop();
+            consumer.join();
+            assertFalse(running.keepRunning());
+        }
+    }
+}
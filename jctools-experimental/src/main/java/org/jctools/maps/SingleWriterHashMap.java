@@ -0,0 +1,351 @@
+package org.jctools.maps;
+
+import org.jctools.util.Pow2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+import static org.jctools.util.UnsafeRefArrayAccess.*;
+
+/**
+ * An open addressing hash map for a single writer thread and any number of reader threads, the map counterpart
+ * of {@link org.jctools.sets.SingleWriterHashSet}. All the methods changing the map (including the ones of its
+ * views and iterators) must be called from the same thread, the reading methods may be called from any thread.
+ * <p>
+ * Keys and values are stored side by side in a table published to the readers with ordered stores: a new entry
+ * has its value stored before its key, so a reader finding the key finds its value. Keys never move within a
+ * table, a removed entry keeps its key with a tombstone for value, so reads are wait-free: they probe a table
+ * which is never full and never retry.
+ * <p>
+ * Tombstones are dropped, and the map grown or shrunk, by copying the live entries into a new table. The copy
+ * is incremental: each change to the map copies a few more slots, and while the copy is on changes go to both
+ * tables. The readers keep using the current table until the copy is complete, so a resize never holds up a
+ * reader nor has the writer stop the world.
+ * <p>
+ * Null keys and values are not supported.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class SingleWriterHashMap<K, V> extends AbstractMap<K, V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 8;
+    // table slots copied by each change while a resize is on
+    private static final int RESIZE_STEP = 8;
+
+    /* key/value pairs, (table.length / 2) is a power of 2 */
+    private Object[] table;
+    /* live entries in the table, read by readers */
+    private int size;
+    /* slots holding a key, live or tombstone */
+    private int used;
+    private int resizeThreshold;
+
+    /* the table being copied to, null unless a resize is on */
+    private Object[] nextTable;
+    private int nextUsed;
+    /* slots of the table copied so far */
+    private int copied;
+
+    private final int initialCapacity;
+
+    public SingleWriterHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public SingleWriterHashMap(int capacity) {
+        initialCapacity = Pow2.roundToPowerOfTwo(Math.max(capacity * 2, MIN_CAPACITY));
+        table = new Object[initialCapacity * 2];
+        resizeThreshold = initialCapacity / 2;
+    }
+
+    @Override
+    public int size() {
+        // size read needs to by volatile so that changes are visible
+        return UNSAFE.getIntVolatile(this, SIZE_OFFSET);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        return valueOf(lvTable(), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return valueOf(lvTable(), key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valueOf(Object[] table, Object key) {
+        final int mask = (table.length >> 1) - 1;
+        int i = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            final Object k = lvElement(table, calcElementOffset(i << 1));
+            if (k == null) {
+                return null;
+            }
+            if (k == key || k.equals(key)) {
+                final Object v = lvElement(table, calcElementOffset((i << 1) + 1));
+                return v == TOMBSTONE ? null : (V) v;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final Object previous = insert(table, key, value);
+        if (previous == null) {
+            used++;
+        }
+        if (previous == null || previous == TOMBSTONE) {
+            soSize(size + 1);
+        }
+        afterChange(key, value);
+        return live(previous);
+    }
+
+    @Override
+    public V remove(Object key) {
+        final Object previous = tombstone(table, key);
+        if (previous != null) {
+            soSize(size - 1);
+        }
+        afterChange(key, null);
+        return live(previous);
+    }
+
+    @Override
+    public void clear() {
+        nextTable = null;
+        soTable(new Object[initialCapacity * 2]);
+        soSize(0);
+        used = 0;
+        resizeThreshold = initialCapacity / 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V live(Object value) {
+        return value == TOMBSTONE ? null : (V) value;
+    }
+
+    /**
+     * Mirror the change to the table being copied to and copy a few more slots, or start a resize when the
+     * table is getting full.
+     */
+    private void afterChange(Object key, Object value) {
+        if (nextTable != null) {
+            if (value == null) {
+                tombstone(nextTable, key);
+            }
+            else if (insert(nextTable, key, value) == null) {
+                nextUsed++;
+            }
+            copySlots();
+        }
+        else if (used > resizeThreshold) {
+            final int capacity = table.length >> 1;
+            // room for the live entries and what the changes made during the copy may add, at most half full
+            final int nextCapacity = Pow2.roundToPowerOfTwo(
+                Math.max(2 * (size + capacity / RESIZE_STEP + 1), MIN_CAPACITY));
+            nextTable = new Object[nextCapacity * 2];
+            nextUsed = 0;
+            copied = 0;
+            copySlots();
+        }
+    }
+
+    private void copySlots() {
+        final Object[] table = this.table;
+        final Object[] nextTable = this.nextTable;
+        final int capacity = table.length >> 1;
+        final int end = Math.min(copied + RESIZE_STEP, capacity);
+        for (int i = copied; i < end; i++) {
+            final Object k = table[i << 1];
+            final Object v = table[(i << 1) + 1];
+            if (k != null && v != TOMBSTONE && insert(nextTable, k, v) == null) {
+                nextUsed++;
+            }
+        }
+        copied = end;
+        if (end == capacity) {
+            this.nextTable = null;
+            used = nextUsed;
+            resizeThreshold = (nextTable.length >> 1) / 2;
+            soTable(nextTable);
+        }
+    }
+
+    /**
+     * @return the value replaced, TOMBSTONE if the key was removed, null if the key takes a new slot
+     */
+    private static Object insert(Object[] table, Object key, Object value) {
+        final int mask = (table.length >> 1) - 1;
+        int i = hash(key) & mask;
+        while (true) {
+            final long keyOffset = calcElementOffset(i << 1);
+            final long valueOffset = calcElementOffset((i << 1) + 1);
+            final Object k = lpElement(table, keyOffset);
+            if (k == null) {
+                // value first, a reader finding the key must find its value
+                soElement(table, valueOffset, value);
+                soElement(table, keyOffset, key);
+                return null;
+            }
+            if (k == key || k.equals(key)) {
+                final Object previous = lpElement(table, valueOffset);
+                soElement(table, valueOffset, value);
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the value removed, null if the key was not in the table
+     */
+    private static Object tombstone(Object[] table, Object key) {
+        final int mask = (table.length >> 1) - 1;
+        int i = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            final Object k = lpElement(table, calcElementOffset(i << 1));
+            if (k == null) {
+                return null;
+            }
+            if (k == key || k.equals(key)) {
+                final long valueOffset = calcElementOffset((i << 1) + 1);
+                final Object previous = lpElement(table, valueOffset);
+                if (previous == TOMBSTONE) {
+                    return null;
+                }
+                soElement(table, valueOffset, TOMBSTONE);
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int hash(Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new Iter();
+        }
+
+        @Override
+        public int size() {
+            return SingleWriterHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SingleWriterHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Iterates over the table current when created, changes made meanwhile may or may not be seen.
+     */
+    private final class Iter implements Iterator<Entry<K, V>> {
+        private final Object[] table = lvTable();
+        private int nextIndex;
+        private Entry<K, V> next;
+        private Entry<K, V> last;
+
+        Iter() {
+            findNext();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void findNext() {
+            final Object[] table = this.table;
+            for (int i = nextIndex; i < table.length >> 1; i++) {
+                final Object k = lvElement(table, calcElementOffset(i << 1));
+                if (k != null) {
+                    final Object v = lvElement(table, calcElementOffset((i << 1) + 1));
+                    if (v != TOMBSTONE) {
+                        next = new MapEntry((K) k, (V) v);
+                        nextIndex = i + 1;
+                        return;
+                    }
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            findNext();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            SingleWriterHashMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    private final class MapEntry extends SimpleEntry<K, V> {
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private final static long TABLE_OFFSET = fieldOffset(SingleWriterHashMap.class, "table");
+    private final static long SIZE_OFFSET = fieldOffset(SingleWriterHashMap.class, "size");
+
+    private void soTable(final Object[] table) {
+        UNSAFE.putOrderedObject(this, TABLE_OFFSET, table);
+    }
+
+    private Object[] lvTable() {
+        return (Object[]) UNSAFE.getObjectVolatile(this, TABLE_OFFSET);
+    }
+
+    private void soSize(int size) {
+        UNSAFE.putOrderedInt(this, SIZE_OFFSET, size);
+    }
+}
@@ -0,0 +1,370 @@
+package org.jctools.maps;
+
+import org.jctools.util.Pow2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.jctools.util.UnsafeAccess.UNSAFE;
+import static org.jctools.util.UnsafeAccess.fieldOffset;
+import static org.jctools.util.UnsafeRefArrayAccess.*;
+
+/**
+ * A {@link SingleWriterHashMap} with primitive {@code long} keys, which are not boxed but by the {@link java.util.Map}
+ * methods taking or returning a {@link Long}. The same single writer rule applies: all the methods changing the
+ * map must be called from the same thread, the reading methods may be called from any thread.
+ * <p>
+ * The keys are held in a {@code long[]} next to the values array. A slot is taken when its value is set, so a new
+ * entry has its key stored before its value is published with an ordered store, and a reader finding a value
+ * finds its key. Reads are wait-free and resizes incremental as in {@link SingleWriterHashMap}.
+ * <p>
+ * Null values are not supported.
+ *
+ * @param <V> the type of values
+ */
+public class SingleWriterHashMapLong<V> extends AbstractMap<Long, V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 8;
+    // table slots copied by each change while a resize is on
+    private static final int RESIZE_STEP = 8;
+
+    private static final class Table {
+        final long[] keys;
+        // null for a free slot
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+    }
+
+    private Table table;
+    /* live entries in the table, read by readers */
+    private int size;
+    /* slots holding a key, live or tombstone */
+    private int used;
+    private int resizeThreshold;
+
+    /* the table being copied to, null unless a resize is on */
+    private Table nextTable;
+    private int nextUsed;
+    /* slots of the table copied so far */
+    private int copied;
+
+    private final int initialCapacity;
+
+    public SingleWriterHashMapLong() {
+        this(MIN_CAPACITY);
+    }
+
+    public SingleWriterHashMapLong(int capacity) {
+        initialCapacity = Pow2.roundToPowerOfTwo(Math.max(capacity * 2, MIN_CAPACITY));
+        table = new Table(initialCapacity);
+        resizeThreshold = initialCapacity / 2;
+    }
+
+    @Override
+    public int size() {
+        // size read needs to by volatile so that changes are visible
+        return UNSAFE.getIntVolatile(this, SIZE_OFFSET);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public V get(long key) {
+        return valueOf(lvTable(), key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Long ? get(((Long) key).longValue()) : null;
+    }
+
+    public boolean containsKey(long key) {
+        return valueOf(lvTable(), key) != null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && containsKey(((Long) key).longValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valueOf(Table table, long key) {
+        final long[] keys = table.keys;
+        final Object[] values = table.values;
+        final int mask = values.length - 1;
+        int i = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            final Object v = lvElement(values, calcElementOffset(i));
+            if (v == null) {
+                return null;
+            }
+            // the key was stored before the value was published
+            if (keys[i] == key) {
+                return v == TOMBSTONE ? null : (V) v;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final Object previous = insert(table, key, value);
+        if (previous == null) {
+            used++;
+        }
+        if (previous == null || previous == TOMBSTONE) {
+            soSize(size + 1);
+        }
+        afterChange(key, value);
+        return live(previous);
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        return put(key.longValue(), value);
+    }
+
+    public V remove(long key) {
+        final Object previous = tombstone(table, key);
+        if (previous != null) {
+            soSize(size - 1);
+        }
+        afterChange(key, null);
+        return live(previous);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Long ? remove(((Long) key).longValue()) : null;
+    }
+
+    @Override
+    public void clear() {
+        nextTable = null;
+        soTable(new Table(initialCapacity));
+        soSize(0);
+        used = 0;
+        resizeThreshold = initialCapacity / 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V live(Object value) {
+        return value == TOMBSTONE ? null : (V) value;
+    }
+
+    /**
+     * Mirror the change to the table being copied to and copy a few more slots, or start a resize when the
+     * table is getting full.
+     */
+    private void afterChange(long key, Object value) {
+        if (nextTable != null) {
+            if (value == null) {
+                tombstone(nextTable, key);
+            }
+            else if (insert(nextTable, key, value) == null) {
+                nextUsed++;
+            }
+            copySlots();
+        }
+        else if (used > resizeThreshold) {
+            final int capacity = table.values.length;
+            // room for the live entries and what the changes made during the copy may add, at most half full
+            final int nextCapacity = Pow2.roundToPowerOfTwo(
+                Math.max(2 * (size + capacity / RESIZE_STEP + 1), MIN_CAPACITY));
+            nextTable = new Table(nextCapacity);
+            nextUsed = 0;
+            copied = 0;
+            copySlots();
+        }
+    }
+
+    private void copySlots() {
+        final Table table = this.table;
+        final Table nextTable = this.nextTable;
+        final int capacity = table.values.length;
+        final int end = Math.min(copied + RESIZE_STEP, capacity);
+        for (int i = copied; i < end; i++) {
+            final Object v = table.values[i];
+            if (v != null && v != TOMBSTONE && insert(nextTable, table.keys[i], v) == null) {
+                nextUsed++;
+            }
+        }
+        copied = end;
+        if (end == capacity) {
+            this.nextTable = null;
+            used = nextUsed;
+            resizeThreshold = nextTable.values.length / 2;
+            soTable(nextTable);
+        }
+    }
+
+    /**
+     * @return the value replaced, TOMBSTONE if the key was removed, null if the key takes a new slot
+     */
+    private static Object insert(Table table, long key, Object value) {
+        final long[] keys = table.keys;
+        final Object[] values = table.values;
+        final int mask = values.length - 1;
+        int i = hash(key) & mask;
+        while (true) {
+            final long offset = calcElementOffset(i);
+            final Object v = lpElement(values, offset);
+            if (v == null) {
+                // key first, a reader finding the value must find its key
+                keys[i] = key;
+                soElement(values, offset, value);
+                return null;
+            }
+            if (keys[i] == key) {
+                soElement(values, offset, value);
+                return v;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the value removed, null if the key was not in the table
+     */
+    private static Object tombstone(Table table, long key) {
+        final long[] keys = table.keys;
+        final Object[] values = table.values;
+        final int mask = values.length - 1;
+        int i = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            final long offset = calcElementOffset(i);
+            final Object v = lpElement(values, offset);
+            if (v == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                if (v == TOMBSTONE) {
+                    return null;
+                }
+                soElement(values, offset, TOMBSTONE);
+                return v;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int hash(long key) {
+        // spread all the key bits over the low bits used to pick the slot
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<Long, V>> {
+        @Override
+        public Iterator<Entry<Long, V>> iterator() {
+            return new Iter();
+        }
+
+        @Override
+        public int size() {
+            return SingleWriterHashMapLong.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SingleWriterHashMapLong.this.clear();
+        }
+    }
+
+    /**
+     * Iterates over the table current when created, changes made meanwhile may or may not be seen.
+     */
+    private final class Iter implements Iterator<Entry<Long, V>> {
+        private final Table table = lvTable();
+        private int nextIndex;
+        private Entry<Long, V> next;
+        private Entry<Long, V> last;
+
+        Iter() {
+            findNext();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void findNext() {
+            final Object[] values = table.values;
+            for (int i = nextIndex; i < values.length; i++) {
+                final Object v = lvElement(values, calcElementOffset(i));
+                if (v != null && v != TOMBSTONE) {
+                    next = new MapEntry(table.keys[i], (V) v);
+                    nextIndex = i + 1;
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<Long, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            findNext();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            SingleWriterHashMapLong.this.remove(last.getKey().longValue());
+            last = null;
+        }
+    }
+
+    private final class MapEntry extends SimpleEntry<Long, V> {
+        MapEntry(long key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey().longValue(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private final static long TABLE_OFFSET = fieldOffset(SingleWriterHashMapLong.class, "table");
+    private final static long SIZE_OFFSET = fieldOffset(SingleWriterHashMapLong.class, "size");
+
+    private void soTable(final Table table) {
+        UNSAFE.putOrderedObject(this, TABLE_OFFSET, table);
+    }
+
+    private Table lvTable() {
+        return (Table) UNSAFE.getObjectVolatile(this, TABLE_OFFSET);
+    }
+
+    private void soSize(int size) {
+        UNSAFE.putOrderedInt(this, SIZE_OFFSET, size);
+    }
+}
@@ -211,6 +211,21 @@ public class MpscSequencedArrayQueue<E> extends MpscSequencedArrayQueueConsumerF
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public int offer(E[] src, int off, int len) {
+        return MessagePassingQueueUtil.offer(this, src, off, len);
+    }
+
+    @Override
+    public int poll(E[] dst, int off, int len) {
+        return MessagePassingQueueUtil.poll(this, dst, off, len);
+    }
+
+    @Override
+    public int drain(Consumer<E> c, int maxBatch, long maxWaitNanos, WaitStrategy w) {
+        return MessagePassingQueueUtil.drain(this, c, maxBatch, maxWaitNanos, w);
+    }
+
     @Override
     public void drain(Consumer<E> c,
             WaitStrategy wait,
@@ -0,0 +1,110 @@
+package org.jctools.maps;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SingleWriterHashMapConcurrencyTest {
+    private static final int STABLE_KEYS = 64;
+    private static final int CHURN_KEYS = 4096;
+    private static final int READERS = 3;
+
+    @Test
+    public void testResizeNeverHidesStableKeys() throws Exception {
+        final SingleWriterHashMap<String, Integer> map = new SingleWriterHashMap<>(4);
+        for (int i = 0; i < STABLE_KEYS; i++) {
+            map.put("stable" + i, i);
+        }
+        readWhileChurning(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < STABLE_KEYS; i++) {
+                    assertEquals(Integer.valueOf(i), map.get("stable" + i));
+                }
+                assertTrue(map.size() >= STABLE_KEYS);
+            }
+        }, new Runnable() {
+            int round;
+
+            @Override
+            public void run() {
+                // grow with new keys, then remove them all so the next resize shrinks
+                for (int i = 0; i < CHURN_KEYS; i++) {
+                    map.put("churn" + round + "/" + i, i);
+                }
+                for (int i = 0; i < CHURN_KEYS; i++) {
+                    assertEquals(Integer.valueOf(i), map.remove("churn" + round + "/" + i));
+                }
+                round++;
+            }
+        });
+        assertEquals(STABLE_KEYS, map.size());
+    }
+
+    @Test
+    public void testResizeNeverHidesStableKeysLong() throws Exception {
+        final SingleWriterHashMapLong<Long> map = new SingleWriterHashMapLong<>(4);
+        for (long i = 0; i < STABLE_KEYS; i++) {
+            map.put(-i, Long.valueOf(i));
+        }
+        readWhileChurning(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 0; i < STABLE_KEYS; i++) {
+                    assertEquals(Long.valueOf(i), map.get(-i));
+                }
+                assertTrue(map.size() >= STABLE_KEYS);
+            }
+        }, new Runnable() {
+            long round;
+
+            @Override
+            public void run() {
+                final long base = 1 + round * CHURN_KEYS;
+                for (long i = 0; i < CHURN_KEYS; i++) {
+                    map.put(base + i, Long.valueOf(i));
+                }
+                for (long i = 0; i < CHURN_KEYS; i++) {
+                    assertEquals(Long.valueOf(i), map.remove(base + i));
+                }
+                round++;
+            }
+        });
+        assertEquals(STABLE_KEYS, map.size());
+    }
+
+    private static void readWhileChurning(final Runnable read, Runnable write) throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch finished = new CountDownLatch(READERS);
+        for (int r = 0; r < READERS; r++) {
+            new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        read.run();
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                } finally {
+                    finished.countDown();
+                }
+            }).start();
+        }
+        final long end = System.currentTimeMillis() + 1000;
+        try {
+            while (System.currentTimeMillis() < end && failure.get() == null) {
+                write.run();
+            }
+        } finally {
+            running.set(false);
+            finished.await();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.jctools.maps;
+
+import com.google.common.collect.testing.*;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.MapFeature;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("unchecked")
+public class SingleWriterHashMapTest extends TestCase {
+
+    public static Test suite() throws Exception {
+        TestSuite suite = new TestSuite();
+        suite.addTest(mapTestSuite(new TestStringMapGenerator() {
+            @Override
+            protected Map<String, String> create(Map.Entry<String, String>[] entries) {
+                Map<String, String> map = new SingleWriterHashMap<>(entries.length);
+                for (Map.Entry<String, String> entry : entries) {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+                return map;
+            }
+        }, SingleWriterHashMap.class.getSimpleName()));
+        suite.addTest(mapTestSuite(new TestMapGenerator<Long, String>() {
+            @Override
+            public Long[] createKeyArray(int length) {
+                return new Long[length];
+            }
+
+            @Override
+            public String[] createValueArray(int length) {
+                return new String[length];
+            }
+
+            @Override
+            public SampleElements<Map.Entry<Long, String>> samples() {
+                return new SampleElements<>(
+                    Helpers.mapEntry(1L, "1"),
+                    Helpers.mapEntry(-2L, "2"),
+                    Helpers.mapEntry(3L << 32, "3"),
+                    Helpers.mapEntry(Long.MIN_VALUE, "4"),
+                    Helpers.mapEntry(0L, "5"));
+            }
+
+            @Override
+            public Map<Long, String> create(Object... elements) {
+                Map<Long, String> map = new SingleWriterHashMapLong<>(elements.length);
+                for (Object o : elements) {
+                    Map.Entry<Long, String> e = (Map.Entry<Long, String>) o;
+                    map.put(e.getKey(), e.getValue());
+                }
+                return map;
+            }
+
+            @Override
+            public Map.Entry<Long, String>[] createArray(int length) {
+                return new Map.Entry[length];
+            }
+
+            @Override
+            public Iterable<Map.Entry<Long, String>> order(List<Map.Entry<Long, String>> insertionOrder) {
+                return insertionOrder;
+            }
+        }, SingleWriterHashMapLong.class.getSimpleName()));
+        return suite;
+    }
+
+    private static <K, V> TestSuite mapTestSuite(TestMapGenerator<K, V> testMapGenerator, String name) {
+        return MapTestSuiteBuilder.using(testMapGenerator)
+            .withFeatures(
+                MapFeature.GENERAL_PURPOSE,
+                CollectionSize.ANY,
+                CollectionFeature.SUPPORTS_ITERATOR_REMOVE)
+            .named(name)
+            .createTestSuite();
+    }
+}